@@ -16,6 +16,8 @@ class K9FeatureFlagFactory : FeatureFlagFactory {
             FeatureFlag("enable_dropdown_drawer_ui".toFeatureFlagKey(), enabled = true),
             FeatureFlag(FeatureFlagKey.DisplayInAppNotifications, enabled = true),
             FeatureFlag(FeatureFlagKey.UseNotificationSenderForSystemNotifications, enabled = true),
+            FeatureFlag(FeatureFlagKey.DatabaseWriteAheadLogging, enabled = true),
+            FeatureFlag(FeatureFlagKey.CompressMessageBodies, enabled = true),
         )
     }
 }
@@ -16,6 +16,8 @@ class K9FeatureFlagFactory : FeatureFlagFactory {
             FeatureFlag("enable_dropdown_drawer_ui".toFeatureFlagKey(), enabled = false),
             FeatureFlag(FeatureFlagKey.DisplayInAppNotifications, enabled = false),
             FeatureFlag(FeatureFlagKey.UseNotificationSenderForSystemNotifications, enabled = false),
+            FeatureFlag(FeatureFlagKey.DatabaseWriteAheadLogging, enabled = false),
+            FeatureFlag(FeatureFlagKey.CompressMessageBodies, enabled = false),
         )
     }
 }
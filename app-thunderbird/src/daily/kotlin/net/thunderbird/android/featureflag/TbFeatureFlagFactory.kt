@@ -19,6 +19,8 @@ class TbFeatureFlagFactory : FeatureFlagFactory {
             FeatureFlag("enable_dropdown_drawer_ui".toFeatureFlagKey(), enabled = true),
             FeatureFlag(FeatureFlagKey.DisplayInAppNotifications, enabled = true),
             FeatureFlag(FeatureFlagKey.UseNotificationSenderForSystemNotifications, enabled = true),
+            FeatureFlag(FeatureFlagKey.DatabaseWriteAheadLogging, enabled = true),
+            FeatureFlag(FeatureFlagKey.CompressMessageBodies, enabled = true),
         )
     }
 }
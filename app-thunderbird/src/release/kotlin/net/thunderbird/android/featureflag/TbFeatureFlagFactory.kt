@@ -19,6 +19,8 @@ class TbFeatureFlagFactory : FeatureFlagFactory {
             FeatureFlag("enable_dropdown_drawer_ui".toFeatureFlagKey(), enabled = false),
             FeatureFlag(FeatureFlagKey.DisplayInAppNotifications, enabled = false),
             FeatureFlag(FeatureFlagKey.UseNotificationSenderForSystemNotifications, enabled = false),
+            FeatureFlag(FeatureFlagKey.DatabaseWriteAheadLogging, enabled = false),
+            FeatureFlag(FeatureFlagKey.CompressMessageBodies, enabled = false),
         )
     }
 }
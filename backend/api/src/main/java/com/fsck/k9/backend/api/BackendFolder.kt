@@ -20,8 +20,23 @@ interface BackendFolder {
     fun setStatus(status: String?)
     fun isMessagePresent(messageServerId: String): Boolean
     fun getMessageFlags(messageServerId: String): Set<Flag>
+
+    /**
+     * Returns the flags of all messages in [messageServerIds] that are present locally, keyed by message server ID.
+     */
+    fun getMessageFlags(messageServerIds: Collection<String>): Map<String, Set<Flag>>
     fun setMessageFlag(messageServerId: String, flag: Flag, value: Boolean)
+
+    /**
+     * Applies the flag changes of multiple messages at once, i.e. in a single database transaction.
+     */
+    fun setMessageFlags(flagChanges: Map<String, Map<Flag, Boolean>>)
     fun saveMessage(message: Message, downloadState: MessageDownloadState)
+
+    /**
+     * Saves multiple messages at once, i.e. using a few database transactions instead of one per message.
+     */
+    fun saveMessages(messages: List<Message>, downloadState: MessageDownloadState)
     fun getOldestMessageDate(): Date?
     fun getFolderExtraString(name: String): String?
     fun setFolderExtraString(name: String, value: String?)
@@ -13,6 +13,13 @@ interface SyncListener {
     fun syncNewMessage(folderServerId: String, messageServerId: String, isOldMessage: Boolean)
     fun syncRemovedMessage(folderServerId: String, messageServerId: String)
     fun syncFlagChanged(folderServerId: String, messageServerId: String)
+    fun syncDownloadThroughput(
+        folderServerId: String,
+        connectionIndex: Int,
+        messageCount: Int,
+        byteCount: Long,
+        durationMillis: Long,
+    )
 
     fun syncFinished(folderServerId: String)
     fun syncFailed(folderServerId: String, message: String, exception: Exception?)
@@ -0,0 +1,73 @@
+package com.fsck.k9.backend.imap
+
+import com.fsck.k9.backend.api.BackendFolder
+import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.store.imap.ImapMessage
+import net.thunderbird.core.logging.legacy.Log
+
+private const val SAVE_BATCH_SIZE = 50
+
+/**
+ * Collects downloaded messages and saves them using [BackendFolder.saveMessages] once [batchSize] messages have been
+ * collected.
+ *
+ * [onMessageSaved] is called for every message after it has been saved. Call [flush] when the download is complete to
+ * save the remaining messages.
+ */
+internal class BatchedMessageSaver(
+    private val backendFolder: BackendFolder,
+    private val batchSize: Int = SAVE_BATCH_SIZE,
+    private val onMessageSaved: (message: ImapMessage, isFirstResponse: Boolean) -> Unit,
+) {
+    private val pendingMessages = mutableListOf<PendingMessage>()
+
+    fun add(message: ImapMessage, downloadState: MessageDownloadState, isFirstResponse: Boolean) {
+        pendingMessages.add(PendingMessage(message, downloadState, isFirstResponse))
+
+        if (pendingMessages.size >= batchSize) {
+            flush()
+        }
+    }
+
+    @Suppress("TooGenericExceptionCaught")
+    fun flush() {
+        if (pendingMessages.isEmpty()) return
+
+        val messages = pendingMessages.toList()
+        pendingMessages.clear()
+
+        try {
+            messages.groupBy { it.downloadState }.forEach { (downloadState, messagesWithState) ->
+                backendFolder.saveMessages(messagesWithState.map { it.message }, downloadState)
+            }
+        } catch (e: Exception) {
+            Log.e(e, "SYNC: Error while storing downloaded messages. Retrying one message at a time.")
+            saveIndividually(messages)
+            return
+        }
+
+        for (pendingMessage in messages) {
+            onMessageSaved(pendingMessage.message, pendingMessage.isFirstResponse)
+        }
+    }
+
+    @Suppress("TooGenericExceptionCaught")
+    private fun saveIndividually(messages: List<PendingMessage>) {
+        for (pendingMessage in messages) {
+            try {
+                backendFolder.saveMessage(pendingMessage.message, pendingMessage.downloadState)
+            } catch (e: Exception) {
+                Log.e(e, "SYNC: Error while storing downloaded message")
+                continue
+            }
+
+            onMessageSaved(pendingMessage.message, pendingMessage.isFirstResponse)
+        }
+    }
+
+    private class PendingMessage(
+        val message: ImapMessage,
+        val downloadState: MessageDownloadState,
+        val isFirstResponse: Boolean,
+    )
+}
@@ -23,8 +23,9 @@ class ImapBackend(
     private val idleRefreshManager: IdleRefreshManager,
     private val pushConfigProvider: ImapPushConfigProvider,
     private val smtpTransport: SmtpTransport,
+    parallelDownloadConnections: Int = 1,
 ) : Backend {
-    private val imapSync = ImapSync(accountName, backendStorage, imapStore)
+    private val imapSync = ImapSync(accountName, backendStorage, imapStore, parallelDownloadConnections)
     private val commandRefreshFolderList = CommandRefreshFolderList(backendStorage, imapStore)
     private val commandSetFlag = CommandSetFlag(imapStore)
     private val commandMarkAllAsRead = CommandMarkAllAsRead(imapStore)
@@ -15,6 +15,7 @@ import com.fsck.k9.mail.Flag
 import com.fsck.k9.mail.MessageDownloadState
 import com.fsck.k9.mail.internet.MessageExtractor
 import com.fsck.k9.mail.store.imap.FetchListener
+import com.fsck.k9.mail.store.imap.FolderChanges
 import com.fsck.k9.mail.store.imap.ImapFolder
 import com.fsck.k9.mail.store.imap.ImapMessage
 import com.fsck.k9.mail.store.imap.ImapStore
@@ -25,10 +26,15 @@ import java.util.concurrent.atomic.AtomicInteger
 import kotlin.math.max
 import net.thunderbird.core.logging.legacy.Log
 
+/**
+ * @param parallelDownloadConnections Maximum number of connections used to download message bodies, including the one
+ * used for synchronization. A value of 1 disables parallel downloads.
+ */
 internal class ImapSync(
     private val accountName: String,
     private val backendStorage: BackendStorage,
     private val imapStore: ImapStore,
+    private val parallelDownloadConnections: Int = 1,
 ) {
     fun sync(folder: String, syncConfig: SyncConfig, listener: SyncListener) {
         synchronizeMailboxSynchronous(folder, syncConfig, listener)
@@ -39,7 +45,6 @@ internal class ImapSync(
 
         var remoteFolder: ImapFolder? = null
         var backendFolder: BackendFolder? = null
-        var newHighestKnownUid: Long = 0
         try {
             Log.v("SYNC: About to get local folder %s", folder)
 
@@ -81,134 +86,61 @@ internal class ImapSync(
                 remoteFolder.expunge()
             }
 
-            remoteFolder.open(OpenMode.READ_ONLY)
+            val oldUidValidity = backendFolder.getFolderExtraNumber(EXTRA_UID_VALIDITY)
+            val knownModSeq = backendFolder.getFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ)?.takeIf { it > 0 }
+
+            val folderChanges = if (oldUidValidity != null && knownModSeq != null) {
+                remoteFolder.openWithChangesSince(OpenMode.READ_ONLY, oldUidValidity, knownModSeq)
+            } else {
+                remoteFolder.open(OpenMode.READ_ONLY)
+                null
+            }
 
             listener.syncAuthenticationSuccess()
 
             val uidValidity = remoteFolder.getUidValidity()
-            val oldUidValidity = backendFolder.getFolderExtraNumber(EXTRA_UID_VALIDITY)
+            val uidValidityChanged = oldUidValidity != null && oldUidValidity != uidValidity
             if (oldUidValidity == null && uidValidity != null) {
                 Log.d("SYNC: Saving UIDVALIDITY for %s", folder)
                 backendFolder.setFolderExtraNumber(EXTRA_UID_VALIDITY, uidValidity)
-            } else if (oldUidValidity != null && oldUidValidity != uidValidity) {
+            } else if (uidValidityChanged) {
                 Log.d("SYNC: UIDVALIDITY for %s changed; clearing local message cache", folder)
                 backendFolder.clearAllMessages()
                 backendFolder.setFolderExtraNumber(EXTRA_UID_VALIDITY, uidValidity!!)
                 backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_KNOWN_UID, 0)
+                backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ, 0)
             }
 
-            /*
-             * Get the message list from the local store and create an index of
-             * the uids within the list.
-             */
-
             val highestKnownUid = backendFolder.getFolderExtraNumber(EXTRA_HIGHEST_KNOWN_UID) ?: 0
-            var localUidMap: Map<String, Long?>? = backendFolder.getAllMessagesAndEffectiveDates()
 
             /*
-             * Get the remote message count.
+             * HIGHESTMODSEQ is captured right after opening the folder. Changes made while we're syncing will have a
+             * higher mod-sequence and be picked up by the next sync.
              */
-            val remoteMessageCount = remoteFolder.messageCount
-
-            var visibleLimit = backendFolder.visibleLimit
-            if (visibleLimit < 0) {
-                visibleLimit = syncConfig.defaultVisibleLimit
-            }
-
-            val remoteMessages = mutableListOf<ImapMessage>()
-            val remoteUidMap = mutableMapOf<String, ImapMessage>()
-
-            Log.v("SYNC: Remote message count for folder %s is %d", folder, remoteMessageCount)
-
-            val earliestDate = syncConfig.earliestPollDate
-            val earliestTimestamp = earliestDate?.time ?: 0L
-
-            var remoteStart = 1
-            if (remoteMessageCount > 0) {
-                /* Message numbers start at 1.  */
-                remoteStart = if (visibleLimit > 0) {
-                    max(0, remoteMessageCount - visibleLimit) + 1
-                } else {
-                    1
-                }
-
-                Log.v(
-                    "SYNC: About to get messages %d through %d for folder %s",
-                    remoteStart,
-                    remoteMessageCount,
-                    folder,
+            val highestModSeq = remoteFolder.getHighestModSeq()
+            val changedSince = knownModSeq.takeIf { highestModSeq != null && !uidValidityChanged }
+
+            val deltaSyncCompleted = folderChanges != null && changedSince != null &&
+                applyFolderChanges(syncConfig, remoteFolder, backendFolder, folderChanges, highestKnownUid, listener)
+
+            if (!deltaSyncCompleted) {
+                synchronizeMessageWindow(
+                    syncConfig,
+                    remoteFolder,
+                    backendFolder,
+                    highestKnownUid,
+                    changedSince,
+                    listener,
                 )
-
-                val headerProgress = AtomicInteger(0)
-                listener.syncHeadersStarted(folder)
-
-                val remoteMessageArray = remoteFolder.getMessages(remoteStart, remoteMessageCount, earliestDate, null)
-
-                val messageCount = remoteMessageArray.size
-
-                for (thisMess in remoteMessageArray) {
-                    headerProgress.incrementAndGet()
-                    listener.syncHeadersProgress(folder, headerProgress.get(), messageCount)
-
-                    val uid = thisMess.uid.toLong()
-                    if (uid > highestKnownUid && uid > newHighestKnownUid) {
-                        newHighestKnownUid = uid
-                    }
-
-                    val localMessageTimestamp = localUidMap!![thisMess.uid]
-                    if (localMessageTimestamp == null || localMessageTimestamp >= earliestTimestamp) {
-                        remoteMessages.add(thisMess)
-                        remoteUidMap[thisMess.uid] = thisMess
-                    }
-                }
-
-                Log.v("SYNC: Got %d messages for folder %s", remoteUidMap.size, folder)
-
-                listener.syncHeadersFinished(folder, headerProgress.get(), remoteUidMap.size)
-            } else if (remoteMessageCount < 0) {
-                throw Exception("Message count $remoteMessageCount for folder $folder")
             }
 
-            /*
-             * Remove any messages that are in the local store but no longer on the remote store or are too old
-             */
-            var moreMessages = backendFolder.getMoreMessages()
-            if (syncConfig.syncRemoteDeletions) {
-                val destroyMessageUids = mutableListOf<String>()
-                for (localMessageUid in localUidMap!!.keys) {
-                    if (remoteUidMap[localMessageUid] == null) {
-                        destroyMessageUids.add(localMessageUid)
-                    }
-                }
-
-                if (destroyMessageUids.isNotEmpty()) {
-                    moreMessages = MoreMessages.UNKNOWN
-                    backendFolder.destroyMessages(destroyMessageUids)
-                    for (uid in destroyMessageUids) {
-                        listener.syncRemovedMessage(folder, uid)
-                    }
-                }
+            if (highestModSeq != null) {
+                Log.v("SYNC: Saving HIGHESTMODSEQ %d for %s", highestModSeq, folder)
+                backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ, highestModSeq)
+            } else if (knownModSeq != null) {
+                backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ, 0)
             }
 
-            @Suppress("UNUSED_VALUE") // free memory early? (better break up the method!)
-            localUidMap = null
-
-            if (moreMessages === MoreMessages.UNKNOWN) {
-                updateMoreMessages(remoteFolder, backendFolder, earliestDate, remoteStart)
-            }
-
-            /*
-             * Now we download the actual content of messages.
-             */
-            downloadMessages(
-                syncConfig,
-                remoteFolder,
-                backendFolder,
-                remoteMessages,
-                highestKnownUid,
-                listener,
-            )
-
             listener.folderStatusChanged(folder)
 
             /* Notify listeners that we're finally done. */
@@ -246,14 +178,203 @@ internal class ImapSync(
                 System.currentTimeMillis(),
             )
         } finally {
-            if (newHighestKnownUid > 0 && backendFolder != null) {
-                Log.v("Saving new highest known UID: %d", newHighestKnownUid)
-                backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_KNOWN_UID, newHighestKnownUid)
-            }
             remoteFolder?.close()
         }
     }
 
+    /**
+     * Applies the changes reported by the server in response to a QRESYNC SELECT/EXAMINE.
+     *
+     * Returns `false` if the changes can't be applied without looking at the whole message window, i.e. when there
+     * are new messages on the server or when removing messages made room for older messages in the window.
+     */
+    private fun applyFolderChanges(
+        syncConfig: SyncConfig,
+        remoteFolder: ImapFolder,
+        backendFolder: BackendFolder,
+        folderChanges: FolderChanges,
+        highestKnownUid: Long,
+        listener: SyncListener,
+    ): Boolean {
+        val folder = remoteFolder.serverId
+        Log.v(
+            "SYNC: Server reported %d vanished and %d changed messages for folder %s",
+            folderChanges.vanishedUids.size,
+            folderChanges.changedMessages.size,
+            folder,
+        )
+
+        var removedMessages = false
+        if (syncConfig.syncRemoteDeletions) {
+            val destroyMessageUids = backendFolder.getMessageServerIds().filter { uid ->
+                uid.toLongOrNull()?.let { it in folderChanges.vanishedUids } == true
+            }
+            if (destroyMessageUids.isNotEmpty()) {
+                removedMessages = true
+                backendFolder.destroyMessages(destroyMessageUids)
+                for (uid in destroyMessageUids) {
+                    listener.syncRemovedMessage(folder, uid)
+                }
+            }
+        }
+
+        val localMessageFlags = backendFolder.getMessageFlags(folderChanges.changedMessages.map { it.uid })
+        val (localMessages, remoteOnlyMessages) = folderChanges.changedMessages.partition { message ->
+            message.uid in localMessageFlags
+        }
+
+        val changedMessageUids = syncFlags(syncConfig, backendFolder, localMessages, localMessageFlags)
+        for (uid in changedMessageUids) {
+            listener.syncFlagChanged(folder, uid)
+        }
+
+        val hasNewMessages = remoteOnlyMessages.any { message ->
+            !message.isSet(Flag.DELETED) && message.uid.toLong() > highestKnownUid
+        }
+        if (hasNewMessages) {
+            Log.d("SYNC: New messages in folder %s; falling back to full synchronization", folder)
+            return false
+        }
+
+        if (removedMessages && backendFolder.getMoreMessages() != MoreMessages.FALSE) {
+            Log.d("SYNC: Messages were removed from folder %s; falling back to full synchronization", folder)
+            return false
+        }
+
+        return true
+    }
+
+    /**
+     * Synchronizes the newest [BackendFolder.visibleLimit] messages of the remote folder with the local store.
+     */
+    private fun synchronizeMessageWindow(
+        syncConfig: SyncConfig,
+        remoteFolder: ImapFolder,
+        backendFolder: BackendFolder,
+        highestKnownUid: Long,
+        changedSince: Long?,
+        listener: SyncListener,
+    ) {
+        val folder = remoteFolder.serverId
+        var newHighestKnownUid: Long = 0
+
+        /*
+         * Get the message list from the local store and create an index of
+         * the uids within the list.
+         */
+        var localUidMap: Map<String, Long?>? = backendFolder.getAllMessagesAndEffectiveDates()
+
+        /*
+         * Get the remote message count.
+         */
+        val remoteMessageCount = remoteFolder.messageCount
+
+        var visibleLimit = backendFolder.visibleLimit
+        if (visibleLimit < 0) {
+            visibleLimit = syncConfig.defaultVisibleLimit
+        }
+
+        val remoteMessages = mutableListOf<ImapMessage>()
+        val remoteUidMap = mutableMapOf<String, ImapMessage>()
+
+        Log.v("SYNC: Remote message count for folder %s is %d", folder, remoteMessageCount)
+
+        val earliestDate = syncConfig.earliestPollDate
+        val earliestTimestamp = earliestDate?.time ?: 0L
+
+        var remoteStart = 1
+        if (remoteMessageCount > 0) {
+            /* Message numbers start at 1.  */
+            remoteStart = if (visibleLimit > 0) {
+                max(0, remoteMessageCount - visibleLimit) + 1
+            } else {
+                1
+            }
+
+            Log.v(
+                "SYNC: About to get messages %d through %d for folder %s",
+                remoteStart,
+                remoteMessageCount,
+                folder,
+            )
+
+            val headerProgress = AtomicInteger(0)
+            listener.syncHeadersStarted(folder)
+
+            val remoteMessageArray = remoteFolder.getMessages(remoteStart, remoteMessageCount, earliestDate, null)
+
+            val messageCount = remoteMessageArray.size
+
+            for (thisMess in remoteMessageArray) {
+                headerProgress.incrementAndGet()
+                listener.syncHeadersProgress(folder, headerProgress.get(), messageCount)
+
+                val uid = thisMess.uid.toLong()
+                if (uid > highestKnownUid && uid > newHighestKnownUid) {
+                    newHighestKnownUid = uid
+                }
+
+                val localMessageTimestamp = localUidMap!![thisMess.uid]
+                if (localMessageTimestamp == null || localMessageTimestamp >= earliestTimestamp) {
+                    remoteMessages.add(thisMess)
+                    remoteUidMap[thisMess.uid] = thisMess
+                }
+            }
+
+            Log.v("SYNC: Got %d messages for folder %s", remoteUidMap.size, folder)
+
+            listener.syncHeadersFinished(folder, headerProgress.get(), remoteUidMap.size)
+        } else if (remoteMessageCount < 0) {
+            throw Exception("Message count $remoteMessageCount for folder $folder")
+        }
+
+        if (newHighestKnownUid > 0) {
+            Log.v("Saving new highest known UID: %d", newHighestKnownUid)
+            backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_KNOWN_UID, newHighestKnownUid)
+        }
+
+        /*
+         * Remove any messages that are in the local store but no longer on the remote store or are too old
+         */
+        var moreMessages = backendFolder.getMoreMessages()
+        if (syncConfig.syncRemoteDeletions) {
+            val destroyMessageUids = mutableListOf<String>()
+            for (localMessageUid in localUidMap!!.keys) {
+                if (remoteUidMap[localMessageUid] == null) {
+                    destroyMessageUids.add(localMessageUid)
+                }
+            }
+
+            if (destroyMessageUids.isNotEmpty()) {
+                moreMessages = MoreMessages.UNKNOWN
+                backendFolder.destroyMessages(destroyMessageUids)
+                for (uid in destroyMessageUids) {
+                    listener.syncRemovedMessage(folder, uid)
+                }
+            }
+        }
+
+        @Suppress("UNUSED_VALUE") // free memory early? (better break up the method!)
+        localUidMap = null
+
+        if (moreMessages === MoreMessages.UNKNOWN) {
+            updateMoreMessages(remoteFolder, backendFolder, earliestDate, remoteStart)
+        }
+
+        /*
+         * Now we download the actual content of messages.
+         */
+        downloadMessages(
+            syncConfig,
+            remoteFolder,
+            backendFolder,
+            remoteMessages,
+            highestKnownUid,
+            changedSince,
+            listener,
+        )
+    }
+
     fun downloadMessage(syncConfig: SyncConfig, folderServerId: String, messageServerId: String) {
         val backendFolder = backendStorage.getFolder(folderServerId)
         val remoteFolder = imapStore.getFolder(folderServerId)
@@ -267,6 +388,7 @@ internal class ImapSync(
                 backendFolder,
                 listOf(remoteMessage),
                 null,
+                null,
                 SimpleSyncListener(),
             )
         } finally {
@@ -283,6 +405,9 @@ internal class ImapSync(
      * The [BackendFolder] instance corresponding to the remote folder.
      * @param inputMessages
      * A list of messages objects that store the UIDs of which messages to download.
+     * @param changedSince
+     * The mod-sequence of the last successful sync. If not `null`, only flags of messages changed since then are
+     * fetched.
      */
     private fun downloadMessages(
         syncConfig: SyncConfig,
@@ -290,6 +415,7 @@ internal class ImapSync(
         backendFolder: BackendFolder,
         inputMessages: List<ImapMessage>,
         highestKnownUid: Long?,
+        changedSince: Long?,
         listener: SyncListener,
     ) {
         val folder = remoteFolder.serverId
@@ -299,10 +425,11 @@ internal class ImapSync(
         val downloadedMessageCount = AtomicInteger(0)
 
         val messages = inputMessages.toMutableList()
+        val localMessageFlags = backendFolder.getMessageFlags(messages.map { it.uid })
         for (message in messages) {
             evaluateMessageForDownload(
                 message,
-                backendFolder,
+                localMessageFlags[message.uid],
                 unsyncedMessages,
                 syncFlagMessages,
             )
@@ -357,47 +484,73 @@ internal class ImapSync(
          * download of 625k.
          */
         val maxDownloadSize = syncConfig.maximumAutoDownloadMessageSize
-        // TODO: Only fetch small and large messages if we have some
-        downloadSmallMessages(
-            remoteFolder,
-            backendFolder,
-            smallMessages,
-            progress,
-            downloadedMessageCount,
-            todo,
-            highestKnownUid,
-            listener,
-        )
+        val downloadConnectionCount = getDownloadConnectionCount(smallMessages.size + largeMessages.size)
+        if (downloadConnectionCount > 1) {
+            downloadMessagesInParallel(
+                remoteFolder,
+                backendFolder,
+                smallMessages,
+                largeMessages,
+                downloadConnectionCount,
+                progress,
+                downloadedMessageCount,
+                todo,
+                highestKnownUid,
+                listener,
+                maxDownloadSize,
+            )
+        } else {
+            // TODO: Only fetch small and large messages if we have some
+            downloadSmallMessages(
+                remoteFolder,
+                backendFolder,
+                smallMessages,
+                progress,
+                downloadedMessageCount,
+                todo,
+                highestKnownUid,
+                listener,
+            )
+
+            /*
+             * Now do the large messages that require more round trips.
+             */
+            downloadLargeMessages(
+                remoteFolder,
+                backendFolder,
+                largeMessages,
+                progress,
+                downloadedMessageCount,
+                todo,
+                highestKnownUid,
+                listener,
+                maxDownloadSize,
+            )
+        }
         smallMessages.clear()
+        largeMessages.clear()
 
         /*
-         * Now do the large messages that require more round trips.
+         * Refresh the flags for any messages in the local store that we didn't just
+         * download.
          */
-        downloadLargeMessages(
+        refreshLocalMessageFlags(
+            syncConfig,
             remoteFolder,
             backendFolder,
-            largeMessages,
+            syncFlagMessages,
+            changedSince,
             progress,
-            downloadedMessageCount,
             todo,
-            highestKnownUid,
             listener,
-            maxDownloadSize,
         )
-        largeMessages.clear()
-
-        /*
-         * Refresh the flags for any messages in the local store that we didn't just
-         * download.
-         */
-        refreshLocalMessageFlags(syncConfig, remoteFolder, backendFolder, syncFlagMessages, progress, todo, listener)
 
         Log.d("SYNC: Synced remote messages for folder %s, %d new messages", folder, downloadedMessageCount.get())
     }
 
     private fun evaluateMessageForDownload(
         message: ImapMessage,
-        backendFolder: BackendFolder,
+        messageFlags: Set<Flag>?,
         unsyncedMessages: MutableList<ImapMessage>,
         syncFlagMessages: MutableList<ImapMessage>,
     ) {
@@ -408,14 +561,12 @@ internal class ImapSync(
             return
         }
 
-        val messagePresentLocally = backendFolder.isMessagePresent(messageServerId)
-        if (!messagePresentLocally) {
+        if (messageFlags == null) {
             Log.v("Message with uid %s has not yet been downloaded", messageServerId)
             unsyncedMessages.add(message)
             return
         }
 
-        val messageFlags = backendFolder.getMessageFlags(messageServerId)
         if (!messageFlags.contains(Flag.DELETED)) {
             Log.v("Message with uid %s is present in the local store", messageServerId)
             if (!messageFlags.contains(Flag.X_DOWNLOADED_FULL) && !messageFlags.contains(Flag.X_DOWNLOADED_PARTIAL)) {
@@ -515,40 +666,46 @@ internal class ImapSync(
 
         Log.d("SYNC: Fetching %d small messages for folder %s", smallMessages.size, folder)
 
-        remoteFolder.fetch(
-            smallMessages,
-            fetchProfile,
-            object : FetchListener {
-                override fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean) {
-                    try {
-                        // Store the updated message locally
-                        backendFolder.saveMessage(message, MessageDownloadState.FULL)
+        val messageSaver = BatchedMessageSaver(backendFolder) { message, isFirstResponse ->
+            try {
+                if (isFirstResponse) {
+                    progress.incrementAndGet()
+                    downloadedMessageCount.incrementAndGet()
+                }
 
-                        if (isFirstResponse) {
-                            progress.incrementAndGet()
-                            downloadedMessageCount.incrementAndGet()
-                        }
+                val messageServerId = message.uid
+                Log.v(
+                    "About to notify listeners that we got a new small message %s:%s:%s",
+                    accountName,
+                    folder,
+                    messageServerId,
+                )
 
-                        val messageServerId = message.uid
-                        Log.v(
-                            "About to notify listeners that we got a new small message %s:%s:%s",
-                            accountName,
-                            folder,
-                            messageServerId,
-                        )
+                // Update the listener with what we've found
+                listener.syncProgress(folder, progress.get(), todo)
 
-                        // Update the listener with what we've found
-                        listener.syncProgress(folder, progress.get(), todo)
+                val isOldMessage = isOldMessage(messageServerId, highestKnownUid)
+                listener.syncNewMessage(folder, messageServerId, isOldMessage)
+            } catch (e: Exception) {
+                Log.e(e, "SYNC: fetch small messages")
+            }
+        }
 
-                        val isOldMessage = isOldMessage(messageServerId, highestKnownUid)
-                        listener.syncNewMessage(folder, messageServerId, isOldMessage)
-                    } catch (e: Exception) {
-                        Log.e(e, "SYNC: fetch small messages")
+        try {
+            remoteFolder.fetch(
+                smallMessages,
+                fetchProfile,
+                object : FetchListener {
+                    override fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean) {
+                        // Store the updated message locally
+                        messageSaver.add(message, MessageDownloadState.FULL, isFirstResponse)
                     }
-                }
-            },
-            -1,
-        )
+                },
+                -1,
+            )
+        } finally {
+            messageSaver.flush()
+        }
 
         Log.d("SYNC: Done fetching small messages for folder %s", folder)
     }
@@ -573,11 +730,10 @@ internal class ImapSync(
 
         remoteFolder.fetch(largeMessages, fetchProfile, null, maxDownloadSize)
         for (message in largeMessages) {
-            if (message.body == null) {
-                downloadSaneBody(remoteFolder, backendFolder, message, maxDownloadSize)
-            } else {
-                downloadPartial(remoteFolder, backendFolder, message, maxDownloadSize)
-            }
+            fetchLargeMessageBody(remoteFolder, message, maxDownloadSize)
+
+            // Store the updated message locally
+            backendFolder.saveMessage(message, MessageDownloadState.PARTIAL)
 
             val messageServerId = message.uid
             Log.v(
@@ -605,6 +761,7 @@ internal class ImapSync(
         remoteFolder: ImapFolder,
         backendFolder: BackendFolder,
         syncFlagMessages: List<ImapMessage>,
+        changedSince: Long?,
         progress: AtomicInteger,
         todo: Int,
         listener: SyncListener,
@@ -612,9 +769,6 @@ internal class ImapSync(
         val folder = remoteFolder.serverId
         Log.d("SYNC: About to sync flags for %d remote messages for folder %s", syncFlagMessages.size, folder)
 
-        val fetchProfile = FetchProfile()
-        fetchProfile.add(FetchProfile.Item.FLAGS)
-
         val undeletedMessages = mutableListOf<ImapMessage>()
         for (message in syncFlagMessages) {
             if (!message.isSet(Flag.DELETED)) {
@@ -622,11 +776,26 @@ internal class ImapSync(
             }
         }
 
-        val maxDownloadSize = syncConfig.maximumAutoDownloadMessageSize
-        remoteFolder.fetch(undeletedMessages, fetchProfile, null, maxDownloadSize)
+        val changedMessageUids = if (changedSince != null && undeletedMessages.isNotEmpty()) {
+            fetchChangedFlags(remoteFolder, undeletedMessages, changedSince)
+        } else {
+            val fetchProfile = FetchProfile()
+            fetchProfile.add(FetchProfile.Item.FLAGS)
+
+            val maxDownloadSize = syncConfig.maximumAutoDownloadMessageSize
+            remoteFolder.fetch(undeletedMessages, fetchProfile, null, maxDownloadSize)
+            null
+        }
+
+        // Messages that weren't returned by a CHANGEDSINCE fetch have the same flags as during the last sync
+        val messagesToSync = syncFlagMessages.filter { remoteMessage ->
+            changedMessageUids == null || remoteMessage.isSet(Flag.DELETED) || remoteMessage.uid in changedMessageUids
+        }
+        val localMessageFlags = backendFolder.getMessageFlags(messagesToSync.map { it.uid })
+        val flagChangedMessageUids = syncFlags(syncConfig, backendFolder, messagesToSync, localMessageFlags)
+
         for (remoteMessage in syncFlagMessages) {
-            val messageChanged = syncFlags(syncConfig, backendFolder, remoteMessage)
-            if (messageChanged) {
+            if (remoteMessage.uid in flagChangedMessageUids) {
                 listener.syncFlagChanged(folder, remoteMessage.uid)
             }
             progress.incrementAndGet()
@@ -634,9 +803,155 @@ internal class ImapSync(
         }
     }
 
-    private fun downloadSaneBody(
+    private fun fetchChangedFlags(
+        remoteFolder: ImapFolder,
+        messages: List<ImapMessage>,
+        changedSince: Long,
+    ): Set<String> {
+        val changedMessageUids = mutableSetOf<String>()
+        remoteFolder.fetchChangedFlags(
+            messages,
+            changedSince,
+            object : FetchListener {
+                override fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean) {
+                    changedMessageUids.add(message.uid)
+                }
+            },
+        )
+
+        Log.d(
+            "SYNC: %d of %d messages changed since mod-sequence %d",
+            changedMessageUids.size,
+            messages.size,
+            changedSince,
+        )
+
+        return changedMessageUids
+    }
+
+    private fun getDownloadConnectionCount(messageCount: Int): Int {
+        val maxConnectionCount = messageCount / MIN_MESSAGES_PER_DOWNLOAD_CONNECTION
+        return parallelDownloadConnections.coerceAtMost(maxConnectionCount).coerceAtLeast(1)
+    }
+
+    /**
+     * Downloads small and large messages over multiple connections at once.
+     *
+     * Every connection fetches the bodies of the messages assigned to it. All writes to [backendFolder] and all
+     * listener callbacks happen on the calling thread.
+     */
+    @Suppress("LongParameterList")
+    private fun downloadMessagesInParallel(
         remoteFolder: ImapFolder,
         backendFolder: BackendFolder,
+        smallMessages: List<ImapMessage>,
+        largeMessages: List<ImapMessage>,
+        connectionCount: Int,
+        progress: AtomicInteger,
+        downloadedMessageCount: AtomicInteger,
+        todo: Int,
+        highestKnownUid: Long?,
+        listener: SyncListener,
+        maxDownloadSize: Int,
+    ) {
+        val folder = remoteFolder.serverId
+        Log.d(
+            "SYNC: Fetching %d small and %d large messages for folder %s using %d connections",
+            smallMessages.size,
+            largeMessages.size,
+            folder,
+            connectionCount,
+        )
+
+        val largeMessageUids = largeMessages.map { it.uid }.toSet()
+        val downloader = ParallelMessageDownloader(imapStore, remoteFolder, connectionCount)
+
+        val messageSaver = BatchedMessageSaver(backendFolder) { message, isFirstResponse ->
+            try {
+                if (isFirstResponse) {
+                    progress.incrementAndGet()
+                    downloadedMessageCount.incrementAndGet()
+                }
+
+                listener.syncProgress(folder, progress.get(), todo)
+
+                val messageServerId = message.uid
+                val isOldMessage = isOldMessage(messageServerId, highestKnownUid)
+                listener.syncNewMessage(folder, messageServerId, isOldMessage)
+            } catch (e: Exception) {
+                Log.e(e, "SYNC: Error while storing downloaded message")
+            }
+        }
+
+        val statistics = try {
+            downloader.download(
+                messages = smallMessages + largeMessages,
+                fetchMessages = { connectionFolder, messages, sink ->
+                    val (connectionLargeMessages, connectionSmallMessages) = messages.partition { message ->
+                        message.uid in largeMessageUids
+                    }
+
+                    if (connectionSmallMessages.isNotEmpty()) {
+                        val fetchProfile = FetchProfile().apply {
+                            add(FetchProfile.Item.BODY)
+                        }
+
+                        connectionFolder.fetch(
+                            connectionSmallMessages,
+                            fetchProfile,
+                            object : FetchListener {
+                                override fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean) {
+                                    sink.onMessageDownloaded(message, MessageDownloadState.FULL, isFirstResponse)
+                                }
+                            },
+                            -1,
+                        )
+                    }
+
+                    if (connectionLargeMessages.isNotEmpty()) {
+                        val fetchProfile = FetchProfile().apply {
+                            add(FetchProfile.Item.STRUCTURE)
+                        }
+
+                        connectionFolder.fetch(connectionLargeMessages, fetchProfile, null, maxDownloadSize)
+                        for (message in connectionLargeMessages) {
+                            fetchLargeMessageBody(connectionFolder, message, maxDownloadSize)
+                            sink.onMessageDownloaded(message, MessageDownloadState.PARTIAL, true)
+                        }
+                    }
+                },
+                writer = { message, downloadState, isFirstResponse ->
+                    // Store the updated message locally
+                    messageSaver.add(message, downloadState, isFirstResponse)
+                },
+            )
+        } finally {
+            messageSaver.flush()
+        }
+
+        for (connectionStatistics in statistics) {
+            listener.syncDownloadThroughput(
+                folder,
+                connectionStatistics.connectionIndex,
+                connectionStatistics.messageCount,
+                connectionStatistics.byteCount,
+                connectionStatistics.durationMillis,
+            )
+        }
+
+        Log.d("SYNC: Done fetching messages for folder %s", folder)
+    }
+
+    private fun fetchLargeMessageBody(remoteFolder: ImapFolder, message: ImapMessage, maxDownloadSize: Int) {
+        if (message.body == null) {
+            fetchSaneBody(remoteFolder, message, maxDownloadSize)
+        } else {
+            fetchTextParts(remoteFolder, message, maxDownloadSize)
+        }
+    }
+
+    private fun fetchSaneBody(
+        remoteFolder: ImapFolder,
         message: ImapMessage,
         maxDownloadSize: Int,
     ) {
@@ -654,14 +969,10 @@ internal class ImapSync(
          *  they equal we can mark this SYNCHRONIZED instead of PARTIALLY_SYNCHRONIZED
          */
         remoteFolder.fetch(listOf(message), fetchProfile, null, maxDownloadSize)
-
-        // Store the updated message locally
-        backendFolder.saveMessage(message, MessageDownloadState.PARTIAL)
     }
 
-    private fun downloadPartial(
+    private fun fetchTextParts(
         remoteFolder: ImapFolder,
-        backendFolder: BackendFolder,
         message: ImapMessage,
         maxDownloadSize: Int,
     ) {
@@ -680,34 +991,51 @@ internal class ImapSync(
         for (part in viewables) {
             remoteFolder.fetchPart(message, part, bodyFactory, maxDownloadSize)
         }
-
-        // Store the updated message locally
-        backendFolder.saveMessage(message, MessageDownloadState.PARTIAL)
     }
 
-    private fun syncFlags(syncConfig: SyncConfig, backendFolder: BackendFolder, remoteMessage: ImapMessage): Boolean {
-        val messageServerId = remoteMessage.uid
-        if (!backendFolder.isMessagePresent(messageServerId)) return false
+    /**
+     * Updates the local flags of [remoteMessages] to match the server, writing all changes in a single batch.
+     *
+     * Returns the server IDs of the messages whose flags were changed.
+     */
+    private fun syncFlags(
+        syncConfig: SyncConfig,
+        backendFolder: BackendFolder,
+        remoteMessages: List<ImapMessage>,
+        localMessageFlags: Map<String, Set<Flag>>,
+    ): Set<String> {
+        val flagChanges = mutableMapOf<String, Map<Flag, Boolean>>()
+        for (remoteMessage in remoteMessages) {
+            val messageServerId = remoteMessage.uid
+            val localFlags = localMessageFlags[messageServerId] ?: continue
+
+            val messageFlagChanges = getFlagChanges(syncConfig, localFlags, remoteMessage)
+            if (messageFlagChanges.isNotEmpty()) {
+                flagChanges[messageServerId] = messageFlagChanges
+            }
+        }
 
-        val localMessageFlags = backendFolder.getMessageFlags(messageServerId)
-        if (localMessageFlags.contains(Flag.DELETED)) return false
+        if (flagChanges.isNotEmpty()) {
+            backendFolder.setMessageFlags(flagChanges)
+        }
 
-        var messageChanged = false
-        if (remoteMessage.isSet(Flag.DELETED)) {
-            if (syncConfig.syncRemoteDeletions) {
-                backendFolder.setMessageFlag(messageServerId, Flag.DELETED, true)
-                messageChanged = true
-            }
+        return flagChanges.keys
+    }
+
+    private fun getFlagChanges(
+        syncConfig: SyncConfig,
+        localMessageFlags: Set<Flag>,
+        remoteMessage: ImapMessage,
+    ): Map<Flag, Boolean> {
+        if (localMessageFlags.contains(Flag.DELETED)) return emptyMap()
+
+        return if (remoteMessage.isSet(Flag.DELETED)) {
+            if (syncConfig.syncRemoteDeletions) mapOf(Flag.DELETED to true) else emptyMap()
         } else {
-            for (flag in syncConfig.syncFlags) {
-                if (remoteMessage.isSet(flag) != localMessageFlags.contains(flag)) {
-                    backendFolder.setMessageFlag(messageServerId, flag, remoteMessage.isSet(flag))
-                    messageChanged = true
-                }
-            }
+            syncConfig.syncFlags
+                .filter { flag -> remoteMessage.isSet(flag) != localMessageFlags.contains(flag) }
+                .associateWith { flag -> remoteMessage.isSet(flag) }
         }
-
-        return messageChanged
     }
 
     private fun updateMoreMessages(
@@ -728,5 +1056,11 @@ internal class ImapSync(
     companion object {
         private const val EXTRA_UID_VALIDITY = "imapUidValidity"
         private const val EXTRA_HIGHEST_KNOWN_UID = "imapHighestKnownUid"
+        private const val EXTRA_HIGHEST_MOD_SEQ = "imapHighestModSeq"
+
+        /**
+         * Opening an additional connection costs a few round trips. Only use it if there's enough work to share.
+         */
+        private const val MIN_MESSAGES_PER_DOWNLOAD_CONNECTION = 20
     }
 }
@@ -0,0 +1,193 @@
+package com.fsck.k9.backend.imap
+
+import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.store.imap.ImapFolder
+import com.fsck.k9.mail.store.imap.ImapMessage
+import com.fsck.k9.mail.store.imap.ImapStore
+import com.fsck.k9.mail.store.imap.OpenMode
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.SendChannel
+import kotlinx.coroutines.channels.trySendBlocking
+import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import net.thunderbird.core.common.exception.MessagingException
+import net.thunderbird.core.logging.legacy.Log
+
+private const val CHANNEL_CAPACITY = 32
+
+/**
+ * Downloads messages of a folder over multiple IMAP connections at the same time.
+ *
+ * The messages are distributed round-robin across up to [connectionCount] [ImapFolder] instances. The first one is
+ * [remoteFolder], which has to be open already. The others use their own connection from the store's connection pool.
+ * So no more than [connectionCount] connections are used, including the one of the calling sync.
+ *
+ * Downloaded messages are handed to a single writer that runs on the calling thread, so writes to the local store are
+ * never performed concurrently. The calling thread doesn't use [remoteFolder] while a download is running.
+ */
+internal class ParallelMessageDownloader(
+    private val imapStore: ImapStore,
+    private val remoteFolder: ImapFolder,
+    private val connectionCount: Int,
+    private val ioDispatcher: CoroutineDispatcher = Dispatchers.IO,
+) {
+    private val folderServerId = remoteFolder.serverId
+
+    init {
+        require(connectionCount > 0) { "'connectionCount' needs to be positive" }
+    }
+
+    /**
+     * Downloads [messages] using [fetchMessages] and passes the results to [writer].
+     *
+     * [fetchMessages] is invoked once per connection, on a background thread, with an open folder and the messages
+     * assigned to that connection. It reports every downloaded message to the supplied [DownloadedMessageSink].
+     *
+     * @return Download statistics for each connection that was used.
+     */
+    @Throws(MessagingException::class)
+    fun download(
+        messages: List<ImapMessage>,
+        fetchMessages: (remoteFolder: ImapFolder, messages: List<ImapMessage>, sink: DownloadedMessageSink) -> Unit,
+        writer: DownloadedMessageSink,
+    ): List<DownloadStatistics> {
+        if (messages.isEmpty()) return emptyList()
+
+        val partitions = partitionMessages(messages)
+        val statistics = arrayOfNulls<DownloadStatistics>(partitions.size)
+        val uidValidity = remoteFolder.getUidValidity()
+
+        runBlocking {
+            val channel = Channel<DownloadedMessage>(CHANNEL_CAPACITY)
+
+            val workers = partitions.mapIndexed { connectionIndex, partition ->
+                launch(ioDispatcher) {
+                    try {
+                        statistics[connectionIndex] = if (connectionIndex == 0) {
+                            downloadOverConnection(connectionIndex, remoteFolder, partition, fetchMessages, channel)
+                        } else {
+                            downloadOverAdditionalConnection(
+                                connectionIndex,
+                                uidValidity,
+                                partition,
+                                fetchMessages,
+                                channel,
+                            )
+                        }
+                    } catch (e: Exception) {
+                        // Closing the channel with a cause makes the writer loop below rethrow the exception and stops
+                        // the other workers the next time they try to hand over a message.
+                        channel.close(e)
+                    }
+                }
+            }
+
+            launch {
+                workers.joinAll()
+                channel.close()
+            }
+
+            try {
+                for (downloadedMessage in channel) {
+                    writer.onMessageDownloaded(
+                        downloadedMessage.message,
+                        downloadedMessage.downloadState,
+                        downloadedMessage.isFirstResponse,
+                    )
+                }
+            } finally {
+                channel.cancel()
+            }
+        }
+
+        return statistics.filterNotNull()
+    }
+
+    private fun partitionMessages(messages: List<ImapMessage>): List<List<ImapMessage>> {
+        val partitionCount = minOf(connectionCount, messages.size)
+        return (0 until partitionCount).map { partitionIndex ->
+            messages.slice(partitionIndex until messages.size step partitionCount)
+        }
+    }
+
+    private fun downloadOverAdditionalConnection(
+        connectionIndex: Int,
+        uidValidity: Long?,
+        messages: List<ImapMessage>,
+        fetchMessages: (ImapFolder, List<ImapMessage>, DownloadedMessageSink) -> Unit,
+        channel: SendChannel<DownloadedMessage>,
+    ): DownloadStatistics {
+        val connectionFolder = imapStore.getFolder(folderServerId)
+        try {
+            connectionFolder.open(OpenMode.READ_ONLY)
+
+            val connectionUidValidity = connectionFolder.getUidValidity()
+            if (uidValidity != null && connectionUidValidity != uidValidity) {
+                throw MessagingException("UIDVALIDITY of folder $folderServerId changed during download")
+            }
+
+            return downloadOverConnection(connectionIndex, connectionFolder, messages, fetchMessages, channel)
+        } finally {
+            connectionFolder.close()
+        }
+    }
+
+    private fun downloadOverConnection(
+        connectionIndex: Int,
+        connectionFolder: ImapFolder,
+        messages: List<ImapMessage>,
+        fetchMessages: (ImapFolder, List<ImapMessage>, DownloadedMessageSink) -> Unit,
+        channel: SendChannel<DownloadedMessage>,
+    ): DownloadStatistics {
+        Log.d(
+            "SYNC: Downloading %d messages for folder %s over connection %d",
+            messages.size,
+            folderServerId,
+            connectionIndex,
+        )
+
+        val startTime = System.currentTimeMillis()
+        var messageCount = 0
+        var byteCount = 0L
+        fetchMessages(connectionFolder, messages) { message, downloadState, isFirstResponse ->
+            if (isFirstResponse) {
+                messageCount++
+                byteCount += message.size
+            }
+
+            channel.trySendBlocking(DownloadedMessage(message, downloadState, isFirstResponse)).getOrThrow()
+        }
+
+        return DownloadStatistics(
+            connectionIndex = connectionIndex,
+            messageCount = messageCount,
+            byteCount = byteCount,
+            durationMillis = System.currentTimeMillis() - startTime,
+        )
+    }
+
+    private class DownloadedMessage(
+        val message: ImapMessage,
+        val downloadState: MessageDownloadState,
+        val isFirstResponse: Boolean,
+    )
+}
+
+internal fun interface DownloadedMessageSink {
+    fun onMessageDownloaded(message: ImapMessage, downloadState: MessageDownloadState, isFirstResponse: Boolean)
+}
+
+/**
+ * Throughput of a single connection used by [ParallelMessageDownloader].
+ *
+ * [byteCount] is based on the message sizes reported by the server, not on the number of bytes actually transferred.
+ */
+internal data class DownloadStatistics(
+    val connectionIndex: Int,
+    val messageCount: Int,
+    val byteCount: Long,
+    val durationMillis: Long,
+)
@@ -12,6 +12,13 @@ class SimpleSyncListener : SyncListener {
     override fun syncNewMessage(folderServerId: String, messageServerId: String, isOldMessage: Boolean) = Unit
     override fun syncRemovedMessage(folderServerId: String, messageServerId: String) = Unit
     override fun syncFlagChanged(folderServerId: String, messageServerId: String) = Unit
+    override fun syncDownloadThroughput(
+        folderServerId: String,
+        connectionIndex: Int,
+        messageCount: Int,
+        byteCount: Long,
+        durationMillis: Long,
+    ) = Unit
     override fun syncFinished(folderServerId: String) = Unit
     override fun syncFailed(folderServerId: String, message: String, exception: Exception?) = Unit
     override fun folderStatusChanged(folderServerId: String) = Unit
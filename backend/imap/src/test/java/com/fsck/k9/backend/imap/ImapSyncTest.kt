@@ -2,9 +2,12 @@ package com.fsck.k9.backend.imap
 
 import app.k9mail.backend.testing.InMemoryBackendStorage
 import assertk.assertThat
+import assertk.assertions.contains
 import assertk.assertions.containsAtLeast
 import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.doesNotContain
 import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
 import assertk.assertions.isFalse
 import assertk.assertions.isTrue
 import com.fsck.k9.backend.api.FolderInfo
@@ -32,6 +35,7 @@ import org.mockito.kotlin.atLeast
 import org.mockito.kotlin.eq
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.never
+import org.mockito.kotlin.times
 
 private const val ACCOUNT_NAME = "Account-1"
 private const val FOLDER_SERVER_ID = "FOLDER_ONE"
@@ -254,6 +258,71 @@ class ImapSyncTest {
         verify(syncListener, never()).syncProgress(folderServerId, completed = 2, total = 1)
     }
 
+    @Test
+    fun `sync with QRESYNC and no changes on server should not fetch message list`() {
+        imapFolder.isQresyncEnabled = true
+        imapFolder.setUidValidity(1)
+        addMessageToImapFolder(uid = 1)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+        val fetchCount = imapFolder.fetchCount
+
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(imapFolder.fetchCount).isEqualTo(fetchCount)
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("1")
+        verify(syncListener, times(1)).syncHeadersStarted(FOLDER_SERVER_ID)
+        verify(syncListener, times(2)).syncFinished(FOLDER_SERVER_ID)
+    }
+
+    @Test
+    fun `sync with QRESYNC should remove vanished messages`() {
+        imapFolder.isQresyncEnabled = true
+        imapFolder.setUidValidity(1)
+        addMessageToImapFolder(uid = 1)
+        addMessageToImapFolder(uid = 2)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        imapFolder.removeMessage(uid = 2)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("1")
+        verify(syncListener).syncRemovedMessage(FOLDER_SERVER_ID, messageServerId = "2")
+        verify(syncListener, times(1)).syncHeadersStarted(FOLDER_SERVER_ID)
+    }
+
+    @Test
+    fun `sync with QRESYNC should update flags of changed messages`() {
+        imapFolder.isQresyncEnabled = true
+        imapFolder.setUidValidity(1)
+        addMessageToImapFolder(uid = 1)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        imapFolder.setFlags(listOf(imapFolder.getMessage("1")), setOf(Flag.SEEN), true)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(backendFolder.getMessageFlags(messageServerId = "1")).contains(Flag.SEEN)
+        verify(syncListener).syncFlagChanged(FOLDER_SERVER_ID, messageServerId = "1")
+        verify(syncListener, times(1)).syncHeadersStarted(FOLDER_SERVER_ID)
+    }
+
+    @Test
+    fun `sync with QRESYNC and new messages on server should download new messages and changed flags`() {
+        imapFolder.isQresyncEnabled = true
+        imapFolder.setUidValidity(1)
+        addMessageToImapFolder(uid = 1)
+        addMessageToImapFolder(uid = 2)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        imapFolder.setFlags(listOf(imapFolder.getMessage("1")), setOf(Flag.FLAGGED), true)
+        addMessageToImapFolder(uid = 3)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("1", "2", "3")
+        assertThat(backendFolder.getMessageFlags(messageServerId = "1")).contains(Flag.FLAGGED)
+        assertThat(backendFolder.getMessageFlags(messageServerId = "2")).doesNotContain(Flag.FLAGGED)
+        verify(syncListener).syncNewMessage(FOLDER_SERVER_ID, messageServerId = "3", isOldMessage = false)
+    }
+
     private fun addMessageToBackendFolder(uid: Long, date: String = DEFAULT_MESSAGE_DATE) {
         val messageServerId = uid.toString()
         val message = createSimpleMessage(messageServerId, date).apply {
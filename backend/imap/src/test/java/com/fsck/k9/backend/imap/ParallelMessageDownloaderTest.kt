@@ -0,0 +1,211 @@
+package com.fsck.k9.backend.imap
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.hasMessage
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isInstanceOf
+import assertk.assertions.isTrue
+import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.store.imap.FolderListItem
+import com.fsck.k9.mail.store.imap.ImapFolder
+import com.fsck.k9.mail.store.imap.ImapMessage
+import com.fsck.k9.mail.store.imap.ImapStore
+import com.fsck.k9.mail.store.imap.OpenMode
+import com.fsck.k9.mail.store.imap.createImapMessage
+import java.util.Collections
+import net.thunderbird.core.common.exception.MessagingException
+import net.thunderbird.core.logging.legacy.Log
+import net.thunderbird.core.logging.testing.TestLogger
+import org.junit.Before
+import org.junit.Test
+
+private const val FOLDER_SERVER_ID = "folder"
+private const val UID_VALIDITY = 42L
+
+class ParallelMessageDownloaderTest {
+    private val imapStore = MultiConnectionImapStore()
+    private val syncFolder = TestImapFolder(FOLDER_SERVER_ID).apply {
+        setUidValidity(UID_VALIDITY)
+    }
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+        syncFolder.open(OpenMode.READ_ONLY)
+    }
+
+    @Test
+    fun `messages are distributed round-robin across connections`() {
+        val downloader = createDownloader(connectionCount = 3)
+        val messages = createMessages(count = 7)
+        val assignedUids = Collections.synchronizedList(mutableListOf<List<String>>())
+
+        downloader.download(
+            messages = messages,
+            fetchMessages = { _, connectionMessages, _ ->
+                assignedUids.add(connectionMessages.map { it.uid })
+            },
+            writer = { _, _, _ -> },
+        )
+
+        assertThat(assignedUids).containsExactlyInAnyOrder(
+            listOf("7", "4", "1"),
+            listOf("6", "3"),
+            listOf("5", "2"),
+        )
+    }
+
+    @Test
+    fun `writer is called on the calling thread for every downloaded message`() {
+        val downloader = createDownloader(connectionCount = 2)
+        val messages = createMessages(count = 5)
+        val callingThread = Thread.currentThread()
+        val writtenUids = mutableListOf<String>()
+        var writtenOnCallingThread = true
+
+        downloader.download(
+            messages = messages,
+            fetchMessages = { _, connectionMessages, sink ->
+                for (message in connectionMessages) {
+                    sink.onMessageDownloaded(message, MessageDownloadState.FULL, true)
+                }
+            },
+            writer = { message, _, _ ->
+                writtenOnCallingThread = writtenOnCallingThread && Thread.currentThread() == callingThread
+                writtenUids.add(message.uid)
+            },
+        )
+
+        assertThat(writtenUids).containsExactlyInAnyOrder("5", "4", "3", "2", "1")
+        assertThat(writtenOnCallingThread).isTrue()
+    }
+
+    @Test
+    fun `first connection reuses the sync folder and additional connections use their own folder`() {
+        val downloader = createDownloader(connectionCount = 3)
+        val usedFolders = Collections.synchronizedList(mutableListOf<ImapFolder>())
+
+        downloader.download(
+            messages = createMessages(count = 6),
+            fetchMessages = { remoteFolder, _, _ ->
+                check(remoteFolder.isOpen)
+                usedFolders.add(remoteFolder)
+            },
+            writer = { _, _, _ -> },
+        )
+
+        assertThat(usedFolders.toSet()).isEqualTo(imapStore.createdFolders.toSet() + syncFolder)
+        assertThat(imapStore.createdFolders.size).isEqualTo(2)
+        assertThat(imapStore.createdFolders.all { it.isClosed }).isTrue()
+        assertThat(syncFolder.isOpen).isTrue()
+    }
+
+    @Test
+    fun `statistics are reported per connection`() {
+        val downloader = createDownloader(connectionCount = 2)
+
+        val statistics = downloader.download(
+            messages = createMessages(count = 3, size = 100),
+            fetchMessages = { _, connectionMessages, sink ->
+                for (message in connectionMessages) {
+                    sink.onMessageDownloaded(message, MessageDownloadState.FULL, true)
+                    sink.onMessageDownloaded(message, MessageDownloadState.FULL, false)
+                }
+            },
+            writer = { _, _, _ -> },
+        )
+
+        assertThat(statistics.sortedBy { it.connectionIndex }.map { it.messageCount to it.byteCount })
+            .containsExactly(2 to 200L, 1 to 100L)
+    }
+
+    @Test
+    fun `no connections are opened for an empty list of messages`() {
+        val downloader = createDownloader(connectionCount = 2)
+
+        val statistics = downloader.download(
+            messages = emptyList(),
+            fetchMessages = { _, _, _ -> error("Unexpected call") },
+            writer = { _, _, _ -> error("Unexpected call") },
+        )
+
+        assertThat(statistics).isEmpty()
+        assertThat(imapStore.createdFolders).isEmpty()
+    }
+
+    @Test
+    fun `changed UIDVALIDITY should throw`() {
+        syncFolder.setUidValidity(UID_VALIDITY + 1)
+        val downloader = createDownloader(connectionCount = 2)
+
+        assertFailure {
+            downloader.download(
+                messages = createMessages(count = 2),
+                fetchMessages = { _, _, _ -> },
+                writer = { _, _, _ -> },
+            )
+        }.isInstanceOf<MessagingException>()
+            .hasMessage("UIDVALIDITY of folder $FOLDER_SERVER_ID changed during download")
+    }
+
+    @Test
+    fun `exception in one connection should be rethrown`() {
+        val downloader = createDownloader(connectionCount = 2)
+
+        assertFailure {
+            downloader.download(
+                messages = createMessages(count = 4),
+                fetchMessages = { _, connectionMessages, sink ->
+                    if ("4" in connectionMessages.map { it.uid }) {
+                        throw MessagingException("Connection failed")
+                    }
+
+                    for (message in connectionMessages) {
+                        sink.onMessageDownloaded(message, MessageDownloadState.FULL, true)
+                    }
+                },
+                writer = { _, _, _ -> },
+            )
+        }.isInstanceOf<MessagingException>()
+            .hasMessage("Connection failed")
+    }
+
+    private fun createDownloader(connectionCount: Int): ParallelMessageDownloader {
+        return ParallelMessageDownloader(imapStore, syncFolder, connectionCount)
+    }
+
+    private fun createMessages(count: Int, size: Int = 0): List<ImapMessage> {
+        return (count downTo 1).map { uid ->
+            createImapMessage(uid.toString()).apply {
+                setSize(size)
+            }
+        }
+    }
+
+    private class MultiConnectionImapStore : ImapStore {
+        val createdFolders: MutableList<TestImapFolder> = Collections.synchronizedList(mutableListOf())
+
+        override fun getFolder(name: String): ImapFolder {
+            return TestImapFolder(name).apply {
+                setUidValidity(UID_VALIDITY)
+                createdFolders.add(this)
+            }
+        }
+
+        override fun getFolders(): List<FolderListItem> {
+            throw UnsupportedOperationException("not implemented")
+        }
+
+        override fun checkSettings() {
+            throw UnsupportedOperationException("not implemented")
+        }
+
+        override fun closeAllConnections() {
+            throw UnsupportedOperationException("not implemented")
+        }
+    }
+}
@@ -8,9 +8,11 @@ import com.fsck.k9.mail.Message
 import com.fsck.k9.mail.MessageRetrievalListener
 import com.fsck.k9.mail.Part
 import com.fsck.k9.mail.store.imap.FetchListener
+import com.fsck.k9.mail.store.imap.FolderChanges
 import com.fsck.k9.mail.store.imap.ImapFolder
 import com.fsck.k9.mail.store.imap.ImapMessage
 import com.fsck.k9.mail.store.imap.OpenMode
+import com.fsck.k9.mail.store.imap.UidSet
 import com.fsck.k9.mail.store.imap.createImapMessage
 import java.util.Date
 
@@ -29,8 +31,19 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
     val isClosed: Boolean
         get() = mode == null
 
+    /**
+     * Emulates a server with CONDSTORE/QRESYNC support when set to `true`.
+     */
+    var isQresyncEnabled: Boolean = false
+
+    var fetchCount: Int = 0
+        private set
+
     private val messages = mutableMapOf<Long, Message>()
     private val messageFlags = mutableMapOf<Long, MutableSet<Flag>>()
+    private val messageModSeqs = mutableMapOf<Long, Long>()
+    private val vanishedModSeqs = mutableMapOf<Long, Long>()
+    private var highestModSeq: Long = 1
     private var uidValidity: Long? = null
 
     fun addMessage(uid: Long, message: Message) {
@@ -40,6 +53,16 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
 
         messages[uid] = message
         messageFlags[uid] = mutableSetOf()
+        messageModSeqs[uid] = ++highestModSeq
+
+        messageCount = messages.size
+    }
+
+    fun removeMessage(uid: Long) {
+        messages.remove(uid)
+        messageFlags.remove(uid)
+        messageModSeqs.remove(uid)
+        vanishedModSeqs[uid] = ++highestModSeq
 
         messageCount = messages.size
     }
@@ -47,6 +70,7 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
     fun removeAllMessages() {
         messages.clear()
         messageFlags.clear()
+        messageModSeqs.clear()
     }
 
     fun setUidValidity(value: Long) {
@@ -57,6 +81,24 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
         this.mode = mode
     }
 
+    override fun openWithChangesSince(mode: OpenMode, knownUidValidity: Long, knownModSeq: Long): FolderChanges? {
+        this.mode = mode
+        if (!isQresyncEnabled) return null
+
+        if (knownUidValidity != uidValidity) {
+            return FolderChanges(vanishedUids = UidSet.EMPTY, changedMessages = emptyList())
+        }
+
+        val vanishedUids = UidSet.of(vanishedModSeqs.filterValues { it > knownModSeq }.keys)
+        val changedMessages = messageModSeqs.filterValues { it > knownModSeq }.keys.map { uid ->
+            createImapMessage(uid.toString()).apply {
+                setFlags(messageFlags[uid].orEmpty().toSet(), true)
+            }
+        }
+
+        return FolderChanges(vanishedUids, changedMessages)
+    }
+
     override fun close() {
         mode = null
     }
@@ -67,6 +109,8 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
 
     override fun getUidValidity() = uidValidity
 
+    override fun getHighestModSeq(): Long? = if (isQresyncEnabled) highestModSeq else null
+
     override fun getMessage(uid: String): ImapMessage {
         return createImapMessage(uid)
     }
@@ -101,6 +145,7 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
         maxDownloadSize: Int,
     ) {
         if (messages.isEmpty()) return
+        fetchCount++
 
         for (imapMessage in messages) {
             val uid = imapMessage.uid.toLong()
@@ -118,6 +163,20 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
         }
     }
 
+    override fun fetchChangedFlags(messages: List<ImapMessage>, changedSince: Long, listener: FetchListener) {
+        if (messages.isEmpty()) return
+        fetchCount++
+
+        for (imapMessage in messages) {
+            val uid = imapMessage.uid.toLong()
+            val modSeq = messageModSeqs[uid] ?: continue
+            if (modSeq > changedSince) {
+                imapMessage.setFlags(messageFlags[uid].orEmpty().toSet(), true)
+                listener.onFetchResponse(imapMessage, isFirstResponse = true)
+            }
+        }
+    }
+
     override fun fetchPart(
         message: ImapMessage,
         part: Part,
@@ -150,6 +209,10 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
                 messageFlagSet.removeAll(flags)
             }
         }
+
+        for (uid in messageModSeqs.keys) {
+            messageModSeqs[uid] = ++highestModSeq
+        }
     }
 
     override fun setFlags(messages: List<ImapMessage>, flags: Set<Flag>, value: Boolean) {
@@ -161,6 +224,7 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
             } else {
                 messageFlagSet.removeAll(flags)
             }
+            messageModSeqs[uid] = ++highestModSeq
         }
     }
 
@@ -183,22 +183,26 @@ class CommandSync(
         val messageInfoList = fetchMessageInfo(session, maxObjectsInGet, newServerIds)
 
         val total = messageInfoList.size
-        messageInfoList.forEachIndexed { index, messageInfo ->
-            Log.v("Downloading message %s (%s)", messageInfo.serverId, messageInfo.downloadUrl)
-            val message = downloadMessage(messageInfo.downloadUrl)
-            if (message != null) {
-                message.apply {
+        var progress = 0
+        for (messageInfoChunk in messageInfoList.chunked(SAVE_BATCH_SIZE)) {
+            val messages = messageInfoChunk.mapNotNull { messageInfo ->
+                Log.v("Downloading message %s (%s)", messageInfo.serverId, messageInfo.downloadUrl)
+                val message = downloadMessage(messageInfo.downloadUrl)
+                if (message == null) {
+                    Log.d("Failed to download message: %s", messageInfo.serverId)
+                }
+
+                message?.apply {
                     uid = messageInfo.serverId
                     setInternalSentDate(messageInfo.receivedAt)
                     setFlags(messageInfo.flags, true)
                 }
-
-                backendFolder.saveMessage(message, MessageDownloadState.FULL)
-            } else {
-                Log.d("Failed to download message: %s", messageInfo.serverId)
             }
 
-            listener.syncProgress(folderServerId, index + 1, total)
+            backendFolder.saveMessages(messages, MessageDownloadState.FULL)
+
+            progress += messageInfoChunk.size
+            listener.syncProgress(folderServerId, progress, total)
         }
 
         backendFolder.saveQueryState(newQueryState)
@@ -261,26 +265,34 @@ class CommandSync(
 
         emailIds
             .asSequence()
-            .chunked(maxObjectsInGet) { emailIdsChunk ->
-                getEmailPropertiesFromServer(emailIdsChunk, FLAG_PROPERTIES)
-            }
-            .flatten()
-            .forEach { email ->
-                syncFlagsForMessage(backendFolder, syncConfig, email)
+            .chunked(maxObjectsInGet)
+            .forEach { emailIdsChunk ->
+                val emails = getEmailPropertiesFromServer(emailIdsChunk, FLAG_PROPERTIES)
+                syncFlagsForMessages(backendFolder, syncConfig, emails)
             }
     }
 
-    private fun syncFlagsForMessage(backendFolder: BackendFolder, syncConfig: SyncConfig, email: Email) {
-        val messageServerId = email.id
-        val localFlags = backendFolder.getMessageFlags(messageServerId)
-        val remoteFlags = email.keywords.toFlags()
-        for (flag in syncConfig.syncFlags) {
-            val flagSetOnServer = flag in remoteFlags
-            val flagSetLocally = flag in localFlags
-            if (flagSetOnServer != flagSetLocally) {
-                backendFolder.setMessageFlag(messageServerId, flag, flagSetOnServer)
+    private fun syncFlagsForMessages(backendFolder: BackendFolder, syncConfig: SyncConfig, emails: List<Email>) {
+        val localMessageFlags = backendFolder.getMessageFlags(emails.map { it.id })
+
+        val flagChanges = mutableMapOf<String, Map<Flag, Boolean>>()
+        for (email in emails) {
+            val messageServerId = email.id
+            val localFlags = localMessageFlags[messageServerId] ?: continue
+            val remoteFlags = email.keywords.toFlags()
+
+            val messageFlagChanges = syncConfig.syncFlags
+                .filter { flag -> (flag in remoteFlags) != (flag in localFlags) }
+                .associateWith { flag -> flag in remoteFlags }
+
+            if (messageFlagChanges.isNotEmpty()) {
+                flagChanges[messageServerId] = messageFlagChanges
             }
         }
+
+        if (flagChanges.isNotEmpty()) {
+            backendFolder.setMessageFlags(flagChanges)
+        }
     }
 
     private fun Map<String, Boolean>?.toFlags(): Set<Flag> {
@@ -309,6 +321,7 @@ class CommandSync(
     companion object {
         private const val EXTRA_QUERY_STATE = "jmapQueryState"
         private const val ERROR_CANNOT_CALCULATE_CHANGES = "cannotCalculateChanges"
+        private const val SAVE_BATCH_SIZE = 50
         private val INFO_PROPERTIES = arrayOf("id", "blobId", "size", "receivedAt", "keywords")
         private val FLAG_PROPERTIES = arrayOf("id", "keywords")
     }
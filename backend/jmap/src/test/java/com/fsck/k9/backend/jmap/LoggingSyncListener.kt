@@ -68,6 +68,16 @@ class LoggingSyncListener : SyncListener {
         throw UnsupportedOperationException("not implemented")
     }
 
+    override fun syncDownloadThroughput(
+        folderServerId: String,
+        connectionIndex: Int,
+        messageCount: Int,
+        byteCount: Long,
+        durationMillis: Long,
+    ) {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun syncFinished(folderServerId: String) {
         events.add(SyncListenerEvent.SyncFinished(folderServerId))
     }
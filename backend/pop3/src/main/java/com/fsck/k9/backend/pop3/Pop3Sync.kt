@@ -270,8 +270,17 @@ internal class Pop3Sync(
 
         val messages: MutableList<Pop3Message> = ArrayList<Pop3Message>(inputMessages)
 
+        val localMessageFlags = backendFolder.getMessageFlags(messages.map { it.uid })
         for (message in messages) {
-            evaluateMessageForDownload(message, folder, backendFolder, unsyncedMessages, syncFlagMessages, listener)
+            evaluateMessageForDownload(
+                message,
+                localMessageFlags[message.uid],
+                folder,
+                backendFolder,
+                unsyncedMessages,
+                syncFlagMessages,
+                listener,
+            )
         }
 
         val progress = AtomicInteger(0)
@@ -368,8 +377,10 @@ internal class Pop3Sync(
         backendFolder.setFolderExtraNumber(EXTRA_LATEST_OLD_MESSAGE_SEEN_TIME, oldestMessageTime.time)
     }
 
+    @Suppress("LongParameterList")
     private fun evaluateMessageForDownload(
         message: Pop3Message,
+        messageFlags: Set<Flag>?,
         folder: String,
         backendFolder: BackendFolder,
         unsyncedMessages: MutableList<Pop3Message>,
@@ -384,9 +395,7 @@ internal class Pop3Sync(
             return
         }
 
-        val messagePresentLocally = backendFolder.isMessagePresent(messageServerId)
-
-        if (!messagePresentLocally) {
+        if (messageFlags == null) {
             if (!message.isSet(Flag.X_DOWNLOADED_FULL) && !message.isSet(Flag.X_DOWNLOADED_PARTIAL)) {
                 Log.v("Message with uid %s has not yet been downloaded", messageServerId)
 
@@ -408,7 +417,6 @@ internal class Pop3Sync(
             return
         }
 
-        val messageFlags: Set<Flag> = backendFolder.getMessageFlags(messageServerId)
         if (!messageFlags.contains(Flag.DELETED)) {
             Log.v("Message with uid %s is present in the local store", messageServerId)
 
@@ -105,6 +105,12 @@ class InMemoryBackendFolder(override var name: String, var type: FolderType) : B
         return messageFlags[messageServerId] ?: error("Message $messageServerId not found")
     }
 
+    override fun getMessageFlags(messageServerIds: Collection<String>): Map<String, Set<Flag>> {
+        return messageServerIds
+            .mapNotNull { messageServerId -> messageFlags[messageServerId]?.let { messageServerId to it.toSet() } }
+            .toMap()
+    }
+
     override fun setMessageFlag(messageServerId: String, flag: Flag, value: Boolean) {
         val flags = messageFlags[messageServerId] ?: error("Message $messageServerId not found")
         if (value) {
@@ -114,6 +120,14 @@ class InMemoryBackendFolder(override var name: String, var type: FolderType) : B
         }
     }
 
+    override fun setMessageFlags(flagChanges: Map<String, Map<Flag, Boolean>>) {
+        for ((messageServerId, messageFlagChanges) in flagChanges) {
+            for ((flag, value) in messageFlagChanges) {
+                setMessageFlag(messageServerId, flag, value)
+            }
+        }
+    }
+
     override fun saveMessage(message: Message, downloadState: MessageDownloadState) {
         val messageServerId = checkNotNull(message.uid)
         messages[messageServerId] = message
@@ -128,6 +142,12 @@ class InMemoryBackendFolder(override var name: String, var type: FolderType) : B
         messageFlags[messageServerId] = flags
     }
 
+    override fun saveMessages(messages: List<Message>, downloadState: MessageDownloadState) {
+        for (message in messages) {
+            saveMessage(message, downloadState)
+        }
+    }
+
     override fun getOldestMessageDate(): Date? {
         throw UnsupportedOperationException("not implemented")
     }
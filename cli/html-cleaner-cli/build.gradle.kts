@@ -10,7 +10,10 @@ application {
 
 dependencies {
     implementation(projects.library.htmlCleaner)
+    implementation(projects.library.smlHtml)
 
     implementation(libs.clikt)
+    implementation(libs.jsoup)
     implementation(libs.okio)
+    implementation(libs.json)
 }
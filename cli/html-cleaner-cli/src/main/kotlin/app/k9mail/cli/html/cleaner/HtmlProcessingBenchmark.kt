@@ -0,0 +1,93 @@
+package app.k9mail.cli.html.cleaner
+
+import app.k9mail.html.cleaner.HtmlDocumentVisitor
+import app.k9mail.html.cleaner.HtmlHeadProvider
+import app.k9mail.html.cleaner.HtmlProcessor
+import app.k9mail.sml.html.StructuredDataHtml
+import com.github.ajalt.clikt.core.CliktCommand
+import com.github.ajalt.clikt.core.Context
+import com.github.ajalt.clikt.parameters.arguments.argument
+import com.github.ajalt.clikt.parameters.arguments.multiple
+import com.github.ajalt.clikt.parameters.options.default
+import com.github.ajalt.clikt.parameters.options.option
+import com.github.ajalt.clikt.parameters.types.file
+import com.github.ajalt.clikt.parameters.types.int
+import java.io.File
+import java.util.Locale
+import org.jsoup.nodes.Document
+
+@Suppress("MemberVisibilityCanBePrivate")
+class HtmlProcessingBenchmark : CliktCommand(name = "benchmark") {
+    val warmupIterations by option("--warmup", help = "Number of iterations that are not measured")
+        .int()
+        .default(5)
+
+    val iterations by option("--iterations", help = "Number of measured iterations")
+        .int()
+        .default(20)
+
+    val corpus by argument(help = "HTML files or directories containing HTML files (need to be UTF-8 encoded)")
+        .file(mustExist = true)
+        .multiple(required = true)
+
+    override fun help(context: Context) =
+        "Measures the time spent in each stage of processing HTML for display, for every message in a corpus."
+
+    override fun run() {
+        val htmlProcessor = HtmlProcessor(
+            object : HtmlHeadProvider {
+                override val headHtml = """<meta name="viewport" content="width=device-width"/>"""
+            },
+        )
+        val visitors = listOf(StructuredDataVisitor())
+
+        val messages = corpus.flatMap { file -> file.walk().filter { it.isHtmlFile() }.toList() }
+            .map { it.readText() }
+        if (messages.isEmpty()) {
+            echo("No HTML files found", err = true)
+            return
+        }
+
+        repeat(warmupIterations) {
+            for (html in messages) {
+                htmlProcessor.processForDisplay(html, visitors)
+            }
+        }
+
+        val stageDurations = linkedMapOf<String, Long>()
+        repeat(iterations) {
+            for (html in messages) {
+                val processedHtml = htmlProcessor.processForDisplay(html, visitors)
+                for (stageTiming in processedHtml.stageTimings) {
+                    stageDurations.merge(stageTiming.stage, stageTiming.durationNanos, Long::plus)
+                }
+            }
+        }
+
+        val runs = messages.size.toLong() * iterations
+        echo("${messages.size} messages, $iterations iterations")
+        for ((stage, duration) in stageDurations) {
+            echo(formatStage(stage, duration / runs))
+        }
+        echo(formatStage("total", stageDurations.values.sum() / runs))
+    }
+
+    private fun File.isHtmlFile() = isFile && extension.lowercase() in setOf("html", "htm")
+
+    private fun formatStage(stage: String, averageNanos: Long): String {
+        return String.format(Locale.ROOT, "%-12s %10.1f µs/message", stage, averageNanos / 1000.0)
+    }
+
+    /**
+     * Does the same DOM work as the SML step of the message view: extracting JSON-LD or microdata and adding the
+     * inline card buttons. The buttons after links to whitelisted URLs depend on an account setting and are skipped.
+     */
+    private class StructuredDataVisitor : HtmlDocumentVisitor {
+        override val name = "sml"
+
+        override fun visit(document: Document) {
+            val data = StructuredDataHtml.parseStructuredData(document)
+            StructuredDataHtml.addInlineCardButtons(document, data)
+        }
+    }
+}
@@ -57,4 +57,10 @@ class HtmlCleaner : CliktCommand() {
     }
 }
 
-fun main(args: Array<String>) = HtmlCleaner().main(args)
+fun main(args: Array<String>) {
+    if (args.firstOrNull() == "benchmark") {
+        HtmlProcessingBenchmark().main(args.drop(1))
+    } else {
+        HtmlCleaner().main(args)
+    }
+}
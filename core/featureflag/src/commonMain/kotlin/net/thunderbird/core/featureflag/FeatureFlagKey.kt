@@ -6,6 +6,8 @@ value class FeatureFlagKey(val key: String) {
         val DisplayInAppNotifications = "display_in_app_notifications".toFeatureFlagKey()
         val UseNotificationSenderForSystemNotifications =
             "use_notification_sender_for_system_notifications".toFeatureFlagKey()
+        val DatabaseWriteAheadLogging = "database_write_ahead_logging".toFeatureFlagKey()
+        val CompressMessageBodies = "compress_message_bodies".toFeatureFlagKey()
     }
 }
 
@@ -9,24 +9,26 @@ import kotlinx.serialization.Serializable
  * @property fieldName The name of the database column associated with this search field.
  * @property fieldType The type of the search field, which determines how it can be queried.
  * @property customQueryTemplate An optional custom query template for fields that require special handling.
+ * @property isFullTextIndexed Whether the field is part of the `messages_search` full-text index.
  */
 @Serializable
 enum class MessageSearchField(
     override val fieldName: String,
     override val fieldType: SearchFieldType,
     override val customQueryTemplate: String? = null,
+    override val isFullTextIndexed: Boolean = false,
 ) : SearchField {
-    CC("cc_list", SearchFieldType.TEXT),
+    CC("cc_list", SearchFieldType.TEXT, isFullTextIndexed = true),
     DATE("date", SearchFieldType.NUMBER),
     FLAG("flags", SearchFieldType.TEXT),
     ID("id", SearchFieldType.NUMBER),
-    SENDER("sender_list", SearchFieldType.TEXT),
-    SUBJECT("subject", SearchFieldType.TEXT),
+    SENDER("sender_list", SearchFieldType.TEXT, isFullTextIndexed = true),
+    SUBJECT("subject", SearchFieldType.TEXT, isFullTextIndexed = true),
     UID("uid", SearchFieldType.TEXT),
-    TO("to_list", SearchFieldType.TEXT),
+    TO("to_list", SearchFieldType.TEXT, isFullTextIndexed = true),
     FOLDER("folder_id", SearchFieldType.NUMBER),
-    BCC("bcc_list", SearchFieldType.TEXT),
-    REPLY_TO("reply_to_list", SearchFieldType.TEXT),
+    BCC("bcc_list", SearchFieldType.TEXT, isFullTextIndexed = true),
+    REPLY_TO("reply_to_list", SearchFieldType.TEXT, isFullTextIndexed = true),
     MESSAGE_CONTENTS(
         fieldName = "message_contents",
         fieldType = SearchFieldType.CUSTOM,
@@ -21,4 +21,13 @@ interface SearchField {
      * Only applicable for fields with [SearchFieldType.CUSTOM].
      */
     val customQueryTemplate: String?
+
+    /**
+     * Whether this field is part of the `messages_search` full-text index, using [fieldName] as column name.
+     *
+     * [SearchAttribute.CONTAINS] conditions on indexed fields use the full-text index to find candidate messages, so
+     * `LIKE` only has to check those instead of scanning all messages.
+     */
+    val isFullTextIndexed: Boolean
+        get() = false
 }
@@ -0,0 +1,57 @@
+package net.thunderbird.feature.search.legacy.sql
+
+/**
+ * Creates the contents of the `messages_search` full-text index and the terms used to query it.
+ *
+ * The index uses SQLite's `simple` tokenizer, which only supports matching whole words or word prefixes. To find
+ * arbitrary substrings like `LIKE '%term%'` does, every suffix of a word is stored as a separate term. A substring of a
+ * word is then a prefix of one of these terms. E.g. "example" is stored as "example xample ample mple ple le e", so the
+ * query `ample*` matches.
+ *
+ * The full-text index is only used to narrow down the candidates. The exact match is still done with `LIKE`.
+ */
+object FullTextSearchTerms {
+    /**
+     * Maximum length of a stored term. Longer suffixes are truncated, and so are query terms.
+     */
+    private const val MAX_TERM_LENGTH = 32
+
+    private val WORD_SEPARATOR = Regex("[^A-Za-z0-9\\u0080-\\uFFFF]+")
+
+    /**
+     * Returns the text to store in the full-text index for [value].
+     */
+    fun createIndexText(value: String?): String? {
+        if (value == null) return null
+
+        val terms = LinkedHashSet<String>()
+        for (word in value.splitIntoWords()) {
+            for (start in word.indices) {
+                if (word[start].isLowSurrogate()) continue
+
+                terms.add(word.substring(start).take(MAX_TERM_LENGTH))
+            }
+        }
+
+        return terms.joinToString(separator = " ")
+    }
+
+    /**
+     * Returns the term to search for in the full-text index when looking for [value] with `LIKE '%value%'`, or `null`
+     * if [value] doesn't contain any characters that are part of a word.
+     *
+     * Every text containing [value] contains the longest word of [value] inside a single word. So the returned term is
+     * a prefix of one of the stored suffixes.
+     */
+    internal fun createQueryTerm(value: String): String? {
+        return value.splitIntoWords().maxByOrNull { it.length }?.take(MAX_TERM_LENGTH)
+    }
+
+    /**
+     * Splits [this] into words the same way the `simple` tokenizer does: ASCII letters and digits and all non-ASCII
+     * characters are part of a word, every other character separates words.
+     */
+    private fun String.splitIntoWords(): List<String> {
+        return split(WORD_SEPARATOR).filter { it.isNotEmpty() }
+    }
+}
@@ -3,8 +3,12 @@ package net.thunderbird.feature.search.legacy.sql
 import net.thunderbird.feature.search.legacy.SearchConditionTreeNode
 import net.thunderbird.feature.search.legacy.api.SearchAttribute
 import net.thunderbird.feature.search.legacy.api.SearchCondition
+import net.thunderbird.feature.search.legacy.api.SearchField
 import net.thunderbird.feature.search.legacy.api.SearchFieldType
 
+private const val FULL_TEXT_SEARCH_QUERY =
+    "messages.id IN (SELECT docid FROM messages_search WHERE messages_search MATCH ?)"
+
 /**
  * Builds a SQL query string based on a search condition tree and creates the selection arguments.
  *
@@ -12,6 +16,10 @@ import net.thunderbird.feature.search.legacy.api.SearchFieldType
  * logical expressions using AND, OR, and NOT operators. It supports custom fields with templates
  * for specific query formats.
  *
+ * `CONTAINS` conditions on fields that are part of the full-text index (see [SearchField.isFullTextIndexed]) use the
+ * `messages_search` table to narrow down the candidates and then check them with `LIKE`. The index contains every
+ * suffix of a word (see [FullTextSearchTerms]), so substrings in the middle of a word still match.
+ *
  * Example usage:
  * ```
  * val query = SqlWhereClause.Builder()
@@ -82,7 +90,7 @@ class SqlWhereClause private constructor(
                     }
                     query.append(condition.field.customQueryTemplate)
                     selectionArgs.add(condition.value)
-                } else {
+                } else if (!appendFullTextCondition(condition, query, selectionArgs)) {
                     appendCondition(condition, query, selectionArgs)
                 }
             } else if (node.operator == SearchConditionTreeNode.Operator.NOT) {
@@ -101,6 +109,22 @@ class SqlWhereClause private constructor(
             }
         }
 
+        private fun appendFullTextCondition(
+            condition: SearchCondition,
+            query: StringBuilder,
+            selectionArgs: MutableList<String>,
+        ): Boolean {
+            if (!condition.field.isFullTextIndexed || condition.attribute != SearchAttribute.CONTAINS) return false
+
+            val term = FullTextSearchTerms.createQueryTerm(condition.value) ?: return false
+
+            query.append("(").append(FULL_TEXT_SEARCH_QUERY).append(" AND ")
+            selectionArgs.add("${condition.field.fieldName}:\"$term*\"")
+            appendCondition(condition, query, selectionArgs)
+            query.append(")")
+            return true
+        }
+
         private fun appendCondition(
             condition: SearchCondition,
             query: StringBuilder,
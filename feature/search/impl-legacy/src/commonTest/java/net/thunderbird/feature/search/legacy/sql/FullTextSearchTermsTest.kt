@@ -0,0 +1,93 @@
+package net.thunderbird.feature.search.legacy.sql
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNull
+import org.junit.Test
+
+class FullTextSearchTermsTest {
+
+    @Test
+    fun `createIndexText should store every suffix of every word`() {
+        // Act
+        val result = FullTextSearchTerms.createIndexText("Re: ab-c")
+
+        // Assert
+        assertThat(result).isEqualTo("Re e ab b c")
+    }
+
+    @Test
+    fun `createIndexText should treat non-ASCII characters as part of a word`() {
+        // Act
+        val result = FullTextSearchTerms.createIndexText("東京都 Zürich")
+
+        // Assert
+        assertThat(result).isEqualTo("東京都 京都 都 Zürich ürich rich ich ch h")
+    }
+
+    @Test
+    fun `createIndexText should not split surrogate pairs`() {
+        // Act
+        val result = FullTextSearchTerms.createIndexText("a😀b")
+
+        // Assert
+        assertThat(result).isEqualTo("a😀b 😀b b")
+    }
+
+    @Test
+    fun `createIndexText should not store duplicate terms`() {
+        // Act
+        val result = FullTextSearchTerms.createIndexText("aa aa")
+
+        // Assert
+        assertThat(result).isEqualTo("aa a")
+    }
+
+    @Test
+    fun `createIndexText should truncate long terms`() {
+        // Arrange
+        val word = "a".repeat(40)
+
+        // Act
+        val result = FullTextSearchTerms.createIndexText(word)
+
+        // Assert
+        assertThat(result).isEqualTo((32 downTo 1).joinToString(separator = " ") { "a".repeat(it) })
+    }
+
+    @Test
+    fun `createIndexText should return null for null value`() {
+        // Act
+        val result = FullTextSearchTerms.createIndexText(null)
+
+        // Assert
+        assertThat(result).isNull()
+    }
+
+    @Test
+    fun `createQueryTerm should return longest word`() {
+        // Act
+        val result = FullTextSearchTerms.createQueryTerm("john@example.com")
+
+        // Assert
+        assertThat(result).isEqualTo("example")
+    }
+
+    @Test
+    fun `createQueryTerm should truncate long word`() {
+        // Act
+        val result = FullTextSearchTerms.createQueryTerm("b".repeat(40))
+
+        // Assert
+        assertThat(result).isEqualTo("b".repeat(32))
+    }
+
+    @Test
+    fun `createQueryTerm should return null if value contains no words`() {
+        // Act
+        val result = FullTextSearchTerms.createQueryTerm("?! @")
+
+        // Assert
+        assertThat(result).isNull()
+    }
+}
@@ -13,6 +13,10 @@ import net.thunderbird.feature.search.legacy.api.SearchField
 import net.thunderbird.feature.search.legacy.api.SearchFieldType
 import org.junit.Test
 
+private const val FTS_QUERY = "messages.id IN (SELECT docid FROM messages_search WHERE messages_search MATCH ?)"
+private const val SUBJECT_QUERY = "($FTS_QUERY AND subject LIKE ?)"
+private const val SENDER_QUERY = "($FTS_QUERY AND sender_list LIKE ?)"
+
 class SqlWhereClauseTest {
 
     data class TestSearchField(
@@ -35,9 +39,8 @@ class SqlWhereClauseTest {
             .build()
 
         // Assert
-        assertThat(result.selection).isEqualTo("NOT (subject LIKE ?)")
-        assertThat(result.selectionArgs).hasSize(1)
-        assertThat(result.selectionArgs[0]).isEqualTo("%test%")
+        assertThat(result.selection).isEqualTo("NOT ($SUBJECT_QUERY)")
+        assertThat(result.selectionArgs).isEqualTo(listOf("subject:\"test*\"", "%test%"))
     }
 
     @Test
@@ -57,10 +60,10 @@ class SqlWhereClauseTest {
             .build()
 
         // Assert
-        assertThat(result.selection).isEqualTo("NOT ((subject LIKE ?) AND (sender_list LIKE ?))")
-        assertThat(result.selectionArgs).hasSize(2)
-        assertThat(result.selectionArgs[0]).isEqualTo("%test%")
-        assertThat(result.selectionArgs[1]).isEqualTo("%example.com%")
+        assertThat(result.selection).isEqualTo("NOT (($SUBJECT_QUERY) AND ($SENDER_QUERY))")
+        assertThat(result.selectionArgs).isEqualTo(
+            listOf("subject:\"test*\"", "%test%", "sender_list:\"example*\"", "%example.com%"),
+        )
     }
 
     @Test
@@ -82,11 +85,11 @@ class SqlWhereClauseTest {
             .build()
 
         // Assert
-        assertThat(result.selection).isEqualTo("((NOT (subject LIKE ?)) AND (sender_list LIKE ?)) AND (flagged = ?)")
-        assertThat(result.selectionArgs).hasSize(3)
-        assertThat(result.selectionArgs[0]).isEqualTo("%test%")
-        assertThat(result.selectionArgs[1]).isEqualTo("%example.com%")
-        assertThat(result.selectionArgs[2]).isEqualTo("1")
+        assertThat(result.selection)
+            .isEqualTo("((NOT ($SUBJECT_QUERY)) AND ($SENDER_QUERY)) AND (flagged = ?)")
+        assertThat(result.selectionArgs).isEqualTo(
+            listOf("subject:\"test*\"", "%test%", "sender_list:\"example*\"", "%example.com%", "1"),
+        )
     }
 
     @Test
@@ -108,11 +111,11 @@ class SqlWhereClauseTest {
             .build()
 
         // Assert
-        assertThat(result.selection).isEqualTo("((NOT (subject LIKE ?)) OR (sender_list LIKE ?)) OR (flagged = ?)")
-        assertThat(result.selectionArgs).hasSize(3)
-        assertThat(result.selectionArgs[0]).isEqualTo("%test%")
-        assertThat(result.selectionArgs[1]).isEqualTo("%example.com%")
-        assertThat(result.selectionArgs[2]).isEqualTo("1")
+        assertThat(result.selection)
+            .isEqualTo("((NOT ($SUBJECT_QUERY)) OR ($SENDER_QUERY)) OR (flagged = ?)")
+        assertThat(result.selectionArgs).isEqualTo(
+            listOf("subject:\"test*\"", "%test%", "sender_list:\"example*\"", "%example.com%", "1"),
+        )
     }
 
     @Test
@@ -136,10 +139,10 @@ class SqlWhereClauseTest {
             .build()
 
         // Assert
-        assertThat(result.selection).isEqualTo("(NOT (subject LIKE ?)) AND (NOT (sender_list LIKE ?))")
-        assertThat(result.selectionArgs).hasSize(2)
-        assertThat(result.selectionArgs[0]).isEqualTo("%test%")
-        assertThat(result.selectionArgs[1]).isEqualTo("%example.com%")
+        assertThat(result.selection).isEqualTo("(NOT ($SUBJECT_QUERY)) AND (NOT ($SENDER_QUERY))")
+        assertThat(result.selectionArgs).isEqualTo(
+            listOf("subject:\"test*\"", "%test%", "sender_list:\"example*\"", "%example.com%"),
+        )
     }
 
     @Test
@@ -163,6 +166,72 @@ class SqlWhereClauseTest {
         assertThat(result.selectionArgs[0]).isEqualTo("test content")
     }
 
+    @Test
+    fun `should narrow down LIKE with full-text index for CONTAINS on indexed field`() {
+        // Arrange
+        val condition = SearchCondition(MessageSearchField.TO, SearchAttribute.CONTAINS, " \"Jane\" Doe ")
+        val node = SearchConditionTreeNode.Builder(condition).build()
+
+        // Act
+        val result = SqlWhereClause.Builder()
+            .withConditions(node)
+            .build()
+
+        // Assert
+        assertThat(result.selection).isEqualTo("($FTS_QUERY AND to_list LIKE ?)")
+        assertThat(result.selectionArgs).isEqualTo(listOf("to_list:\"Jane*\"", "% \"Jane\" Doe %"))
+    }
+
+    @Test
+    fun `should use longest word of value as full-text query term`() {
+        // Arrange
+        val condition = SearchCondition(MessageSearchField.SENDER, SearchAttribute.CONTAINS, "hn@example.c")
+        val node = SearchConditionTreeNode.Builder(condition).build()
+
+        // Act
+        val result = SqlWhereClause.Builder()
+            .withConditions(node)
+            .build()
+
+        // Assert
+        assertThat(result.selection).isEqualTo(SENDER_QUERY)
+        assertThat(result.selectionArgs).isEqualTo(listOf("sender_list:\"example*\"", "%hn@example.c%"))
+    }
+
+    @Test
+    fun `should fall back to LIKE for indexed field when value contains no words`() {
+        // Arrange
+        val condition = SearchCondition(MessageSearchField.SUBJECT, SearchAttribute.CONTAINS, "?!")
+        val node = SearchConditionTreeNode.Builder(condition).build()
+
+        // Act
+        val result = SqlWhereClause.Builder()
+            .withConditions(node)
+            .build()
+
+        // Assert
+        assertThat(result.selection).isEqualTo("subject LIKE ?")
+        assertThat(result.selectionArgs).hasSize(1)
+        assertThat(result.selectionArgs[0]).isEqualTo("%?!%")
+    }
+
+    @Test
+    fun `should use LIKE for EQUALS on indexed field`() {
+        // Arrange
+        val condition = SearchCondition(MessageSearchField.SUBJECT, SearchAttribute.EQUALS, "test")
+        val node = SearchConditionTreeNode.Builder(condition).build()
+
+        // Act
+        val result = SqlWhereClause.Builder()
+            .withConditions(node)
+            .build()
+
+        // Assert
+        assertThat(result.selection).isEqualTo("subject LIKE ?")
+        assertThat(result.selectionArgs).hasSize(1)
+        assertThat(result.selectionArgs[0]).isEqualTo("test")
+    }
+
     @Test
     fun `should build correct SQL query for TEXT field type`() {
         // Arrange
@@ -12,6 +12,7 @@ import com.fsck.k9.mail.store.imap.IdleRefreshManager
 import com.fsck.k9.mail.store.imap.ImapClientInfo
 import com.fsck.k9.mail.store.imap.ImapStore
 import com.fsck.k9.mail.store.imap.ImapStoreConfig
+import com.fsck.k9.mail.store.imap.ImapStoreSettings.parallelDownloadConnections
 import com.fsck.k9.mail.transport.smtp.SmtpTransport
 import com.fsck.k9.mailstore.K9BackendStorageFactory
 import kotlinx.coroutines.flow.Flow
@@ -20,6 +21,7 @@ import kotlinx.coroutines.flow.filterNotNull
 import kotlinx.coroutines.flow.map
 import net.thunderbird.core.android.account.AccountManager
 import net.thunderbird.core.android.account.Expunge
+import net.thunderbird.core.android.account.FolderMode
 import net.thunderbird.core.android.account.LegacyAccount
 
 @Suppress("LongParameterList")
@@ -48,9 +50,23 @@ class ImapBackendFactory(
             idleRefreshManager,
             pushConfigProvider,
             smtpTransport,
+            getParallelDownloadConnections(account),
         )
     }
 
+    /**
+     * Limits the number of download connections so that together with the connections used for push they don't exceed
+     * the connection limit most servers enforce per user.
+     */
+    private fun getParallelDownloadConnections(account: LegacyAccount): Int {
+        val pushConnections = if (account.folderPushMode == FolderMode.NONE) 0 else account.maxPushFolders
+        val availableConnections = MAX_CONNECTIONS_PER_ACCOUNT - pushConnections
+
+        return account.incomingServerSettings.parallelDownloadConnections
+            .coerceAtMost(availableConnections)
+            .coerceAtLeast(1)
+    }
+
     private fun createImapStore(account: LegacyAccount): ImapStore {
         val serverSettings = account.toImapServerSettings()
 
@@ -111,4 +127,9 @@ class ImapBackendFactory(
                 .map { it.idleRefreshMinutes }
                 .distinctUntilChanged()
     }
+
+    companion object {
+        // Dovecot's default 'mail_max_userip_connections'. Other popular servers allow at least as many connections.
+        private const val MAX_CONNECTIONS_PER_ACCOUNT = 10
+    }
 }
@@ -7,9 +7,12 @@ import com.fsck.k9.core.BuildConfig
 import com.fsck.k9.job.K9JobManager
 import com.fsck.k9.mail.internet.BinaryTempFileBody
 import com.fsck.k9.notification.NotificationController
+import com.fsck.k9.sml.SMLCardRenderer
+import java.io.IOException
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
+import net.thunderbird.core.logging.legacy.Log
 import org.koin.core.component.KoinComponent
 import org.koin.core.component.inject
 import org.koin.core.qualifier.named
@@ -21,6 +24,7 @@ object Core : KoinComponent {
     private val appCoroutineScope: CoroutineScope by inject(named("AppCoroutineScope"))
     private val preferences: Preferences by inject()
     private val notificationController: NotificationController by inject()
+    private val smlCardRenderer: SMLCardRenderer by inject()
 
     /**
      * This should be called from [Application.attachBaseContext()][android.app.Application.attachBaseContext] before
@@ -39,6 +43,8 @@ object Core : KoinComponent {
         setServicesEnabled(context)
 
         restoreNotifications()
+
+        warmUpCardRenderer()
     }
 
     /**
@@ -90,4 +96,14 @@ object Core : KoinComponent {
             notificationController.restoreNewMailNotifications(accounts)
         }
     }
+
+    private fun warmUpCardRenderer() {
+        appCoroutineScope.launch(Dispatchers.IO) {
+            try {
+                smlCardRenderer.warmUp()
+            } catch (e: IOException) {
+                Log.w(e, "Error loading card templates")
+            }
+        }
+    }
 }
@@ -4,15 +4,22 @@ import android.content.Context
 import app.k9mail.core.android.common.coreCommonAndroidModule
 import com.fsck.k9.helper.Contacts
 import com.fsck.k9.helper.DefaultTrustedSocketFactory
+import com.fsck.k9.helper.NamedThreadFactory
 import com.fsck.k9.mail.ssl.LocalKeyStore
 import com.fsck.k9.mail.ssl.TrustManagerFactory
 import com.fsck.k9.mail.ssl.TrustedSocketFactory
 import com.fsck.k9.mailstore.LocalStoreProvider
+import com.fsck.k9.mailstore.SMLMessageView
+import com.fsck.k9.sml.SMLCardRenderPipeline
+import com.fsck.k9.sml.SMLCardRenderer
+import java.util.concurrent.Executors
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.GlobalScope
 import org.koin.core.qualifier.named
 import org.koin.dsl.module
 
+private const val CARD_RENDER_THREADS = 2
+
 val mainModule = module {
     includes(coreCommonAndroidModule)
     single<CoroutineScope>(named("AppCoroutineScope")) { GlobalScope }
@@ -33,4 +40,11 @@ val mainModule = module {
     single { LocalKeyStoreManager(get()) }
     single<TrustedSocketFactory> { DefaultTrustedSocketFactory(get(), get()) }
     factory { EmailAddressValidator() }
+    single { SMLCardRenderer(maxRenderers = CARD_RENDER_THREADS) }
+    single {
+        SMLCardRenderPipeline(
+            executor = Executors.newFixedThreadPool(CARD_RENDER_THREADS, NamedThreadFactory("SMLCardRenderer")),
+            renderCard = SMLMessageView::renderPendingCard,
+        )
+    }
 }
@@ -0,0 +1,180 @@
+package com.fsck.k9.controller
+
+import java.util.PriorityQueue
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import net.thunderbird.core.logging.legacy.Log
+
+/**
+ * Runs [MessagingController] commands in lanes.
+ *
+ * Commands in the same lane (usually one per account) are executed one after the other, foreground commands before
+ * background commands. Different lanes run in parallel, using at most [maxParallelLanes] threads of [executorService].
+ * When more lanes have work than there are threads, lanes take turns running one command at a time, lanes with a
+ * pending foreground command first.
+ */
+internal class CommandScheduler(
+    private val executorService: ExecutorService,
+    private val maxParallelLanes: Int,
+    private val nanoTime: () -> Long = System::nanoTime,
+) {
+    private val lock = Any()
+    private val lanes = mutableMapOf<String, Lane>()
+    private val readyLanes = ArrayDeque<Lane>()
+    private val sequence = AtomicInteger()
+    private var activeWorkers = 0
+
+    @Volatile
+    private var stopped = false
+
+    fun put(laneName: String, description: String, isForeground: Boolean, runnable: Runnable) {
+        val command = Command(description, isForeground, runnable, sequence.getAndIncrement(), nanoTime())
+
+        val startWorker = synchronized(lock) {
+            val lane = lanes.getOrPut(laneName) { Lane(laneName) }
+            lane.queue.add(command)
+            if (!lane.isRunning && lane !in readyLanes) {
+                readyLanes.addLast(lane)
+            }
+
+            if (activeWorkers < maxParallelLanes && !stopped) {
+                activeWorkers++
+                true
+            } else {
+                false
+            }
+        }
+
+        if (startWorker) {
+            executorService.execute(::runWorker)
+        }
+    }
+
+    fun getLaneStatistics(): List<CommandLaneStatistics> {
+        return synchronized(lock) {
+            lanes.values.map { it.getStatistics() }
+        }
+    }
+
+    fun shutdown(timeoutMillis: Long) {
+        stopped = true
+        executorService.shutdownNow()
+        executorService.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)
+    }
+
+    private fun runWorker() {
+        while (!stopped) {
+            val (lane, command) = takeNextCommand() ?: return
+
+            val startTime = nanoTime()
+            val waitMillis = TimeUnit.NANOSECONDS.toMillis(startTime - command.enqueueTime)
+            try {
+                Log.i(
+                    "Running command '%s' in lane %s, seq = %s (%s priority), waited %d ms",
+                    command.description,
+                    lane.name,
+                    command.sequence,
+                    if (command.isForeground) "foreground" else "background",
+                    waitMillis,
+                )
+
+                command.runnable.run()
+
+                Log.i(" Command '%s' completed", command.description)
+            } catch (e: Exception) {
+                Log.e(e, "Error running command '%s'", command.description)
+            } finally {
+                finishCommand(lane, command, startTime)
+            }
+        }
+    }
+
+    private fun takeNextCommand(): Pair<Lane, Command>? {
+        synchronized(lock) {
+            val lane = readyLanes.firstOrNull { it.queue.peek()?.isForeground == true } ?: readyLanes.firstOrNull()
+            if (lane == null || stopped) {
+                activeWorkers--
+                return null
+            }
+
+            readyLanes.remove(lane)
+            lane.isRunning = true
+
+            return lane to lane.queue.remove()
+        }
+    }
+
+    private fun finishCommand(lane: Lane, command: Command, startTime: Long) {
+        val endTime = nanoTime()
+
+        synchronized(lock) {
+            lane.isRunning = false
+            lane.completedCommands++
+            lane.totalWaitNanos += startTime - command.enqueueTime
+            lane.maxWaitNanos = maxOf(lane.maxWaitNanos, startTime - command.enqueueTime)
+            lane.totalRunNanos += endTime - startTime
+
+            // Go to the end of the line so other lanes get their turn
+            if (lane.queue.isNotEmpty()) {
+                readyLanes.addLast(lane)
+            }
+        }
+    }
+
+    private class Lane(val name: String) {
+        val queue = PriorityQueue<Command>()
+        var isRunning = false
+        var completedCommands = 0L
+        var totalWaitNanos = 0L
+        var maxWaitNanos = 0L
+        var totalRunNanos = 0L
+
+        fun getStatistics(): CommandLaneStatistics {
+            return CommandLaneStatistics(
+                lane = name,
+                queueDepth = queue.size,
+                isRunning = isRunning,
+                completedCommands = completedCommands,
+                averageWaitMillis = averageMillis(totalWaitNanos),
+                maxWaitMillis = TimeUnit.NANOSECONDS.toMillis(maxWaitNanos),
+                averageRunMillis = averageMillis(totalRunNanos),
+            )
+        }
+
+        private fun averageMillis(totalNanos: Long): Long {
+            return if (completedCommands == 0L) 0L else TimeUnit.NANOSECONDS.toMillis(totalNanos / completedCommands)
+        }
+    }
+
+    private class Command(
+        val description: String,
+        val isForeground: Boolean,
+        val runnable: Runnable,
+        val sequence: Int,
+        val enqueueTime: Long,
+    ) : Comparable<Command> {
+        override fun compareTo(other: Command): Int {
+            return when {
+                isForeground && !other.isForeground -> -1
+                !isForeground && other.isForeground -> 1
+                else -> sequence.compareTo(other.sequence)
+            }
+        }
+    }
+}
+
+/**
+ * Queue depth and latency of a [MessagingController] command lane.
+ *
+ * @param averageWaitMillis Average time commands spent in the queue before they were started.
+ */
+data class CommandLaneStatistics(
+    val lane: String,
+    val queueDepth: Int,
+    val isRunning: Boolean,
+    val completedCommands: Long,
+    val averageWaitMillis: Long,
+    val maxWaitMillis: Long,
+    val averageRunMillis: Long,
+)
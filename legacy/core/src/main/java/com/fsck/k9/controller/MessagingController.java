@@ -12,18 +12,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import android.content.Context;
 import android.os.Process;
-import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
@@ -115,6 +114,10 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
     private static final long FOLDER_LIST_STALENESS_THRESHOLD = 30 * 60 * 1000L;
 
+    private static final int MAX_PARALLEL_COMMAND_LANES = 3;
+    private static final int THREAD_POOL_SIZE = 4;
+    private static final String GLOBAL_LANE_NAME = "global";
+
     private final Context context;
     private final NotificationController notificationController;
     private final NotificationStrategy notificationStrategy;
@@ -126,21 +129,18 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     private final SpecialLocalFoldersCreator specialLocalFoldersCreator;
     private final LocalDeleteOperationDecider localDeleteOperationDecider;
 
-    private final Thread controllerThread;
+    private final CommandScheduler commandScheduler;
 
-    private final BlockingQueue<Command> queuedCommands = new PriorityBlockingQueue<>();
     private final Set<MessagingListener> listeners = new CopyOnWriteArraySet<>();
-    private final ExecutorService threadPool = Executors.newCachedThreadPool();
+    private final ExecutorService threadPool = createThreadPool("MessagingController-pool", THREAD_POOL_SIZE);
     private final MemorizingMessagingListener memorizingMessagingListener = new MemorizingMessagingListener();
+    private final PendingCommandCoalescer pendingCommandCoalescer = new PendingCommandCoalescer();
     private final DraftOperations draftOperations;
     private final NotificationOperations notificationOperations;
     private final ArchiveOperations archiveOperations;
     private final Logger syncDebugLogger;
 
 
-    private volatile boolean stopped = false;
-
-
     public static MessagingController getInstance(Context context) {
         return DI.get(MessagingController.class);
     }
@@ -173,14 +173,10 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         this.localDeleteOperationDecider = localDeleteOperationDecider;
         this.syncDebugLogger = syncDebugLogger;
 
-        controllerThread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                runInBackground();
-            }
-        });
-        controllerThread.setName("MessagingController");
-        controllerThread.start();
+        commandScheduler = new CommandScheduler(
+                createThreadPool("MessagingController", MAX_PARALLEL_COMMAND_LANES),
+                MAX_PARALLEL_COMMAND_LANES,
+                System::nanoTime);
         addListener(memorizingMessagingListener);
 
         initializeControllerExtensions(controllerExtensions);
@@ -199,13 +195,13 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
             @Override
             public void put(@NotNull String description, @Nullable MessagingListener listener,
                     @NotNull Runnable runnable) {
-                MessagingController.this.put(description, listener, runnable);
+                MessagingController.this.put(null, description, listener, runnable);
             }
 
             @Override
             public void putBackground(@NotNull String description, @Nullable MessagingListener listener,
                     @NotNull Runnable runnable) {
-                MessagingController.this.putBackground(description, listener, runnable);
+                MessagingController.this.putBackground(null, description, listener, runnable);
             }
         };
 
@@ -216,63 +212,43 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
     @VisibleForTesting
     void stop() throws InterruptedException {
-        stopped = true;
-        controllerThread.interrupt();
-        controllerThread.join(1000L);
+        commandScheduler.shutdown(1000L);
+        threadPool.shutdownNow();
     }
 
-    private void runInBackground() {
-        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-        while (!stopped) {
-            String commandDescription = null;
-            try {
-                final Command command = queuedCommands.take();
-
-                if (command != null) {
-                    commandDescription = command.description;
-
-                    Log.i("Running command '%s', seq = %s (%s priority)",
-                            command.description,
-                            command.sequence,
-                            command.isForegroundPriority ? "foreground" : "background");
-
-                    command.runnable.run();
+    private static ExecutorService createThreadPool(String name, int size) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(() -> {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    });
+                    thread.setName(name + "-" + threadCount.incrementAndGet());
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 
-                    Log.i(" Command '%s' completed", command.description);
-                }
-            } catch (Exception e) {
-                Log.e(e, "Error running command '%s'", commandDescription);
-            }
-        }
+    /**
+     * Runs a command in the lane of the given account. Commands of the same account are executed one after the other.
+     * Commands that don't belong to an account ({@code account == null}) share a lane.
+     */
+    private void put(LegacyAccount account, String description, MessagingListener listener, Runnable runnable) {
+        commandScheduler.put(getLaneName(account), description, true, runnable);
     }
 
-    private void put(String description, MessagingListener listener, Runnable runnable) {
-        putCommand(queuedCommands, description, listener, runnable, true);
+    void putBackground(LegacyAccount account, String description, MessagingListener listener, Runnable runnable) {
+        commandScheduler.put(getLaneName(account), description, false, runnable);
     }
 
-    void putBackground(String description, MessagingListener listener, Runnable runnable) {
-        putCommand(queuedCommands, description, listener, runnable, false);
+    private static String getLaneName(LegacyAccount account) {
+        return account != null ? account.getUuid() : GLOBAL_LANE_NAME;
     }
 
-    private void putCommand(BlockingQueue<Command> queue, String description, MessagingListener listener,
-            Runnable runnable, boolean isForeground) {
-        int retries = 10;
-        Exception e = null;
-        while (retries-- > 0) {
-            try {
-                Command command = new Command();
-                command.listener = listener;
-                command.runnable = runnable;
-                command.description = description;
-                command.isForegroundPriority = isForeground;
-                queue.put(command);
-                return;
-            } catch (InterruptedException ie) {
-                SystemClock.sleep(200);
-                e = ie;
-            }
-        }
-        throw new Error(e);
+    public List<CommandLaneStatistics> getCommandLaneStatistics() {
+        return commandScheduler.getLaneStatistics();
     }
 
     Backend getBackend(LegacyAccount account) {
@@ -384,12 +360,12 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void refreshFolderList(final LegacyAccount account) {
-        put("refreshFolderList", null, () -> refreshFolderListSynchronous(account));
+        put(account, "refreshFolderList", null, () -> refreshFolderListSynchronous(account));
     }
 
     public void refreshFolderListBlocking(LegacyAccount account) {
         final CountDownLatch latch = new CountDownLatch(1);
-        putBackground("refreshFolderListBlocking", null, () -> {
+        putBackground(account, "refreshFolderListBlocking", null, () -> {
             try {
                 refreshFolderListSynchronous(account);
             } finally {
@@ -541,7 +517,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void loadMoreMessages(LegacyAccount account, long folderId) {
-        putBackground("loadMoreMessages", null, () -> loadMoreMessagesSynchronous(account, folderId));
+        putBackground(account, "loadMoreMessages", null, () -> loadMoreMessagesSynchronous(account, folderId));
     }
 
     public void loadMoreMessagesSynchronous(LegacyAccount account, long folderId) {
@@ -564,7 +540,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
      * Start background synchronization of the specified folder.
      */
     public void synchronizeMailbox(LegacyAccount account, long folderId, boolean notify, MessagingListener listener) {
-        putBackground("synchronizeMailbox", listener, () ->
+        putBackground(account, "synchronizeMailbox", listener, () ->
                 synchronizeMailboxSynchronous(account, folderId, notify, listener, new NotificationState())
         );
     }
@@ -573,7 +549,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         long folderId = getFolderId(account, folderServerId);
 
         final CountDownLatch latch = new CountDownLatch(1);
-        putBackground("synchronizeMailbox", null, () -> {
+        putBackground(account, "synchronizeMailbox", null, () -> {
             try {
                 synchronizeMailboxSynchronous(account, folderId, true, null, new NotificationState());
             } finally {
@@ -715,7 +691,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     void processPendingCommands(final LegacyAccount account) {
-        putBackground("processPendingCommands", null, new Runnable() {
+        putBackground(account, "processPendingCommands", null, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -734,7 +710,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
     public void processPendingCommandsSynchronous(LegacyAccount account) throws MessagingException {
         LocalStore localStore = localStoreProvider.getInstance(account);
-        List<PendingCommand> commands = localStore.getPendingCommands();
+        List<PendingCommand> commands = coalescePendingCommands(localStore, localStore.getPendingCommands());
 
         PendingCommand processingCommand = null;
         try {
@@ -781,6 +757,20 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         }
     }
 
+    private List<PendingCommand> coalescePendingCommands(LocalStore localStore, List<PendingCommand> commands)
+            throws MessagingException {
+        CoalescedPendingCommands coalescedCommands = pendingCommandCoalescer.coalesce(commands);
+        if (coalescedCommands.getHasChanges()) {
+            // Persist the merged commands so the work isn't repeated if processing fails
+            localStore.replacePendingCommands(coalescedCommands.getUpdatedCommands(),
+                    coalescedCommands.getRemovedCommands());
+
+            Log.d("Coalesced %d pending commands into %d", commands.size(), coalescedCommands.getCommands().size());
+        }
+
+        return coalescedCommands.getCommands();
+    }
+
     /**
      * Process a pending append message command. This command uploads a local message to the
      * server, first checking to be sure that the server message is not newer than
@@ -1072,7 +1062,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
         setFlagInCache(account, messageIds, flag, newState);
 
-        putBackground("setFlag", null, () ->
+        putBackground(account, "setFlag", null, () ->
             setFlagSynchronous(account, messageIds, flag, newState, false)
         );
     }
@@ -1082,7 +1072,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
         setFlagForThreadsInCache(account, threadRootIds, flag, newState);
 
-        putBackground("setFlagForThreads", null, () ->
+        putBackground(account, "setFlagForThreads", null, () ->
             setFlagSynchronous(account, threadRootIds, flag, newState, true)
         );
     }
@@ -1211,14 +1201,14 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void loadMessageRemotePartial(LegacyAccount account, long folderId, String uid, MessagingListener listener) {
-        put("loadMessageRemotePartial", listener, () ->
+        put(account, "loadMessageRemotePartial", listener, () ->
             loadMessageRemoteSynchronous(account, folderId, uid, listener, true)
         );
     }
 
     //TODO: Fix the callback mess. See GH-782
     public void loadMessageRemote(LegacyAccount account, long folderId, String uid, MessagingListener listener) {
-        put("loadMessageRemote", listener, () ->
+        put(account, "loadMessageRemote", listener, () ->
             loadMessageRemoteSynchronous(account, folderId, uid, listener, false)
         );
     }
@@ -1320,7 +1310,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
             setFlagInCache(account, messageIds, Flag.SEEN, true);
         }
 
-        putBackground("markMessageAsOpened", null, () -> {
+        putBackground(account, "markMessageAsOpened", null, () -> {
             markMessageAsOpenedBlocking(account, message, markMessageAsRead);
         });
     }
@@ -1348,7 +1338,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void clearNewMessages(LegacyAccount account) {
-        put("clearNewMessages", null, () -> clearNewMessagesBlocking(account));
+        put(account, "clearNewMessages", null, () -> clearNewMessagesBlocking(account));
     }
 
     private void clearNewMessagesBlocking(LegacyAccount account) {
@@ -1359,7 +1349,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void loadAttachment(final LegacyAccount account, final LocalMessage message, final Part part,
             final MessagingListener listener) {
 
-        put("loadAttachment", listener, new Runnable() {
+        put(account, "loadAttachment", listener, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -1440,7 +1430,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
      */
     public void sendPendingMessages(final LegacyAccount account,
             MessagingListener listener) {
-        putBackground("sendPendingMessages", listener, new Runnable() {
+        putBackground(account, "sendPendingMessages", listener, new Runnable() {
             @Override
             public void run() {
                 if (messagesPendingSend(account)) {
@@ -1716,7 +1706,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         actOnMessageGroup(srcAccount, srcFolderId, messageReferences, (account, messageFolder, messages) -> {
             suppressMessages(account, messages);
 
-            putBackground("moveMessages", null, () ->
+            putBackground(srcAccount, "moveMessages", null, () ->
                     moveOrCopyMessageSynchronous(account, srcFolderId, messages, destFolderId, MoveOrCopyFlavor.MOVE)
             );
         });
@@ -1727,7 +1717,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         actOnMessageGroup(srcAccount, srcFolderId, messageReferences, (account, messageFolder, messages) -> {
             suppressMessages(account, messages);
 
-            putBackground("moveMessagesInThread", null, () -> {
+            putBackground(srcAccount, "moveMessagesInThread", null, () -> {
                 try {
                     List<LocalMessage> messagesInThreads = collectMessagesInThreads(account, messages);
                     moveOrCopyMessageSynchronous(account, srcFolderId, messagesInThreads, destFolderId,
@@ -1746,7 +1736,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void copyMessages(LegacyAccount srcAccount, long srcFolderId,
             List<MessageReference> messageReferences, long destFolderId) {
         actOnMessageGroup(srcAccount, srcFolderId, messageReferences, (account, messageFolder, messages) -> {
-            putBackground("copyMessages", null, () ->
+            putBackground(srcAccount, "copyMessages", null, () ->
                     moveOrCopyMessageSynchronous(srcAccount, srcFolderId, messages, destFolderId, MoveOrCopyFlavor.COPY)
             );
         });
@@ -1755,7 +1745,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void copyMessagesInThread(LegacyAccount srcAccount, long srcFolderId,
             final List<MessageReference> messageReferences, long destFolderId) {
         actOnMessageGroup(srcAccount, srcFolderId, messageReferences, (account, messageFolder, messages) -> {
-            putBackground("copyMessagesInThread", null, () -> {
+            putBackground(srcAccount, "copyMessagesInThread", null, () -> {
                 try {
                     List<LocalMessage> messagesInThreads = collectMessagesInThreads(account, messages);
                     moveOrCopyMessageSynchronous(account, srcFolderId, messagesInThreads, destFolderId,
@@ -1873,7 +1863,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void moveToDraftsFolder(LegacyAccount account, long folderId, List<MessageReference> messages){
-        putBackground("moveToDrafts", null, () -> moveToDraftsFolderInBackground(account, folderId, messages));
+        putBackground(account, "moveToDrafts", null, () -> moveToDraftsFolderInBackground(account, folderId, messages));
     }
 
     private void moveToDraftsFolderInBackground(LegacyAccount account, long folderId, List<MessageReference> messages) {
@@ -1909,7 +1899,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void expunge(LegacyAccount account, long folderId) {
-        putBackground("expunge", null, () -> {
+        putBackground(account, "expunge", null, () -> {
             queueExpunge(account, folderId);
             processPendingCommands(account);
         });
@@ -1941,7 +1931,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void deleteThreads(final List<MessageReference> messages) {
         actOnMessagesGroupedByAccountAndFolder(messages, (account, messageFolder, accountMessages) -> {
             suppressMessages(account, accountMessages);
-            putBackground("deleteThreads", null, () ->
+            putBackground(account, "deleteThreads", null, () ->
                 deleteThreadsSynchronous(account, messageFolder.getDatabaseId(), accountMessages, false)
             );
         });
@@ -1985,7 +1975,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     private void deleteMessages(List<MessageReference> messages, boolean skipTrashFolder) {
         actOnMessagesGroupedByAccountAndFolder(messages, (account, messageFolder, accountMessages) -> {
             suppressMessages(account, accountMessages);
-            putBackground("deleteMessages", null, () ->
+            putBackground(account, "deleteMessages", null, () ->
                 deleteMessagesSynchronous(account, messageFolder.getDatabaseId(), accountMessages, skipTrashFolder)
             );
         });
@@ -2137,7 +2127,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void emptySpam(final LegacyAccount account, MessagingListener listener) {
-        putBackground("emptySpam", listener, new Runnable() {
+        putBackground(account, "emptySpam", listener, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -2189,7 +2179,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void emptyTrash(final LegacyAccount account, MessagingListener listener) {
-        putBackground("emptyTrash", listener, new Runnable() {
+        putBackground(account, "emptyTrash", listener, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -2228,7 +2218,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void clearFolder(LegacyAccount account, long folderId) {
-        putBackground("clearFolder", null, () ->
+        putBackground(account, "clearFolder", null, () ->
                 clearFolderSynchronous(account, folderId)
         );
     }
@@ -2317,21 +2307,20 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         for (MessagingListener l : getListeners(listener)) {
             l.checkMailStarted(context, account);
         }
-        putBackground("checkMail", listener, new Runnable() {
+        putBackground(account, "checkMail", listener, new Runnable() {
             @Override
             public void run() {
+                Collection<LegacyAccount> accounts;
+                if (account != null) {
+                    accounts = new ArrayList<>(1);
+                    accounts.add(account);
+                } else {
+                    accounts = preferences.getAccounts();
+                }
 
                 try {
                     Log.i("Starting mail check");
 
-                    Collection<LegacyAccount> accounts;
-                    if (account != null) {
-                        accounts = new ArrayList<>(1);
-                        accounts.add(account);
-                    } else {
-                        accounts = preferences.getAccounts();
-                    }
-
                     for (final LegacyAccount account : accounts) {
                         checkMailForAccount(account, ignoreLastCheckedTime, notify, listener);
                     }
@@ -2339,22 +2328,37 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
                 } catch (Exception e) {
                     Log.e(e, "Unable to synchronize mail");
                 }
-                putBackground("finalize sync", null, new Runnable() {
-                            @Override
-                            public void run() {
 
-                                Log.i("Finished mail sync");
+                Runnable finalizeSync = new Runnable() {
+                    @Override
+                    public void run() {
 
-                                if (wakeLock != null) {
-                                    wakeLock.release();
-                                }
-                                for (MessagingListener l : getListeners(listener)) {
-                                    l.checkMailFinished(context, account);
-                                }
+                        Log.i("Finished mail sync");
 
-                            }
+                        if (wakeLock != null) {
+                            wakeLock.release();
+                        }
+                        for (MessagingListener l : getListeners(listener)) {
+                            l.checkMailFinished(context, account);
+                        }
+
+                    }
+                };
+
+                if (accounts.isEmpty()) {
+                    putBackground(null, "finalize sync", null, finalizeSync);
+                    return;
+                }
+
+                // The sync commands run in the lanes of the individual accounts. Finish after all of them are done.
+                AtomicInteger remainingAccounts = new AtomicInteger(accounts.size());
+                for (LegacyAccount syncedAccount : accounts) {
+                    putBackground(syncedAccount, "finalize sync", null, () -> {
+                        if (remainingAccounts.decrementAndGet() == 0) {
+                            finalizeSync.run();
                         }
-                );
+                    });
+                }
             }
         });
     }
@@ -2389,7 +2393,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         } catch (MessagingException e) {
             Log.e(e, "Unable to synchronize account %s", account);
         } finally {
-            putBackground("clear notification flag for " + account, null, new Runnable() {
+            putBackground(account, "clear notification flag for " + account, null, new Runnable() {
                         @Override
                         public void run() {
                             Log.v("Clearing notification flag for %s", account);
@@ -2405,7 +2409,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
     private void synchronizeFolder(LegacyAccount account, LocalFolder folder, boolean ignoreLastCheckedTime,
             boolean notify, MessagingListener listener, NotificationState notificationState) {
-        putBackground("sync" + folder.getServerId(), null, () -> {
+        putBackground(account, "sync" + folder.getServerId(), null, () -> {
             synchronizeFolderInBackground(account, folder, ignoreLastCheckedTime, notify, listener, notificationState);
         });
     }
@@ -2460,7 +2464,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void compact(LegacyAccount account) {
-        putBackground("compact:" + account, null, () -> {
+        putBackground(account, "compact:" + account, null, () -> {
             try {
                 MessageStore messageStore = messageStoreManager.getMessageStore(account);
                 messageStore.compact();
@@ -2491,30 +2495,8 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         }
     }
 
-    private static AtomicInteger sequencing = new AtomicInteger(0);
-
-    private static class Command implements Comparable<Command> {
-        public Runnable runnable;
-        public MessagingListener listener;
-        public String description;
-        boolean isForegroundPriority;
-
-        int sequence = sequencing.getAndIncrement();
-
-        @Override
-        public int compareTo(@NonNull Command other) {
-            if (other.isForegroundPriority && !isForegroundPriority) {
-                return 1;
-            } else if (!other.isForegroundPriority && isForegroundPriority) {
-                return -1;
-            } else {
-                return (sequence - other.sequence);
-            }
-        }
-    }
-
     public void clearNotifications(LocalMessageSearch search) {
-        put("clearNotifications", null, () -> {
+        put(null, "clearNotifications", null, () -> {
             notificationOperations.clearNotifications(search);
         });
     }
@@ -2722,6 +2704,13 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
             }
         }
 
+        @Override
+        public void syncDownloadThroughput(@NotNull String folderServerId, int connectionIndex, int messageCount,
+                long byteCount, long durationMillis) {
+            Log.d("Downloaded %d messages (%d bytes) for %s:%s over connection %d in %d ms", messageCount, byteCount,
+                    account, folderServerId, connectionIndex, durationMillis);
+        }
+
         @Override
         public void syncFinished(@NotNull String folderServerId) {
             long folderId = getFolderId(account, folderServerId);
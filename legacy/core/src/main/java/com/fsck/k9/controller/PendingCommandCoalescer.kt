@@ -0,0 +1,175 @@
+package com.fsck.k9.controller
+
+import com.fsck.k9.controller.MessagingControllerCommands.PendingAppend
+import com.fsck.k9.controller.MessagingControllerCommands.PendingCommand
+import com.fsck.k9.controller.MessagingControllerCommands.PendingDelete
+import com.fsck.k9.controller.MessagingControllerCommands.PendingExpunge
+import com.fsck.k9.controller.MessagingControllerCommands.PendingMarkAllAsRead
+import com.fsck.k9.controller.MessagingControllerCommands.PendingMoveAndMarkAsRead
+import com.fsck.k9.controller.MessagingControllerCommands.PendingMoveOrCopy
+import com.fsck.k9.controller.MessagingControllerCommands.PendingReplace
+import com.fsck.k9.controller.MessagingControllerCommands.PendingSetFlag
+import com.fsck.k9.mail.Flag
+
+/**
+ * Merges pending [PendingSetFlag] and [PendingDelete] commands that target the same folder, so they can be executed
+ * with one remote operation each.
+ *
+ * Commands are only merged as long as no other command touches the same folder in between. A flag change is dropped
+ * when a later command changes the same flag of the same message or the message is deleted later.
+ */
+internal class PendingCommandCoalescer {
+    fun coalesce(commands: List<PendingCommand>): CoalescedPendingCommands {
+        val replacements = mutableMapOf<PendingCommand, PendingCommand?>()
+        val openGroups = mutableMapOf<Long, FolderCommandGroup>()
+
+        fun closeGroup(folderId: Long) {
+            openGroups.remove(folderId)?.let { group -> replacements.putAll(group.merge()) }
+        }
+
+        for (command in commands) {
+            when (command) {
+                is PendingSetFlag -> {
+                    if (openGroups[command.folderId]?.canAdd(command) == false) {
+                        closeGroup(command.folderId)
+                    }
+                    openGroups.getOrPut(command.folderId) { FolderCommandGroup(command.folderId) }.add(command)
+                }
+                is PendingDelete -> {
+                    openGroups.getOrPut(command.folderId) { FolderCommandGroup(command.folderId) }.add(command)
+                }
+                else -> {
+                    val folderIds = command.affectedFolderIds() ?: openGroups.keys.toList()
+                    folderIds.forEach(::closeGroup)
+                }
+            }
+        }
+        openGroups.keys.toList().forEach(::closeGroup)
+
+        val updatedCommands = mutableListOf<PendingCommand>()
+        val removedCommands = mutableListOf<PendingCommand>()
+        val remainingCommands = commands.mapNotNull { command ->
+            if (command !in replacements) return@mapNotNull command
+
+            val replacement = replacements[command]
+            if (replacement == null) {
+                removedCommands.add(command)
+            } else {
+                updatedCommands.add(replacement)
+            }
+            replacement
+        }
+
+        return CoalescedPendingCommands(remainingCommands, updatedCommands, removedCommands)
+    }
+
+    /**
+     * Returns the IDs of the folders this command operates on, or `null` if they are not known.
+     */
+    private fun PendingCommand.affectedFolderIds(): List<Long>? {
+        return when (this) {
+            is PendingAppend -> listOf(folderId)
+            is PendingReplace -> listOf(folderId)
+            is PendingExpunge -> listOf(folderId)
+            is PendingMarkAllAsRead -> listOf(folderId)
+            is PendingMoveOrCopy -> listOf(srcFolderId, destFolderId)
+            is PendingMoveAndMarkAsRead -> listOf(srcFolderId, destFolderId)
+            else -> null
+        }
+    }
+}
+
+/**
+ * The result of [PendingCommandCoalescer.coalesce].
+ *
+ * @param commands The commands to execute, in order.
+ * @param updatedCommands Merged commands that reuse the database ID of one of the commands they replace.
+ * @param removedCommands Commands that have been merged into other commands or are no longer necessary.
+ */
+internal class CoalescedPendingCommands(
+    val commands: List<PendingCommand>,
+    val updatedCommands: List<PendingCommand>,
+    val removedCommands: List<PendingCommand>,
+) {
+    val hasChanges: Boolean
+        get() = updatedCommands.isNotEmpty() || removedCommands.isNotEmpty()
+}
+
+private class FolderCommandGroup(private val folderId: Long) {
+    private val setFlagCommands = mutableListOf<PendingSetFlag>()
+    private val deleteCommands = mutableListOf<PendingDelete>()
+    private val flagStates = mutableMapOf<Flag, MutableMap<String, Boolean>>()
+    private val deletedUids = linkedSetOf<String>()
+
+    /**
+     * A flag change of a message that has already been deleted can't be moved in front of the delete operation.
+     */
+    fun canAdd(command: PendingSetFlag): Boolean {
+        return command.uids.none { it in deletedUids }
+    }
+
+    fun add(command: PendingSetFlag) {
+        setFlagCommands.add(command)
+
+        val uidStates = flagStates.getOrPut(command.flag) { linkedMapOf() }
+        for (uid in command.uids) {
+            uidStates.remove(uid)
+            uidStates[uid] = command.newState
+        }
+    }
+
+    fun add(command: PendingDelete) {
+        deleteCommands.add(command)
+        deletedUids.addAll(command.uids)
+
+        // Changing the flags of a message that is going to be deleted is pointless
+        for (uidStates in flagStates.values) {
+            uidStates.keys.removeAll(command.uids.toSet())
+        }
+    }
+
+    /**
+     * Returns the replacement for every command in this group that changed. `null` means the command is removed.
+     */
+    fun merge(): Map<PendingCommand, PendingCommand?> {
+        val mergedSetFlagCommands = flagStates.flatMap { (flag, uidStates) ->
+            uidStates.entries
+                .groupBy(keySelector = { it.value }, valueTransform = { it.key })
+                .map { (newState, uids) -> PendingSetFlag.create(folderId, newState, flag, uids) }
+        }
+        val mergedDeleteCommands = if (deletedUids.isEmpty()) {
+            emptyList()
+        } else {
+            listOf(PendingDelete.create(folderId, deletedUids.toList()))
+        }
+
+        return assignReplacements(setFlagCommands, mergedSetFlagCommands) { original, merged ->
+            original.flag == merged.flag && original.newState == merged.newState && original.uids == merged.uids
+        } + assignReplacements(deleteCommands, mergedDeleteCommands) { original, merged ->
+            original.uids == merged.uids
+        }
+    }
+
+    /**
+     * Merged commands take the place of the original commands in order. There are never more merged commands than
+     * original ones.
+     */
+    private fun <T : PendingCommand> assignReplacements(
+        originalCommands: List<T>,
+        mergedCommands: List<T>,
+        isSameCommand: (original: T, merged: T) -> Boolean,
+    ): Map<PendingCommand, PendingCommand?> {
+        check(mergedCommands.size <= originalCommands.size)
+
+        return buildMap {
+            originalCommands.forEachIndexed { index, original ->
+                val merged = mergedCommands.getOrNull(index)
+                if (merged == null) {
+                    put(original, null)
+                } else if (!isSameCommand(original, merged)) {
+                    put(original, merged.apply { databaseId = original.databaseId })
+                }
+            }
+        }
+    }
+}
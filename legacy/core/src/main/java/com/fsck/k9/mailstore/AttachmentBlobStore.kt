@@ -0,0 +1,160 @@
+package com.fsck.k9.mailstore
+
+import android.database.sqlite.SQLiteDatabase
+import java.io.File
+import java.io.IOException
+import net.thunderbird.core.logging.legacy.Log
+import okio.HashingSink
+import okio.blackholeSink
+import okio.buffer
+import okio.source
+
+private const val DATA_LOCATION_ON_DISK = 2
+private const val PARTIAL_FILE_SUFFIX = ".partial"
+
+private val BLOB_KEY_REGEX = Regex("[0-9a-f]{64}")
+private val MESSAGE_PART_ID_REGEX = Regex("[0-9]+")
+
+/**
+ * Content-addressed storage for the data of message parts that is too large to be stored in the database.
+ *
+ * Files are named after the SHA-256 hash of their contents (the blob key). Message parts with identical contents, e.g.
+ * the same attachment in multiple copies of a message, share a single file. The blob key is stored in the `blob_key`
+ * column of `message_parts`. Triggers keep the number of rows referencing a blob up to date in the `blobs` table.
+ *
+ * Message parts that were written before blob keys were introduced don't have a blob key. Their data is stored in a
+ * file named after the message part ID.
+ *
+ * Methods that access the database need to be called inside a write transaction. This makes sure no other thread adds
+ * a reference to a blob while it's being deleted.
+ */
+class AttachmentBlobStore(private val storageFilesProvider: StorageFilesProvider) {
+    fun getFile(messagePartId: Long, blobKey: String?): File {
+        return if (blobKey != null) getBlobFile(blobKey) else getMessagePartFile(messagePartId)
+    }
+
+    fun getBlobFile(blobKey: String): File {
+        return File(storageFilesProvider.getAttachmentDirectory(), blobKey)
+    }
+
+    fun getMessagePartFile(messagePartId: Long): File {
+        return File(storageFilesProvider.getAttachmentDirectory(), messagePartId.toString())
+    }
+
+    /**
+     * Moves [file] into the blob store and returns its blob key.
+     *
+     * If a blob with the same contents already exists, [file] is deleted instead.
+     */
+    @Throws(IOException::class)
+    fun storeFile(file: File): String {
+        val blobKey = computeBlobKey(file)
+        val blobFile = getBlobFile(blobKey)
+
+        if (blobFile.exists()) {
+            deleteFile(file)
+        } else if (!file.renameTo(blobFile)) {
+            copyToBlobFile(file, blobKey)
+            deleteFile(file)
+        }
+
+        return blobKey
+    }
+
+    /**
+     * Copies [file] into the blob store and returns its blob key. [file] is left untouched.
+     *
+     * Use this when the reference to the blob is written in a transaction that might still be rolled back. The original
+     * file is removed by [deleteOrphanedFiles] once the message part no longer uses it.
+     */
+    @Throws(IOException::class)
+    fun copyFile(file: File): String {
+        val blobKey = computeBlobKey(file)
+        if (!getBlobFile(blobKey).exists()) {
+            copyToBlobFile(file, blobKey)
+        }
+
+        return blobKey
+    }
+
+    private fun copyToBlobFile(file: File, blobKey: String) {
+        // Don't expose a partially written blob under its final name. Another message part could start using it.
+        val blobFile = getBlobFile(blobKey)
+        val partialFile = File(blobFile.parentFile, blobKey + PARTIAL_FILE_SUFFIX)
+        file.copyTo(target = partialFile, overwrite = true)
+        if (!partialFile.renameTo(blobFile)) {
+            throw IOException("Unable to rename file: ${partialFile.absolutePath}")
+        }
+    }
+
+    /**
+     * Deletes the files of all blobs that are no longer referenced by any message part.
+     */
+    fun deleteUnreferencedBlobs(db: SQLiteDatabase) {
+        db.rawQuery("SELECT blob_key FROM blobs WHERE ref_count <= 0", null).use { cursor ->
+            while (cursor.moveToNext()) {
+                deleteFile(getBlobFile(cursor.getString(0)))
+            }
+        }
+
+        db.execSQL("DELETE FROM blobs WHERE ref_count <= 0")
+    }
+
+    /**
+     * Deletes files in the attachment directory that don't belong to any message part, e.g. because the process was
+     * killed before the transaction that added the message part was committed.
+     */
+    fun deleteOrphanedFiles(db: SQLiteDatabase) {
+        val attachmentFiles = storageFilesProvider.getAttachmentDirectory().listFiles() ?: return
+
+        val blobKeys = db.rawQuery("SELECT blob_key FROM blobs", null).use { cursor ->
+            buildSet {
+                while (cursor.moveToNext()) {
+                    add(cursor.getString(0))
+                }
+            }
+        }
+
+        val messagePartIds = db.rawQuery(
+            "SELECT id FROM message_parts WHERE data_location = $DATA_LOCATION_ON_DISK AND blob_key IS NULL",
+            null,
+        ).use { cursor ->
+            buildSet {
+                while (cursor.moveToNext()) {
+                    add(cursor.getLong(0).toString())
+                }
+            }
+        }
+
+        for (file in attachmentFiles) {
+            val name = file.name
+            val isOrphaned = when {
+                name.endsWith(PARTIAL_FILE_SUFFIX) -> true
+                BLOB_KEY_REGEX.matches(name) -> name !in blobKeys
+                MESSAGE_PART_ID_REGEX.matches(name) -> name !in messagePartIds
+                else -> false
+            }
+
+            if (isOrphaned) {
+                Log.d("Deleting orphaned attachment file: %s", name)
+                deleteFile(file)
+            }
+        }
+    }
+
+    private fun computeBlobKey(file: File): String {
+        return HashingSink.sha256(blackholeSink()).use { hashingSink ->
+            file.source().buffer().use { source ->
+                source.readAll(hashingSink)
+            }
+
+            hashingSink.hash.hex()
+        }
+    }
+
+    private fun deleteFile(file: File) {
+        if (file.exists() && !file.delete()) {
+            Log.w("Couldn't delete attachment file: %s", file.absolutePath)
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.fsck.k9.mailstore
+
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.InflaterInputStream
+
+/**
+ * Compression of the data of message parts, i.e. the 'data' column or the file of a message part.
+ *
+ * The transfer-encoded form is compressed as it is. Decoding it first would save a bit more space, but re-encoding it
+ * when reading wouldn't necessarily reproduce the original bytes. That would break signatures covering the part.
+ *
+ * The values are stored in the 'data_compression' column of the 'message_parts' table.
+ */
+object DataCompression {
+    const val NONE = 0
+    const val DEFLATE = 1
+
+    /**
+     * Compressed data is only kept if it's at most this fraction of the original size. Otherwise decompressing it
+     * every time the part is read isn't worth the space saved.
+     */
+    private const val MAX_COMPRESSED_SIZE_RATIO = 0.9
+
+    @JvmStatic
+    fun isWorthCompressing(originalSize: Long, compressedSize: Long): Boolean {
+        return compressedSize <= originalSize * MAX_COMPRESSED_SIZE_RATIO
+    }
+
+    @JvmStatic
+    fun compress(data: ByteArray): ByteArray {
+        val outputStream = ByteArrayOutputStream(data.size / 2)
+        DeflaterOutputStream(outputStream).use { deflaterOutputStream ->
+            deflaterOutputStream.write(data)
+        }
+
+        return outputStream.toByteArray()
+    }
+
+    @JvmStatic
+    @Throws(IOException::class)
+    fun compress(source: File, destination: File) {
+        source.inputStream().use { inputStream ->
+            DeflaterOutputStream(destination.outputStream().buffered()).use { outputStream ->
+                inputStream.copyTo(outputStream)
+            }
+        }
+    }
+
+    @JvmStatic
+    fun decompress(data: ByteArray, compression: Int): ByteArray {
+        return when (compression) {
+            NONE -> data
+            else -> getDecompressingInputStream(data.inputStream(), compression).use { it.readBytes() }
+        }
+    }
+
+    @JvmStatic
+    fun getDecompressingInputStream(inputStream: InputStream, compression: Int): InputStream {
+        return when (compression) {
+            NONE -> inputStream
+            DEFLATE -> InflaterInputStream(inputStream)
+            else -> throw IllegalArgumentException("Unknown compression: $compression")
+        }
+    }
+
+    /**
+     * Returns the number of bytes the data has after decompressing it.
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun getDecompressedSize(inputStream: InputStream, compression: Int): Long {
+        return getDecompressingInputStream(inputStream, compression).use { decompressingInputStream ->
+            decompressingInputStream.copyTo(NullOutputStream)
+        }
+    }
+
+    private object NullOutputStream : OutputStream() {
+        override fun write(b: Int) = Unit
+        override fun write(b: ByteArray, off: Int, len: Int) = Unit
+    }
+}
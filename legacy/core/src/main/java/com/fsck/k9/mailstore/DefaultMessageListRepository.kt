@@ -1,7 +1,10 @@
 package com.fsck.k9.mailstore
 
 import app.k9mail.legacy.mailstore.MessageListChangedListener
+import app.k9mail.legacy.mailstore.MessageListPage
+import app.k9mail.legacy.mailstore.MessageListPageKey
 import app.k9mail.legacy.mailstore.MessageListRepository
+import app.k9mail.legacy.mailstore.MessageListSortOrder
 import app.k9mail.legacy.mailstore.MessageMapper
 import app.k9mail.legacy.mailstore.MessageStoreManager
 import java.util.concurrent.CopyOnWriteArraySet
@@ -75,6 +78,55 @@ class DefaultMessageListRepository(
         return messageStore.getThreadedMessages(selection, selectionArgs, sortOrder, mapper)
     }
 
+    /**
+     * Retrieve a page of the list of messages from [MessageStore] but override values with data from
+     * [MessageListCache].
+     */
+    override fun <T> getMessagesPage(
+        accountUuid: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
+        messageMapper: MessageMapper<T>,
+    ): MessageListPage<T> {
+        val messageStore = messageStoreManager.getMessageStore(accountUuid)
+        val cache = MessageListCache.getCache(accountUuid)
+
+        val mapper = if (cache.isEmpty()) messageMapper else CacheAwareMessageMapper(cache, messageMapper)
+        return messageStore.getMessagesPage(selection, selectionArgs, sortOrder, pageKey, pageSize, mapper)
+    }
+
+    /**
+     * Retrieve a page of the threaded list of messages from [MessageStore] but override values with data from
+     * [MessageListCache].
+     */
+    override fun <T> getThreadedMessagesPage(
+        accountUuid: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
+        messageMapper: MessageMapper<T>,
+        selectsWholeFolders: Boolean,
+    ): MessageListPage<T> {
+        val messageStore = messageStoreManager.getMessageStore(accountUuid)
+        val cache = MessageListCache.getCache(accountUuid)
+
+        val mapper = if (cache.isEmpty()) messageMapper else CacheAwareMessageMapper(cache, messageMapper)
+        return messageStore.getThreadedMessagesPage(
+            selection,
+            selectionArgs,
+            sortOrder,
+            pageKey,
+            pageSize,
+            mapper,
+            selectsWholeFolders,
+        )
+    }
+
     /**
      * Retrieve list of messages in a thread from [MessageStore] but override values with data from [MessageListCache].
      */
@@ -18,16 +18,27 @@ import org.apache.commons.io.IOUtils;
 public class FileBackedBody implements Body, SizeAware, RawDataBody {
     private final File file;
     private final String encoding;
+    private final int compression;
+    private long decompressedSize = -1;
 
     public FileBackedBody(File file, String encoding) {
+        this(file, encoding, DataCompression.NONE);
+    }
+
+    /**
+     * @param compression
+     *         One of the {@link DataCompression} constants. The file is decompressed while it's being read.
+     */
+    public FileBackedBody(File file, String encoding, int compression) {
         this.file = file;
         this.encoding = encoding;
+        this.compression = compression;
     }
 
     @Override
     public InputStream getInputStream() throws MessagingException {
         try {
-            return new FileInputStream(file);
+            return DataCompression.getDecompressingInputStream(new FileInputStream(file), compression);
         } catch (FileNotFoundException e) {
             throw new MessagingException("File not found", e);
         }
@@ -50,7 +61,19 @@ public class FileBackedBody implements Body, SizeAware, RawDataBody {
 
     @Override
     public long getSize() {
-        return file.length();
+        if (compression == DataCompression.NONE) {
+            return file.length();
+        }
+
+        if (decompressedSize == -1) {
+            try {
+                decompressedSize = DataCompression.getDecompressedSize(new FileInputStream(file), compression);
+            } catch (IOException e) {
+                return file.length();
+            }
+        }
+
+        return decompressedSize;
     }
 
     @Override
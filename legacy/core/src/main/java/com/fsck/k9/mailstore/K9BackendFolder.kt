@@ -79,10 +79,18 @@ class K9BackendFolder(
         return messageStore.getMessageFlags(folderId, messageServerId)
     }
 
+    override fun getMessageFlags(messageServerIds: Collection<String>): Map<String, Set<Flag>> {
+        return messageStore.getMessageFlags(folderId, messageServerIds)
+    }
+
     override fun setMessageFlag(messageServerId: String, flag: Flag, value: Boolean) {
         messageStore.setMessageFlag(folderId, messageServerId, flag, value)
     }
 
+    override fun setMessageFlags(flagChanges: Map<String, Map<Flag, Boolean>>) {
+        messageStore.setMessageFlags(folderId, flagChanges)
+    }
+
     override fun saveMessage(message: Message, downloadState: MessageDownloadState) {
         requireMessageServerId(message)
 
@@ -90,6 +98,16 @@ class K9BackendFolder(
         messageStore.saveRemoteMessage(folderId, message.uid, messageData)
     }
 
+    override fun saveMessages(messages: List<Message>, downloadState: MessageDownloadState) {
+        if (messages.isEmpty()) return
+        messages.forEach(::requireMessageServerId)
+
+        val messageDataSequence = messages.asSequence().map { message ->
+            message.uid to saveMessageDataCreator.createSaveMessageData(message, downloadState)
+        }
+        messageStore.saveRemoteMessages(folderId, messageDataSequence)
+    }
+
     override fun getOldestMessageDate(): Date? {
         return messageStore.getOldestMessageDate(folderId)
     }
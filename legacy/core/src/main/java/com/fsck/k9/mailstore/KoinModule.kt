@@ -50,6 +50,7 @@ val mailStoreModule = module {
             messagePreviewCreator = get(),
             messageFulltextCreator = get(),
             attachmentCounter = get(),
+            structuredDataExtractor = get(),
         )
     }
     single<MessageListRepository> { DefaultMessageListRepository(messageStoreManager = get()) }
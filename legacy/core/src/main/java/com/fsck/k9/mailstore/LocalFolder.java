@@ -9,7 +9,6 @@ import androidx.annotation.Nullable;
 import app.k9mail.legacy.mailstore.MoreMessages;
 import com.fsck.k9.K9;
 import app.k9mail.legacy.message.controller.MessageReference;
-import com.fsck.k9.helper.FileHelper;
 import com.fsck.k9.helper.Utility;
 import com.fsck.k9.mail.Body;
 import com.fsck.k9.mail.BodyPart;
@@ -246,9 +245,8 @@ public class LocalFolder {
             @Override
             public Integer doDbWork(final SQLiteDatabase db) {
                 int unreadMessageCount = 0;
-                Cursor cursor = db.query("messages", new String[] { "COUNT(id)" },
-                        "folder_id = ? AND empty = 0 AND deleted = 0 AND read=0",
-                        new String[] { Long.toString(databaseId) }, null, null, null);
+                Cursor cursor = db.query("folder_counts", new String[] { "unread_count" },
+                        "folder_id = ?", new String[] { Long.toString(databaseId) }, null, null, null);
 
                 try {
                     if (cursor.moveToFirst()) {
@@ -367,6 +365,8 @@ public class LocalFolder {
                 "boundary",             // 13
                 "content_id",           // 14
                 "server_extra",         // 15
+                "blob_key",             // 16
+                "data_compression",     // 17
         };
         Cursor cursor = db.query("message_parts", columns, "root = ?",
                 new String[] { String.valueOf(message.getMessagePartId()) }, null, null, "seq");
@@ -433,16 +433,19 @@ public class LocalFolder {
             multipart.setEpilogue(epilogue);
         } else if (dataLocation == DataLocation.IN_DATABASE) {
             String encoding = cursor.getString(7);
-            byte[] data = cursor.getBlob(10);
+            int compression = cursor.getInt(17);
+            byte[] data = DataCompression.decompress(cursor.getBlob(10), compression);
 
             Body body = new BinaryMemoryBody(data, encoding);
             part.setBody(body);
         } else if (dataLocation == DataLocation.ON_DISK) {
             String encoding = cursor.getString(7);
+            String blobKey = cursor.getString(16);
+            int compression = cursor.getInt(17);
 
-            File file = localStore.getAttachmentFile(Long.toString(id));
+            File file = localStore.getAttachmentFile(id, blobKey);
             if (file.exists()) {
-                Body body = new FileBackedBody(file, encoding);
+                Body body = new FileBackedBody(file, encoding, compression);
                 part.setBody(body);
             }
         }
@@ -602,11 +605,6 @@ public class LocalFolder {
         });
     }
 
-    private void moveTemporaryFile(File tempFile, String messagePartId) throws IOException {
-        File destinationFile = localStore.getAttachmentFile(messagePartId);
-        FileHelper.renameOrMoveByCopying(tempFile, destinationFile);
-    }
-
     private long updateOrInsertMessagePart(SQLiteDatabase db, ContentValues cv, Part part, long existingMessagePartId)
             throws IOException, MessagingException {
         byte[] headerBytes = getHeaderBytes(part);
@@ -614,6 +612,7 @@ public class LocalFolder {
         cv.put("mime_type", part.getMimeType());
         cv.put("header", headerBytes);
         cv.put("type", MessagePartType.UNKNOWN);
+        cv.put("data_compression", DataCompression.NONE);
 
         File file = null;
         Body body = part.getBody();
@@ -627,6 +626,13 @@ public class LocalFolder {
             file = leafPartToContentValues(cv, part, body);
         }
 
+        if (file != null) {
+            String blobKey = localStore.getAttachmentBlobStore().storeFile(file);
+            cv.put("blob_key", blobKey);
+        } else {
+            cv.putNull("blob_key");
+        }
+
         long messagePartId;
         if (existingMessagePartId != INVALID_MESSAGE_PART_ID) {
             messagePartId = existingMessagePartId;
@@ -635,10 +641,6 @@ public class LocalFolder {
             messagePartId = db.insertOrThrow("message_parts", null, cv);
         }
 
-        if (file != null) {
-            moveTemporaryFile(file, Long.toString(messagePartId));
-        }
-
         return messagePartId;
     }
 
@@ -863,7 +865,7 @@ public class LocalFolder {
 
         open();
 
-        this.localStore.getDatabase().execute(false, new DbCallback<Void>() {
+        this.localStore.getDatabase().execute(true, new DbCallback<Void>() {
             @Override
             public Void doDbWork(final SQLiteDatabase db) throws MessagingException {
                 Cursor cursor = db.query("messages", new String[] { "message_part_id" },
@@ -882,6 +884,7 @@ public class LocalFolder {
                         "(SELECT id FROM messages WHERE folder_id = ?)", folderIdArg);
                 db.execSQL("DELETE FROM messages WHERE folder_id = ?", folderIdArg);
                 db.execSQL("DELETE FROM folder_extra_values WHERE folder_id = ?", folderIdArg);
+                localStore.getAttachmentBlobStore().deleteUnreferencedBlobs(db);
 
                 setMoreMessages(MoreMessages.UNKNOWN);
                 resetLastChecked(db);
@@ -1067,18 +1070,35 @@ public class LocalFolder {
         db.delete("messages", "id = ?", new String[] { Long.toString(messageId) });
     }
 
+    /**
+     * Deletes the data derived from the content of a message, i.e. search index entries and structured data.
+     */
     void deleteFulltextIndexEntry(SQLiteDatabase db, long messageId) {
         String[] idArg = { Long.toString(messageId) };
         db.delete("messages_fulltext", "docid = ?", idArg);
+        db.delete("messages_search", "docid = ?", idArg);
+        db.delete("structured_data", "message_id = ?", idArg);
     }
 
     void compactFulltextEntries(SQLiteDatabase db) {
         db.execSQL("INSERT INTO messages_fulltext(messages_fulltext) VALUES('optimize')");
+        db.execSQL("INSERT INTO messages_search(messages_search) VALUES('optimize')");
     }
 
     void deleteMessagePartsAndDataFromDisk(final long rootMessagePartId) throws MessagingException {
         deleteMessageDataFromDisk(rootMessagePartId);
         deleteMessageParts(rootMessagePartId);
+        deleteUnreferencedBlobs();
+    }
+
+    private void deleteUnreferencedBlobs() throws MessagingException {
+        localStore.getDatabase().execute(true, new DbCallback<Void>() {
+            @Override
+            public Void doDbWork(final SQLiteDatabase db) {
+                localStore.getAttachmentBlobStore().deleteUnreferencedBlobs(db);
+                return null;
+            }
+        });
     }
 
     private void deleteMessageParts(final long rootMessagePartId) throws MessagingException {
@@ -1102,13 +1122,14 @@ public class LocalFolder {
     }
 
     private void deleteMessagePartsFromDisk(SQLiteDatabase db, long rootMessagePartId) {
+        // Blob files are deleted by deleteUnreferencedBlobs() once the last reference to them is gone
         Cursor cursor = db.query("message_parts", new String[] { "id" },
-                "root = ? AND data_location = " + DataLocation.ON_DISK,
+                "root = ? AND data_location = " + DataLocation.ON_DISK + " AND blob_key IS NULL",
                 new String[] { Long.toString(rootMessagePartId) }, null, null, null);
         try {
             while (cursor.moveToNext()) {
-                String messagePartId = cursor.getString(0);
-                File file = localStore.getAttachmentFile(messagePartId);
+                long messagePartId = cursor.getLong(0);
+                File file = localStore.getAttachmentFile(messagePartId, null);
                 if (file.exists()) {
                     if (!file.delete() && generalSettingsManager.getConfig().getDebugging().isDebugLoggingEnabled()) {
                         Log.d("Couldn't delete message part file: %s", file.getAbsolutePath());
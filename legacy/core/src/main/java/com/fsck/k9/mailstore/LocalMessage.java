@@ -312,6 +312,7 @@ public class LocalMessage extends MimeMessage {
                 cv.putNull("internal_date");
                 cv.putNull("mime_type");
                 cv.putNull("encryption_type");
+                cv.put("structured_data_extracted", 0);
 
                 db.update("messages", cv, "id = ?", new String[] { Long.toString(databaseId) });
 
@@ -130,13 +130,16 @@ public class LocalStore {
 
     static final String[] UID_CHECK_PROJECTION = { "uid" };
 
-    private static final String[] GET_ATTACHMENT_COLS = new String[] { "id", "root", "data_location", "encoding", "data" };
+    private static final String[] GET_ATTACHMENT_COLS =
+            new String[] { "id", "root", "data_location", "encoding", "data", "blob_key", "data_compression" };
 
     private static final int ATTACH_PART_ID_INDEX = 0;
     private static final int ATTACH_ROOT_INDEX = 1;
     private static final int ATTACH_LOCATION_INDEX = 2;
     private static final int ATTACH_ENCODING_INDEX = 3;
     private static final int ATTACH_DATA_INDEX = 4;
+    private static final int ATTACH_BLOB_KEY_INDEX = 5;
+    private static final int ATTACH_COMPRESSION_INDEX = 6;
 
     /**
      * Maximum number of UIDs to check for existence at once.
@@ -162,25 +165,29 @@ public class LocalStore {
     private final PendingCommandSerializer pendingCommandSerializer;
     private final AttachmentInfoExtractor attachmentInfoExtractor;
     private final StorageFilesProvider storageFilesProvider;
+    private final AttachmentBlobStore attachmentBlobStore;
 
     private final LegacyAccount account;
     private final LockableDatabase database;
     private final OutboxStateRepository outboxStateRepository;
     private GeneralSettingsManager generalSettingsManager;
 
-    static LocalStore createInstance(LegacyAccount account, Context context, GeneralSettingsManager generalSettingsManager) throws MessagingException {
-        return new LocalStore(account, context, generalSettingsManager);
+    static LocalStore createInstance(LegacyAccount account, Context context, GeneralSettingsManager generalSettingsManager,
+            boolean writeAheadLogging) throws MessagingException {
+        return new LocalStore(account, context, generalSettingsManager, writeAheadLogging);
     }
 
     /**
      * local://localhost/path/to/database/uuid.db
      * This constructor is only used by {@link LocalStoreProvider#getInstance(LegacyAccount,GeneralSettingsManager)}
      */
-    private LocalStore(final LegacyAccount account, final Context context, final GeneralSettingsManager generalSettingsManager) throws MessagingException {
+    private LocalStore(final LegacyAccount account, final Context context, final GeneralSettingsManager generalSettingsManager,
+            boolean writeAheadLogging) throws MessagingException {
         pendingCommandSerializer = PendingCommandSerializer.getInstance();
         attachmentInfoExtractor = DI.get(AttachmentInfoExtractor.class);
         StorageFilesProviderFactory storageFilesProviderFactory = DI.get(StorageFilesProviderFactory.class);
         storageFilesProvider = storageFilesProviderFactory.createStorageFilesProvider(account.getUuid());
+        attachmentBlobStore = new AttachmentBlobStore(storageFilesProvider);
 
         this.account = account;
         this.generalSettingsManager = generalSettingsManager;
@@ -189,7 +196,8 @@ public class LocalStore {
         RealMigrationsHelper migrationsHelper = new RealMigrationsHelper();
         SchemaDefinition schemaDefinition = schemaDefinitionFactory.createSchemaDefinition(migrationsHelper);
 
-        database = new LockableDatabase(context, storageFilesProvider, schemaDefinition, generalSettingsManager);
+        database = new LockableDatabase(context, storageFilesProvider, schemaDefinition, generalSettingsManager,
+                writeAheadLogging);
         database.open();
 
         Clock clock = DI.get(Clock.class);
@@ -327,6 +335,29 @@ public class LocalStore {
         });
     }
 
+    /**
+     * Stores the new data of {@code updatedCommands} and removes {@code removedCommands} in a single transaction.
+     */
+    public void replacePendingCommands(final List<PendingCommand> updatedCommands,
+            final List<PendingCommand> removedCommands) throws MessagingException {
+        database.execute(true, new DbCallback<Void>() {
+            @Override
+            public Void doDbWork(final SQLiteDatabase db) {
+                for (PendingCommand command : updatedCommands) {
+                    ContentValues cv = new ContentValues();
+                    cv.put("command", command.getCommandName());
+                    cv.put("data", pendingCommandSerializer.serialize(command));
+                    db.update("pending_commands", cv, "id = ?", new String[] { Long.toString(command.databaseId) });
+                }
+
+                for (PendingCommand command : removedCommands) {
+                    db.delete("pending_commands", "id = ?", new String[] { Long.toString(command.databaseId) });
+                }
+                return null;
+            }
+        });
+    }
+
     public void removePendingCommands() throws MessagingException {
         database.execute(false, new DbCallback<Void>() {
             @Override
@@ -609,13 +640,21 @@ public class LocalStore {
 
     private InputStream getRawAttachmentInputStream(String partId, int location, Cursor cursor)
             throws FileNotFoundException {
+        int compression = cursor.getInt(ATTACH_COMPRESSION_INDEX);
+        return DataCompression.getDecompressingInputStream(getStoredDataInputStream(partId, location, cursor),
+                compression);
+    }
+
+    private InputStream getStoredDataInputStream(String partId, int location, Cursor cursor)
+            throws FileNotFoundException {
         switch (location) {
             case DataLocation.IN_DATABASE: {
                 byte[] data = cursor.getBlob(ATTACH_DATA_INDEX);
                 return new ByteArrayInputStream(data);
             }
             case DataLocation.ON_DISK: {
-                File file = getAttachmentFile(partId);
+                String blobKey = cursor.getString(ATTACH_BLOB_KEY_INDEX);
+                File file = getAttachmentFile(Long.parseLong(partId), blobKey);
                 return new FileInputStream(file);
             }
             default:
@@ -650,9 +689,12 @@ public class LocalStore {
         return rawInputStream;
     }
 
-    File getAttachmentFile(String attachmentId) {
-        File attachmentDirectory = storageFilesProvider.getAttachmentDirectory();
-        return new File(attachmentDirectory, attachmentId);
+    File getAttachmentFile(long messagePartId, String blobKey) {
+        return attachmentBlobStore.getFile(messagePartId, blobKey);
+    }
+
+    AttachmentBlobStore getAttachmentBlobStore() {
+        return attachmentBlobStore;
     }
 
     public static class AttachmentInfo {
@@ -1047,5 +1089,10 @@ public class LocalStore {
         public void saveAccount() {
             getPreferences().saveAccount(account);
         }
+
+        @Override
+        public AttachmentBlobStore getAttachmentBlobStore() {
+            return attachmentBlobStore;
+        }
     }
 }
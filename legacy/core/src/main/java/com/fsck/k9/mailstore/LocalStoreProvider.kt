@@ -5,6 +5,9 @@ import app.k9mail.legacy.di.DI
 import java.util.concurrent.ConcurrentHashMap
 import net.thunderbird.core.android.account.LegacyAccount
 import net.thunderbird.core.common.exception.MessagingException
+import net.thunderbird.core.featureflag.FeatureFlagKey
+import net.thunderbird.core.featureflag.FeatureFlagProvider
+import net.thunderbird.core.featureflag.FeatureFlagResult
 import net.thunderbird.core.preference.GeneralSettingsManager
 
 class LocalStoreProvider {
@@ -15,6 +18,7 @@ class LocalStoreProvider {
     fun getInstance(account: LegacyAccount): LocalStore {
         val context = DI.get(Context::class.java)
         val generalSettingsManager = DI.get(GeneralSettingsManager::class.java)
+        val featureFlagProvider = DI.get(FeatureFlagProvider::class.java)
         val accountUuid = account.uuid
 
         // Use per-account locks so DatabaseUpgradeService always knows which account database is currently upgraded.
@@ -22,7 +26,10 @@ class LocalStoreProvider {
             // Creating a LocalStore instance will create or upgrade the database if
             // necessary. This could take some time.
             return localStores.getOrPut(accountUuid) {
-                LocalStore.createInstance(account, context, generalSettingsManager)
+                val writeAheadLogging =
+                    featureFlagProvider.provide(FeatureFlagKey.DatabaseWriteAheadLogging) == FeatureFlagResult.Enabled
+
+                LocalStore.createInstance(account, context, generalSettingsManager, writeAheadLogging)
             }
         }
     }
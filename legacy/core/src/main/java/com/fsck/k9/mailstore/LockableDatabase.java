@@ -2,16 +2,22 @@ package com.fsck.k9.mailstore;
 
 
 import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 
 import com.fsck.k9.K9;
 import com.fsck.k9.helper.FileHelper;
+import com.fsck.k9.helper.NamedThreadFactory;
 import net.thunderbird.core.common.exception.MessagingException;
 import net.thunderbird.core.logging.legacy.Log;
 import net.thunderbird.core.preference.GeneralSettingsManager;
@@ -20,6 +26,18 @@ import static java.lang.System.currentTimeMillis;
 
 
 public class LockableDatabase {
+    /**
+     * Time without write transactions after which the write-ahead log is checkpointed.
+     */
+    private static final long IDLE_CHECKPOINT_DELAY_MILLIS = 5000L;
+
+    /**
+     * Only created when the first database in write-ahead logging mode needs it.
+     */
+    private static class CheckpointExecutorHolder {
+        static final ScheduledExecutorService EXECUTOR =
+                Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("DatabaseCheckpoint"));
+    }
 
     /**
      * Callback interface for DB operations. Concept is similar to Spring
@@ -78,12 +96,30 @@ public class LockableDatabase {
     private SchemaDefinition mSchemaDefinition;
     private GeneralSettingsManager generalSettingsManager;
 
+    private final boolean writeAheadLogging;
+    private final Object checkpointLock = new Object();
+    private ScheduledFuture<?> pendingCheckpoint;
+
     public LockableDatabase(Context context, StorageFilesProvider storageFilesProvider,
             SchemaDefinition schemaDefinition, GeneralSettingsManager generalSettingsManager) {
+        this(context, storageFilesProvider, schemaDefinition, generalSettingsManager, false);
+    }
+
+    /**
+     * @param writeAheadLogging
+     *            <code>true</code> to open the database in write-ahead logging mode. The framework then uses a pool of
+     *            read-only connections in addition to the one connection used for writing, so
+     *            {@link #execute(boolean, DbCallback)} calls that don't start a transaction are no longer blocked by
+     *            write transactions running on other threads.
+     */
+    public LockableDatabase(Context context, StorageFilesProvider storageFilesProvider,
+            SchemaDefinition schemaDefinition, GeneralSettingsManager generalSettingsManager,
+            boolean writeAheadLogging) {
         this.context = context;
         this.storageFilesProvider = storageFilesProvider;
         this.mSchemaDefinition = schemaDefinition;
         this.generalSettingsManager = generalSettingsManager;
+        this.writeAheadLogging = writeAheadLogging;
     }
 
     /**
@@ -174,6 +210,58 @@ public class LockableDatabase {
                 inTransaction.set(null);
             }
             unlockRead();
+
+            if (doTransaction && writeAheadLogging) {
+                scheduleIdleCheckpoint();
+            }
+        }
+    }
+
+    /**
+     * (Re)schedule a checkpoint of the write-ahead log for when no write transaction was completed for
+     * {@link #IDLE_CHECKPOINT_DELAY_MILLIS}.
+     *
+     * <p>
+     * SQLite checkpoints automatically once the log exceeds a certain size. But that happens in the middle of a write
+     * transaction, i.e. while syncing. Doing it when the database is idle keeps the log (and the time readers spend
+     * searching it) small.
+     * </p>
+     */
+    private void scheduleIdleCheckpoint() {
+        synchronized (checkpointLock) {
+            if (pendingCheckpoint != null) {
+                pendingCheckpoint.cancel(false);
+            }
+            pendingCheckpoint = CheckpointExecutorHolder.EXECUTOR.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    checkpoint();
+                }
+            }, IDLE_CHECKPOINT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void checkpoint() {
+        lockRead();
+        try {
+            if (mDb == null || !mDb.isOpen()) {
+                return;
+            }
+
+            // A passive checkpoint doesn't wait for (or block) readers and writers.
+            Cursor cursor = mDb.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null);
+            try {
+                if (cursor.moveToFirst()) {
+                    Log.v("LockableDatabase: Checkpoint copied %d of %d pages from write-ahead log",
+                            cursor.getInt(2), cursor.getInt(1));
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (Exception e) {
+            Log.w(e, "LockableDatabase: Checkpoint failed");
+        } finally {
+            unlockRead();
         }
     }
 
@@ -212,7 +300,12 @@ public class LockableDatabase {
     }
 
     private void doOpenOrCreateDb(final File databaseFile) {
-        mDb = context.openOrCreateDatabase(databaseFile.getName(), Context.MODE_PRIVATE, null);
+        int mode = Context.MODE_PRIVATE;
+        if (writeAheadLogging) {
+            mode |= Context.MODE_ENABLE_WRITE_AHEAD_LOGGING;
+        }
+
+        mDb = context.openOrCreateDatabase(databaseFile.getName(), mode, null);
     }
 
     protected File prepareStorage() {
@@ -11,6 +11,7 @@ import net.thunderbird.core.common.exception.MessagingException;
 import com.fsck.k9.mail.Part;
 import com.fsck.k9.mail.internet.MimeBodyPart;
 import com.fsck.k9.mail.internet.TextBody;
+import com.fsck.k9.sml.SMLPendingCard;
 
 
 public class MessageViewInfo {
@@ -26,6 +27,10 @@ public class MessageViewInfo {
     public final String extraText;
     public final List<AttachmentViewInfo> extraAttachments;
     public final UnsubscribeUri preferredUnsubscribeUri;
+    /**
+     * Cards whose placeholders are part of {@link #text}, but that still need to be rendered.
+     */
+    public final List<SMLPendingCard> pendingCards;
 
 
     public MessageViewInfo(
@@ -36,12 +41,26 @@ public class MessageViewInfo {
             AttachmentResolver attachmentResolver,
             String extraText, List<AttachmentViewInfo> extraAttachments,
             UnsubscribeUri preferredUnsubscribeUri) {
+        this(message, isMessageIncomplete, rootPart, subject, isSubjectEncrypted, text,
+                Collections.<SMLPendingCard>emptyList(), attachments, cryptoResultAnnotation, attachmentResolver,
+                extraText, extraAttachments, preferredUnsubscribeUri);
+    }
+
+    public MessageViewInfo(
+            Message message, boolean isMessageIncomplete, Part rootPart,
+            String subject, boolean isSubjectEncrypted,
+            String text, List<SMLPendingCard> pendingCards, List<AttachmentViewInfo> attachments,
+            CryptoResultAnnotation cryptoResultAnnotation,
+            AttachmentResolver attachmentResolver,
+            String extraText, List<AttachmentViewInfo> extraAttachments,
+            UnsubscribeUri preferredUnsubscribeUri) {
         this.message = message;
         this.isMessageIncomplete = isMessageIncomplete;
         this.rootPart = rootPart;
         this.subject = subject;
         this.isSubjectEncrypted = isSubjectEncrypted;
         this.text = text;
+        this.pendingCards = pendingCards;
         this.cryptoResultAnnotation = cryptoResultAnnotation;
         this.attachmentResolver = attachmentResolver;
         this.attachments = attachments;
@@ -51,11 +70,11 @@ public class MessageViewInfo {
     }
 
     static MessageViewInfo createWithExtractedContent(Message message, Part rootPart, boolean isMessageIncomplete,
-            String text, List<AttachmentViewInfo> attachments, AttachmentResolver attachmentResolver,
-            UnsubscribeUri preferredUnsubscribeUri) {
+            String text, List<SMLPendingCard> pendingCards, List<AttachmentViewInfo> attachments,
+            AttachmentResolver attachmentResolver, UnsubscribeUri preferredUnsubscribeUri) {
         return new MessageViewInfo(
-                message, isMessageIncomplete, rootPart, null, false, text, attachments, null, attachmentResolver, null,
-                Collections.<AttachmentViewInfo>emptyList(), preferredUnsubscribeUri);
+                message, isMessageIncomplete, rootPart, null, false, text, pendingCards, attachments, null,
+                attachmentResolver, null, Collections.<AttachmentViewInfo>emptyList(), preferredUnsubscribeUri);
     }
 
     public static MessageViewInfo createWithErrorState(Message message, boolean isMessageIncomplete) {
@@ -78,7 +97,7 @@ public class MessageViewInfo {
     MessageViewInfo withCryptoData(CryptoResultAnnotation rootPartAnnotation, String extraViewableText,
             List<AttachmentViewInfo> extraAttachmentInfos) {
         return new MessageViewInfo(
-                message, isMessageIncomplete, rootPart, subject, isSubjectEncrypted, text, attachments,
+                message, isMessageIncomplete, rootPart, subject, isSubjectEncrypted, text, pendingCards, attachments,
                 rootPartAnnotation,
                 attachmentResolver,
                 extraViewableText, extraAttachmentInfos,
@@ -88,7 +107,7 @@ public class MessageViewInfo {
 
     MessageViewInfo withSubject(String subject, boolean isSubjectEncrypted) {
         return new MessageViewInfo(
-                message, isMessageIncomplete, rootPart, subject, isSubjectEncrypted, text, attachments,
+                message, isMessageIncomplete, rootPart, subject, isSubjectEncrypted, text, pendingCards, attachments,
                 cryptoResultAnnotation, attachmentResolver, extraText, extraAttachments, preferredUnsubscribeUri
         );
     }
@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import android.text.TextUtils;
 
@@ -16,6 +17,7 @@ import androidx.annotation.WorkerThread;
 import androidx.javascriptengine.JavaScriptIsolate;
 import app.k9mail.core.android.common.contact.ContactRepository;
 import app.k9mail.legacy.di.DI;
+import com.audriga.h2lj.model.StructuredData;
 import com.fsck.k9.mailstore.SMLMessageView.TryToDerive;
 import com.fsck.k9.CoreResourceProvider;
 import com.fsck.k9.controller.MessagingController;
@@ -34,7 +36,10 @@ import com.fsck.k9.mail.internet.Viewable;
 import com.fsck.k9.mailstore.CryptoResultAnnotation.CryptoError;
 import com.fsck.k9.message.extractors.AttachmentInfoExtractor;
 import com.fsck.k9.message.html.HtmlConverter;
+import com.fsck.k9.sml.SMLPendingCard;
 import app.k9mail.html.cleaner.HtmlProcessor;
+import app.k9mail.html.cleaner.HtmlStageTiming;
+import app.k9mail.html.cleaner.ProcessedHtml;
 import org.openintents.openpgp.util.OpenPgpUtils;
 import net.thunderbird.core.logging.legacy.Log;
 
@@ -145,7 +150,8 @@ public class MessageViewInfoExtractor {
         }
 
         List<AttachmentViewInfo> extraAttachmentInfos = new ArrayList<>();
-        ViewableExtractedText extraViewable = extractViewableAndAttachments(extraParts, extraAttachmentInfos, null);
+        ViewableExtractedText extraViewable =
+                extractViewableAndAttachments(extraParts, extraAttachmentInfos, null, null);
 
         MessageViewInfo messageViewInfo = extractSimpleMessageForView(message, cryptoContentPart);
         return messageViewInfo.withCryptoData(cryptoContentPartAnnotation, extraViewable.text, extraAttachmentInfos);
@@ -154,8 +160,11 @@ public class MessageViewInfoExtractor {
     private MessageViewInfo extractSimpleMessageForView(Message message, Part contentPart) throws MessagingException {
         List<AttachmentViewInfo> attachmentInfos = new ArrayList<>();
         TryToDerive shouldTryToDerive = SMLMessageView.shouldTryToDerive(message);
+        // Stored structured data was extracted from the whole message, so it's only valid if that's what we display
+        List<StructuredData> storedStructuredData =
+                contentPart == message ? SMLMessageView.loadStoredStructuredData(message) : null;
         ViewableExtractedText viewable = extractViewableAndAttachments(
-                Collections.singletonList(contentPart), attachmentInfos, shouldTryToDerive);
+                Collections.singletonList(contentPart), attachmentInfos, storedStructuredData, shouldTryToDerive);
         AttachmentResolver attachmentResolver = AttachmentResolver.createFromPart(contentPart);
         boolean isMessageIncomplete =
                 !message.isSet(Flag.X_DOWNLOADED_FULL) || MessageExtractor.hasMissingParts(message);
@@ -163,12 +172,13 @@ public class MessageViewInfoExtractor {
         UnsubscribeUri preferredUnsubscribeUri = ListUnsubscribeHelper.INSTANCE.getPreferredListUnsubscribeUri(message);
 
         return MessageViewInfo.createWithExtractedContent(
-                message, contentPart, isMessageIncomplete, viewable.html, attachmentInfos, attachmentResolver,
-                preferredUnsubscribeUri);
+                message, contentPart, isMessageIncomplete, viewable.html, viewable.pendingCards, attachmentInfos,
+                attachmentResolver, preferredUnsubscribeUri);
     }
 
     private ViewableExtractedText extractViewableAndAttachments(List<Part> parts,
-            List<AttachmentViewInfo> attachmentInfos, @Nullable TryToDerive shouldTryToDerive) throws MessagingException {
+            List<AttachmentViewInfo> attachmentInfos, @Nullable List<StructuredData> storedStructuredData,
+            @Nullable TryToDerive shouldTryToDerive) throws MessagingException {
         MessagingController mc = DI.get(MessagingController.class);
         ArrayList<Viewable> viewableParts = new ArrayList<>();
         ArrayList<Part> attachments = new ArrayList<>();
@@ -181,13 +191,14 @@ public class MessageViewInfoExtractor {
         attachmentInfos.addAll(attachmentInfoExtractor.extractAttachmentInfoForView(attachments));
         HashMap<AttachmentViewInfo, String> parseableAttachments = SMLMessageView.getParseableAttachments(attachmentInfos, mc);
 
-        return extractTextFromViewables(viewableParts, parseableParts, parseableAttachments, shouldTryToDerive);
+        return extractTextFromViewables(viewableParts, parseableParts, parseableAttachments, storedStructuredData,
+                shouldTryToDerive);
     }
 
     @VisibleForTesting
     ViewableExtractedText extractTextFromViewables(List<Viewable> viewables)
         throws MessagingException {
-        return extractTextFromViewables(viewables, null, null, null);
+        return extractTextFromViewables(viewables, null, null, null, null);
     }
 
     /**
@@ -201,7 +212,7 @@ public class MessageViewInfoExtractor {
      */
     @VisibleForTesting
     ViewableExtractedText extractTextFromViewables(List<Viewable> viewables, @Nullable ArrayList<Part> parseableParts, @Nullable HashMap<AttachmentViewInfo, String> parseableAttachments,
-        @Nullable TryToDerive shouldTryToDerive)
+        @Nullable List<StructuredData> storedStructuredData, @Nullable TryToDerive shouldTryToDerive)
             throws MessagingException {
         try {
             // Collect all viewable parts
@@ -268,15 +279,32 @@ public class MessageViewInfoExtractor {
 
             String rawHTML = html.toString();
             String textString = text.toString();
-            String sanitizedHtml = htmlProcessor.processForDisplay(rawHTML);
-            String smlHtml = SMLMessageView.extractMarkupForView(textString, rawHTML, sanitizedHtml,
-                parseableParts, parseableAttachments, shouldTryToDerive, javaScriptIsolateLazy);
-            return new ViewableExtractedText(textString, smlHtml);
+            SMLDocumentVisitor smlVisitor = SMLMessageView.createDocumentVisitor(textString, rawHTML, parseableParts,
+                parseableAttachments, storedStructuredData, shouldTryToDerive);
+            ProcessedHtml processedHtml =
+                htmlProcessor.processForDisplay(rawHTML, Collections.singletonList(smlVisitor));
+            logStageTimings(processedHtml.getStageTimings());
+
+            List<SMLPendingCard> pendingCards = new ArrayList<>();
+            String smlHtml = SMLMessageView.extractMarkupForView(processedHtml.getHtml(), smlVisitor,
+                javaScriptIsolateLazy, pendingCards);
+            return new ViewableExtractedText(textString, smlHtml, pendingCards);
         } catch (Exception e) {
             throw new MessagingException("Couldn't extract viewable parts", e);
         }
     }
 
+    private static void logStageTimings(List<HtmlStageTiming> stageTimings) {
+        StringBuilder timings = new StringBuilder();
+        for (HtmlStageTiming stageTiming : stageTimings) {
+            if (timings.length() > 0) {
+                timings.append(", ");
+            }
+            timings.append(stageTiming.getStage()).append(": ")
+                    .append(TimeUnit.NANOSECONDS.toMicros(stageTiming.getDurationNanos())).append(" µs");
+        }
+        Log.d("Processed HTML for display (%s)", timings);
+    }
 
     /**
      * Use the contents of a {@link com.fsck.k9.mail.internet.Viewable} to create the HTML to be displayed.
@@ -580,10 +608,12 @@ public class MessageViewInfoExtractor {
     static class ViewableExtractedText {
         public final String text;
         public final String html;
+        public final List<SMLPendingCard> pendingCards;
 
-        ViewableExtractedText(String text, String html) {
+        ViewableExtractedText(String text, String html, List<SMLPendingCard> pendingCards) {
             this.text = text;
             this.html = html;
+            this.pendingCards = pendingCards;
         }
     }
 }
@@ -10,4 +10,5 @@ import net.thunderbird.core.android.account.LegacyAccount;
 public interface MigrationsHelper {
     LegacyAccount getAccount();
     void saveAccount();
+    AttachmentBlobStore getAttachmentBlobStore();
 }
@@ -18,6 +18,11 @@ class NotifierMessageStore(
         notifyChange()
     }
 
+    override fun saveRemoteMessages(folderId: Long, messages: Sequence<Pair<String, SaveMessageData>>) {
+        messageStore.saveRemoteMessages(folderId, messages)
+        notifyChange()
+    }
+
     override fun saveLocalMessage(folderId: Long, messageData: SaveMessageData, existingMessageId: Long?): Long {
         return messageStore.saveLocalMessage(folderId, messageData, existingMessageId).also {
             notifyChange()
@@ -46,6 +51,11 @@ class NotifierMessageStore(
         notifyChange()
     }
 
+    override fun setMessageFlags(folderId: Long, flagChanges: Map<String, Map<Flag, Boolean>>) {
+        messageStore.setMessageFlags(folderId, flagChanges)
+        notifyChange()
+    }
+
     override fun setNewMessageState(folderId: Long, messageServerId: String, newMessage: Boolean) {
         messageStore.setNewMessageState(folderId, messageServerId, newMessage)
         notifyChange()
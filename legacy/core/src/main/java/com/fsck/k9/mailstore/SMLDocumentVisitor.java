@@ -0,0 +1,114 @@
+package com.fsck.k9.mailstore;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import app.k9mail.html.cleaner.HtmlDocumentVisitor;
+import app.k9mail.sml.html.StructuredDataHtml;
+import com.audriga.h2lj.model.StructuredData;
+import org.json.JSONObject;
+import org.jsoup.nodes.Document;
+import timber.log.Timber;
+
+
+/**
+ * Extracts structured data from the HTML of a message and adds the SML buttons to it, while the HTML is processed for
+ * display. This way the HTML is only parsed once.
+ */
+class SMLDocumentVisitor implements HtmlDocumentVisitor {
+    enum Result {
+        FAILED,
+        NO_DATA,
+        URL_BUTTONS_ADDED,
+        INLINE_BUTTONS_ADDED,
+        RENDER_CARDS
+    }
+
+    private final String text;
+    @Nullable
+    private final List<StructuredData> storedData;
+    private final List<StructuredData> additionalData;
+    @Nullable
+    private final JSONObject extracted;
+
+    private Result result = Result.FAILED;
+    private List<StructuredData> data = Collections.emptyList();
+    private List<String> whitelistedUrls = Collections.emptyList();
+
+
+    /**
+     * @param storedData the structured data extracted when the message was saved, or {@code null} if the HTML still
+     *         needs to be searched for structured data.
+     * @param additionalData structured data found outside the HTML, e.g. in attachments.
+     * @param extracted data derived from the message text, see {@link SMLMessageView#maybeTryExtract}.
+     */
+    SMLDocumentVisitor(String text, @Nullable List<StructuredData> storedData, List<StructuredData> additionalData,
+        @Nullable JSONObject extracted) {
+        this.text = text;
+        this.storedData = storedData;
+        this.additionalData = additionalData;
+        this.extracted = extracted;
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return "sml";
+    }
+
+    @Override
+    public void visit(@NonNull Document document) {
+        try {
+            List<StructuredData> data = new ArrayList<>();
+            if (storedData != null) {
+                data.addAll(storedData);
+            } else {
+                data.addAll(StructuredDataHtml.parseStructuredData(document));
+            }
+            data.addAll(additionalData);
+            this.data = data;
+
+            if (data.isEmpty() && extracted == null) {
+                result = Result.NO_DATA;
+                if (SMLMessageView.isDemoViewEnabled()) {
+                    List<String> urls = SMLMessageView.tryExtractAllWhitelistedUrls(text, document);
+                    if (!urls.isEmpty()) {
+                        SMLMessageView.addLoadButtonsAfterUrls(document);
+                        whitelistedUrls = urls;
+                        result = Result.URL_BUTTONS_ADDED;
+                    }
+                }
+            } else if (StructuredDataHtml.addInlineCardButtons(document, data)) {
+                // Should not render all jsonLds at the top of the message, if we are in our "newsletter with a dozen
+                // recipes" case
+                result = Result.INLINE_BUTTONS_ADDED;
+            } else {
+                result = Result.RENDER_CARDS;
+            }
+        } catch (Exception e) {
+            Timber.e(e, "Encountered exception while trying to extract markup from HTML");
+            result = Result.FAILED;
+        }
+    }
+
+    Result getResult() {
+        return result;
+    }
+
+    List<StructuredData> getData() {
+        return data;
+    }
+
+    @Nullable
+    JSONObject getExtracted() {
+        return extracted;
+    }
+
+    List<String> getWhitelistedUrls() {
+        return whitelistedUrls;
+    }
+}
@@ -7,12 +7,14 @@ import com.fsck.k9.mail.MessageDownloadState
 import com.fsck.k9.message.extractors.AttachmentCounter
 import com.fsck.k9.message.extractors.MessageFulltextCreator
 import com.fsck.k9.message.extractors.MessagePreviewCreator
+import com.fsck.k9.message.extractors.StructuredDataExtractor
 
 class SaveMessageDataCreator(
     private val encryptionExtractor: EncryptionExtractor,
     private val messagePreviewCreator: MessagePreviewCreator,
     private val messageFulltextCreator: MessageFulltextCreator,
     private val attachmentCounter: AttachmentCounter,
+    private val structuredDataExtractor: StructuredDataExtractor,
 ) {
     fun createSaveMessageData(
         message: Message,
@@ -48,6 +50,11 @@ class SaveMessageDataCreator(
                 previewResult = messagePreviewCreator.createPreview(message),
                 textForSearchIndex = messageFulltextCreator.createFulltext(message),
                 encryptionType = null,
+                structuredData = if (downloadState == MessageDownloadState.FULL) {
+                    structuredDataExtractor.extractStructuredData(message)
+                } else {
+                    null
+                },
             )
         }
     }
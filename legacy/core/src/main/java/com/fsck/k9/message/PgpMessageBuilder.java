@@ -306,6 +306,14 @@ public class PgpMessageBuilder extends MessageBuilder {
         }
 
         Intent result = openPgpApi.executeApi(openPgpIntent, dataSource, outputStream);
+        if (outputStream != null) {
+            // The captured data only becomes the content of the body once the stream is closed
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                throw new MessagingException("could not write to temp body!", e);
+            }
+        }
 
         switch (result.getIntExtra(OpenPgpApi.RESULT_CODE, OpenPgpApi.RESULT_CODE_ERROR)) {
             case OpenPgpApi.RESULT_CODE_SUCCESS:
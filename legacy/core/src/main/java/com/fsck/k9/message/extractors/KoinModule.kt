@@ -6,4 +6,5 @@ val extractorModule = module {
     single { AttachmentInfoExtractor(get()) }
     single { TextPartFinder() }
     single { BasicPartInfoExtractor() }
+    single { StructuredDataExtractor() }
 }
@@ -0,0 +1,93 @@
+package com.fsck.k9.message.extractors
+
+import app.k9mail.legacy.mailstore.StructuredDataEntry
+import com.audriga.h2lj.model.StructuredData
+import com.audriga.h2lj.model.StructuredSyntax
+import com.audriga.h2lj.parser.StructuredDataExtractionUtils
+import com.fsck.k9.mail.Message
+import com.fsck.k9.mail.Part
+import com.fsck.k9.mail.internet.MessageExtractor
+import com.fsck.k9.mail.internet.MimeUtility
+import com.fsck.k9.mail.internet.Viewable
+import net.thunderbird.core.logging.legacy.Log
+import org.json.JSONArray
+import org.json.JSONObject
+
+/**
+ * Extracts schema.org objects from a message so they can be stored alongside it.
+ *
+ * This covers JSON-LD and microdata embedded in `text/html` parts as well as `application/ld+json` parts. Calendar
+ * attachments and data derived from the message text are still processed when the message is displayed.
+ */
+class StructuredDataExtractor {
+    /**
+     * Returns the structured data found in [message], or `null` if the message couldn't be processed, e.g. because
+     * parts of it haven't been downloaded.
+     */
+    @Suppress("TooGenericExceptionCaught")
+    fun extractStructuredData(message: Message): List<StructuredDataEntry>? {
+        return try {
+            if (MessageExtractor.hasMissingParts(message)) return null
+
+            val viewables = mutableListOf<Viewable>()
+            val parseableParts = mutableListOf<Part>()
+            MessageExtractor.findViewablesAndAttachments(message, viewables, null, parseableParts)
+
+            val data = extractFromHtml(viewables) + extractFromParseableParts(parseableParts)
+            data.map { it.toStructuredDataEntry() }
+        } catch (e: Exception) {
+            Log.w(e, "Error extracting structured data from message")
+            null
+        }
+    }
+
+    private fun extractFromHtml(viewables: List<Viewable>): List<StructuredData> {
+        val html = buildString {
+            for (part in findHtmlParts(viewables)) {
+                append(MessageExtractor.getTextFromPart(part).orEmpty())
+                append('\n')
+            }
+        }
+        if (html.isBlank()) return emptyList()
+
+        return StructuredDataExtractionUtils.parseStructuredDataPart(html, StructuredSyntax.JSON_LD).ifEmpty {
+            StructuredDataExtractionUtils.parseStructuredDataPart(html, StructuredSyntax.MICRODATA)
+        }
+    }
+
+    private fun findHtmlParts(viewables: List<Viewable>): List<Part> {
+        return viewables.flatMap { viewable ->
+            when (viewable) {
+                is Viewable.Html -> listOf(viewable.part)
+                is Viewable.Alternative -> findHtmlParts(viewable.html)
+                else -> emptyList()
+            }
+        }
+    }
+
+    private fun extractFromParseableParts(parseableParts: List<Part>): List<StructuredData> {
+        // multipart/related children can be reported more than once
+        return parseableParts
+            .distinct()
+            .filter { MimeUtility.isSameMimeType(it.mimeType, "application/ld+json") }
+            .mapNotNull { MessageExtractor.getTextFromPart(it) }
+            .flatMap { json -> StructuredDataExtractionUtils.parseStructuredDataFromJsonStr(json).orEmpty() }
+    }
+
+    private fun StructuredData.toStructuredDataEntry(): StructuredDataEntry {
+        return StructuredDataEntry(
+            types = json.getTypes(),
+            id = json.optString("@id").ifEmpty { null },
+            json = json.toString(),
+            syntax = (syntax ?: StructuredSyntax.JSON_LD).name,
+        )
+    }
+
+    private fun JSONObject.getTypes(): List<String> {
+        return when (val type = opt("@type")) {
+            is JSONArray -> List(type.length()) { index -> type.optString(index) }.filter { it.isNotEmpty() }
+            is String -> listOf(type).filter { it.isNotEmpty() }
+            else -> emptyList()
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.fsck.k9.sml
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Future
+import net.thunderbird.core.logging.legacy.Log
+
+/**
+ * Renders the cards of a message on a bounded pool of background threads.
+ *
+ * Cards are rendered independently of each other and reported to the [Listener] as soon as they are available, i.e.
+ * not necessarily in the order they were passed to [render].
+ */
+class SMLCardRenderPipeline(
+    private val executor: ExecutorService,
+    private val renderCard: (SMLPendingCard) -> String?,
+) {
+    fun render(cards: List<SMLPendingCard>, listener: Listener): RenderJob {
+        val job = RenderJob()
+        for (card in cards) {
+            job.futures += executor.submit {
+                renderAndReport(job, card, listener)
+            }
+        }
+
+        return job
+    }
+
+    private fun renderAndReport(job: RenderJob, card: SMLPendingCard, listener: Listener) {
+        if (job.isCancelled) return
+
+        val html = try {
+            renderCard(card)
+        } catch (e: Exception) {
+            Log.e(e, "Error rendering card %s", card.placeholderId)
+            null
+        }
+
+        if (html != null && !job.isCancelled) {
+            listener.onCardRendered(card, html)
+        }
+    }
+
+    fun interface Listener {
+        /**
+         * Called on a background thread for every card that was rendered successfully.
+         */
+        fun onCardRendered(card: SMLPendingCard, html: String)
+    }
+
+    class RenderJob internal constructor() {
+        internal val futures = mutableListOf<Future<*>>()
+
+        @Volatile
+        var isCancelled = false
+            private set
+
+        /**
+         * Stops rendering the remaining cards.
+         *
+         * A card that is just being reported might still reach the listener, so listeners that outlive the job need to
+         * check [isCancelled] on their own thread.
+         */
+        fun cancel() {
+            isCancelled = true
+            for (future in futures) {
+                future.cancel(true)
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.fsck.k9.sml
+
+import java.io.IOException
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import org.audriga.ld2h.ButtonDescription
+import org.audriga.ld2h.MustacheRenderer
+import org.json.JSONArray
+import org.json.JSONObject
+
+private const val DEFAULT_MAX_CACHED_CARDS = 64
+private const val DEFAULT_MAX_RENDERERS = 2
+
+/**
+ * Process-wide, thread-safe renderer for structured data cards.
+ *
+ * Creating a [MustacheRenderer] loads the card templates, so a single instance is shared by all callers. In addition,
+ * rendered HTML is memoized by the JSON-LD and buttons it was created from. Showing or reloading the same card again
+ * returns the cached result.
+ *
+ * Up to [maxRenderers] cards can be rendered at the same time. Each of them uses its own [MustacheRenderer] instance.
+ */
+class SMLCardRenderer(
+    private val maxCachedCards: Int = DEFAULT_MAX_CACHED_CARDS,
+    private val maxRenderers: Int = DEFAULT_MAX_RENDERERS,
+) {
+    private val idleRenderers = ArrayBlockingQueue<MustacheRenderer>(maxRenderers)
+    private val createdRenderers = AtomicInteger()
+
+    private val renderedCards = object : LinkedHashMap<CacheKey, String>(maxCachedCards, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<CacheKey, String>): Boolean {
+            return size > maxCachedCards
+        }
+    }
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    /**
+     * Number of render calls that were answered from the cache.
+     */
+    val hitCount: Long
+        get() = hits.get()
+
+    /**
+     * Number of render calls that had to render the templates.
+     */
+    val missCount: Long
+        get() = misses.get()
+
+    /**
+     * Loads the card templates so the first card shown to the user doesn't have to wait for it.
+     */
+    @Throws(IOException::class)
+    fun warmUp() {
+        withRenderer { }
+    }
+
+    @Throws(IOException::class)
+    fun render(jsonObject: JSONObject, buttons: List<ButtonDescription>): String? {
+        val key = CacheKey(tabbed = false, json = jsonObject.toString(), buttons = listOf(buttons))
+        return getOrRender(key) { renderer -> renderer.render(jsonObject, buttons) }
+    }
+
+    @Throws(IOException::class)
+    fun renderTabbed(jsonLds: JSONArray, buttonLists: List<List<ButtonDescription>>): String? {
+        val key = CacheKey(tabbed = true, json = jsonLds.toString(), buttons = buttonLists)
+        return getOrRender(key) { renderer -> renderer.renderTabbed(jsonLds, buttonLists) }
+    }
+
+    @Throws(IOException::class)
+    fun filterRenderable(jsonObjects: List<JSONObject>): List<JSONObject> {
+        return withRenderer { renderer -> renderer.filterRenderable(jsonObjects) }
+    }
+
+    fun clearCache() {
+        synchronized(renderedCards) {
+            renderedCards.clear()
+        }
+    }
+
+    private fun getOrRender(key: CacheKey, block: (MustacheRenderer) -> String?): String? {
+        synchronized(renderedCards) {
+            renderedCards[key]
+        }?.let { cachedHtml ->
+            hits.incrementAndGet()
+            return cachedHtml
+        }
+
+        misses.incrementAndGet()
+        val html = withRenderer(block) ?: return null
+
+        synchronized(renderedCards) {
+            renderedCards[key] = html
+        }
+
+        return html
+    }
+
+    // MustacheRenderer isn't documented to be thread-safe, so an instance is only ever used by one thread at a time.
+    private fun <T> withRenderer(block: (MustacheRenderer) -> T): T {
+        val renderer = acquireRenderer()
+        try {
+            return block(renderer)
+        } finally {
+            // There's always room for the renderer. Unlike put(), offer() doesn't throw when the thread was interrupted,
+            // e.g. because the render job was cancelled. Losing the renderer would block all later callers.
+            idleRenderers.offer(renderer)
+        }
+    }
+
+    private fun acquireRenderer(): MustacheRenderer {
+        idleRenderers.poll()?.let { return it }
+
+        while (true) {
+            val created = createdRenderers.get()
+            if (created >= maxRenderers) {
+                return idleRenderers.take()
+            }
+
+            if (createdRenderers.compareAndSet(created, created + 1)) {
+                return try {
+                    MustacheRenderer()
+                } catch (e: Throwable) {
+                    createdRenderers.decrementAndGet()
+                    throw e
+                }
+            }
+        }
+    }
+
+    private data class CacheKey(
+        val tabbed: Boolean,
+        val json: String,
+        val buttons: List<List<ButtonDescription>>,
+    )
+}
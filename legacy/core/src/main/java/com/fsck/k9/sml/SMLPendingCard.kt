@@ -0,0 +1,14 @@
+package com.fsck.k9.sml
+
+import org.json.JSONObject
+
+/**
+ * A card that is rendered after the message has been displayed and then inserted into the placeholder element with
+ * the id [placeholderId].
+ *
+ * If [jsonLds] contains more than one object, they are rendered as a single tabbed card.
+ */
+class SMLPendingCard(
+    val placeholderId: String,
+    val jsonLds: List<JSONObject>,
+)
@@ -0,0 +1,117 @@
+package com.fsck.k9.controller
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import assertk.assertions.isTrue
+import assertk.assertions.single
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import net.thunderbird.core.logging.legacy.Log
+import net.thunderbird.core.logging.testing.TestLogger
+import org.junit.After
+import org.junit.Test
+
+private const val TIMEOUT_SECONDS = 5L
+
+class CommandSchedulerTest {
+    private val executorService = Executors.newFixedThreadPool(2)
+    private val executedCommands = Collections.synchronizedList(mutableListOf<String>())
+
+    init {
+        Log.logger = TestLogger()
+    }
+
+    @After
+    fun tearDown() {
+        executorService.shutdownNow()
+    }
+
+    @Test
+    fun `commands in the same lane should run in order with foreground commands first`() {
+        val scheduler = CommandScheduler(executorService, maxParallelLanes = 2)
+        val blocker = CountDownLatch(1)
+        val done = CountDownLatch(1)
+
+        scheduler.put("lane", "blocker", isForeground = false) { blocker.await() }
+        scheduler.put("lane", "background1", isForeground = false, recordCommand("background1"))
+        scheduler.put("lane", "foreground", isForeground = true, recordCommand("foreground"))
+        scheduler.put("lane", "background2", isForeground = false, recordCommand("background2"))
+        scheduler.put("lane", "done", isForeground = false) { done.countDown() }
+        blocker.countDown()
+
+        assertThat(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+        assertThat(executedCommands).containsExactly("foreground", "background1", "background2")
+    }
+
+    @Test
+    fun `commands in different lanes should run in parallel`() {
+        val scheduler = CommandScheduler(executorService, maxParallelLanes = 2)
+        val otherLaneRan = CountDownLatch(1)
+        val done = CountDownLatch(1)
+
+        scheduler.put("lane1", "waitForOtherLane", isForeground = false) {
+            if (otherLaneRan.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                done.countDown()
+            }
+        }
+        scheduler.put("lane2", "other", isForeground = false) { otherLaneRan.countDown() }
+
+        assertThat(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+    }
+
+    @Test
+    fun `lanes should take turns when there are not enough threads`() {
+        val scheduler = CommandScheduler(executorService, maxParallelLanes = 1)
+        val blocker = CountDownLatch(1)
+        val done = CountDownLatch(2)
+
+        scheduler.put("lane1", "blocker", isForeground = false) { blocker.await() }
+        scheduler.put("lane1", "lane1-1", isForeground = false, recordCommand("lane1-1"))
+        scheduler.put("lane1", "lane1-2", isForeground = false, recordCommand("lane1-2", done))
+        scheduler.put("lane2", "lane2-1", isForeground = false, recordCommand("lane2-1", done))
+        blocker.countDown()
+
+        assertThat(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+        assertThat(executedCommands).containsExactly("lane2-1", "lane1-1", "lane1-2")
+    }
+
+    @Test
+    fun `lane statistics should report queue depth and completed commands`() {
+        val scheduler = CommandScheduler(executorService, maxParallelLanes = 2)
+        val started = CountDownLatch(1)
+        val blocker = CountDownLatch(1)
+        val done = CountDownLatch(1)
+
+        scheduler.put("lane", "blocker", isForeground = false) {
+            started.countDown()
+            blocker.await()
+        }
+        scheduler.put("lane", "command", isForeground = false) { done.countDown() }
+        assertThat(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+
+        assertThat(scheduler.getLaneStatistics()).single().given { statistics ->
+            assertThat(statistics.lane).isEqualTo("lane")
+            assertThat(statistics.queueDepth).isEqualTo(1)
+            assertThat(statistics.isRunning).isTrue()
+            assertThat(statistics.completedCommands).isEqualTo(0L)
+        }
+
+        blocker.countDown()
+        assertThat(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue()
+        executorService.shutdown()
+        executorService.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+
+        assertThat(scheduler.getLaneStatistics()).single().given { statistics ->
+            assertThat(statistics.queueDepth).isEqualTo(0)
+            assertThat(statistics.completedCommands).isEqualTo(2L)
+        }
+    }
+
+    private fun recordCommand(name: String, done: CountDownLatch? = null) = Runnable {
+        executedCommands.add(name)
+        done?.countDown()
+    }
+}
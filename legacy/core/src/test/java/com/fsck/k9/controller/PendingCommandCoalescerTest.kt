@@ -0,0 +1,201 @@
+package com.fsck.k9.controller
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.hasSize
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isInstanceOf
+import assertk.assertions.isSameInstanceAs
+import assertk.assertions.isTrue
+import com.fsck.k9.controller.MessagingControllerCommands.PendingCommand
+import com.fsck.k9.controller.MessagingControllerCommands.PendingDelete
+import com.fsck.k9.controller.MessagingControllerCommands.PendingExpunge
+import com.fsck.k9.controller.MessagingControllerCommands.PendingMoveOrCopy
+import com.fsck.k9.controller.MessagingControllerCommands.PendingSetFlag
+import com.fsck.k9.mail.Flag
+import kotlin.test.Test
+
+private const val FOLDER_ID = 1L
+private const val OTHER_FOLDER_ID = 2L
+
+class PendingCommandCoalescerTest {
+    private val coalescer = PendingCommandCoalescer()
+
+    @Test
+    fun `commands that can't be merged should be left alone`() {
+        val commands = listOf(
+            setFlag(id = 1, FOLDER_ID, Flag.SEEN, true, "1"),
+            setFlag(id = 2, OTHER_FOLDER_ID, Flag.SEEN, true, "2"),
+            delete(id = 3, FOLDER_ID, "3"),
+        )
+
+        val result = coalescer.coalesce(commands)
+
+        assertThat(result.hasChanges).isFalse()
+        assertThat(result.commands).containsExactly(*commands.toTypedArray())
+    }
+
+    @Test
+    fun `set flag commands for the same folder should be merged`() {
+        val commands = listOf(
+            setFlag(id = 1, FOLDER_ID, Flag.SEEN, true, "1"),
+            setFlag(id = 2, OTHER_FOLDER_ID, Flag.SEEN, true, "2"),
+            setFlag(id = 3, FOLDER_ID, Flag.SEEN, true, "3", "4"),
+        )
+
+        val result = coalescer.coalesce(commands)
+
+        assertThat(result.commands.map { it.databaseId }).containsExactly(1L, 2L)
+        assertThat(result.commands[0]).isInstanceOf<PendingSetFlag>().given { command ->
+            assertThat(command.folderId).isEqualTo(FOLDER_ID)
+            assertThat(command.flag).isEqualTo(Flag.SEEN)
+            assertThat(command.newState).isTrue()
+            assertThat(command.uids).containsExactly("1", "3", "4")
+        }
+        assertThat(result.commands[1]).isSameInstanceAs(commands[1])
+        assertThat(result.updatedCommands).containsExactly(result.commands[0])
+        assertThat(result.removedCommands).containsExactly(commands[2])
+    }
+
+    @Test
+    fun `flag changes that are reverted later should be dropped`() {
+        val commands = listOf(
+            setFlag(id = 1, FOLDER_ID, Flag.SEEN, true, "1", "2"),
+            setFlag(id = 2, FOLDER_ID, Flag.FLAGGED, true, "1"),
+            setFlag(id = 3, FOLDER_ID, Flag.SEEN, false, "1"),
+        )
+
+        val result = coalescer.coalesce(commands)
+
+        assertThat(result.commands.map { it.toSummary() }).containsExactly(
+            "1: set_flag SEEN=true [2]",
+            "2: set_flag SEEN=false [1]",
+            "3: set_flag FLAGGED=true [1]",
+        )
+    }
+
+    @Test
+    fun `flag change that is undone should leave a single command with the final state`() {
+        val commands = listOf(
+            setFlag(id = 1, FOLDER_ID, Flag.SEEN, true, "1"),
+            setFlag(id = 2, FOLDER_ID, Flag.SEEN, false, "1"),
+        )
+
+        val result = coalescer.coalesce(commands)
+
+        assertThat(result.commands.map { it.toSummary() }).containsExactly("1: set_flag SEEN=false [1]")
+        assertThat(result.removedCommands).containsExactly(commands[1])
+    }
+
+    @Test
+    fun `delete commands for the same folder should be merged`() {
+        val commands = listOf(
+            delete(id = 1, FOLDER_ID, "1"),
+            delete(id = 2, FOLDER_ID, "2", "3"),
+            delete(id = 3, FOLDER_ID, "3"),
+        )
+
+        val result = coalescer.coalesce(commands)
+
+        assertThat(result.commands.map { it.toSummary() }).containsExactly("1: delete [1, 2, 3]")
+        assertThat(result.removedCommands).containsExactly(commands[1], commands[2])
+    }
+
+    @Test
+    fun `flag changes of messages that are deleted later should be dropped`() {
+        val commands = listOf(
+            setFlag(id = 1, FOLDER_ID, Flag.SEEN, true, "1"),
+            setFlag(id = 2, FOLDER_ID, Flag.FLAGGED, true, "2"),
+            delete(id = 3, FOLDER_ID, "1"),
+        )
+
+        val result = coalescer.coalesce(commands)
+
+        assertThat(result.commands.map { it.toSummary() }).containsExactly(
+            "1: set_flag FLAGGED=true [2]",
+            "3: delete [1]",
+        )
+    }
+
+    @Test
+    fun `flag change of a deleted message should not be moved in front of the delete command`() {
+        val commands = listOf(
+            delete(id = 1, FOLDER_ID, "1"),
+            setFlag(id = 2, FOLDER_ID, Flag.DELETED, false, "1"),
+            delete(id = 3, FOLDER_ID, "2"),
+        )
+
+        val result = coalescer.coalesce(commands)
+
+        assertThat(result.commands.map { it.toSummary() }).containsExactly(
+            "1: delete [1]",
+            "2: set_flag DELETED=false [1]",
+            "3: delete [2]",
+        )
+    }
+
+    @Test
+    fun `commands should not be merged across other commands affecting the same folder`() {
+        val commands = listOf(
+            setFlag(id = 1, FOLDER_ID, Flag.SEEN, true, "1"),
+            moveOrCopy(id = 2, OTHER_FOLDER_ID, FOLDER_ID),
+            setFlag(id = 3, FOLDER_ID, Flag.SEEN, true, "2"),
+            PendingExpunge.create(FOLDER_ID).withId(4),
+            setFlag(id = 5, FOLDER_ID, Flag.SEEN, true, "3"),
+        )
+
+        val result = coalescer.coalesce(commands)
+
+        assertThat(result.hasChanges).isFalse()
+        assertThat(result.commands).containsExactly(*commands.toTypedArray())
+    }
+
+    @Test
+    fun `commands should be merged across commands affecting other folders`() {
+        val commands = listOf(
+            delete(id = 1, FOLDER_ID, "1"),
+            PendingExpunge.create(OTHER_FOLDER_ID).withId(2),
+            delete(id = 3, FOLDER_ID, "2"),
+        )
+
+        val result = coalescer.coalesce(commands)
+
+        assertThat(result.commands.map { it.toSummary() }).containsExactly(
+            "1: delete [1, 2]",
+            "2: expunge",
+        )
+        assertThat(result.updatedCommands).hasSize(1)
+    }
+
+    @Test
+    fun `empty list`() {
+        val result = coalescer.coalesce(emptyList())
+
+        assertThat(result.commands).isEmpty()
+        assertThat(result.hasChanges).isFalse()
+    }
+
+    private fun setFlag(id: Long, folderId: Long, flag: Flag, newState: Boolean, vararg uids: String): PendingCommand {
+        return PendingSetFlag.create(folderId, newState, flag, uids.toList()).withId(id)
+    }
+
+    private fun delete(id: Long, folderId: Long, vararg uids: String): PendingCommand {
+        return PendingDelete.create(folderId, uids.toList()).withId(id)
+    }
+
+    private fun moveOrCopy(id: Long, sourceFolderId: Long, destinationFolderId: Long): PendingCommand {
+        return PendingMoveOrCopy.create(sourceFolderId, destinationFolderId, false, mapOf("10" to "20")).withId(id)
+    }
+
+    private fun PendingCommand.withId(id: Long): PendingCommand = apply { databaseId = id }
+
+    private fun PendingCommand.toSummary(): String {
+        return when (this) {
+            is PendingSetFlag -> "$databaseId: $commandName $flag=$newState $uids"
+            is PendingDelete -> "$databaseId: $commandName $uids"
+            else -> "$databaseId: $commandName"
+        }
+    }
+}
@@ -77,6 +77,28 @@ class K9BackendFolderTest : K9RobolectricTest() {
         assertThat(messageFlags).isEqualTo(flags)
     }
 
+    @Test
+    fun getMessageFlags_forMultipleMessages_shouldOnlyIncludePresentMessages() {
+        val flags = setOf(Flag.SEEN, Flag.X_DOWNLOADED_FULL)
+        createMessageInBackendFolder(MESSAGE_SERVER_ID, flags)
+
+        val messageFlags = backendFolder.getMessageFlags(listOf(MESSAGE_SERVER_ID, "doesNotExist"))
+
+        assertThat(messageFlags).isEqualTo(mapOf(MESSAGE_SERVER_ID to flags))
+    }
+
+    @Test
+    fun setMessageFlags() {
+        createMessageInBackendFolder(MESSAGE_SERVER_ID, setOf(Flag.SEEN, Flag.X_DOWNLOADED_FULL))
+
+        backendFolder.setMessageFlags(
+            mapOf(MESSAGE_SERVER_ID to mapOf(Flag.SEEN to false, Flag.FLAGGED to true, Flag.DRAFT to true)),
+        )
+
+        val messageFlags = backendFolder.getMessageFlags(MESSAGE_SERVER_ID)
+        assertThat(messageFlags).isEqualTo(setOf(Flag.FLAGGED, Flag.DRAFT, Flag.X_DOWNLOADED_FULL))
+    }
+
     @Test
     fun saveCompleteMessage_withoutServerId_shouldThrow() {
         val message = createMessage(messageServerId = null)
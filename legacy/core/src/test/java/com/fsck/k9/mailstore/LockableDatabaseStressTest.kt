@@ -0,0 +1,174 @@
+package com.fsck.k9.mailstore
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import assertk.assertThat
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isTrue
+import java.io.File
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import net.thunderbird.core.android.testing.RobolectricTest
+import net.thunderbird.core.logging.legacy.Log
+import net.thunderbird.core.logging.testing.TestLogger
+import net.thunderbird.core.preference.GeneralSettings
+import net.thunderbird.core.preference.GeneralSettingsManager
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.robolectric.RuntimeEnvironment
+
+private const val WRITE_TRANSACTIONS = 50
+private const val MESSAGES_PER_TRANSACTION = 20
+private const val READER_THREADS = 3
+private const val READER_TIMEOUT_SECONDS = 10L
+
+/**
+ * Runs a writer that inserts messages in batches, like a sync does, while message list queries are running on other
+ * threads. Checks that readers only ever see committed transactions and, in write-ahead logging mode, that they don't
+ * have to wait for a running write transaction.
+ */
+class LockableDatabaseStressTest : RobolectricTest() {
+    private val context = RuntimeEnvironment.getApplication()
+    private val directory = File(context.cacheDir, "LockableDatabaseStressTest")
+    private val generalSettingsManager = mock<GeneralSettingsManager> {
+        on { getConfig() } doReturn GeneralSettings()
+    }
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+    }
+
+    @After
+    fun tearDown() {
+        directory.deleteRecursively()
+    }
+
+    @Test
+    fun `concurrent reads and writes in default mode`() {
+        runStressTest(databaseName = "stress-default.db", writeAheadLogging = false)
+    }
+
+    @Test
+    fun `concurrent reads and writes in write-ahead logging mode`() {
+        runStressTest(databaseName = "stress-wal.db", writeAheadLogging = true)
+    }
+
+    @Test
+    fun `read during write transaction in write-ahead logging mode should not wait for the transaction`() {
+        val database = createDatabase(databaseName = "read-during-write.db", writeAheadLogging = true)
+        val readerDone = CountDownLatch(1)
+        var readerMessageCount = -1
+        lateinit var reader: Thread
+
+        val readerFinishedDuringTransaction = database.execute(true) { db ->
+            db.insertMessage(date = 1L)
+
+            reader = Thread {
+                readerMessageCount = database.execute(false) { readerDb -> readerDb.queryMessageList() }
+                readerDone.countDown()
+            }.apply { start() }
+
+            readerDone.await(READER_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        }
+        reader.join()
+
+        assertThat(readerFinishedDuringTransaction).isTrue()
+        assertThat(readerMessageCount).isEqualTo(0)
+    }
+
+    private fun runStressTest(databaseName: String, writeAheadLogging: Boolean) {
+        val database = createDatabase(databaseName, writeAheadLogging)
+        val writerDone = AtomicBoolean(false)
+        val startSignal = CountDownLatch(1)
+        val errors = Collections.synchronizedList(mutableListOf<Throwable>())
+
+        val readers = List(READER_THREADS) {
+            Thread {
+                startSignal.await()
+                try {
+                    do {
+                        val messageCount = database.execute(false) { db -> db.queryMessageList() }
+                        check(messageCount % MESSAGES_PER_TRANSACTION == 0) {
+                            "Reader saw a partially written transaction: $messageCount messages"
+                        }
+                    } while (!writerDone.get())
+                } catch (e: Throwable) {
+                    errors.add(e)
+                }
+            }.apply { start() }
+        }
+
+        startSignal.countDown()
+        try {
+            repeat(WRITE_TRANSACTIONS) { transaction ->
+                database.execute(true) { db ->
+                    repeat(MESSAGES_PER_TRANSACTION) { index ->
+                        db.insertMessage(date = (transaction * MESSAGES_PER_TRANSACTION + index).toLong())
+                    }
+                }
+            }
+        } finally {
+            writerDone.set(true)
+            readers.forEach { it.join() }
+        }
+
+        assertThat(errors).isEmpty()
+        assertThat(database.execute(false) { db -> db.queryMessageList() })
+            .isEqualTo(WRITE_TRANSACTIONS * MESSAGES_PER_TRANSACTION)
+    }
+
+    private fun createDatabase(databaseName: String, writeAheadLogging: Boolean): LockableDatabase {
+        val storageFilesProvider = object : StorageFilesProvider {
+            override fun getDatabaseFile() = File(directory, databaseName)
+            override fun getAttachmentDirectory() = File(directory, "attachments")
+        }
+
+        val schemaDefinition = object : LockableDatabase.SchemaDefinition {
+            override fun getVersion() = 1
+
+            override fun doDbUpgrade(db: SQLiteDatabase) {
+                db.execSQL("CREATE TABLE messages (id INTEGER PRIMARY KEY, subject TEXT, date INTEGER)")
+                db.execSQL("CREATE INDEX messages_date ON messages (date)")
+                db.version = 1
+            }
+        }
+
+        return LockableDatabase(
+            context,
+            storageFilesProvider,
+            schemaDefinition,
+            generalSettingsManager,
+            writeAheadLogging,
+        ).apply {
+            open()
+        }
+    }
+
+    private fun SQLiteDatabase.insertMessage(date: Long) {
+        val values = ContentValues().apply {
+            put("subject", "Message $date")
+            put("date", date)
+        }
+
+        insertOrThrow("messages", null, values)
+    }
+
+    private fun SQLiteDatabase.queryMessageList(): Int {
+        rawQuery("SELECT id, subject FROM messages ORDER BY date DESC LIMIT 100", null).use { cursor ->
+            while (cursor.moveToNext()) {
+                cursor.getString(1)
+            }
+        }
+
+        return rawQuery("SELECT COUNT(*) FROM messages", null).use { cursor ->
+            if (cursor.moveToFirst()) cursor.getInt(0) else 0
+        }
+    }
+}
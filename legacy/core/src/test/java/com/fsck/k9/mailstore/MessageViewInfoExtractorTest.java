@@ -4,6 +4,7 @@ package com.fsck.k9.mailstore;
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -36,6 +37,8 @@ import com.fsck.k9.mailstore.CryptoResultAnnotation.CryptoError;
 import com.fsck.k9.mailstore.MessageViewInfoExtractor.ViewableExtractedText;
 import com.fsck.k9.message.extractors.AttachmentInfoExtractor;
 import app.k9mail.html.cleaner.HtmlProcessor;
+import app.k9mail.html.cleaner.HtmlStageTiming;
+import app.k9mail.html.cleaner.ProcessedHtml;
 import net.thunderbird.core.logging.legacy.Log;
 import net.thunderbird.core.logging.testing.TestLogger;
 import org.junit.Before;
@@ -52,6 +55,7 @@ import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
@@ -100,7 +104,8 @@ public class MessageViewInfoExtractorTest extends K9RobolectricTest {
                 new MessageViewInfoExtractor(null, htmlProcessor,
                         new TestCoreResourceProvider());
         String value = "--sanitized html--";
-        when(htmlProcessor.processForDisplay(anyString())).thenReturn(value);
+        when(htmlProcessor.processForDisplay(anyString(), anyList()))
+                .thenReturn(new ProcessedHtml(value, Collections.<HtmlStageTiming>emptyList()));
 
         // Extract text
         List<Part> outputNonViewableParts = new ArrayList<>();
@@ -644,10 +649,11 @@ public class MessageViewInfoExtractorTest extends K9RobolectricTest {
     HtmlProcessor createFakeHtmlProcessor() {
         HtmlProcessor htmlProcessor = mock(HtmlProcessor.class);
 
-        when(htmlProcessor.processForDisplay(anyString())).thenAnswer(new Answer<String>() {
+        when(htmlProcessor.processForDisplay(anyString(), anyList())).thenAnswer(new Answer<ProcessedHtml>() {
             @Override
-            public String answer(InvocationOnMock invocation) throws Throwable {
-                return (String) invocation.getArguments()[0];
+            public ProcessedHtml answer(InvocationOnMock invocation) throws Throwable {
+                String html = (String) invocation.getArguments()[0];
+                return new ProcessedHtml(html, Collections.<HtmlStageTiming>emptyList());
             }
         });
 
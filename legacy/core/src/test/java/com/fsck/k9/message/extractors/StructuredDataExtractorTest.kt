@@ -0,0 +1,106 @@
+package com.fsck.k9.message.extractors
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.extracting
+import assertk.assertions.isEmpty
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
+import com.fsck.k9.message.MessageCreationHelper.createEmptyPart
+import com.fsck.k9.message.MessageCreationHelper.createMultipartMessage
+import com.fsck.k9.message.MessageCreationHelper.createTextMessage
+import com.fsck.k9.message.MessageCreationHelper.createTextPart
+import net.thunderbird.core.android.testing.RobolectricTest
+import net.thunderbird.core.logging.legacy.Log
+import net.thunderbird.core.logging.testing.TestLogger
+import org.junit.Before
+import org.junit.Test
+
+private const val FLIGHT_RESERVATION_JSON = """{"@context":"http://schema.org","@type":"FlightReservation",""" +
+    """"@id":"reservation1","reservationNumber":"RXJ34P"}"""
+
+class StructuredDataExtractorTest : RobolectricTest() {
+    private val structuredDataExtractor = StructuredDataExtractor()
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+    }
+
+    @Test
+    fun `message without structured data`() {
+        val message = createTextMessage("text/html", "<p>Hello</p>")
+
+        val result = structuredDataExtractor.extractStructuredData(message)
+
+        assertThat(result).isNotNull().isEmpty()
+    }
+
+    @Test
+    fun `JSON-LD in text_html part`() {
+        val message = createTextMessage(
+            "text/html",
+            """<html><head><script type="application/ld+json">$FLIGHT_RESERVATION_JSON</script></head></html>""",
+        )
+
+        val result = structuredDataExtractor.extractStructuredData(message)
+
+        assertThat(result).isNotNull().extracting { Triple(it.types, it.id, it.syntax) }
+            .containsExactly(Triple(listOf("FlightReservation"), "reservation1", "JSON_LD"))
+    }
+
+    @Test
+    fun `application_ld+json part`() {
+        val message = createMultipartMessage(
+            "multipart/related",
+            createTextPart("text/html", "<p>Your flight</p>"),
+            createTextPart("application/ld+json", FLIGHT_RESERVATION_JSON),
+        )
+
+        val result = structuredDataExtractor.extractStructuredData(message)
+
+        assertThat(result).isNotNull().extracting { Triple(it.types, it.id, it.syntax) }
+            .containsExactly(Triple(listOf("FlightReservation"), "reservation1", "JSON_LD"))
+    }
+
+    @Test
+    fun `JSON-LD object with multiple types`() {
+        val json = """{"@context":"http://schema.org","@type":["FlightReservation","Reservation"]}"""
+        val message = createMultipartMessage(
+            "multipart/related",
+            createTextPart("text/html", "<p>Your flight</p>"),
+            createTextPart("application/ld+json", json),
+        )
+
+        val result = structuredDataExtractor.extractStructuredData(message)
+
+        assertThat(result).isNotNull().extracting { it.types }
+            .containsExactly(listOf("FlightReservation", "Reservation"))
+    }
+
+    @Test
+    fun `microdata in text_html part`() {
+        val message = createTextMessage(
+            "text/html",
+            """<div itemscope itemtype="http://schema.org/FlightReservation">""" +
+                """<span itemprop="reservationNumber">RXJ34P</span></div>""",
+        )
+
+        val result = structuredDataExtractor.extractStructuredData(message)
+
+        assertThat(result).isNotNull().extracting { it.syntax }.containsExactly("MICRODATA")
+    }
+
+    @Test
+    fun `message with missing parts`() {
+        val message = createMultipartMessage(
+            "multipart/mixed",
+            createTextPart("text/html", "<p>Hello</p>"),
+            createEmptyPart("application/ld+json"),
+        )
+
+        val result = structuredDataExtractor.extractStructuredData(message)
+
+        assertThat(result).isNull()
+    }
+}
@@ -0,0 +1,105 @@
+package com.fsck.k9.sml
+
+import assertk.assertThat
+import assertk.assertions.contains
+import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.isTrue
+import java.util.Collections
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import net.thunderbird.core.android.testing.RobolectricTest
+import net.thunderbird.core.logging.legacy.Log
+import net.thunderbird.core.logging.testing.TestLogger
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class SMLCardRenderPipelineTest : RobolectricTest() {
+    private val executor = Executors.newFixedThreadPool(2)
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+    }
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+    }
+
+    @Test
+    fun `every rendered card should be reported`() {
+        val pipeline = SMLCardRenderPipeline(executor) { card -> "<p>${card.placeholderId}</p>" }
+        val cards = listOf(createCard("sml-card-0"), createCard("sml-card-1"), createCard("sml-card-2"))
+        val renderedCards = Collections.synchronizedList(mutableListOf<String>())
+
+        pipeline.render(cards) { _, html -> renderedCards.add(html) }
+        awaitTermination()
+
+        assertThat(renderedCards).containsExactlyInAnyOrder(
+            "<p>sml-card-0</p>",
+            "<p>sml-card-1</p>",
+            "<p>sml-card-2</p>",
+        )
+    }
+
+    @Test
+    fun `cards that fail to render should be skipped`() {
+        val pipeline = SMLCardRenderPipeline(executor) { card ->
+            when (card.placeholderId) {
+                "sml-card-0" -> error("Broken template")
+                "sml-card-1" -> null
+                else -> "<p>${card.placeholderId}</p>"
+            }
+        }
+        val cards = listOf(createCard("sml-card-0"), createCard("sml-card-1"), createCard("sml-card-2"))
+        val renderedCards = Collections.synchronizedList(mutableListOf<String>())
+
+        pipeline.render(cards) { card, _ -> renderedCards.add(card.placeholderId) }
+        awaitTermination()
+
+        assertThat(renderedCards).containsExactlyInAnyOrder("sml-card-2")
+    }
+
+    @Test
+    fun `interrupted render should return the renderer to the pool`() {
+        val cardRenderer = SMLCardRenderer(maxRenderers = 1)
+        cardRenderer.warmUp()
+        val singleThreadExecutor = Executors.newSingleThreadExecutor()
+        val pipeline = SMLCardRenderPipeline(singleThreadExecutor) { card ->
+            if (card.placeholderId == "sml-card-0") {
+                // Like RenderJob.cancel() interrupting the thread while the card is being rendered
+                Thread.currentThread().interrupt()
+            }
+            cardRenderer.render(createEvent(card.placeholderId), emptyList())
+        }
+        val renderedCards = Collections.synchronizedList(mutableListOf<String>())
+
+        try {
+            pipeline.render(listOf(createCard("sml-card-0"), createCard("sml-card-1"))) { card, _ ->
+                renderedCards.add(card.placeholderId)
+            }
+            singleThreadExecutor.shutdown()
+
+            assertThat(singleThreadExecutor.awaitTermination(5, TimeUnit.SECONDS)).isTrue()
+            assertThat(renderedCards).contains("sml-card-1")
+        } finally {
+            singleThreadExecutor.shutdownNow()
+        }
+    }
+
+    private fun awaitTermination() {
+        executor.shutdown()
+        executor.awaitTermination(1, TimeUnit.SECONDS)
+    }
+
+    private fun createCard(placeholderId: String) = SMLPendingCard(placeholderId, jsonLds = emptyList())
+
+    private fun createEvent(name: String): JSONObject {
+        return JSONObject()
+            .put("@context", "https://schema.org")
+            .put("@type", "Event")
+            .put("name", name)
+    }
+}
@@ -0,0 +1,61 @@
+package com.fsck.k9.sml
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNotNull
+import net.thunderbird.core.android.testing.RobolectricTest
+import org.audriga.ld2h.ButtonDescription
+import org.json.JSONObject
+import org.junit.Test
+
+class SMLCardRendererTest : RobolectricTest() {
+    private val cardRenderer = SMLCardRenderer(maxCachedCards = 2)
+
+    @Test
+    fun `rendering the same card twice should use the cache`() {
+        val first = cardRenderer.render(createEvent("Concert"), emptyList())
+        val second = cardRenderer.render(createEvent("Concert"), emptyList())
+
+        assertThat(first).isNotNull()
+        assertThat(second).isEqualTo(first)
+        assertThat(cardRenderer.missCount).isEqualTo(1)
+        assertThat(cardRenderer.hitCount).isEqualTo(1)
+    }
+
+    @Test
+    fun `different buttons should not use the cached card`() {
+        cardRenderer.render(createEvent("Concert"), emptyList())
+        cardRenderer.render(createEvent("Concert"), listOf(ButtonDescription("Open", "https://domain.example")))
+
+        assertThat(cardRenderer.missCount).isEqualTo(2)
+        assertThat(cardRenderer.hitCount).isEqualTo(0)
+    }
+
+    @Test
+    fun `least recently used card should be evicted`() {
+        cardRenderer.render(createEvent("One"), emptyList())
+        cardRenderer.render(createEvent("Two"), emptyList())
+        cardRenderer.render(createEvent("One"), emptyList())
+        cardRenderer.render(createEvent("Three"), emptyList())
+
+        cardRenderer.render(createEvent("One"), emptyList())
+        cardRenderer.render(createEvent("Two"), emptyList())
+
+        assertThat(cardRenderer.hitCount).isEqualTo(2)
+        assertThat(cardRenderer.missCount).isEqualTo(4)
+    }
+
+    @Test
+    fun `warm up should not count as cache miss`() {
+        cardRenderer.warmUp()
+
+        assertThat(cardRenderer.missCount).isEqualTo(0)
+    }
+
+    private fun createEvent(name: String): JSONObject {
+        return JSONObject()
+            .put("@context", "https://schema.org")
+            .put("@type", "Event")
+            .put("name", name)
+    }
+}
@@ -0,0 +1,105 @@
+package app.k9mail.legacy.mailstore
+
+/**
+ * Sort order of a message list that is retrieved page by page.
+ *
+ * Pages are delimited by the sort values of the last message of the previous page (keyset pagination) rather than by
+ * an offset. So retrieving a page doesn't get slower the further the user scrolls, and messages that are added or
+ * removed in the meantime don't shift the page boundaries.
+ *
+ * @param sortColumns Expressions over the columns of the message list, e.g. `date` or `IFNULL(subject, '')`. They
+ *   must not evaluate to `NULL`. Use [MessageListSortColumn.ignoreCase] instead of a `COLLATE` clause, so
+ *   [createPageKeyComparator] knows about it.
+ * @param idAscending The message ID is always used as the last sort column, so every message has a unique position.
+ */
+data class MessageListSortOrder(
+    val sortColumns: List<MessageListSortColumn>,
+    val idAscending: Boolean = false,
+)
+
+/**
+ * @param ignoreCase Compare text values using SQLite's `NOCASE` collation, i.e. ignoring the case of ASCII letters.
+ */
+data class MessageListSortColumn(
+    val expression: String,
+    val ascending: Boolean,
+    val ignoreCase: Boolean = false,
+)
+
+/**
+ * Returns a [Comparator] that orders [MessageListPageKey]s the same way SQLite orders the messages they belong to.
+ *
+ * This allows merging the pages of multiple message lists with the same sort order.
+ */
+fun MessageListSortOrder.createPageKeyComparator(): Comparator<MessageListPageKey> {
+    return Comparator { key1, key2 ->
+        for ((index, sortColumn) in sortColumns.withIndex()) {
+            val result = compareSortValues(key1.sortValues[index], key2.sortValues[index], sortColumn.ignoreCase)
+            if (result != 0) {
+                return@Comparator if (sortColumn.ascending) result else -result
+            }
+        }
+
+        val result = key1.id.compareTo(key2.id)
+        if (idAscending) result else -result
+    }
+}
+
+/**
+ * Compares sort values like SQLite does: numbers come before text, and text is compared by Unicode code points (the
+ * order of the UTF-8 encoding used by the `BINARY` collation).
+ */
+private fun compareSortValues(value1: Any, value2: Any, ignoreCase: Boolean): Int {
+    return when {
+        value1 is Long && value2 is Long -> value1.compareTo(value2)
+        value1 is String && value2 is String -> compareText(value1, value2, ignoreCase)
+        value1 is Long && value2 is String -> -1
+        value1 is String && value2 is Long -> 1
+        else -> throw IllegalArgumentException("Unsupported sort values: $value1, $value2")
+    }
+}
+
+private fun compareText(text1: String, text2: String, ignoreCase: Boolean): Int {
+    var index1 = 0
+    var index2 = 0
+    while (index1 < text1.length && index2 < text2.length) {
+        val codePoint1 = text1.codePointAt(index1)
+        val codePoint2 = text2.codePointAt(index2)
+
+        val result = if (ignoreCase) {
+            codePoint1.lowercaseAscii().compareTo(codePoint2.lowercaseAscii())
+        } else {
+            codePoint1.compareTo(codePoint2)
+        }
+        if (result != 0) return result
+
+        index1 += Character.charCount(codePoint1)
+        index2 += Character.charCount(codePoint2)
+    }
+
+    return (text1.length - index1).compareTo(text2.length - index2)
+}
+
+private fun Int.lowercaseAscii(): Int = if (this in 'A'.code..'Z'.code) this + ('a' - 'A') else this
+
+/**
+ * Position of a message in a list sorted by a [MessageListSortOrder].
+ *
+ * @param sortValues The value of every sort column, either a [Long] or a [String].
+ */
+data class MessageListPageKey(
+    val sortValues: List<Any>,
+    val id: Long,
+)
+
+/**
+ * A page of a message list.
+ *
+ * @param itemKeys The position of every entry in [items], e.g. to merge it with pages of another message list.
+ * @param nextPageKey Pass this to retrieve the next page. `null` if this is the last page.
+ */
+data class MessageListPage<T>(
+    val items: List<T>,
+    val itemKeys: List<MessageListPageKey>,
+    val nextPageKey: MessageListPageKey?,
+)
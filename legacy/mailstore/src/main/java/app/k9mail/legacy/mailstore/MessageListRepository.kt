@@ -22,6 +22,27 @@ interface MessageListRepository {
         messageMapper: MessageMapper<T>,
     ): List<T>
 
+    fun <T> getMessagesPage(
+        accountUuid: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
+        messageMapper: MessageMapper<T>,
+    ): MessageListPage<T>
+
+    fun <T> getThreadedMessagesPage(
+        accountUuid: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
+        messageMapper: MessageMapper<T>,
+        selectsWholeFolders: Boolean = false,
+    ): MessageListPage<T>
+
     fun <T> getThread(
         accountUuid: String,
         threadId: Long,
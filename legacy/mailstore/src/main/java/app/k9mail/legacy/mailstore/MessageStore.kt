@@ -22,6 +22,17 @@ interface MessageStore {
      */
     fun saveRemoteMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData)
 
+    /**
+     * Save multiple remote messages in this store.
+     *
+     * This is a lot faster than calling [saveRemoteMessage] for every message, e.g. when downloading the messages of a
+     * folder for the first time. [messages] is consumed a chunk at a time and every chunk is saved in its own
+     * transaction.
+     *
+     * @param messages Pairs of message server ID and the message data.
+     */
+    fun saveRemoteMessages(folderId: Long, messages: Sequence<Pair<String, SaveMessageData>>)
+
     /**
      * Save a local message in this store.
      *
@@ -81,6 +92,14 @@ interface MessageStore {
      */
     fun setMessageFlag(folderId: Long, messageServerId: String, flag: Flag, set: Boolean)
 
+    /**
+     * Set or remove flags on multiple messages in a single transaction.
+     *
+     * @param flagChanges A mapping of the message server ID to the flags that should be set (`true`) or removed
+     *   (`false`).
+     */
+    fun setMessageFlags(folderId: Long, flagChanges: Map<String, Map<Flag, Boolean>>)
+
     /**
      * Set whether a message should be considered as new.
      */
@@ -118,6 +137,14 @@ interface MessageStore {
      */
     fun getMessageFlags(folderId: Long, messageServerId: String): Set<Flag>
 
+    /**
+     * Get the flags associated with the given messages.
+     *
+     * @return A mapping of the message server ID to the message's flags. Messages that are not present in the store
+     *   are not included.
+     */
+    fun getMessageFlags(folderId: Long, messageServerIds: Collection<String>): Map<String, Set<Flag>>
+
     /**
      * Retrieve server IDs and dates for all remote messages in the given folder.
      */
@@ -143,6 +170,39 @@ interface MessageStore {
         messageMapper: MessageMapper<out T?>,
     ): List<T>
 
+    /**
+     * Retrieve a page of the list of messages.
+     *
+     * Pass `null` as [pageKey] to retrieve the first page, or [MessageListPage.nextPageKey] of the previous page.
+     */
+    fun <T> getMessagesPage(
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
+        messageMapper: MessageMapper<out T?>,
+    ): MessageListPage<T>
+
+    /**
+     * Retrieve a page of the threaded list of messages.
+     *
+     * Pass `null` as [pageKey] to retrieve the first page, or [MessageListPage.nextPageKey] of the previous page.
+     *
+     * @param selectsWholeFolders Pass `true` if [selection] only selects messages by the folder they're in, e.g. the
+     *   folder ID or whether the folder is included in the Unified Inbox. The thread aggregates can then be read from
+     *   precomputed per-folder values.
+     */
+    fun <T> getThreadedMessagesPage(
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
+        messageMapper: MessageMapper<out T?>,
+        selectsWholeFolders: Boolean = false,
+    ): MessageListPage<T>
+
     /**
      * Retrieve list of messages in a thread.
      */
@@ -163,6 +223,21 @@ interface MessageStore {
      */
     fun getHeaders(folderId: Long, messageServerId: String, headerNames: Set<String>): List<Header>
 
+    /**
+     * Retrieve the structured data that was extracted from a message when it was saved.
+     *
+     * Returns `null` if no extraction was performed for this message, e.g. because it was only partially downloaded.
+     */
+    fun getStructuredData(messageId: Long): List<StructuredDataEntry>?
+
+    /**
+     * Retrieve the IDs of all messages containing structured data of the given type, e.g. `FlightReservation`.
+     *
+     * Messages that were stored before structured data was extracted when saving aren't included. They're not
+     * processed retroactively.
+     */
+    fun getMessageIdsWithStructuredDataType(type: String): List<Long>
+
     /**
      * Return the size of this message store in bytes.
      */
@@ -0,0 +1,16 @@
+package app.k9mail.legacy.mailstore
+
+/**
+ * A schema.org object found in a message, e.g. a `FlightReservation`.
+ *
+ * @param types The values of the object's `@type` property. JSON-LD allows an object to have more than one type.
+ * @param id The value of the object's `@id` property, if present.
+ * @param json The object serialized as JSON-LD.
+ * @param syntax The name of the syntax the object was found in, e.g. `JSON_LD` or `MICRODATA`.
+ */
+data class StructuredDataEntry(
+    val types: List<String>,
+    val id: String?,
+    val json: String,
+    val syntax: String,
+)
@@ -6,6 +6,7 @@ dependencies {
     api(libs.koin.core)
 
     implementation(projects.core.logging.api)
+    implementation(projects.core.featureflag)
 
     implementation(projects.legacy.core)
     implementation(libs.androidx.core.ktx)
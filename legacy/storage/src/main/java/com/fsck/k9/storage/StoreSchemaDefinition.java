@@ -12,7 +12,10 @@ import net.thunderbird.core.logging.legacy.Log;
 
 
 class StoreSchemaDefinition implements SchemaDefinition {
-    static final int DB_VERSION = 88;
+    static final int DB_VERSION = 94;
+
+    private static final String THREAD_SUMMARY_COLUMNS = "folder_id, root, message_id, date, internal_date, " +
+            "message_count, unread_count, flagged_count, answered_count, forwarded_count, attachment_count";
 
     private final MigrationsHelper migrationsHelper;
 
@@ -43,6 +46,7 @@ class StoreSchemaDefinition implements SchemaDefinition {
 
     private void upgradeDatabase(final SQLiteDatabase db) {
         Log.i("Upgrading database from version %d to version %d", db.getVersion(), DB_VERSION);
+        int oldVersion = db.getVersion();
 
         db.beginTransaction();
         try {
@@ -70,6 +74,29 @@ class StoreSchemaDefinition implements SchemaDefinition {
         if (db.getVersion() != DB_VERSION) {
             throw new RuntimeException("Database upgrade failed!");
         }
+
+        if (oldVersion >= 61 && oldVersion < 92) {
+            deleteMigratedMessagePartFiles(db);
+        }
+    }
+
+    /**
+     * Migration 92 copies message part files into the blob store. The original files can only be removed after the
+     * migration has been committed. If this fails, the files will be removed the next time the database is compacted.
+     */
+    private void deleteMigratedMessagePartFiles(SQLiteDatabase db) {
+        try {
+            db.beginTransaction();
+            try {
+                migrationsHelper.getAttachmentBlobStore().deleteOrphanedFiles(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (Exception e) {
+            // Don't let doDbUpgrade() reset the database because of leftover files
+            Log.e(e, "Error deleting message part files that have been moved to the blob store");
+        }
     }
 
     private static void dbCreateDatabaseFromScratch(SQLiteDatabase db) {
@@ -141,7 +168,8 @@ class StoreSchemaDefinition implements SchemaDefinition {
                 "forwarded INTEGER default 0, " +
                 "message_part_id INTEGER," +
                 "encryption_type TEXT," +
-                "new_message INTEGER DEFAULT 0" +
+                "new_message INTEGER DEFAULT 0, " +
+                "structured_data_extracted INTEGER DEFAULT 0" +
                 ")");
 
         db.execSQL("DROP INDEX IF EXISTS new_messages");
@@ -173,7 +201,9 @@ class StoreSchemaDefinition implements SchemaDefinition {
                 "epilogue TEXT, " +
                 "boundary TEXT, " +
                 "content_id TEXT, " +
-                "server_extra TEXT" +
+                "server_extra TEXT, " +
+                "blob_key TEXT, " +
+                "data_compression INTEGER DEFAULT 0" +
                 ")");
 
         db.execSQL("CREATE TRIGGER set_message_part_root " +
@@ -182,6 +212,39 @@ class StoreSchemaDefinition implements SchemaDefinition {
                 "UPDATE message_parts SET root=id WHERE root IS NULL AND ROWID = NEW.ROWID; " +
                 "END");
 
+        db.execSQL("DROP TABLE IF EXISTS blobs");
+        db.execSQL("CREATE TABLE blobs (" +
+                "blob_key TEXT PRIMARY KEY, " +
+                "ref_count INTEGER NOT NULL DEFAULT 0" +
+                ")");
+
+        db.execSQL("DROP TRIGGER IF EXISTS blobs_insert_message_part");
+        db.execSQL("CREATE TRIGGER blobs_insert_message_part " +
+                "AFTER INSERT ON message_parts " +
+                "WHEN NEW.blob_key IS NOT NULL " +
+                "BEGIN " +
+                "INSERT OR IGNORE INTO blobs (blob_key) VALUES (NEW.blob_key); " +
+                "UPDATE blobs SET ref_count = ref_count + 1 WHERE blob_key = NEW.blob_key; " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS blobs_update_message_part");
+        db.execSQL("CREATE TRIGGER blobs_update_message_part " +
+                "AFTER UPDATE OF blob_key ON message_parts " +
+                "WHEN OLD.blob_key IS NOT NEW.blob_key " +
+                "BEGIN " +
+                "UPDATE blobs SET ref_count = ref_count - 1 WHERE blob_key = OLD.blob_key; " +
+                "INSERT OR IGNORE INTO blobs (blob_key) SELECT NEW.blob_key WHERE NEW.blob_key IS NOT NULL; " +
+                "UPDATE blobs SET ref_count = ref_count + 1 WHERE blob_key = NEW.blob_key; " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS blobs_delete_message_part");
+        db.execSQL("CREATE TRIGGER blobs_delete_message_part " +
+                "AFTER DELETE ON message_parts " +
+                "WHEN OLD.blob_key IS NOT NULL " +
+                "BEGIN " +
+                "UPDATE blobs SET ref_count = ref_count - 1 WHERE blob_key = OLD.blob_key; " +
+                "END");
+
         db.execSQL("CREATE INDEX IF NOT EXISTS msg_uid ON messages (uid, folder_id)");
         db.execSQL("DROP INDEX IF EXISTS msg_folder_id");
         db.execSQL("DROP INDEX IF EXISTS msg_folder_id_date");
@@ -254,12 +317,218 @@ class StoreSchemaDefinition implements SchemaDefinition {
                 "BEGIN " +
                 "DELETE FROM message_parts WHERE root = OLD.message_part_id; " +
                 "DELETE FROM messages_fulltext WHERE docid = OLD.id; " +
+                "DELETE FROM messages_search WHERE docid = OLD.id; " +
                 "DELETE FROM threads WHERE message_id = OLD.id; " +
+                "DELETE FROM structured_data WHERE message_id = OLD.id; " +
                 "END");
 
         db.execSQL("DROP TABLE IF EXISTS messages_fulltext");
         db.execSQL("CREATE VIRTUAL TABLE messages_fulltext USING fts4 (fulltext)");
 
+        db.execSQL("DROP TABLE IF EXISTS messages_search");
+        db.execSQL("CREATE VIRTUAL TABLE messages_search USING fts4 " +
+                "(subject, sender_list, to_list, cc_list, bcc_list, reply_to_list)");
+
+        db.execSQL("DROP TABLE IF EXISTS folder_counts");
+        db.execSQL("CREATE TABLE folder_counts (" +
+                "folder_id INTEGER PRIMARY KEY, " +
+                "total_count INTEGER NOT NULL DEFAULT 0, " +
+                "unread_count INTEGER NOT NULL DEFAULT 0, " +
+                "starred_count INTEGER NOT NULL DEFAULT 0" +
+                ")");
+
+        db.execSQL("DROP TRIGGER IF EXISTS create_folder_counts");
+        db.execSQL("CREATE TRIGGER create_folder_counts " +
+                "AFTER INSERT ON folders " +
+                "BEGIN " +
+                "INSERT INTO folder_counts (folder_id) VALUES (NEW.id); " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS delete_folder_counts");
+        db.execSQL("CREATE TRIGGER delete_folder_counts " +
+                "AFTER DELETE ON folders " +
+                "BEGIN " +
+                "DELETE FROM folder_counts WHERE folder_id = OLD.id; " +
+                "END");
+
+        // 'INSERT OR REPLACE' doesn't run delete triggers for the row it replaces. So the counts of a message that is
+        // about to be replaced are removed before the insert.
+        db.execSQL("DROP TRIGGER IF EXISTS folder_counts_replace_message");
+        db.execSQL("CREATE TRIGGER folder_counts_replace_message " +
+                "BEFORE INSERT ON messages " +
+                "BEGIN " +
+                "UPDATE folder_counts SET " +
+                "total_count = total_count - 1, " +
+                "unread_count = unread_count - (SELECT read IS 0 FROM messages WHERE id = NEW.id), " +
+                "starred_count = starred_count - (SELECT flagged IS 1 FROM messages WHERE id = NEW.id) " +
+                "WHERE folder_id = " +
+                "(SELECT folder_id FROM messages WHERE id = NEW.id AND empty = 0 AND deleted = 0); " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS folder_counts_insert_message");
+        db.execSQL("CREATE TRIGGER folder_counts_insert_message " +
+                "AFTER INSERT ON messages " +
+                "BEGIN " +
+                "UPDATE folder_counts SET " +
+                "total_count = total_count + 1, " +
+                "unread_count = unread_count + (NEW.read IS 0), " +
+                "starred_count = starred_count + (NEW.flagged IS 1) " +
+                "WHERE folder_id = NEW.folder_id AND NEW.empty IS 0 AND NEW.deleted IS 0; " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS folder_counts_update_message");
+        db.execSQL("CREATE TRIGGER folder_counts_update_message " +
+                "AFTER UPDATE OF folder_id, empty, deleted, read, flagged ON messages " +
+                "BEGIN " +
+                "UPDATE folder_counts SET " +
+                "total_count = total_count - 1, " +
+                "unread_count = unread_count - (OLD.read IS 0), " +
+                "starred_count = starred_count - (OLD.flagged IS 1) " +
+                "WHERE folder_id = OLD.folder_id AND OLD.empty IS 0 AND OLD.deleted IS 0; " +
+                "UPDATE folder_counts SET " +
+                "total_count = total_count + 1, " +
+                "unread_count = unread_count + (NEW.read IS 0), " +
+                "starred_count = starred_count + (NEW.flagged IS 1) " +
+                "WHERE folder_id = NEW.folder_id AND NEW.empty IS 0 AND NEW.deleted IS 0; " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS folder_counts_delete_message");
+        db.execSQL("CREATE TRIGGER folder_counts_delete_message " +
+                "AFTER DELETE ON messages " +
+                "BEGIN " +
+                "UPDATE folder_counts SET " +
+                "total_count = total_count - 1, " +
+                "unread_count = unread_count - (OLD.read IS 0), " +
+                "starred_count = starred_count - (OLD.flagged IS 1) " +
+                "WHERE folder_id = OLD.folder_id AND OLD.empty IS 0 AND OLD.deleted IS 0; " +
+                "END");
+
+        db.execSQL("DROP TABLE IF EXISTS thread_summary");
+        db.execSQL("CREATE TABLE thread_summary (" +
+                "folder_id INTEGER NOT NULL, " +
+                "root INTEGER NOT NULL, " +
+                "message_id INTEGER NOT NULL, " +
+                "date INTEGER, " +
+                "internal_date INTEGER, " +
+                "message_count INTEGER NOT NULL, " +
+                "unread_count INTEGER NOT NULL, " +
+                "flagged_count INTEGER NOT NULL, " +
+                "answered_count INTEGER NOT NULL, " +
+                "forwarded_count INTEGER NOT NULL, " +
+                "attachment_count INTEGER NOT NULL, " +
+                "PRIMARY KEY (folder_id, root)" +
+                ")");
+
+        db.execSQL("DROP INDEX IF EXISTS thread_summary_root");
+        db.execSQL("CREATE INDEX IF NOT EXISTS thread_summary_root ON thread_summary (root)");
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_insert_thread");
+        db.execSQL("CREATE TRIGGER thread_summary_insert_thread " +
+                "AFTER INSERT ON threads " +
+                "WHEN NEW.root IS NOT NULL " +
+                "BEGIN " +
+                addToThreadSummary("NEW.message_id", "NEW.root", storedMessage("NEW.message_id")) +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_update_thread");
+        db.execSQL("CREATE TRIGGER thread_summary_update_thread " +
+                "AFTER UPDATE OF root, message_id ON threads " +
+                "WHEN OLD.root IS NOT NEW.root OR OLD.message_id IS NOT NEW.message_id " +
+                "BEGIN " +
+                removeFromThreadSummary("OLD.message_id", "OLD.root", storedMessage("OLD.message_id")) +
+                addToThreadSummary("NEW.message_id", "NEW.root", storedMessage("NEW.message_id")) +
+                "END");
+
+        // Deleting a message deletes its 'threads' row first. So this also takes care of deleted messages.
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_delete_thread");
+        db.execSQL("CREATE TRIGGER thread_summary_delete_thread " +
+                "AFTER DELETE ON threads " +
+                "BEGIN " +
+                removeFromThreadSummary("OLD.message_id", "OLD.root", storedMessage("OLD.message_id")) +
+                "END");
+
+        // 'INSERT OR REPLACE' doesn't run the delete triggers for the row it replaces. The old values of a message
+        // that is already part of a thread are only available before the insert.
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_replace_message");
+        db.execSQL("CREATE TRIGGER thread_summary_replace_message " +
+                "BEFORE INSERT ON messages " +
+                "BEGIN " +
+                removeFromThreadSummary("NEW.id", threadRoot("NEW.id"), storedMessage("NEW.id")) +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_insert_message");
+        db.execSQL("CREATE TRIGGER thread_summary_insert_message " +
+                "AFTER INSERT ON messages " +
+                "BEGIN " +
+                addToThreadSummary("NEW.id", threadRoot("NEW.id"), column -> "NEW." + column) +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_update_message");
+        db.execSQL("CREATE TRIGGER thread_summary_update_message " +
+                "AFTER UPDATE OF folder_id, empty, deleted, date, internal_date ON messages " +
+                "WHEN OLD.folder_id IS NOT NEW.folder_id OR OLD.empty IS NOT NEW.empty " +
+                "OR OLD.deleted IS NOT NEW.deleted OR OLD.date IS NOT NEW.date " +
+                "OR OLD.internal_date IS NOT NEW.internal_date " +
+                "BEGIN " +
+                removeFromThreadSummary("OLD.id", threadRoot("OLD.id"), column -> "OLD." + column) +
+                addToThreadSummary("NEW.id", threadRoot("NEW.id"), column -> "NEW." + column) +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_update_message_flags");
+        db.execSQL("CREATE TRIGGER thread_summary_update_message_flags " +
+                "AFTER UPDATE OF read, flagged, answered, forwarded, attachment_count ON messages " +
+                "WHEN OLD.folder_id IS NEW.folder_id AND OLD.empty IS NEW.empty " +
+                "AND OLD.deleted IS NEW.deleted AND OLD.date IS NEW.date " +
+                "AND OLD.internal_date IS NEW.internal_date AND (" +
+                "OLD.read IS NOT NEW.read OR OLD.flagged IS NOT NEW.flagged " +
+                "OR OLD.answered IS NOT NEW.answered OR OLD.forwarded IS NOT NEW.forwarded " +
+                "OR OLD.attachment_count IS NOT NEW.attachment_count) " +
+                "BEGIN " +
+                "UPDATE thread_summary SET " +
+                "unread_count = unread_count - (OLD.read IS 0) + (NEW.read IS 0), " +
+                "flagged_count = flagged_count - (OLD.flagged IS 1) + (NEW.flagged IS 1), " +
+                "answered_count = answered_count - (OLD.answered IS 1) + (NEW.answered IS 1), " +
+                "forwarded_count = forwarded_count - (OLD.forwarded IS 1) + (NEW.forwarded IS 1), " +
+                "attachment_count = attachment_count - IFNULL(OLD.attachment_count, 0) + " +
+                "IFNULL(NEW.attachment_count, 0) " +
+                "WHERE folder_id = NEW.folder_id AND root = " + threadRoot("NEW.id") + " " +
+                "AND NEW.empty = 0 AND NEW.deleted = 0; " +
+                "END");
+
+        db.execSQL("DROP TABLE IF EXISTS structured_data");
+        db.execSQL("CREATE TABLE structured_data (" +
+                "id INTEGER PRIMARY KEY, " +
+                "message_id INTEGER NOT NULL, " +
+                "json_ld_id TEXT, " +
+                "json TEXT NOT NULL, " +
+                "syntax TEXT NOT NULL" +
+                ")");
+
+        db.execSQL("DROP INDEX IF EXISTS structured_data_message_id");
+        db.execSQL("CREATE INDEX IF NOT EXISTS structured_data_message_id ON structured_data (message_id)");
+
+        db.execSQL("DROP TABLE IF EXISTS structured_data_types");
+        db.execSQL("CREATE TABLE structured_data_types (" +
+                "id INTEGER PRIMARY KEY, " +
+                "structured_data_id INTEGER NOT NULL, " +
+                "type TEXT NOT NULL" +
+                ")");
+
+        db.execSQL("DROP INDEX IF EXISTS structured_data_types_type");
+        db.execSQL("CREATE INDEX IF NOT EXISTS structured_data_types_type " +
+                "ON structured_data_types (type, structured_data_id)");
+
+        db.execSQL("DROP INDEX IF EXISTS structured_data_types_structured_data_id");
+        db.execSQL("CREATE INDEX IF NOT EXISTS structured_data_types_structured_data_id " +
+                "ON structured_data_types (structured_data_id)");
+
+        db.execSQL("DROP TRIGGER IF EXISTS delete_structured_data");
+        db.execSQL("CREATE TRIGGER delete_structured_data " +
+                "BEFORE DELETE ON structured_data " +
+                "BEGIN " +
+                "DELETE FROM structured_data_types WHERE structured_data_id = OLD.id; " +
+                "END");
+
         db.execSQL("DROP TABLE IF EXISTS notifications");
         db.execSQL("CREATE TABLE notifications (" +
                 "message_id INTEGER PRIMARY KEY NOT NULL REFERENCES messages(id) ON DELETE CASCADE," +
@@ -270,4 +539,91 @@ class StoreSchemaDefinition implements SchemaDefinition {
         db.execSQL("DROP INDEX IF EXISTS notifications_timestamp");
         db.execSQL("CREATE INDEX IF NOT EXISTS notifications_timestamp ON notifications(timestamp)");
     }
+
+    /**
+     * Returns the statements that add a message to the 'thread_summary' row of its folder and thread.
+     */
+    private static String addToThreadSummary(String messageId, String root, MessageValue message) {
+        String folderId = message.of("folder_id");
+        String date = message.of("date");
+        String internalDate = message.of("internal_date");
+        String isVisible = root + " IS NOT NULL AND " + message.of("empty") + " = 0 AND " +
+                message.of("deleted") + " = 0";
+        String isLatest = "message_count = 0 OR (" + date + " IS NOT NULL AND (date IS NULL OR " + date + " > date))";
+        String summaryRow = "folder_id = " + folderId + " AND root = " + root;
+
+        // Not using 'INSERT OR IGNORE'. Inside a trigger the conflict resolution of an outer 'INSERT OR REPLACE' would
+        // be used instead.
+        return "INSERT INTO thread_summary (" + THREAD_SUMMARY_COLUMNS + ") " +
+                "SELECT " + folderId + ", " + root + ", " + messageId + ", NULL, NULL, 0, 0, 0, 0, 0, 0 " +
+                "WHERE " + isVisible + " AND NOT EXISTS (SELECT 1 FROM thread_summary WHERE " + summaryRow + "); " +
+                "UPDATE thread_summary SET " +
+                "message_id = CASE WHEN " + isLatest + " THEN " + messageId + " ELSE message_id END, " +
+                "date = CASE WHEN " + isLatest + " THEN " + date + " ELSE date END, " +
+                "internal_date = IFNULL(MAX(internal_date, " + internalDate + "), " +
+                "IFNULL(internal_date, " + internalDate + ")), " +
+                "message_count = message_count + 1, " +
+                "unread_count = unread_count + (" + message.of("read") + " IS 0), " +
+                "flagged_count = flagged_count + (" + message.of("flagged") + " IS 1), " +
+                "answered_count = answered_count + (" + message.of("answered") + " IS 1), " +
+                "forwarded_count = forwarded_count + (" + message.of("forwarded") + " IS 1), " +
+                "attachment_count = attachment_count + IFNULL(" + message.of("attachment_count") + ", 0) " +
+                "WHERE " + summaryRow + " AND " + isVisible + "; ";
+    }
+
+    /**
+     * Returns the statements that remove a message from the 'thread_summary' row of its folder and thread. The row is
+     * recomputed if the message provided its latest date or internal date.
+     */
+    private static String removeFromThreadSummary(String messageId, String root, MessageValue message) {
+        String folderId = message.of("folder_id");
+        String isVisible = root + " IS NOT NULL AND " + message.of("empty") + " = 0 AND " +
+                message.of("deleted") + " = 0";
+        String summaryRow = "folder_id = " + folderId + " AND root = " + root;
+
+        return "UPDATE thread_summary SET " +
+                "message_count = message_count - 1, " +
+                "unread_count = unread_count - (" + message.of("read") + " IS 0), " +
+                "flagged_count = flagged_count - (" + message.of("flagged") + " IS 1), " +
+                "answered_count = answered_count - (" + message.of("answered") + " IS 1), " +
+                "forwarded_count = forwarded_count - (" + message.of("forwarded") + " IS 1), " +
+                "attachment_count = attachment_count - IFNULL(" + message.of("attachment_count") + ", 0) " +
+                "WHERE " + summaryRow + " AND " + isVisible + "; " +
+                "DELETE FROM thread_summary " +
+                "WHERE " + summaryRow + " AND " + isVisible + " AND " +
+                "(message_count = 0 OR message_id = " + messageId + " OR " +
+                "internal_date = " + message.of("internal_date") + "); " +
+                "INSERT INTO thread_summary (" + THREAD_SUMMARY_COLUMNS + ") " +
+                "SELECT messages.folder_id, threads.root, messages.id, " +
+                "MAX(messages.date), (" +
+                "SELECT MAX(m.internal_date) FROM threads AS t JOIN messages AS m ON (m.id = t.message_id) " +
+                "WHERE t.root = threads.root AND m.folder_id = messages.folder_id AND m.empty = 0 AND m.deleted = 0 " +
+                "AND m.id != " + messageId +
+                "), " +
+                "COUNT(messages.id), SUM(messages.read IS 0), SUM(messages.flagged IS 1), " +
+                "SUM(messages.answered IS 1), " +
+                "SUM(messages.forwarded IS 1), SUM(IFNULL(messages.attachment_count, 0)) " +
+                "FROM threads " +
+                "JOIN messages ON (messages.id = threads.message_id) " +
+                "WHERE threads.root = " + root + " AND messages.folder_id = " + folderId + " " +
+                "AND messages.id != " + messageId + " AND messages.empty = 0 AND messages.deleted = 0 " +
+                "AND " + isVisible + " " +
+                "AND NOT EXISTS (SELECT 1 FROM thread_summary WHERE " + summaryRow + ") " +
+                "GROUP BY messages.folder_id; ";
+    }
+
+    private static MessageValue storedMessage(String messageId) {
+        return column -> "(SELECT " + column + " FROM messages WHERE id = " + messageId + ")";
+    }
+
+    private static String threadRoot(String messageId) {
+        return "(SELECT root FROM threads WHERE message_id = " + messageId + ")";
+    }
+
+    /**
+     * Maps a column name of the 'messages' table to an SQL expression returning the message's value.
+     */
+    private interface MessageValue {
+        String of(String column);
+    }
 }
@@ -1,6 +1,7 @@
 package com.fsck.k9.storage.messages
 
-import com.fsck.k9.helper.FileHelper
+import android.database.sqlite.SQLiteDatabase
+import com.fsck.k9.mailstore.AttachmentBlobStore
 import com.fsck.k9.mailstore.StorageFilesProvider
 import java.io.File
 import net.thunderbird.core.logging.legacy.Log
@@ -10,6 +11,8 @@ internal class AttachmentFileManager(
     private val storageFilesProvider: StorageFilesProvider,
     private val generalSettingsManager: GeneralSettingsManager,
 ) {
+    private val attachmentBlobStore = AttachmentBlobStore(storageFilesProvider)
+
     fun deleteFile(messagePartId: Long) {
         val file = getAttachmentFile(messagePartId)
         if (file.exists() && !file.delete() && generalSettingsManager.getConfig().debugging.isDebugLoggingEnabled) {
@@ -17,9 +20,11 @@ internal class AttachmentFileManager(
         }
     }
 
-    fun moveTemporaryFile(temporaryFile: File, messagePartId: Long) {
-        val destinationFile = getAttachmentFile(messagePartId)
-        FileHelper.renameOrMoveByCopying(temporaryFile, destinationFile)
+    /**
+     * Moves [temporaryFile] into the blob store and returns the blob key to save in the `message_parts` row.
+     */
+    fun storeTemporaryFile(temporaryFile: File): String {
+        return attachmentBlobStore.storeFile(temporaryFile)
     }
 
     fun copyFile(sourceMessagePartId: Long, destinationMessagePartId: Long) {
@@ -28,8 +33,20 @@ internal class AttachmentFileManager(
         sourceFile.copyTo(destinationFile)
     }
 
+    fun deleteUnreferencedBlobs(database: SQLiteDatabase) {
+        attachmentBlobStore.deleteUnreferencedBlobs(database)
+    }
+
+    fun deleteOrphanedFiles(database: SQLiteDatabase) {
+        attachmentBlobStore.deleteOrphanedFiles(database)
+    }
+
     fun getAttachmentFile(messagePartId: Long): File {
         val attachmentDirectory = storageFilesProvider.getAttachmentDirectory()
         return File(attachmentDirectory, messagePartId.toString())
     }
+
+    fun getBlobFile(blobKey: String): File {
+        return attachmentBlobStore.getBlobFile(blobKey)
+    }
 }
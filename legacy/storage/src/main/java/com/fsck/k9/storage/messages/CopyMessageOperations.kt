@@ -20,6 +20,8 @@ internal class CopyMessageOperations(
             val newMessageId = copyMessage(database, messageId, destinationFolderId)
 
             copyFulltextEntry(database, newMessageId, messageId)
+            copySearchEntry(database, newMessageId, messageId)
+            copyStructuredDataEntries(database, newMessageId, messageId)
 
             newMessageId
         }
@@ -88,7 +90,9 @@ SELECT
   message_parts.epilogue,
   message_parts.boundary,
   message_parts.content_id,
-  message_parts.server_extra 
+  message_parts.server_extra, 
+  message_parts.blob_key, 
+  message_parts.data_compression 
 FROM messages 
 JOIN message_parts ON (message_parts.root = messages.message_part_id) 
 WHERE messages.id = ? 
@@ -149,11 +153,14 @@ ORDER BY message_parts.seq
             put("boundary", databaseMessagePart.boundary)
             put("content_id", databaseMessagePart.contentId)
             put("server_extra", databaseMessagePart.serverExtra)
+            put("blob_key", databaseMessagePart.blobKey)
+            put("data_compression", databaseMessagePart.dataCompression)
         }
 
         val messagePartId = database.insert("message_parts", null, values)
 
-        if (databaseMessagePart.dataLocation == DataLocation.ON_DISK) {
+        // Blobs are shared by all message parts with the same content. Only files that predate blobs have to be copied.
+        if (databaseMessagePart.dataLocation == DataLocation.ON_DISK && databaseMessagePart.blobKey == null) {
             attachmentFileManager.copyFile(databaseMessagePart.id, messagePartId)
         }
 
@@ -207,6 +214,53 @@ ORDER BY message_parts.seq
         )
     }
 
+    private fun copySearchEntry(database: SQLiteDatabase, newMessageId: Long, messageId: Long) {
+        database.execSQL(
+            "INSERT OR REPLACE INTO messages_search " +
+                "(docid, subject, sender_list, to_list, cc_list, bcc_list, reply_to_list) " +
+                "SELECT ?, subject, sender_list, to_list, cc_list, bcc_list, reply_to_list " +
+                "FROM messages_search WHERE docid = ?",
+            arrayOf(newMessageId.toString(), messageId.toString()),
+        )
+    }
+
+    private fun copyStructuredDataEntries(database: SQLiteDatabase, newMessageId: Long, messageId: Long) {
+        val structuredDataIds = database.query(
+            "structured_data",
+            arrayOf("id"),
+            "message_id = ?",
+            arrayOf(messageId.toString()),
+            null,
+            null,
+            "id",
+        ).use { cursor ->
+            buildList {
+                while (cursor.moveToNext()) {
+                    add(cursor.getLong(0))
+                }
+            }
+        }
+
+        if (structuredDataIds.isEmpty()) return
+
+        database.compileStatement(
+            "INSERT INTO structured_data (message_id, json_ld_id, json, syntax) " +
+                "SELECT ?, json_ld_id, json, syntax FROM structured_data WHERE id = ?",
+        ).use { insertStatement ->
+            for (structuredDataId in structuredDataIds) {
+                insertStatement.bindLong(1, newMessageId)
+                insertStatement.bindLong(2, structuredDataId)
+                val newStructuredDataId = insertStatement.executeInsert()
+
+                database.execSQL(
+                    "INSERT INTO structured_data_types (structured_data_id, type) " +
+                        "SELECT ?, type FROM structured_data_types WHERE structured_data_id = ? ORDER BY id",
+                    arrayOf(newStructuredDataId.toString(), structuredDataId.toString()),
+                )
+            }
+        }
+    }
+
     private fun readMessageToContentValues(database: SQLiteDatabase, messageId: Long): ContentValues {
         return database.query(
             "messages",
@@ -233,6 +287,7 @@ ORDER BY message_parts.seq
                 "answered",
                 "forwarded",
                 "encryption_type",
+                "structured_data_extracted",
             ),
             "id = ?",
             arrayOf(messageId.toString()),
@@ -265,6 +320,7 @@ ORDER BY message_parts.seq
                 put("answered", cursor.getInt(19))
                 put("forwarded", cursor.getInt(20))
                 put("encryption_type", cursor.getStringOrNull(21))
+                put("structured_data_extracted", cursor.getInt(22))
             }
         }
     }
@@ -289,6 +345,8 @@ ORDER BY message_parts.seq
             boundary = getStringOrNull(15),
             contentId = getStringOrNull(16),
             serverExtra = getStringOrNull(17),
+            blobKey = getStringOrNull(18),
+            dataCompression = getInt(19),
         )
     }
 }
@@ -312,4 +370,6 @@ private class DatabaseMessagePart(
     val boundary: String?,
     val contentId: String?,
     val serverExtra: String?,
+    val blobKey: String?,
+    val dataCompression: Int,
 )
@@ -7,6 +7,7 @@ import net.thunderbird.core.logging.legacy.Log
 internal class DatabaseOperations(
     private val lockableDatabase: LockableDatabase,
     private val storageFilesProvider: StorageFilesProvider,
+    private val attachmentFileManager: AttachmentFileManager,
 ) {
     fun getSize(): Long {
         val attachmentDirectory = storageFilesProvider.getAttachmentDirectory()
@@ -29,6 +30,11 @@ internal class DatabaseOperations(
     fun compact() {
         Log.i("Before compaction size = %d", getSize())
 
+        lockableDatabase.execute(true) { database ->
+            attachmentFileManager.deleteUnreferencedBlobs(database)
+            attachmentFileManager.deleteOrphanedFiles(database)
+        }
+
         lockableDatabase.execute(false) { database ->
             database.execSQL("VACUUM")
         }
@@ -13,6 +13,8 @@ internal class DeleteFolderOperations(
                 db.deleteMessagePartFiles(folderServerId)
                 db.deleteFolder(folderServerId)
             }
+
+            attachmentFileManager.deleteUnreferencedBlobs(db)
         }
     }
 
@@ -25,7 +27,9 @@ JOIN messages ON (messages.folder_id = folders.id)
 JOIN message_parts ON (
   message_parts.root = messages.message_part_id 
   AND 
-  message_parts.data_location = $DATA_LOCATION_ON_DISK
+  message_parts.data_location = $DATA_LOCATION_ON_DISK 
+  AND 
+  message_parts.blob_key IS NULL
 ) 
 WHERE folders.server_id = ?
             """,
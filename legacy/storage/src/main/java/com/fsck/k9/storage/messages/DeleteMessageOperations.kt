@@ -22,15 +22,18 @@ internal class DeleteMessageOperations(
 
             if (hasThreadChildren) {
                 // We're not deleting the 'messages' row so we'll have to manually delete the associated
-                // 'message_parts' and 'messages_fulltext' rows.
+                // 'message_parts', 'messages_fulltext', 'messages_search', and 'structured_data' rows.
                 database.deleteMessagePartRows(rootMessagePartId)
                 database.deleteFulltextIndexEntry(messageId)
+                database.deleteStructuredDataEntries(messageId)
 
                 // This message has children in the thread structure so we need to make it an empty message.
                 database.convertToEmptyMessage(messageId)
             } else {
                 database.deleteMessageRows(messageId)
             }
+
+            attachmentFileManager.deleteUnreferencedBlobs(database)
         }
     }
 
@@ -63,7 +66,7 @@ WHERE folder_id = ? AND uid = ?
         query(
             "message_parts",
             arrayOf("id"),
-            "root = ? AND data_location = $DATA_LOCATION_ON_DISK",
+            "root = ? AND data_location = $DATA_LOCATION_ON_DISK AND blob_key IS NULL",
             arrayOf(rootMessagePartId.toString()),
             null,
             null,
@@ -82,6 +85,11 @@ WHERE folder_id = ? AND uid = ?
 
     private fun SQLiteDatabase.deleteFulltextIndexEntry(messageId: Long) {
         delete("messages_fulltext", "docid = ?", arrayOf(messageId.toString()))
+        delete("messages_search", "docid = ?", arrayOf(messageId.toString()))
+    }
+
+    private fun SQLiteDatabase.deleteStructuredDataEntries(messageId: Long) {
+        delete("structured_data", "message_id = ?", arrayOf(messageId.toString()))
     }
 
     private fun SQLiteDatabase.convertToEmptyMessage(messageId: Long) {
@@ -104,6 +112,7 @@ WHERE folder_id = ? AND uid = ?
             putNull("normalized_subject_hash")
             putNull("message_part_id")
             putNull("encryption_type")
+            put("structured_data_extracted", 0)
         }
 
         update("messages", values, "id = ?", arrayOf(messageId.toString()))
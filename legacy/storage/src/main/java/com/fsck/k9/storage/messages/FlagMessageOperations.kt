@@ -30,6 +30,16 @@ internal class FlagMessageOperations(private val lockableDatabase: LockableDatab
         }
     }
 
+    fun setMessageFlags(folderId: Long, flagChanges: Map<String, Map<Flag, Boolean>>) {
+        if (flagChanges.isEmpty()) return
+
+        lockableDatabase.execute(true) { database ->
+            for ((messageServerId, messageFlagChanges) in flagChanges) {
+                database.updateMessageFlags(folderId, messageServerId, messageFlagChanges)
+            }
+        }
+    }
+
     private fun setSpecialFlags(messageIds: Collection<Long>, flag: Flag, set: Boolean) {
         val columnName = when (flag) {
             Flag.SEEN -> "read"
@@ -74,6 +84,48 @@ internal class FlagMessageOperations(private val lockableDatabase: LockableDatab
         }
     }
 
+    private fun SQLiteDatabase.updateMessageFlags(
+        folderId: Long,
+        messageServerId: String,
+        flagChanges: Map<Flag, Boolean>,
+    ) {
+        if (flagChanges.isEmpty()) return
+
+        val values = ContentValues()
+        val otherFlagChanges = mutableMapOf<Flag, Boolean>()
+        for ((flag, set) in flagChanges) {
+            val columnName = when (flag) {
+                Flag.DELETED -> "deleted"
+                Flag.SEEN -> "read"
+                Flag.FLAGGED -> "flagged"
+                Flag.ANSWERED -> "answered"
+                Flag.FORWARDED -> "forwarded"
+                else -> null
+            }
+
+            if (columnName != null) {
+                values.put(columnName, if (set) 1 else 0)
+            } else {
+                otherFlagChanges[flag] = set
+            }
+        }
+
+        if (otherFlagChanges.isNotEmpty()) {
+            val oldFlags = readFlagsColumn(folderId, messageServerId)
+            val newFlags = otherFlagChanges.entries.fold(oldFlags) { flags, (flag, set) ->
+                if (set) flags + flag else flags - flag
+            }
+            values.put("flags", newFlags.joinToString(separator = ","))
+        }
+
+        update(
+            "messages",
+            values,
+            "folder_id = ? AND uid = ?",
+            arrayOf(folderId.toString(), messageServerId),
+        )
+    }
+
     private fun SQLiteDatabase.readFlagsColumn(folderId: Long, messageServerId: String): Set<Flag> {
         return query(
             "messages",
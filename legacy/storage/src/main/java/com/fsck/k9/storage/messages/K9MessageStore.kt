@@ -2,10 +2,14 @@ package com.fsck.k9.storage.messages
 
 import app.k9mail.legacy.mailstore.CreateFolderInfo
 import app.k9mail.legacy.mailstore.FolderMapper
+import app.k9mail.legacy.mailstore.MessageListPage
+import app.k9mail.legacy.mailstore.MessageListPageKey
+import app.k9mail.legacy.mailstore.MessageListSortOrder
 import app.k9mail.legacy.mailstore.MessageMapper
 import app.k9mail.legacy.mailstore.MessageStore
 import app.k9mail.legacy.mailstore.MoreMessages
 import app.k9mail.legacy.mailstore.SaveMessageData
+import app.k9mail.legacy.mailstore.StructuredDataEntry
 import com.fsck.k9.mail.Flag
 import com.fsck.k9.mail.FolderType
 import com.fsck.k9.mail.Header
@@ -23,6 +27,7 @@ class K9MessageStore(
     storageFilesProvider: StorageFilesProvider,
     basicPartInfoExtractor: BasicPartInfoExtractor,
     generalSettingsManager: GeneralSettingsManager,
+    compressMessageBodies: Boolean = false,
 ) : MessageStore {
     private val attachmentFileManager = AttachmentFileManager(storageFilesProvider, generalSettingsManager)
     private val threadMessageOperations = ThreadMessageOperations()
@@ -31,6 +36,7 @@ class K9MessageStore(
         attachmentFileManager,
         basicPartInfoExtractor,
         threadMessageOperations,
+        compressMessageBodies,
     )
     private val copyMessageOperations = CopyMessageOperations(database, attachmentFileManager, threadMessageOperations)
     private val moveMessageOperations = MoveMessageOperations(database, threadMessageOperations)
@@ -38,6 +44,7 @@ class K9MessageStore(
     private val updateMessageOperations = UpdateMessageOperations(database)
     private val retrieveMessageOperations = RetrieveMessageOperations(database)
     private val retrieveMessageListOperations = RetrieveMessageListOperations(database)
+    private val retrieveStructuredDataOperations = RetrieveStructuredDataOperations(database)
     private val deleteMessageOperations = DeleteMessageOperations(database, attachmentFileManager)
     private val createFolderOperations = CreateFolderOperations(database)
     private val retrieveFolderOperations = RetrieveFolderOperations(database)
@@ -45,12 +52,16 @@ class K9MessageStore(
     private val updateFolderOperations = UpdateFolderOperations(database)
     private val deleteFolderOperations = DeleteFolderOperations(database, attachmentFileManager)
     private val keyValueStoreOperations = KeyValueStoreOperations(database)
-    private val databaseOperations = DatabaseOperations(database, storageFilesProvider)
+    private val databaseOperations = DatabaseOperations(database, storageFilesProvider, attachmentFileManager)
 
     override fun saveRemoteMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData) {
         saveMessageOperations.saveRemoteMessage(folderId, messageServerId, messageData)
     }
 
+    override fun saveRemoteMessages(folderId: Long, messages: Sequence<Pair<String, SaveMessageData>>) {
+        saveMessageOperations.saveRemoteMessages(folderId, messages)
+    }
+
     override fun saveLocalMessage(folderId: Long, messageData: SaveMessageData, existingMessageId: Long?): Long {
         return saveMessageOperations.saveLocalMessage(folderId, messageData, existingMessageId)
     }
@@ -71,6 +82,10 @@ class K9MessageStore(
         flagMessageOperations.setMessageFlag(folderId, messageServerId, flag, set)
     }
 
+    override fun setMessageFlags(folderId: Long, flagChanges: Map<String, Map<Flag, Boolean>>) {
+        flagMessageOperations.setMessageFlags(folderId, flagChanges)
+    }
+
     override fun setNewMessageState(folderId: Long, messageServerId: String, newMessage: Boolean) {
         updateMessageOperations.setNewMessageState(folderId, messageServerId, newMessage)
     }
@@ -99,6 +114,10 @@ class K9MessageStore(
         return retrieveMessageOperations.getMessageFlags(folderId, messageServerId)
     }
 
+    override fun getMessageFlags(folderId: Long, messageServerIds: Collection<String>): Map<String, Set<Flag>> {
+        return retrieveMessageOperations.getMessageFlags(folderId, messageServerIds)
+    }
+
     override fun getAllMessagesAndEffectiveDates(folderId: Long): Map<String, Long?> {
         return retrieveMessageOperations.getAllMessagesAndEffectiveDates(folderId)
     }
@@ -121,6 +140,44 @@ class K9MessageStore(
         return retrieveMessageListOperations.getThreadedMessages(selection, selectionArgs, sortOrder, messageMapper)
     }
 
+    override fun <T> getMessagesPage(
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
+        messageMapper: MessageMapper<out T?>,
+    ): MessageListPage<T> {
+        return retrieveMessageListOperations.getMessagesPage(
+            selection,
+            selectionArgs,
+            sortOrder,
+            pageKey,
+            pageSize,
+            messageMapper,
+        )
+    }
+
+    override fun <T> getThreadedMessagesPage(
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
+        messageMapper: MessageMapper<out T?>,
+        selectsWholeFolders: Boolean,
+    ): MessageListPage<T> {
+        return retrieveMessageListOperations.getThreadedMessagesPage(
+            selection,
+            selectionArgs,
+            sortOrder,
+            pageKey,
+            pageSize,
+            messageMapper,
+            selectsWholeFolders,
+        )
+    }
+
     override fun <T> getThread(threadId: Long, sortOrder: String, messageMapper: MessageMapper<out T?>): List<T> {
         return retrieveMessageListOperations.getThread(threadId, sortOrder, messageMapper)
     }
@@ -137,6 +194,14 @@ class K9MessageStore(
         return retrieveMessageOperations.getHeaders(folderId, messageServerId, headerNames)
     }
 
+    override fun getStructuredData(messageId: Long): List<StructuredDataEntry>? {
+        return retrieveStructuredDataOperations.getStructuredData(messageId)
+    }
+
+    override fun getMessageIdsWithStructuredDataType(type: String): List<Long> {
+        return retrieveStructuredDataOperations.getMessageIdsWithStructuredDataType(type)
+    }
+
     override fun destroyMessages(folderId: Long, messageServerIds: Collection<String>) {
         deleteMessageOperations.destroyMessages(folderId, messageServerIds)
     }
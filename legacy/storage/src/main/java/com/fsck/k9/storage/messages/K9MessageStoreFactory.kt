@@ -7,6 +7,9 @@ import com.fsck.k9.mailstore.NotifierMessageStore
 import com.fsck.k9.mailstore.StorageFilesProviderFactory
 import com.fsck.k9.message.extractors.BasicPartInfoExtractor
 import net.thunderbird.core.android.account.LegacyAccount
+import net.thunderbird.core.featureflag.FeatureFlagKey
+import net.thunderbird.core.featureflag.FeatureFlagProvider
+import net.thunderbird.core.featureflag.FeatureFlagResult
 import net.thunderbird.core.preference.GeneralSettingsManager
 
 class K9MessageStoreFactory(
@@ -14,6 +17,7 @@ class K9MessageStoreFactory(
     private val storageFilesProviderFactory: StorageFilesProviderFactory,
     private val basicPartInfoExtractor: BasicPartInfoExtractor,
     private val generalSettingsManager: GeneralSettingsManager,
+    private val featureFlagProvider: FeatureFlagProvider,
 ) : MessageStoreFactory {
 
     override fun create(account: LegacyAccount): ListenableMessageStore {
@@ -25,11 +29,14 @@ class K9MessageStoreFactory(
             folderNameSanitizer.removeGmailPrefixFromFolders()
         }
         val storageFilesProvider = storageFilesProviderFactory.createStorageFilesProvider(account.uuid)
+        val compressMessageBodies =
+            featureFlagProvider.provide(FeatureFlagKey.CompressMessageBodies) == FeatureFlagResult.Enabled
         val messageStore = K9MessageStore(
             localStore.database,
             storageFilesProvider,
             basicPartInfoExtractor,
             generalSettingsManager,
+            compressMessageBodies,
         )
         val notifierMessageStore = NotifierMessageStore(messageStore, localStore)
         return ListenableMessageStore(notifierMessageStore)
@@ -25,6 +25,7 @@ internal class MoveMessageOperations(
 
             convertOriginalMessageEntryToPlaceholderEntry(database, messageId)
             moveFulltextEntry(database, messageId, destinationMessageId)
+            moveStructuredDataEntries(database, messageId, destinationMessageId)
 
             destinationMessageId
         }
@@ -36,6 +37,15 @@ internal class MoveMessageOperations(
         }
 
         database.update("messages_fulltext", values, "docid = ?", arrayOf(messageId.toString()))
+        database.update("messages_search", values, "docid = ?", arrayOf(messageId.toString()))
+    }
+
+    private fun moveStructuredDataEntries(database: SQLiteDatabase, messageId: Long, destinationMessageId: Long) {
+        val values = ContentValues().apply {
+            put("message_id", destinationMessageId)
+        }
+
+        database.update("structured_data", values, "message_id = ?", arrayOf(messageId.toString()))
     }
 
     private fun createMessageEntry(
@@ -52,7 +62,7 @@ internal class MoveMessageOperations(
                 "subject", "date", "flags", "sender_list", "to_list", "cc_list", "bcc_list", "reply_to_list",
                 "attachment_count", "internal_date", "message_id", "preview_type", "preview", "mime_type",
                 "normalized_subject_hash", "read", "flagged", "answered", "forwarded", "message_part_id",
-                "encryption_type",
+                "encryption_type", "structured_data_extracted",
             ),
             "id = ?",
             arrayOf(messageId.toString()),
@@ -90,6 +100,7 @@ internal class MoveMessageOperations(
                 put("forwarded", cursor.getIntOrNull("forwarded"))
                 put("message_part_id", cursor.getLongOrNull("message_part_id"))
                 put("encryption_type", cursor.getStringOrNull("encryption_type"))
+                put("structured_data_extracted", cursor.getIntOrNull("structured_data_extracted"))
             }
         }
 
@@ -126,6 +137,7 @@ internal class MoveMessageOperations(
             putNull("forwarded")
             putNull("message_part_id")
             putNull("encryption_type")
+            put("structured_data_extracted", 0)
         }
 
         database.update("messages", contentValues, "id = ?", arrayOf(messageId.toString()))
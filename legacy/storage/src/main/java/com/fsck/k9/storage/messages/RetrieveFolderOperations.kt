@@ -11,6 +11,7 @@ import com.fsck.k9.mailstore.FolderNotFoundException
 import com.fsck.k9.mailstore.LockableDatabase
 import com.fsck.k9.mailstore.toFolderType
 import net.thunderbird.feature.search.legacy.SearchConditionTreeNode
+import net.thunderbird.feature.search.legacy.api.MessageSearchField
 import net.thunderbird.feature.search.legacy.sql.SqlWhereClause
 
 internal class RetrieveFolderOperations(private val lockableDatabase: LockableDatabase) {
@@ -70,20 +71,11 @@ internal class RetrieveFolderOperations(private val lockableDatabase: LockableDa
 
             val query =
                 """
-SELECT ${FOLDER_COLUMNS.joinToString()}, (
-  SELECT COUNT(messages.id)
-  FROM messages
-  WHERE messages.folder_id = folders.id
-    AND messages.empty = 0 AND messages.deleted = 0
-    AND (messages.read = 0 OR folders.id = ?)
-), (
-  SELECT COUNT(messages.id)
-  FROM messages
-  WHERE messages.folder_id = folders.id
-    AND messages.empty = 0 AND messages.deleted = 0
-    AND messages.flagged = 1
-)
+SELECT ${FOLDER_COLUMNS.joinToString()},
+  CASE WHEN folders.id = ? THEN folder_counts.total_count ELSE folder_counts.unread_count END,
+  folder_counts.starred_count
 FROM folders
+LEFT JOIN folder_counts ON (folder_counts.folder_id = folders.id)
 $displayModeSelection
                 """
 
@@ -137,20 +129,17 @@ $displayModeSelection
     }
 
     fun getMessageCount(folderId: Long): Int {
-        return lockableDatabase.execute(false) { db ->
-            db.rawQuery(
-                "SELECT COUNT(id) FROM messages WHERE empty = 0 AND deleted = 0 AND folder_id = ?",
-                arrayOf(folderId.toString()),
-            ).use { cursor ->
-                if (cursor.moveToFirst()) cursor.getInt(0) else 0
-            }
-        }
+        return getFolderCount(counterColumn = "total_count", folderId)
     }
 
     fun getUnreadMessageCount(folderId: Long): Int {
+        return getFolderCount(counterColumn = "unread_count", folderId)
+    }
+
+    private fun getFolderCount(counterColumn: String, folderId: Long): Int {
         return lockableDatabase.execute(false) { db ->
             db.rawQuery(
-                "SELECT COUNT(id) FROM messages WHERE empty = 0 AND deleted = 0 AND read = 0 AND folder_id = ?",
+                "SELECT $counterColumn FROM folder_counts WHERE folder_id = ?",
                 arrayOf(folderId.toString()),
             ).use { cursor ->
                 if (cursor.moveToFirst()) cursor.getInt(0) else 0
@@ -159,14 +148,18 @@ $displayModeSelection
     }
 
     fun getUnreadMessageCount(conditions: SearchConditionTreeNode?): Int {
-        return getMessageCount(condition = "messages.read = 0", conditions)
+        return getMessageCount(condition = "messages.read = 0", counterColumn = "unread_count", conditions)
     }
 
     fun getStarredMessageCount(conditions: SearchConditionTreeNode?): Int {
-        return getMessageCount(condition = "messages.flagged = 1", conditions)
+        return getMessageCount(condition = "messages.flagged = 1", counterColumn = "starred_count", conditions)
     }
 
-    private fun getMessageCount(condition: String, extraConditions: SearchConditionTreeNode?): Int {
+    private fun getMessageCount(
+        condition: String,
+        counterColumn: String,
+        extraConditions: SearchConditionTreeNode?,
+    ): Int {
         val whereClause = extraConditions?.let {
             SqlWhereClause.Builder()
                 .withConditions(extraConditions)
@@ -176,13 +169,23 @@ $displayModeSelection
         val where = if (whereClause != null) "AND (${whereClause.selection})" else ""
         val selectionArgs = whereClause?.selectionArgs?.toTypedArray() ?: emptyArray()
 
-        val query =
+        // When only folder properties are used to select messages, the per-folder counters can be summed up instead of
+        // counting the matching messages.
+        val query = if (extraConditions == null || extraConditions.usesOnlyFolderFields()) {
+            """
+SELECT SUM(folder_counts.$counterColumn)
+FROM folder_counts
+JOIN folders ON (folders.id = folder_counts.folder_id)
+WHERE 1 $where
+            """
+        } else {
             """
 SELECT COUNT(messages.id)
 FROM messages
 JOIN folders ON (folders.id = messages.folder_id)
 WHERE (messages.empty = 0 AND messages.deleted = 0 AND $condition) $where
             """
+        }
 
         return lockableDatabase.execute(false) { db ->
             db.rawQuery(query, selectionArgs).use { cursor ->
@@ -196,6 +199,16 @@ WHERE (messages.empty = 0 AND messages.deleted = 0 AND $condition) $where
     }
 }
 
+private val FOLDER_SEARCH_FIELDS = setOf(
+    MessageSearchField.FOLDER,
+    MessageSearchField.INTEGRATE,
+    MessageSearchField.VISIBLE,
+)
+
+private fun SearchConditionTreeNode.usesOnlyFolderFields(): Boolean {
+    return getLeafSet().all { leaf -> leaf.condition?.field in FOLDER_SEARCH_FIELDS }
+}
+
 private class CursorFolderAccessor(val cursor: Cursor) : FolderDetailsAccessor {
     override val id: Long
         get() = cursor.getLong(0)
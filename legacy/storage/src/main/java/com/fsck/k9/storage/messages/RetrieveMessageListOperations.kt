@@ -2,6 +2,10 @@ package com.fsck.k9.storage.messages
 
 import android.database.Cursor
 import app.k9mail.legacy.mailstore.MessageDetailsAccessor
+import app.k9mail.legacy.mailstore.MessageListPage
+import app.k9mail.legacy.mailstore.MessageListPageKey
+import app.k9mail.legacy.mailstore.MessageListSortColumn
+import app.k9mail.legacy.mailstore.MessageListSortOrder
 import app.k9mail.legacy.mailstore.MessageMapper
 import app.k9mail.legacy.message.extractors.PreviewResult
 import com.fsck.k9.mail.Address
@@ -20,6 +24,110 @@ internal class RetrieveMessageListOperations(private val lockableDatabase: Locka
         return lockableDatabase.execute(false) { database ->
             database.rawQuery(
                 """
+${buildMessagesQuery(selection)}
+ORDER BY $sortOrder
+                """,
+                selectionArgs,
+            ).use { cursor ->
+                val cursorMessageAccessor = CursorMessageAccessor(cursor, includesThreadCount = false)
+                buildList {
+                    while (cursor.moveToNext()) {
+                        val value = mapper.map(cursorMessageAccessor)
+                        if (value != null) {
+                            add(value)
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    fun <T> getThreadedMessages(
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: String,
+        mapper: MessageMapper<out T?>,
+    ): List<T> {
+        val orderBy = SqlWhereClause.addPrefixToSelection(
+            AGGREGATED_MESSAGES_COLUMNS,
+            "aggregated.",
+            sortOrder,
+        )
+
+        return lockableDatabase.execute(false) { database ->
+            database.rawQuery(
+                """
+${buildThreadedMessagesQuery(selection)}
+ORDER BY $orderBy
+                """,
+                selectionArgs,
+            ).use { cursor ->
+                val cursorMessageAccessor = CursorMessageAccessor(cursor, includesThreadCount = true)
+                buildList {
+                    while (cursor.moveToNext()) {
+                        val value = mapper.map(cursorMessageAccessor)
+                        if (value != null) {
+                            add(value)
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    fun <T> getMessagesPage(
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
+        mapper: MessageMapper<out T?>,
+    ): MessageListPage<T> {
+        return getPage(
+            query = buildMessagesQuery(selection),
+            selectionArgs = selectionArgs,
+            includesThreadCount = false,
+            sortOrder = sortOrder,
+            pageKey = pageKey,
+            pageSize = pageSize,
+            mapper = mapper,
+        )
+    }
+
+    /**
+     * @param selectsWholeFolders `true` if [selection] only refers to columns of the `folders` table and `folder_id`.
+     *   The precomputed aggregates in `thread_summary` are used in that case.
+     */
+    fun <T> getThreadedMessagesPage(
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
+        mapper: MessageMapper<out T?>,
+        selectsWholeFolders: Boolean = false,
+    ): MessageListPage<T> {
+        val query = if (selectsWholeFolders) {
+            buildThreadSummaryQuery(selection)
+        } else {
+            buildThreadedMessagesQuery(selection)
+        }
+
+        return getPage(
+            query = query,
+            selectionArgs = selectionArgs,
+            includesThreadCount = true,
+            sortOrder = sortOrder,
+            pageKey = pageKey,
+            pageSize = pageSize,
+            mapper = mapper,
+        )
+    }
+
+    fun <T> getThread(threadId: Long, sortOrder: String, mapper: MessageMapper<out T?>): List<T> {
+        return lockableDatabase.execute(false) { database ->
+            database.rawQuery(
+                """
 SELECT 
   messages.id AS id, 
   uid, 
@@ -38,15 +146,15 @@ SELECT
   forwarded, 
   attachment_count, 
   root
-FROM messages
-JOIN threads ON (threads.message_id = messages.id)
+FROM threads 
+JOIN messages ON (messages.id = threads.message_id)
 LEFT JOIN FOLDERS ON (folders.id = messages.folder_id)
 WHERE
-  ($selection)
+  root = ?
   AND empty = 0 AND deleted = 0
 ORDER BY $sortOrder
                 """,
-                selectionArgs,
+                arrayOf(threadId.toString()),
             ).use { cursor ->
                 val cursorMessageAccessor = CursorMessageAccessor(cursor, includesThreadCount = false)
                 buildList {
@@ -61,21 +169,155 @@ ORDER BY $sortOrder
         }
     }
 
-    fun <T> getThreadedMessages(
-        selection: String,
+    /**
+     * Wraps [query] so the sort columns can refer to its result columns, e.g. the aggregated values of a thread.
+     */
+    private fun <T> getPage(
+        query: String,
         selectionArgs: Array<String>,
-        sortOrder: String,
+        includesThreadCount: Boolean,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
         mapper: MessageMapper<out T?>,
-    ): List<T> {
-        val orderBy = SqlWhereClause.addPrefixToSelection(
-            AGGREGATED_MESSAGES_COLUMNS,
-            "aggregated.",
-            sortOrder,
-        )
+    ): MessageListPage<T> {
+        require(pageSize > 0) { "pageSize must be positive" }
+
+        val sortColumns = sortOrder.sortColumns + MessageListSortColumn("id", sortOrder.idAscending)
+        val sortKeyColumns = sortOrder.sortColumns.mapIndexed { index, sortColumn ->
+            ", ${sortColumn.expression} AS sort_key_$index"
+        }.joinToString(separator = "")
+        val orderBy = sortColumns.joinToString { sortColumn ->
+            if (sortColumn.ascending) "${sortColumn.sqlExpression} ASC" else "${sortColumn.sqlExpression} DESC"
+        }
+
+        val queryArgs = selectionArgs.toMutableList()
+        val pageCondition = if (pageKey == null) "1" else buildPageCondition(sortColumns, pageKey, queryArgs)
 
         return lockableDatabase.execute(false) { database ->
             database.rawQuery(
                 """
+SELECT *$sortKeyColumns
+FROM (
+$query
+)
+WHERE $pageCondition
+ORDER BY $orderBy
+LIMIT $pageSize
+                """,
+                queryArgs.toTypedArray(),
+            ).use { cursor ->
+                val cursorMessageAccessor = CursorMessageAccessor(cursor, includesThreadCount)
+                val sortKeyStartIndex = cursor.columnCount - sortOrder.sortColumns.size
+
+                fun readPageKey(): MessageListPageKey {
+                    return MessageListPageKey(
+                        sortValues = sortOrder.sortColumns.indices.map { index ->
+                            cursor.getSortValue(sortKeyStartIndex + index)
+                        },
+                        id = cursor.getLong(0),
+                    )
+                }
+
+                val items = mutableListOf<T>()
+                val itemKeys = mutableListOf<MessageListPageKey>()
+                while (cursor.moveToNext()) {
+                    val value = mapper.map(cursorMessageAccessor)
+                    if (value != null) {
+                        items.add(value)
+                        itemKeys.add(readPageKey())
+                    }
+                }
+
+                // Use the last row even if the mapper skipped it. Otherwise the next page would start with it again.
+                val nextPageKey = if (cursor.count == pageSize && cursor.moveToLast()) readPageKey() else null
+
+                MessageListPage(items, itemKeys, nextPageKey)
+            }
+        }
+    }
+
+    /**
+     * Builds the condition selecting the messages that come after [pageKey], e.g. for two sort columns in descending
+     * order: `(a < ?) OR (a = ? AND b < ?)`
+     *
+     * Numbers are inlined. Passing them as string arguments would compare them as text when the sort expression has no
+     * column affinity, e.g. `(flagged != 1)`.
+     */
+    private fun buildPageCondition(
+        sortColumns: List<MessageListSortColumn>,
+        pageKey: MessageListPageKey,
+        queryArgs: MutableList<String>,
+    ): String {
+        val sortValues = pageKey.sortValues + pageKey.id
+        require(sortValues.size == sortColumns.size) { "Page key doesn't match sort order" }
+
+        fun sqlValue(value: Any): String {
+            return when (value) {
+                is Long -> value.toString()
+                is String -> {
+                    queryArgs.add(value)
+                    "?"
+                }
+                else -> throw IllegalArgumentException("Unsupported sort value: $value")
+            }
+        }
+
+        return sortColumns.indices.joinToString(separator = " OR ") { index ->
+            val equalConditions = (0 until index).map { columnIndex ->
+                "${sortColumns[columnIndex].sqlExpression} = ${sqlValue(sortValues[columnIndex])}"
+            }
+
+            val sortColumn = sortColumns[index]
+            val operator = if (sortColumn.ascending) ">" else "<"
+            val afterCondition = "${sortColumn.sqlExpression} $operator ${sqlValue(sortValues[index])}"
+
+            (equalConditions + afterCondition).joinToString(separator = " AND ", prefix = "(", postfix = ")")
+        }
+    }
+
+    private val MessageListSortColumn.sqlExpression: String
+        get() = if (ignoreCase) "$expression COLLATE NOCASE" else expression
+
+    private fun Cursor.getSortValue(columnIndex: Int): Any {
+        return when (getType(columnIndex)) {
+            Cursor.FIELD_TYPE_INTEGER -> getLong(columnIndex)
+            Cursor.FIELD_TYPE_STRING -> getString(columnIndex)
+            else -> error("Unsupported type of sort column: ${getType(columnIndex)}")
+        }
+    }
+
+    private fun buildMessagesQuery(selection: String): String {
+        return """
+SELECT 
+  messages.id AS id, 
+  uid, 
+  folder_id, 
+  sender_list, 
+  to_list, 
+  cc_list, 
+  date, 
+  internal_date, 
+  subject, 
+  preview_type,
+  preview, 
+  read, 
+  flagged, 
+  answered, 
+  forwarded, 
+  attachment_count, 
+  root
+FROM messages
+JOIN threads ON (threads.message_id = messages.id)
+LEFT JOIN FOLDERS ON (folders.id = messages.folder_id)
+WHERE
+  ($selection)
+  AND empty = 0 AND deleted = 0
+"""
+    }
+
+    private fun buildThreadedMessagesQuery(selection: String): String {
+        return """
 SELECT 
   messages.id AS id, 
   uid, 
@@ -128,66 +370,54 @@ JOIN messages ON (
 )
 JOIN folders ON (folders.id = messages.folder_id)
 GROUP BY threads.root
-ORDER BY $orderBy
-                """,
-                selectionArgs,
-            ).use { cursor ->
-                val cursorMessageAccessor = CursorMessageAccessor(cursor, includesThreadCount = true)
-                buildList {
-                    while (cursor.moveToNext()) {
-                        val value = mapper.map(cursorMessageAccessor)
-                        if (value != null) {
-                            add(value)
-                        }
-                    }
-                }
-            }
-        }
+"""
     }
 
-    fun <T> getThread(threadId: Long, sortOrder: String, mapper: MessageMapper<out T?>): List<T> {
-        return lockableDatabase.execute(false) { database ->
-            database.rawQuery(
-                """
+    /**
+     * Same result columns as [buildThreadedMessagesQuery], but the aggregated values are computed from the per-folder
+     * rows in `thread_summary` instead of from all messages of every thread.
+     */
+    private fun buildThreadSummaryQuery(selection: String): String {
+        return """
 SELECT 
   messages.id AS id, 
-  uid, 
-  folder_id, 
-  sender_list, 
-  to_list, 
-  cc_list, 
-  date, 
-  internal_date, 
-  subject, 
-  preview_type,
-  preview, 
-  read, 
-  flagged, 
-  answered, 
-  forwarded, 
-  attachment_count, 
-  root
-FROM threads 
-JOIN messages ON (messages.id = threads.message_id)
-LEFT JOIN FOLDERS ON (folders.id = messages.folder_id)
-WHERE
-  root = ?
-  AND empty = 0 AND deleted = 0
-ORDER BY $sortOrder
-                """,
-                arrayOf(threadId.toString()),
-            ).use { cursor ->
-                val cursorMessageAccessor = CursorMessageAccessor(cursor, includesThreadCount = false)
-                buildList {
-                    while (cursor.moveToNext()) {
-                        val value = mapper.map(cursorMessageAccessor)
-                        if (value != null) {
-                            add(value)
-                        }
-                    }
-                }
-            }
-        }
+  messages.uid AS uid, 
+  messages.folder_id AS folder_id, 
+  messages.sender_list AS sender_list, 
+  messages.to_list AS to_list, 
+  messages.cc_list AS cc_list, 
+  aggregated.date AS date, 
+  aggregated.internal_date AS internal_date, 
+  messages.subject AS subject, 
+  messages.preview_type AS preview_type,
+  messages.preview AS preview, 
+  aggregated.read AS read, 
+  aggregated.flagged AS flagged, 
+  aggregated.answered AS answered, 
+  aggregated.forwarded AS forwarded, 
+  aggregated.attachment_count AS attachment_count, 
+  aggregated.thread_root AS root, 
+  aggregated.thread_count AS thread_count
+FROM (
+  SELECT 
+    thread_summary.root AS thread_root,
+    MAX(thread_summary.date) AS date,
+    MAX(thread_summary.internal_date) AS internal_date,
+    SUM(thread_summary.unread_count) = 0 AS read,
+    SUM(thread_summary.flagged_count) > 0 AS flagged,
+    SUM(thread_summary.answered_count) = SUM(thread_summary.message_count) AS answered,
+    SUM(thread_summary.forwarded_count) = SUM(thread_summary.message_count) AS forwarded,
+    SUM(thread_summary.attachment_count) AS attachment_count,
+    SUM(thread_summary.message_count) AS thread_count
+  FROM thread_summary
+  JOIN folders ON (folders.id = thread_summary.folder_id)
+  WHERE ($selection)
+  GROUP BY thread_summary.root
+) aggregated
+JOIN thread_summary AS latest ON (latest.root = aggregated.thread_root AND latest.date IS aggregated.date)
+JOIN messages ON (messages.id = latest.message_id)
+GROUP BY aggregated.thread_root
+"""
     }
 }
 
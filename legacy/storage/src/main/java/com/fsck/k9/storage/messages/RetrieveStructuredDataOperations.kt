@@ -0,0 +1,83 @@
+package com.fsck.k9.storage.messages
+
+import androidx.core.database.getStringOrNull
+import app.k9mail.legacy.mailstore.StructuredDataEntry
+import com.fsck.k9.mailstore.LockableDatabase
+
+internal class RetrieveStructuredDataOperations(private val lockableDatabase: LockableDatabase) {
+
+    fun getStructuredData(messageId: Long): List<StructuredDataEntry>? {
+        return lockableDatabase.execute(false) { database ->
+            val extracted = database.query(
+                "messages",
+                arrayOf("structured_data_extracted"),
+                "id = ?",
+                arrayOf(messageId.toString()),
+                null,
+                null,
+                null,
+            ).use { cursor ->
+                cursor.moveToFirst() && cursor.getInt(0) == 1
+            }
+
+            if (!extracted) return@execute null
+
+            val types = database.rawQuery(
+                "SELECT structured_data_types.structured_data_id, structured_data_types.type " +
+                    "FROM structured_data_types " +
+                    "JOIN structured_data ON (structured_data.id = structured_data_types.structured_data_id) " +
+                    "WHERE structured_data.message_id = ? " +
+                    "ORDER BY structured_data_types.id",
+                arrayOf(messageId.toString()),
+            ).use { cursor ->
+                buildMap<Long, MutableList<String>> {
+                    while (cursor.moveToNext()) {
+                        getOrPut(cursor.getLong(0)) { mutableListOf() }.add(cursor.getString(1))
+                    }
+                }
+            }
+
+            database.query(
+                "structured_data",
+                arrayOf("id", "json_ld_id", "json", "syntax"),
+                "message_id = ?",
+                arrayOf(messageId.toString()),
+                null,
+                null,
+                "id",
+            ).use { cursor ->
+                buildList {
+                    while (cursor.moveToNext()) {
+                        val entry = StructuredDataEntry(
+                            types = types[cursor.getLong(0)].orEmpty(),
+                            id = cursor.getStringOrNull(1),
+                            json = cursor.getString(2),
+                            syntax = cursor.getString(3),
+                        )
+                        add(entry)
+                    }
+                }
+            }
+        }
+    }
+
+    fun getMessageIdsWithStructuredDataType(type: String): List<Long> {
+        return lockableDatabase.execute(false) { database ->
+            database.rawQuery(
+                "SELECT DISTINCT structured_data.message_id FROM structured_data_types " +
+                    "JOIN structured_data ON (structured_data.id = structured_data_types.structured_data_id) " +
+                    "JOIN messages ON (messages.id = structured_data.message_id) " +
+                    "WHERE structured_data_types.type = ? " +
+                    "AND messages.deleted = 0 AND messages.empty = 0 " +
+                    "ORDER BY messages.date DESC",
+                arrayOf(type),
+            ).use { cursor ->
+                buildList {
+                    while (cursor.moveToNext()) {
+                        add(cursor.getLong(0))
+                    }
+                }
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.fsck.k9.mail.internet.BinaryTempFileBody
 import com.fsck.k9.mail.internet.MimeHeader
 import com.fsck.k9.mail.internet.MimeUtility
 import com.fsck.k9.mail.internet.SizeAware
+import com.fsck.k9.mailstore.DataCompression
 import com.fsck.k9.mailstore.DatabasePreviewType
 import com.fsck.k9.mailstore.LockableDatabase
 import com.fsck.k9.message.extractors.BasicPartInfoExtractor
@@ -30,6 +31,7 @@ import java.io.IOException
 import java.io.InputStream
 import java.util.Stack
 import java.util.UUID
+import net.thunderbird.feature.search.legacy.sql.FullTextSearchTerms
 import org.apache.commons.io.IOUtils
 import org.apache.james.mime4j.codec.Base64InputStream
 import org.apache.james.mime4j.codec.QuotedPrintableInputStream
@@ -37,16 +39,77 @@ import org.apache.james.mime4j.util.MimeUtil
 
 internal const val MAX_BODY_SIZE_FOR_DATABASE = 16 * 1024L
 
+private const val SAVE_BATCH_SIZE = 100
+
+private val SEARCH_INDEX_COLUMNS = arrayOf("subject", "sender_list", "to_list", "cc_list", "bcc_list", "reply_to_list")
+
 internal class SaveMessageOperations(
     private val lockableDatabase: LockableDatabase,
     private val attachmentFileManager: AttachmentFileManager,
     private val partInfoExtractor: BasicPartInfoExtractor,
     private val threadMessageOperations: ThreadMessageOperations,
+    private val compressMessageBodies: Boolean = false,
 ) {
     fun saveRemoteMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData) {
         saveMessage(folderId, messageServerId, messageData)
     }
 
+    /**
+     * Save remote messages in transactions of [SAVE_BATCH_SIZE] messages.
+     *
+     * Existing messages and the messages referenced for threading are looked up once per batch instead of once per
+     * message.
+     */
+    fun saveRemoteMessages(folderId: Long, messages: Sequence<Pair<String, SaveMessageData>>) {
+        messages.chunked(SAVE_BATCH_SIZE).forEach { batch ->
+            lockableDatabase.execute(true) { database ->
+                saveMessageBatch(database, folderId, batch)
+            }
+        }
+    }
+
+    private fun saveMessageBatch(
+        database: SQLiteDatabase,
+        folderId: Long,
+        batch: List<Pair<String, SaveMessageData>>,
+    ) {
+        val existingMessages = getMessages(database, folderId, batch.map { (messageServerId, _) -> messageServerId })
+        val threadInfoCache = threadMessageOperations.createThreadInfoCache(
+            database,
+            folderId,
+            batch.map { (_, messageData) -> messageData.message.toThreadHeaders() },
+        )
+
+        val savedMessageServerIds = mutableSetOf<String>()
+        for ((messageServerId, messageData) in batch) {
+            // The lookup above doesn't know about messages saved as part of this batch
+            val existingMessageInfo = if (messageServerId in savedMessageServerIds) {
+                getMessage(folderId, messageServerId)
+            } else {
+                existingMessages[messageServerId]
+            }
+
+            if (existingMessageInfo != null) {
+                val (existingMessageId, existingRootMessagePartId) = existingMessageInfo
+                replaceMessage(
+                    database,
+                    folderId,
+                    messageServerId,
+                    existingMessageId,
+                    existingRootMessagePartId,
+                    messageData,
+                )
+
+                // The Message-ID of the replaced message might have changed
+                threadInfoCache.clear()
+            } else {
+                insertMessage(database, folderId, messageServerId, messageData.message, messageData, threadInfoCache)
+            }
+
+            savedMessageServerIds.add(messageServerId)
+        }
+    }
+
     fun saveLocalMessage(folderId: Long, messageData: SaveMessageData, existingMessageId: Long?): Long {
         return if (existingMessageId == null) {
             saveLocalMessage(folderId, messageData)
@@ -106,8 +169,10 @@ internal class SaveMessageOperations(
         messageServerId: String,
         message: Message,
         messageData: SaveMessageData,
+        threadInfoCache: ThreadInfoCache? = null,
     ): Long {
-        val threadInfo = threadMessageOperations.doMessageThreading(database, folderId, message.toThreadHeaders())
+        val threadHeaders = message.toThreadHeaders()
+        val threadInfo = threadMessageOperations.doMessageThreading(database, folderId, threadHeaders, threadInfoCache)
 
         val rootMessagePartId = saveMessageParts(database, message)
         val messageId = saveMessage(
@@ -120,10 +185,26 @@ internal class SaveMessageOperations(
         )
 
         if (threadInfo?.threadId == null) {
-            threadMessageOperations.createThreadEntry(database, messageId, threadInfo?.rootId, threadInfo?.parentId)
+            val threadId = threadMessageOperations.createThreadEntry(
+                database,
+                messageId,
+                threadInfo?.rootId,
+                threadInfo?.parentId,
+            )
+
+            if (threadInfoCache != null && threadHeaders.messageIdHeader != null) {
+                val rootId = threadInfo?.rootId ?: threadId
+                val newThreadInfo = ThreadInfo(threadId, messageId, rootId, threadInfo?.parentId)
+                threadInfoCache.addNewMessage(threadHeaders.messageIdHeader, newThreadInfo, empty = false)
+            }
+        } else if (threadHeaders.messageIdHeader != null) {
+            // The empty message that was created for this Message-ID has been replaced
+            threadInfoCache?.removeEmptyMessage(threadHeaders.messageIdHeader)
         }
 
         createOrReplaceFulltextEntry(database, messageId, messageData)
+        createOrReplaceSearchEntry(database, messageId)
+        replaceStructuredDataEntries(database, messageId, messageData)
 
         return messageId
     }
@@ -151,6 +232,8 @@ internal class SaveMessageOperations(
         )
 
         createOrReplaceFulltextEntry(database, messageId, messageData)
+        createOrReplaceSearchEntry(database, messageId)
+        replaceStructuredDataEntries(database, messageId, messageData)
     }
 
     private fun saveMessageParts(database: SQLiteDatabase, message: Message): Long {
@@ -198,6 +281,7 @@ internal class SaveMessageOperations(
         values.put("mime_type", part.mimeType)
         values.put("header", headerBytes)
         values.put("type", MessagePartType.UNKNOWN)
+        values.put("data_compression", DataCompression.NONE)
 
         val file: File? = when (val body = part.body) {
             is Multipart -> multipartToContentValues(values, body)
@@ -206,6 +290,9 @@ internal class SaveMessageOperations(
             else -> leafPartToContentValues(values, part, body)
         }
 
+        val blobKey = file?.let { attachmentFileManager.storeTemporaryFile(it) }
+        values.put("blob_key", blobKey)
+
         val messagePartId = if (existingMessagePartId != null) {
             database.update("message_parts", values, "id = ?", arrayOf(existingMessagePartId.toString()))
             existingMessagePartId
@@ -213,10 +300,6 @@ internal class SaveMessageOperations(
             database.insertOrThrow("message_parts", null, values)
         }
 
-        if (file != null) {
-            attachmentFileManager.moveTemporaryFile(file, messagePartId)
-        }
-
         return messagePartId
     }
 
@@ -266,11 +349,11 @@ internal class SaveMessageOperations(
             val size = decodeAndCountBytes(file, encoding, fileSize)
             values.put("decoded_body_size", size)
 
-            file
+            if (compressMessageBodies && file != null) compressFile(values, file) else file
         } else {
             values.put("data_location", DataLocation.IN_DATABASE)
             val bodyData = getBodyBytes(body)
-            values.put("data", bodyData)
+            values.put("data", if (compressMessageBodies) compressData(values, bodyData) else bodyData)
             val size = decodeAndCountBytes(bodyData.inputStream(), encoding, bodyData.size.toLong())
             values.put("decoded_body_size", size)
 
@@ -278,6 +361,30 @@ internal class SaveMessageOperations(
         }
     }
 
+    private fun compressData(values: ContentValues, data: ByteArray): ByteArray {
+        val compressedData = DataCompression.compress(data)
+        return if (DataCompression.isWorthCompressing(data.size.toLong(), compressedData.size.toLong())) {
+            values.put("data_compression", DataCompression.DEFLATE)
+            compressedData
+        } else {
+            data
+        }
+    }
+
+    private fun compressFile(values: ContentValues, file: File): File {
+        val compressedFile = File.createTempFile("body", null, BinaryTempFileBody.getTempDirectory())
+        DataCompression.compress(file, compressedFile)
+
+        return if (DataCompression.isWorthCompressing(file.length(), compressedFile.length())) {
+            values.put("data_compression", DataCompression.DEFLATE)
+            file.delete()
+            compressedFile
+        } else {
+            compressedFile.delete()
+            file
+        }
+    }
+
     private fun writeBodyToDiskIfNecessary(part: Part): File? {
         val body = part.body
         return if (body is BinaryTempFileBody) {
@@ -411,6 +518,7 @@ internal class SaveMessageOperations(
             put("message_id", message.messageId)
             put("mime_type", message.mimeType)
             put("encryption_type", messageData.encryptionType)
+            put("structured_data_extracted", (messageData.structuredData != null).toDatabaseValue())
 
             val previewResult = messageData.previewResult
             put("preview_type", previewResult.previewType.toDatabaseValue())
@@ -441,6 +549,54 @@ internal class SaveMessageOperations(
         database.replace("messages_fulltext", null, values)
     }
 
+    private fun createOrReplaceSearchEntry(database: SQLiteDatabase, messageId: Long) {
+        val values = database.query(
+            "messages",
+            SEARCH_INDEX_COLUMNS,
+            "id = ?",
+            arrayOf(messageId.toString()),
+            null,
+            null,
+            null,
+        ).use { cursor ->
+            if (!cursor.moveToFirst()) return
+
+            ContentValues().apply {
+                put("docid", messageId)
+                SEARCH_INDEX_COLUMNS.forEachIndexed { index, columnName ->
+                    put(columnName, FullTextSearchTerms.createIndexText(cursor.getString(index)))
+                }
+            }
+        }
+
+        database.replace("messages_search", null, values)
+    }
+
+    private fun replaceStructuredDataEntries(database: SQLiteDatabase, messageId: Long, messageData: SaveMessageData) {
+        database.delete("structured_data", "message_id = ?", arrayOf(messageId.toString()))
+
+        val structuredData = messageData.structuredData ?: return
+        for (entry in structuredData) {
+            val values = ContentValues().apply {
+                put("message_id", messageId)
+                put("json_ld_id", entry.id)
+                put("json", entry.json)
+                put("syntax", entry.syntax)
+            }
+
+            val structuredDataId = database.insertOrThrow("structured_data", null, values)
+
+            for (type in entry.types.distinct()) {
+                val typeValues = ContentValues().apply {
+                    put("structured_data_id", structuredDataId)
+                    put("type", type)
+                }
+
+                database.insertOrThrow("structured_data_types", null, typeValues)
+            }
+        }
+    }
+
     private fun getMessage(folderId: Long, messageServerId: String): Pair<Long, Long?>? {
         return lockableDatabase.execute(false) { db ->
             db.query(
@@ -463,6 +619,36 @@ internal class SaveMessageOperations(
         }
     }
 
+    private fun getMessages(
+        database: SQLiteDatabase,
+        folderId: Long,
+        messageServerIds: List<String>,
+    ): Map<String, Pair<Long, Long?>> {
+        return buildMap {
+            performChunkedOperation(
+                arguments = messageServerIds.toSet(),
+                argumentTransformation = { it },
+            ) { selectionSet, selectionArguments ->
+                database.query(
+                    "messages",
+                    arrayOf("uid", "id", "message_part_id"),
+                    "folder_id = ? AND uid $selectionSet",
+                    arrayOf(folderId.toString()) + selectionArguments,
+                    null,
+                    null,
+                    null,
+                ).use { cursor ->
+                    while (cursor.moveToNext()) {
+                        val messageServerId = cursor.getString(0)
+                        val messageId = cursor.getLong(1)
+                        val messagePartId = cursor.getLong(2)
+                        putIfAbsent(messageServerId, messageId to messagePartId)
+                    }
+                }
+            }
+        }
+    }
+
     private fun getLocalMessageInfo(folderId: Long, messageId: Long): Pair<String, Long?> {
         return lockableDatabase.execute(false) { db ->
             db.query(
@@ -486,13 +672,14 @@ internal class SaveMessageOperations(
     private fun deleteMessagePartsAndDataFromDisk(database: SQLiteDatabase, rootMessagePartId: Long) {
         deleteMessageDataFromDisk(database, rootMessagePartId)
         deleteMessageParts(database, rootMessagePartId)
+        attachmentFileManager.deleteUnreferencedBlobs(database)
     }
 
     private fun deleteMessageDataFromDisk(database: SQLiteDatabase, rootMessagePartId: Long) {
         database.query(
             "message_parts",
             arrayOf("id"),
-            "root = ? AND data_location = " + DataLocation.ON_DISK,
+            "root = ? AND data_location = " + DataLocation.ON_DISK + " AND blob_key IS NULL",
             arrayOf(rootMessagePartId.toString()),
             null,
             null,
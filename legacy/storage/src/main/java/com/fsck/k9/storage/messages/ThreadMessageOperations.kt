@@ -63,20 +63,70 @@ WHERE messages.id = ?
         return database.insert("threads", null, values)
     }
 
-    // TODO: Use MessageIdParser
-    fun doMessageThreading(database: SQLiteDatabase, folderId: Long, threadHeaders: ThreadHeaders): ThreadInfo? {
-        val messageIdHeader = threadHeaders.messageIdHeader
-        val msgThreadInfo = getThreadInfo(database, folderId, messageIdHeader, onlyEmpty = true)
+    /**
+     * Look up the thread information of all messages referenced by [threadHeaders] with one query per chunk of
+     * Message-ID values.
+     *
+     * The returned [ThreadInfoCache] can be passed to [doMessageThreading] when saving these messages in the same
+     * transaction.
+     */
+    fun createThreadInfoCache(
+        database: SQLiteDatabase,
+        folderId: Long,
+        threadHeaders: List<ThreadHeaders>,
+    ): ThreadInfoCache {
+        val threadInfoCache = ThreadInfoCache()
 
-        val references = threadHeaders.referencesHeader.extractMessageIdValues()
-        val inReplyTo = threadHeaders.inReplyToHeader.extractMessageIdValue()
+        val messageIdHeaders = threadHeaders
+            .flatMap { headers -> headers.getReferencedMessageIds() + listOfNotNull(headers.messageIdHeader) }
+            .toSet()
+        if (messageIdHeaders.isEmpty()) return threadInfoCache
 
-        val messageIdValues = if (inReplyTo == null || inReplyTo in references) {
-            references
-        } else {
-            references + inReplyTo
+        performChunkedOperation(
+            arguments = messageIdHeaders,
+            argumentTransformation = { it },
+        ) { selectionSet, selectionArguments ->
+            database.rawQuery(
+                """
+SELECT m.message_id, m.empty, t.id, t.message_id, t.root, t.parent 
+FROM messages m 
+LEFT JOIN threads t ON (t.message_id = m.id) 
+WHERE m.folder_id = ? AND m.message_id $selectionSet 
+ORDER BY m.id
+                """,
+                arrayOf(folderId.toString()) + selectionArguments,
+            ).use { cursor ->
+                while (cursor.moveToNext()) {
+                    val messageIdHeader = cursor.getString(0)
+                    val empty = cursor.getInt(1) == 1
+                    val threadId = cursor.getLong(2)
+                    val messageId = cursor.getLong(3)
+                    val rootId = cursor.getLong(4)
+                    val parentId = if (cursor.isNull(5)) null else cursor.getLong(5)
+
+                    val threadInfo = ThreadInfo(threadId, messageId, rootId, parentId)
+                    threadInfoCache.addQueryResult(messageIdHeader, threadInfo, empty)
+                }
+            }
         }
 
+        threadInfoCache.addMissingMessages(messageIdHeaders)
+
+        return threadInfoCache
+    }
+
+    // TODO: Use MessageIdParser
+    fun doMessageThreading(
+        database: SQLiteDatabase,
+        folderId: Long,
+        threadHeaders: ThreadHeaders,
+        threadInfoCache: ThreadInfoCache? = null,
+    ): ThreadInfo? {
+        val messageIdHeader = threadHeaders.messageIdHeader
+        val msgThreadInfo = getThreadInfo(database, folderId, messageIdHeader, onlyEmpty = true, threadInfoCache)
+
+        val messageIdValues = threadHeaders.getReferencedMessageIds()
+
         if (messageIdValues.isEmpty()) {
             // This is not a reply, nothing to do for us.
             return msgThreadInfo
@@ -85,9 +135,9 @@ WHERE messages.id = ?
         var rootId: Long? = null
         var parentId: Long? = null
         for (reference in messageIdValues) {
-            val threadInfo = getThreadInfo(database, folderId, reference, onlyEmpty = false)
+            val threadInfo = getThreadInfo(database, folderId, reference, onlyEmpty = false, threadInfoCache)
             if (threadInfo == null) {
-                parentId = createEmptyMessage(database, folderId, reference, rootId, parentId)
+                parentId = createEmptyMessage(database, folderId, reference, rootId, parentId, threadInfoCache)
                 if (rootId == null) {
                     rootId = parentId
                 }
@@ -96,7 +146,7 @@ WHERE messages.id = ?
                     rootId = threadInfo.rootId
                 } else if (threadInfo.rootId != rootId) {
                     // Merge this thread into our thread
-                    updateThreadToNewRoot(database, threadInfo.rootId, rootId, parentId)
+                    updateThreadToNewRoot(database, threadInfo.rootId, rootId, parentId, threadInfoCache)
                 }
                 parentId = threadInfo.threadId
             }
@@ -107,14 +157,23 @@ WHERE messages.id = ?
             val oldRootId = getThreadRoot(database, threadId)
             if (oldRootId != rootId) {
                 // Connect the existing thread to the newly created thread
-                updateThreadToNewRoot(database, oldRootId, rootId!!, parentId)
+                updateThreadToNewRoot(database, oldRootId, rootId!!, parentId, threadInfoCache)
             }
         }
 
         return ThreadInfo(msgThreadInfo?.threadId, msgThreadInfo?.messageId, rootId!!, parentId)
     }
 
-    private fun updateThreadToNewRoot(database: SQLiteDatabase, oldRootId: Long, rootId: Long, parentId: Long?) {
+    private fun updateThreadToNewRoot(
+        database: SQLiteDatabase,
+        oldRootId: Long,
+        rootId: Long,
+        parentId: Long?,
+        threadInfoCache: ThreadInfoCache?,
+    ) {
+        // Merging threads changes the root of many entries. Don't try to keep track of them.
+        threadInfoCache?.clear()
+
         // Let all children know who's the new root
         val values = ContentValues()
         values.put("root", rootId)
@@ -131,6 +190,7 @@ WHERE messages.id = ?
         messageIdHeader: String,
         rootId: Long?,
         parentId: Long?,
+        threadInfoCache: ThreadInfoCache?,
     ): Long {
         val messageValues = ContentValues().apply {
             put("message_id", messageIdHeader)
@@ -144,7 +204,15 @@ WHERE messages.id = ?
             put("root", rootId)
             put("parent", parentId)
         }
-        return database.insert("threads", null, threadValues)
+        val threadId = database.insert("threads", null, threadValues)
+
+        threadInfoCache?.addNewMessage(
+            messageIdHeader,
+            ThreadInfo(threadId, messageId, rootId ?: threadId, parentId),
+            empty = true,
+        )
+
+        return threadId
     }
 
     private fun getThreadInfo(
@@ -152,9 +220,14 @@ WHERE messages.id = ?
         folderId: Long,
         messageIdHeader: String?,
         onlyEmpty: Boolean,
+        threadInfoCache: ThreadInfoCache?,
     ): ThreadInfo? {
         if (messageIdHeader == null) return null
 
+        if (threadInfoCache != null && threadInfoCache.contains(messageIdHeader, onlyEmpty)) {
+            return threadInfoCache.get(messageIdHeader, onlyEmpty)
+        }
+
         return db.rawQuery(
             """
 SELECT t.id, t.message_id, t.root, t.parent 
@@ -176,6 +249,8 @@ LIMIT 1
             } else {
                 null
             }
+        }.also { threadInfo ->
+            threadInfoCache?.put(messageIdHeader, onlyEmpty, threadInfo)
         }
     }
 
@@ -192,6 +267,17 @@ LIMIT 1
         }
     }
 
+    private fun ThreadHeaders.getReferencedMessageIds(): List<String> {
+        val references = referencesHeader.extractMessageIdValues()
+        val inReplyTo = inReplyToHeader.extractMessageIdValue()
+
+        return if (inReplyTo == null || inReplyTo in references) {
+            references
+        } else {
+            references + inReplyTo
+        }
+    }
+
     private fun String?.extractMessageIdValues(): List<String> {
         return this?.let { headerValue -> Utility.extractMessageIds(headerValue) } ?: emptyList()
     }
@@ -208,6 +294,81 @@ internal data class ThreadInfo(
     val parentId: Long?,
 )
 
+/**
+ * Thread information of messages by Message-ID header value, used while saving a batch of messages.
+ *
+ * Like the lookup in [ThreadMessageOperations], this refers to the message with the lowest ID if there are multiple
+ * messages with the same Message-ID value. A `null` value means there is no such message.
+ */
+internal class ThreadInfoCache {
+    private val firstMessages = mutableMapOf<String, ThreadInfo?>()
+    private val firstEmptyMessages = mutableMapOf<String, ThreadInfo?>()
+
+    fun contains(messageIdHeader: String, onlyEmpty: Boolean): Boolean {
+        return messageIdHeader in getMap(onlyEmpty)
+    }
+
+    fun get(messageIdHeader: String, onlyEmpty: Boolean): ThreadInfo? {
+        return getMap(onlyEmpty)[messageIdHeader]
+    }
+
+    fun put(messageIdHeader: String, onlyEmpty: Boolean, threadInfo: ThreadInfo?) {
+        getMap(onlyEmpty)[messageIdHeader] = threadInfo
+    }
+
+    /**
+     * Record a message read from the database. Messages need to be added in the order of their IDs.
+     */
+    fun addQueryResult(messageIdHeader: String, threadInfo: ThreadInfo, empty: Boolean) {
+        if (messageIdHeader !in firstMessages) firstMessages[messageIdHeader] = threadInfo
+        if (empty && messageIdHeader !in firstEmptyMessages) firstEmptyMessages[messageIdHeader] = threadInfo
+    }
+
+    /**
+     * Record that no messages with the given Message-ID values exist other than the ones added via [addQueryResult].
+     */
+    fun addMissingMessages(messageIdHeaders: Collection<String>) {
+        for (messageIdHeader in messageIdHeaders) {
+            if (messageIdHeader !in firstMessages) firstMessages[messageIdHeader] = null
+            if (messageIdHeader !in firstEmptyMessages) firstEmptyMessages[messageIdHeader] = null
+        }
+    }
+
+    /**
+     * Record a message that was just added to the database, i.e. it has a higher ID than all known messages.
+     */
+    fun addNewMessage(messageIdHeader: String, threadInfo: ThreadInfo, empty: Boolean) {
+        addIfNoneKnown(firstMessages, messageIdHeader, threadInfo)
+        if (empty) {
+            addIfNoneKnown(firstEmptyMessages, messageIdHeader, threadInfo)
+        }
+    }
+
+    /**
+     * Record that the empty message with the given Message-ID value was replaced with an actual message.
+     */
+    fun removeEmptyMessage(messageIdHeader: String) {
+        // Another empty message with the same Message-ID value might exist. Look it up in the database if necessary.
+        firstEmptyMessages.remove(messageIdHeader)
+    }
+
+    fun clear() {
+        firstMessages.clear()
+        firstEmptyMessages.clear()
+    }
+
+    private fun addIfNoneKnown(map: MutableMap<String, ThreadInfo?>, messageIdHeader: String, threadInfo: ThreadInfo) {
+        // Without an entry it's unknown whether a message with a lower ID exists
+        if (messageIdHeader in map && map[messageIdHeader] == null) {
+            map[messageIdHeader] = threadInfo
+        }
+    }
+
+    private fun getMap(onlyEmpty: Boolean): MutableMap<String, ThreadInfo?> {
+        return if (onlyEmpty) firstEmptyMessages else firstMessages
+    }
+}
+
 internal data class ThreadHeaders(
     val messageIdHeader: String?,
     val inReplyToHeader: String?,
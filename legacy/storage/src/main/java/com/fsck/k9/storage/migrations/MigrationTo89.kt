@@ -0,0 +1,71 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Add 'structured_data' table to store schema.org objects extracted from messages when they are saved, and
+ * 'structured_data_types' to find messages by the type of these objects.
+ */
+internal class MigrationTo89(private val db: SQLiteDatabase) {
+    fun addStructuredDataTable() {
+        // Existing messages aren't processed here. That would mean parsing the HTML of every stored message during the
+        // upgrade. They're handled the old way when they're displayed, and aren't found when searching by type.
+        db.execSQL("ALTER TABLE messages ADD structured_data_extracted INTEGER DEFAULT 0")
+
+        db.execSQL("DROP TABLE IF EXISTS structured_data")
+        db.execSQL(
+            "CREATE TABLE structured_data (" +
+                "id INTEGER PRIMARY KEY, " +
+                "message_id INTEGER NOT NULL, " +
+                "json_ld_id TEXT, " +
+                "json TEXT NOT NULL, " +
+                "syntax TEXT NOT NULL" +
+                ")",
+        )
+
+        db.execSQL("DROP INDEX IF EXISTS structured_data_message_id")
+        db.execSQL("CREATE INDEX IF NOT EXISTS structured_data_message_id ON structured_data (message_id)")
+
+        // One row for every value of an object's `@type` property
+        db.execSQL("DROP TABLE IF EXISTS structured_data_types")
+        db.execSQL(
+            "CREATE TABLE structured_data_types (" +
+                "id INTEGER PRIMARY KEY, " +
+                "structured_data_id INTEGER NOT NULL, " +
+                "type TEXT NOT NULL" +
+                ")",
+        )
+
+        db.execSQL("DROP INDEX IF EXISTS structured_data_types_type")
+        db.execSQL(
+            "CREATE INDEX IF NOT EXISTS structured_data_types_type ON structured_data_types (type, structured_data_id)",
+        )
+
+        db.execSQL("DROP INDEX IF EXISTS structured_data_types_structured_data_id")
+        db.execSQL(
+            "CREATE INDEX IF NOT EXISTS structured_data_types_structured_data_id " +
+                "ON structured_data_types (structured_data_id)",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS delete_structured_data")
+        db.execSQL(
+            "CREATE TRIGGER delete_structured_data " +
+                "BEFORE DELETE ON structured_data " +
+                "BEGIN " +
+                "DELETE FROM structured_data_types WHERE structured_data_id = OLD.id; " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS delete_message")
+        db.execSQL(
+            "CREATE TRIGGER delete_message " +
+                "BEFORE DELETE ON messages " +
+                "BEGIN " +
+                "DELETE FROM message_parts WHERE root = OLD.message_part_id; " +
+                "DELETE FROM messages_fulltext WHERE docid = OLD.id; " +
+                "DELETE FROM threads WHERE message_id = OLD.id; " +
+                "DELETE FROM structured_data WHERE message_id = OLD.id; " +
+                "END",
+        )
+    }
+}
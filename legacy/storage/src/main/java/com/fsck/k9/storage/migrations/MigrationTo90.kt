@@ -0,0 +1,56 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+import net.thunderbird.feature.search.legacy.sql.FullTextSearchTerms
+
+/**
+ * Add 'messages_search' full-text index for the subject and address columns of the 'messages' table.
+ *
+ * The index stores every suffix of every word (see [FullTextSearchTerms]), so it can't be filled using SQL alone.
+ */
+internal class MigrationTo90(private val db: SQLiteDatabase) {
+    fun addMessageSearchTable() {
+        db.execSQL("DROP TABLE IF EXISTS messages_search")
+        db.execSQL(
+            "CREATE VIRTUAL TABLE messages_search USING fts4 " +
+                "(subject, sender_list, to_list, cc_list, bcc_list, reply_to_list)",
+        )
+
+        db.compileStatement(
+            "INSERT INTO messages_search (docid, subject, sender_list, to_list, cc_list, bcc_list, reply_to_list) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)",
+        ).use { statement ->
+            db.rawQuery(
+                "SELECT id, subject, sender_list, to_list, cc_list, bcc_list, reply_to_list " +
+                    "FROM messages " +
+                    "WHERE empty = 0",
+                null,
+            ).use { cursor ->
+                while (cursor.moveToNext()) {
+                    statement.clearBindings()
+                    statement.bindLong(1, cursor.getLong(0))
+                    for (columnIndex in 1..6) {
+                        val indexText = FullTextSearchTerms.createIndexText(cursor.getString(columnIndex))
+                        if (indexText != null) {
+                            statement.bindString(columnIndex + 1, indexText)
+                        }
+                    }
+                    statement.executeInsert()
+                }
+            }
+        }
+
+        db.execSQL("DROP TRIGGER IF EXISTS delete_message")
+        db.execSQL(
+            "CREATE TRIGGER delete_message " +
+                "BEFORE DELETE ON messages " +
+                "BEGIN " +
+                "DELETE FROM message_parts WHERE root = OLD.message_part_id; " +
+                "DELETE FROM messages_fulltext WHERE docid = OLD.id; " +
+                "DELETE FROM messages_search WHERE docid = OLD.id; " +
+                "DELETE FROM threads WHERE message_id = OLD.id; " +
+                "DELETE FROM structured_data WHERE message_id = OLD.id; " +
+                "END",
+        )
+    }
+}
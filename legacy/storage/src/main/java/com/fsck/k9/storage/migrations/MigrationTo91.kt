@@ -0,0 +1,108 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Add 'folder_counts' table that keeps the number of total, unread, and starred messages per folder up to date.
+ */
+internal class MigrationTo91(private val db: SQLiteDatabase) {
+    fun addFolderCountsTable() {
+        db.execSQL("DROP TABLE IF EXISTS folder_counts")
+        db.execSQL(
+            "CREATE TABLE folder_counts (" +
+                "folder_id INTEGER PRIMARY KEY, " +
+                "total_count INTEGER NOT NULL DEFAULT 0, " +
+                "unread_count INTEGER NOT NULL DEFAULT 0, " +
+                "starred_count INTEGER NOT NULL DEFAULT 0" +
+                ")",
+        )
+
+        db.execSQL(
+            "INSERT INTO folder_counts (folder_id, total_count, unread_count, starred_count) " +
+                "SELECT folders.id, COUNT(messages.id), SUM(messages.read IS 0), SUM(messages.flagged IS 1) " +
+                "FROM folders " +
+                "LEFT JOIN messages ON (" +
+                "messages.folder_id = folders.id AND messages.empty = 0 AND messages.deleted = 0" +
+                ") " +
+                "GROUP BY folders.id",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS create_folder_counts")
+        db.execSQL(
+            "CREATE TRIGGER create_folder_counts " +
+                "AFTER INSERT ON folders " +
+                "BEGIN " +
+                "INSERT INTO folder_counts (folder_id) VALUES (NEW.id); " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS delete_folder_counts")
+        db.execSQL(
+            "CREATE TRIGGER delete_folder_counts " +
+                "AFTER DELETE ON folders " +
+                "BEGIN " +
+                "DELETE FROM folder_counts WHERE folder_id = OLD.id; " +
+                "END",
+        )
+
+        // 'INSERT OR REPLACE' doesn't run delete triggers for the row it replaces. So the counts of a message that is
+        // about to be replaced are removed before the insert.
+        db.execSQL("DROP TRIGGER IF EXISTS folder_counts_replace_message")
+        db.execSQL(
+            "CREATE TRIGGER folder_counts_replace_message " +
+                "BEFORE INSERT ON messages " +
+                "BEGIN " +
+                "UPDATE folder_counts SET " +
+                "total_count = total_count - 1, " +
+                "unread_count = unread_count - (SELECT read IS 0 FROM messages WHERE id = NEW.id), " +
+                "starred_count = starred_count - (SELECT flagged IS 1 FROM messages WHERE id = NEW.id) " +
+                "WHERE folder_id = " +
+                "(SELECT folder_id FROM messages WHERE id = NEW.id AND empty = 0 AND deleted = 0); " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS folder_counts_insert_message")
+        db.execSQL(
+            "CREATE TRIGGER folder_counts_insert_message " +
+                "AFTER INSERT ON messages " +
+                "BEGIN " +
+                "UPDATE folder_counts SET " +
+                "total_count = total_count + 1, " +
+                "unread_count = unread_count + (NEW.read IS 0), " +
+                "starred_count = starred_count + (NEW.flagged IS 1) " +
+                "WHERE folder_id = NEW.folder_id AND NEW.empty IS 0 AND NEW.deleted IS 0; " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS folder_counts_update_message")
+        db.execSQL(
+            "CREATE TRIGGER folder_counts_update_message " +
+                "AFTER UPDATE OF folder_id, empty, deleted, read, flagged ON messages " +
+                "BEGIN " +
+                "UPDATE folder_counts SET " +
+                "total_count = total_count - 1, " +
+                "unread_count = unread_count - (OLD.read IS 0), " +
+                "starred_count = starred_count - (OLD.flagged IS 1) " +
+                "WHERE folder_id = OLD.folder_id AND OLD.empty IS 0 AND OLD.deleted IS 0; " +
+                "UPDATE folder_counts SET " +
+                "total_count = total_count + 1, " +
+                "unread_count = unread_count + (NEW.read IS 0), " +
+                "starred_count = starred_count + (NEW.flagged IS 1) " +
+                "WHERE folder_id = NEW.folder_id AND NEW.empty IS 0 AND NEW.deleted IS 0; " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS folder_counts_delete_message")
+        db.execSQL(
+            "CREATE TRIGGER folder_counts_delete_message " +
+                "AFTER DELETE ON messages " +
+                "BEGIN " +
+                "UPDATE folder_counts SET " +
+                "total_count = total_count - 1, " +
+                "unread_count = unread_count - (OLD.read IS 0), " +
+                "starred_count = starred_count - (OLD.flagged IS 1) " +
+                "WHERE folder_id = OLD.folder_id AND OLD.empty IS 0 AND OLD.deleted IS 0; " +
+                "END",
+        )
+    }
+}
@@ -0,0 +1,103 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+import androidx.core.content.contentValuesOf
+import com.fsck.k9.mailstore.MigrationsHelper
+import java.io.IOException
+import net.thunderbird.core.logging.legacy.Log
+
+private const val DATA_LOCATION_ON_DISK = 2
+
+/**
+ * Add 'blob_key' column to 'message_parts' and the 'blobs' table that keeps track of how many message parts reference
+ * a blob. Then copy existing message part files into the content-addressed blob store, deduplicating them on the way.
+ *
+ * The files named after the message part ID are not removed here. The migration runs inside a transaction, and if it
+ * is rolled back, the message parts need to be able to use those files again. Once the migration has been committed,
+ * [com.fsck.k9.mailstore.AttachmentBlobStore.deleteOrphanedFiles] removes them, because the message parts reference
+ * their blob key instead.
+ */
+internal class MigrationTo92(private val db: SQLiteDatabase, private val migrationsHelper: MigrationsHelper) {
+    fun addMessagePartBlobKeys() {
+        db.execSQL("ALTER TABLE message_parts ADD blob_key TEXT")
+
+        createBlobsTable()
+        copyMessagePartFilesToBlobStore()
+    }
+
+    private fun createBlobsTable() {
+        db.execSQL("DROP TABLE IF EXISTS blobs")
+        db.execSQL(
+            "CREATE TABLE blobs (" +
+                "blob_key TEXT PRIMARY KEY, " +
+                "ref_count INTEGER NOT NULL DEFAULT 0" +
+                ")",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS blobs_insert_message_part")
+        db.execSQL(
+            "CREATE TRIGGER blobs_insert_message_part " +
+                "AFTER INSERT ON message_parts " +
+                "WHEN NEW.blob_key IS NOT NULL " +
+                "BEGIN " +
+                "INSERT OR IGNORE INTO blobs (blob_key) VALUES (NEW.blob_key); " +
+                "UPDATE blobs SET ref_count = ref_count + 1 WHERE blob_key = NEW.blob_key; " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS blobs_update_message_part")
+        db.execSQL(
+            "CREATE TRIGGER blobs_update_message_part " +
+                "AFTER UPDATE OF blob_key ON message_parts " +
+                "WHEN OLD.blob_key IS NOT NEW.blob_key " +
+                "BEGIN " +
+                "UPDATE blobs SET ref_count = ref_count - 1 WHERE blob_key = OLD.blob_key; " +
+                "INSERT OR IGNORE INTO blobs (blob_key) SELECT NEW.blob_key WHERE NEW.blob_key IS NOT NULL; " +
+                "UPDATE blobs SET ref_count = ref_count + 1 WHERE blob_key = NEW.blob_key; " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS blobs_delete_message_part")
+        db.execSQL(
+            "CREATE TRIGGER blobs_delete_message_part " +
+                "AFTER DELETE ON message_parts " +
+                "WHEN OLD.blob_key IS NOT NULL " +
+                "BEGIN " +
+                "UPDATE blobs SET ref_count = ref_count - 1 WHERE blob_key = OLD.blob_key; " +
+                "END",
+        )
+    }
+
+    private fun copyMessagePartFilesToBlobStore() {
+        val attachmentBlobStore = migrationsHelper.attachmentBlobStore
+
+        val messagePartIds = db.rawQuery(
+            "SELECT id FROM message_parts WHERE data_location = $DATA_LOCATION_ON_DISK",
+            null,
+        ).use { cursor ->
+            buildList {
+                while (cursor.moveToNext()) {
+                    add(cursor.getLong(0))
+                }
+            }
+        }
+
+        for (messagePartId in messagePartIds) {
+            val file = attachmentBlobStore.getMessagePartFile(messagePartId)
+            if (!file.exists()) continue
+
+            // Message parts whose file couldn't be copied keep using the file named after the message part ID
+            try {
+                val blobKey = attachmentBlobStore.copyFile(file)
+                db.update(
+                    "message_parts",
+                    contentValuesOf("blob_key" to blobKey),
+                    "id = ?",
+                    arrayOf(messagePartId.toString()),
+                )
+            } catch (e: IOException) {
+                Log.w(e, "Couldn't copy file of message part %d to blob store", messagePartId)
+            }
+        }
+    }
+}
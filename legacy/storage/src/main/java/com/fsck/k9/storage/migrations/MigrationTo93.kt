@@ -0,0 +1,14 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Add 'data_compression' column to 'message_parts' table.
+ *
+ * Existing message parts stay uncompressed.
+ */
+internal class MigrationTo93(private val db: SQLiteDatabase) {
+    fun addMessagePartDataCompressionColumn() {
+        db.execSQL("ALTER TABLE message_parts ADD data_compression INTEGER DEFAULT 0")
+    }
+}
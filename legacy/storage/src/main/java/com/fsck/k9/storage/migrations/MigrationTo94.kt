@@ -0,0 +1,225 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Add 'thread_summary' table that keeps the aggregated values of the messages of a thread in a folder up to date.
+ *
+ * The triggers apply the change of a single message to the affected (folder_id, root) row. The row is only
+ * recomputed when a message that provided its latest date or internal date is removed from it.
+ */
+internal class MigrationTo94(private val db: SQLiteDatabase) {
+    fun addThreadSummaryTable() {
+        db.execSQL("DROP TABLE IF EXISTS thread_summary")
+        db.execSQL(
+            "CREATE TABLE thread_summary (" +
+                "folder_id INTEGER NOT NULL, " +
+                "root INTEGER NOT NULL, " +
+                "message_id INTEGER NOT NULL, " +
+                "date INTEGER, " +
+                "internal_date INTEGER, " +
+                "message_count INTEGER NOT NULL, " +
+                "unread_count INTEGER NOT NULL, " +
+                "flagged_count INTEGER NOT NULL, " +
+                "answered_count INTEGER NOT NULL, " +
+                "forwarded_count INTEGER NOT NULL, " +
+                "attachment_count INTEGER NOT NULL, " +
+                "PRIMARY KEY (folder_id, root)" +
+                ")",
+        )
+
+        db.execSQL("DROP INDEX IF EXISTS thread_summary_root")
+        db.execSQL("CREATE INDEX IF NOT EXISTS thread_summary_root ON thread_summary (root)")
+
+        db.execSQL(
+            "INSERT INTO thread_summary ($THREAD_SUMMARY_COLUMNS) " +
+                "SELECT ${threadSummaryValues()} " +
+                "FROM threads " +
+                "JOIN messages ON (messages.id = threads.message_id) " +
+                "WHERE messages.empty = 0 AND messages.deleted = 0 " +
+                "GROUP BY threads.root, messages.folder_id",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_insert_thread")
+        db.execSQL(
+            "CREATE TRIGGER thread_summary_insert_thread " +
+                "AFTER INSERT ON threads " +
+                "WHEN NEW.root IS NOT NULL " +
+                "BEGIN " +
+                addToThreadSummary("NEW.message_id", "NEW.root", storedMessage("NEW.message_id")) +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_update_thread")
+        db.execSQL(
+            "CREATE TRIGGER thread_summary_update_thread " +
+                "AFTER UPDATE OF root, message_id ON threads " +
+                "WHEN OLD.root IS NOT NEW.root OR OLD.message_id IS NOT NEW.message_id " +
+                "BEGIN " +
+                removeFromThreadSummary("OLD.message_id", "OLD.root", storedMessage("OLD.message_id")) +
+                addToThreadSummary("NEW.message_id", "NEW.root", storedMessage("NEW.message_id")) +
+                "END",
+        )
+
+        // Deleting a message deletes its 'threads' row first. So this also takes care of deleted messages.
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_delete_thread")
+        db.execSQL(
+            "CREATE TRIGGER thread_summary_delete_thread " +
+                "AFTER DELETE ON threads " +
+                "BEGIN " +
+                removeFromThreadSummary("OLD.message_id", "OLD.root", storedMessage("OLD.message_id")) +
+                "END",
+        )
+
+        // 'INSERT OR REPLACE' doesn't run the delete triggers for the row it replaces. The old values of a message
+        // that is already part of a thread are only available before the insert.
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_replace_message")
+        db.execSQL(
+            "CREATE TRIGGER thread_summary_replace_message " +
+                "BEFORE INSERT ON messages " +
+                "BEGIN " +
+                removeFromThreadSummary("NEW.id", threadRoot("NEW.id"), storedMessage("NEW.id")) +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_insert_message")
+        db.execSQL(
+            "CREATE TRIGGER thread_summary_insert_message " +
+                "AFTER INSERT ON messages " +
+                "BEGIN " +
+                addToThreadSummary("NEW.id", threadRoot("NEW.id")) { column -> "NEW.$column" } +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_update_message")
+        db.execSQL(
+            "CREATE TRIGGER thread_summary_update_message " +
+                "AFTER UPDATE OF folder_id, empty, deleted, date, internal_date ON messages " +
+                "WHEN OLD.folder_id IS NOT NEW.folder_id OR OLD.empty IS NOT NEW.empty " +
+                "OR OLD.deleted IS NOT NEW.deleted OR OLD.date IS NOT NEW.date " +
+                "OR OLD.internal_date IS NOT NEW.internal_date " +
+                "BEGIN " +
+                removeFromThreadSummary("OLD.id", threadRoot("OLD.id")) { column -> "OLD.$column" } +
+                addToThreadSummary("NEW.id", threadRoot("NEW.id")) { column -> "NEW.$column" } +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_update_message_flags")
+        db.execSQL(
+            "CREATE TRIGGER thread_summary_update_message_flags " +
+                "AFTER UPDATE OF read, flagged, answered, forwarded, attachment_count ON messages " +
+                "WHEN OLD.folder_id IS NEW.folder_id AND OLD.empty IS NEW.empty " +
+                "AND OLD.deleted IS NEW.deleted AND OLD.date IS NEW.date " +
+                "AND OLD.internal_date IS NEW.internal_date AND (" +
+                "OLD.read IS NOT NEW.read OR OLD.flagged IS NOT NEW.flagged " +
+                "OR OLD.answered IS NOT NEW.answered OR OLD.forwarded IS NOT NEW.forwarded " +
+                "OR OLD.attachment_count IS NOT NEW.attachment_count) " +
+                "BEGIN " +
+                "UPDATE thread_summary SET " +
+                "unread_count = unread_count - (OLD.read IS 0) + (NEW.read IS 0), " +
+                "flagged_count = flagged_count - (OLD.flagged IS 1) + (NEW.flagged IS 1), " +
+                "answered_count = answered_count - (OLD.answered IS 1) + (NEW.answered IS 1), " +
+                "forwarded_count = forwarded_count - (OLD.forwarded IS 1) + (NEW.forwarded IS 1), " +
+                "attachment_count = attachment_count - IFNULL(OLD.attachment_count, 0) + " +
+                "IFNULL(NEW.attachment_count, 0) " +
+                "WHERE folder_id = NEW.folder_id AND root = ${threadRoot("NEW.id")} " +
+                "AND NEW.empty = 0 AND NEW.deleted = 0; " +
+                "END",
+        )
+    }
+
+    /**
+     * Returns the statements that add a message to the 'thread_summary' row of its folder and thread.
+     *
+     * @param message Maps a column name of the 'messages' table to an SQL expression returning the message's value.
+     */
+    private fun addToThreadSummary(messageId: String, root: String, message: (String) -> String): String {
+        val folderId = message("folder_id")
+        val date = message("date")
+        val internalDate = message("internal_date")
+        val isVisible = "$root IS NOT NULL AND ${message("empty")} = 0 AND ${message("deleted")} = 0"
+        val isLatest = "message_count = 0 OR ($date IS NOT NULL AND (date IS NULL OR $date > date))"
+        val summaryRow = "folder_id = $folderId AND root = $root"
+
+        // Not using 'INSERT OR IGNORE'. Inside a trigger the conflict resolution of an outer 'INSERT OR REPLACE' would
+        // be used instead.
+        return "INSERT INTO thread_summary ($THREAD_SUMMARY_COLUMNS) " +
+            "SELECT $folderId, $root, $messageId, NULL, NULL, 0, 0, 0, 0, 0, 0 " +
+            "WHERE $isVisible AND NOT EXISTS (SELECT 1 FROM thread_summary WHERE $summaryRow); " +
+            "UPDATE thread_summary SET " +
+            "message_id = CASE WHEN $isLatest THEN $messageId ELSE message_id END, " +
+            "date = CASE WHEN $isLatest THEN $date ELSE date END, " +
+            "internal_date = IFNULL(MAX(internal_date, $internalDate), IFNULL(internal_date, $internalDate)), " +
+            "message_count = message_count + 1, " +
+            "unread_count = unread_count + (${message("read")} IS 0), " +
+            "flagged_count = flagged_count + (${message("flagged")} IS 1), " +
+            "answered_count = answered_count + (${message("answered")} IS 1), " +
+            "forwarded_count = forwarded_count + (${message("forwarded")} IS 1), " +
+            "attachment_count = attachment_count + IFNULL(${message("attachment_count")}, 0) " +
+            "WHERE $summaryRow AND $isVisible; "
+    }
+
+    /**
+     * Returns the statements that remove a message from the 'thread_summary' row of its folder and thread.
+     *
+     * The latest date and internal date can't be derived from the remaining values. So the row is recomputed from
+     * the other messages of the thread in the folder if the removed message provided one of them.
+     *
+     * @param message Maps a column name of the 'messages' table to an SQL expression returning the message's value.
+     */
+    private fun removeFromThreadSummary(messageId: String, root: String, message: (String) -> String): String {
+        val folderId = message("folder_id")
+        val isVisible = "$root IS NOT NULL AND ${message("empty")} = 0 AND ${message("deleted")} = 0"
+        val summaryRow = "folder_id = $folderId AND root = $root"
+
+        return "UPDATE thread_summary SET " +
+            "message_count = message_count - 1, " +
+            "unread_count = unread_count - (${message("read")} IS 0), " +
+            "flagged_count = flagged_count - (${message("flagged")} IS 1), " +
+            "answered_count = answered_count - (${message("answered")} IS 1), " +
+            "forwarded_count = forwarded_count - (${message("forwarded")} IS 1), " +
+            "attachment_count = attachment_count - IFNULL(${message("attachment_count")}, 0) " +
+            "WHERE $summaryRow AND $isVisible; " +
+            "DELETE FROM thread_summary " +
+            "WHERE $summaryRow AND $isVisible AND " +
+            "(message_count = 0 OR message_id = $messageId OR internal_date = ${message("internal_date")}); " +
+            "INSERT INTO thread_summary ($THREAD_SUMMARY_COLUMNS) " +
+            "SELECT ${threadSummaryValues(excludedMessageId = messageId)} " +
+            "FROM threads " +
+            "JOIN messages ON (messages.id = threads.message_id) " +
+            "WHERE threads.root = $root AND messages.folder_id = $folderId AND messages.id != $messageId " +
+            "AND messages.empty = 0 AND messages.deleted = 0 AND $isVisible " +
+            "AND NOT EXISTS (SELECT 1 FROM thread_summary WHERE $summaryRow) " +
+            "GROUP BY messages.folder_id; "
+    }
+
+    private fun storedMessage(messageId: String): (String) -> String {
+        return { column -> "(SELECT $column FROM messages WHERE id = $messageId)" }
+    }
+
+    private fun threadRoot(messageId: String): String {
+        return "(SELECT root FROM threads WHERE message_id = $messageId)"
+    }
+
+    /**
+     * 'messages.id' is taken from the row with the latest date. That's why 'internal_date' uses a subquery. With a
+     * second MAX() SQLite could take it from the row with the latest internal date instead.
+     */
+    private fun threadSummaryValues(excludedMessageId: String? = null): String {
+        val exclusion = if (excludedMessageId != null) " AND m.id != $excludedMessageId" else ""
+
+        return "messages.folder_id, threads.root, messages.id, " +
+            "MAX(messages.date), (" +
+            "SELECT MAX(m.internal_date) FROM threads AS t JOIN messages AS m ON (m.id = t.message_id) " +
+            "WHERE t.root = threads.root AND m.folder_id = messages.folder_id AND m.empty = 0 AND m.deleted = 0" +
+            exclusion +
+            "), " +
+            "COUNT(messages.id), SUM(messages.read IS 0), SUM(messages.flagged IS 1), SUM(messages.answered IS 1), " +
+            "SUM(messages.forwarded IS 1), SUM(IFNULL(messages.attachment_count, 0))"
+    }
+
+    companion object {
+        private const val THREAD_SUMMARY_COLUMNS = "folder_id, root, message_id, date, internal_date, " +
+            "message_count, unread_count, flagged_count, answered_count, forwarded_count, attachment_count"
+    }
+}
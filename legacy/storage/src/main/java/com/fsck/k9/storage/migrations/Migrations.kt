@@ -35,5 +35,11 @@ object Migrations {
         if (oldVersion < 86) MigrationTo86(db, migrationsHelper).addFoldersPushEnabledColumn()
         if (oldVersion < 87) MigrationTo87(db, migrationsHelper).addFoldersSyncEnabledColumn()
         if (oldVersion < 88) MigrationTo88(db, migrationsHelper).addFoldersVisibleColumn()
+        if (oldVersion < 89) MigrationTo89(db).addStructuredDataTable()
+        if (oldVersion < 90) MigrationTo90(db).addMessageSearchTable()
+        if (oldVersion < 91) MigrationTo91(db).addFolderCountsTable()
+        if (oldVersion < 92) MigrationTo92(db, migrationsHelper).addMessagePartBlobKeys()
+        if (oldVersion < 93) MigrationTo93(db).addMessagePartDataCompressionColumn()
+        if (oldVersion < 94) MigrationTo94(db).addThreadSummaryTable()
     }
 }
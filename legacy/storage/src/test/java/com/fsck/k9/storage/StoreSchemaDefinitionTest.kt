@@ -17,6 +17,7 @@ import com.fsck.k9.core.BuildConfig
 import com.fsck.k9.mail.AuthType
 import com.fsck.k9.mail.ConnectionSecurity
 import com.fsck.k9.mail.ServerSettings
+import com.fsck.k9.mailstore.AttachmentBlobStore
 import com.fsck.k9.mailstore.MigrationsHelper
 import net.thunderbird.core.android.account.FolderMode
 import net.thunderbird.core.android.account.LegacyAccount
@@ -380,6 +381,7 @@ class StoreSchemaDefinitionTest : RobolectricTest() {
 
     private fun createStoreSchemaDefinition(): StoreSchemaDefinition {
         val account = createAccount()
+        val attachmentBlobStore = AttachmentBlobStore(storageFilesProvider = mock())
         val migrationsHelper = object : MigrationsHelper {
             override fun getAccount(): LegacyAccount {
                 return account
@@ -388,6 +390,10 @@ class StoreSchemaDefinitionTest : RobolectricTest() {
             override fun saveAccount() {
                 // Do nothing
             }
+
+            override fun getAttachmentBlobStore(): AttachmentBlobStore {
+                return attachmentBlobStore
+            }
         }
 
         return StoreSchemaDefinition(migrationsHelper)
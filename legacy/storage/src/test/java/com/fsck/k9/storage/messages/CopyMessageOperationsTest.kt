@@ -1,6 +1,7 @@
 package com.fsck.k9.storage.messages
 
 import assertk.assertThat
+import assertk.assertions.containsExactly
 import assertk.assertions.hasSize
 import assertk.assertions.isEqualTo
 import assertk.assertions.isNotIn
@@ -15,6 +16,8 @@ import org.junit.After
 import org.junit.Test
 import org.mockito.kotlin.mock
 
+private const val BLOB_KEY = "d9014c4624844aa5bac314773d6b689ad467fa4e1d1a50a1b8a99d5a95f72ff5"
+
 class CopyMessageOperationsTest : RobolectricTest() {
     private val messagePartDirectory = createRandomTempDirectory()
     private val sqliteDatabase = createDatabase()
@@ -245,4 +248,69 @@ class CopyMessageOperationsTest : RobolectricTest() {
             ),
         )
     }
+
+    @Test
+    fun `copy message with part stored in blob store should reference the same blob`() {
+        val sourceMessagePartId = sqliteDatabase.createMessagePart(
+            header = "Message-ID: <msg0001@domain.example>\n".crlf(),
+            mimeType = "application/octet-stream",
+            dataLocation = DataLocation.ON_DISK,
+            blobKey = BLOB_KEY,
+        )
+        attachmentFileManager.getBlobFile(BLOB_KEY).sink().buffer().use { sink ->
+            sink.writeUtf8("Part contents")
+        }
+        val sourceMessageId = sqliteDatabase.createMessage(
+            folderId = 1,
+            empty = false,
+            messageIdHeader = "<msg0001@domain.example>",
+            messagePartId = sourceMessagePartId,
+        )
+
+        val destinationMessageId = copyMessageOperations.copyMessage(
+            messageId = sourceMessageId,
+            destinationFolderId = 2,
+        )
+
+        val destinationMessage = sqliteDatabase.readMessages().first { it.id == destinationMessageId }
+        val messageParts = sqliteDatabase.readMessageParts()
+        val destinationMessagePart = messageParts.first { it.id == destinationMessage.messagePartId }
+        assertThat(destinationMessagePart.blobKey).isEqualTo(BLOB_KEY)
+        assertThat(sqliteDatabase.readBlobReferenceCounts()).isEqualTo(mapOf(BLOB_KEY to 2))
+        assertThat(messagePartDirectory.list()?.toList()).isEqualTo(listOf(BLOB_KEY))
+    }
+
+    @Test
+    fun `copy message should copy structured data and its types`() {
+        val sourceMessagePartId = sqliteDatabase.createMessagePart(
+            header = "Message-ID: <msg0001@domain.example>\n".crlf(),
+            mimeType = "text/plain",
+        )
+        val sourceMessageId = sqliteDatabase.createMessage(
+            folderId = 1,
+            empty = false,
+            messageIdHeader = "<msg0001@domain.example>",
+            messagePartId = sourceMessagePartId,
+            structuredDataExtracted = true,
+        )
+        sqliteDatabase.createStructuredData(
+            sourceMessageId,
+            types = listOf("FlightReservation", "Reservation"),
+            jsonLdId = "res1",
+            json = "{\"a\":1}",
+        )
+        sqliteDatabase.createStructuredData(sourceMessageId, json = "{\"b\":2}", syntax = "MICRODATA")
+
+        val destinationMessageId = copyMessageOperations.copyMessage(
+            messageId = sourceMessageId,
+            destinationFolderId = 2,
+        )
+
+        val structuredData = sqliteDatabase.readStructuredData().filter { it.messageId == destinationMessageId }
+        assertThat(structuredData.map { listOf(it.types, it.jsonLdId, it.json, it.syntax) }).containsExactly(
+            listOf(listOf("FlightReservation", "Reservation"), "res1", "{\"a\":1}", "JSON_LD"),
+            listOf(emptyList<String>(), null, "{\"b\":2}", "MICRODATA"),
+        )
+        assertThat(sqliteDatabase.readStructuredDataTypes()).hasSize(4)
+    }
 }
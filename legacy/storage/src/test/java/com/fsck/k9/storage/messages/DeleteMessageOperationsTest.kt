@@ -6,14 +6,18 @@ import assertk.assertions.extracting
 import assertk.assertions.hasSize
 import assertk.assertions.isEmpty
 import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
 import assertk.assertions.isNotNull
 import assertk.assertions.isNull
+import assertk.assertions.isTrue
 import com.fsck.k9.mailstore.StorageFilesProvider
 import com.fsck.k9.storage.RobolectricTest
 import org.junit.After
 import org.junit.Test
 import org.mockito.kotlin.mock
 
+private const val BLOB_KEY = "d9014c4624844aa5bac314773d6b689ad467fa4e1d1a50a1b8a99d5a95f72ff5"
+
 class DeleteMessageOperationsTest : RobolectricTest() {
     private val messagePartDirectory = createRandomTempDirectory()
     private val sqliteDatabase = createDatabase()
@@ -189,4 +193,24 @@ class DeleteMessageOperationsTest : RobolectricTest() {
         assertThat(threads).hasSize(2)
         assertThat(threads).extracting { it.id }.containsExactlyInAnyOrder(threadId1, threadId2)
     }
+
+    @Test
+    fun `destroy messages sharing a blob should delete the file when the last reference is gone`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messagePartId1 = sqliteDatabase.createMessagePart(dataLocation = DataLocation.ON_DISK, blobKey = BLOB_KEY)
+        val messagePartId2 = sqliteDatabase.createMessagePart(dataLocation = DataLocation.ON_DISK, blobKey = BLOB_KEY)
+        sqliteDatabase.createMessage(folderId = folderId, uid = "uid1", messagePartId = messagePartId1)
+        sqliteDatabase.createMessage(folderId = folderId, uid = "uid2", messagePartId = messagePartId2)
+        val blobFile = attachmentFileManager.getBlobFile(BLOB_KEY).apply { createNewFile() }
+
+        deleteMessageOperations.destroyMessages(folderId = folderId, messageServerIds = listOf("uid1"))
+
+        assertThat(blobFile.exists()).isTrue()
+        assertThat(sqliteDatabase.readBlobReferenceCounts()).isEqualTo(mapOf(BLOB_KEY to 1))
+
+        deleteMessageOperations.destroyMessages(folderId = folderId, messageServerIds = listOf("uid2"))
+
+        assertThat(blobFile.exists()).isFalse()
+        assertThat(sqliteDatabase.readBlobReferenceCounts()).isEmpty()
+    }
 }
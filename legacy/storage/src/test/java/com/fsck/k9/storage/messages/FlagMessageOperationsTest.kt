@@ -97,4 +97,29 @@ class FlagMessageOperationsTest : RobolectricTest() {
         val message = sqliteDatabase.readMessages().first()
         assertThat(message.flags).isEqualTo("")
     }
+
+    @Test
+    fun `set flags on multiple messages`() {
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid1", read = false, flags = "X_DOWNLOADED_FULL")
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid2", read = true, flagged = false)
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid3", read = false)
+
+        flagMessageOperations.setMessageFlags(
+            folderId = 1,
+            flagChanges = mapOf(
+                "uid1" to mapOf(Flag.SEEN to true, Flag.X_DOWNLOADED_FULL to false, Flag.DRAFT to true),
+                "uid2" to mapOf(Flag.SEEN to false, Flag.FLAGGED to true),
+            ),
+        )
+
+        val messages = sqliteDatabase.readMessages().associateBy { it.uid }
+        val message1 = messages.getValue("uid1")
+        assertThat(message1.read).isEqualTo(1)
+        assertThat(message1.flags).isEqualTo("DRAFT")
+        val message2 = messages.getValue("uid2")
+        assertThat(message2.read).isEqualTo(0)
+        assertThat(message2.flagged).isEqualTo(1)
+        val message3 = messages.getValue("uid3")
+        assertThat(message3.read).isEqualTo(0)
+    }
 }
@@ -0,0 +1,151 @@
+package com.fsck.k9.storage.messages
+
+import android.database.sqlite.SQLiteDatabase
+import app.k9mail.legacy.mailstore.SaveMessageData
+import app.k9mail.legacy.message.extractors.PreviewResult
+import assertk.assertThat
+import assertk.assertions.isLessThan
+import com.fsck.k9.mail.Message
+import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.internet.MimeBodyPart
+import com.fsck.k9.mail.internet.MimeMessage
+import com.fsck.k9.mail.internet.MimeMessageHelper
+import com.fsck.k9.mail.internet.MimeMultipart
+import com.fsck.k9.mail.internet.TextBody
+import com.fsck.k9.mailstore.BinaryMemoryBody
+import com.fsck.k9.mailstore.StorageFilesProvider
+import com.fsck.k9.message.extractors.BasicPartInfoExtractor
+import com.fsck.k9.storage.RobolectricTest
+import java.io.File
+import kotlin.random.Random
+import net.thunderbird.core.logging.legacy.Log
+import net.thunderbird.core.logging.testing.TestLogger
+import okio.ByteString.Companion.toByteString
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.mock
+
+private const val MESSAGE_COUNT = 200
+private const val MAX_PARAGRAPHS = 120
+
+private val WORDS = listOf(
+    "account", "update", "meeting", "invoice", "delivery", "schedule", "newsletter", "offer", "please", "review",
+    "attached", "report", "quarterly", "team", "project", "deadline", "thanks", "regards", "customer", "support",
+)
+
+/**
+ * Saves a corpus of newsletter-style messages, HTML transfer-encoded as base64 with a quoted-printable plain text
+ * alternative, with and without compression, and compares the space used by the message parts.
+ */
+class MessageBodyCompressionTest : RobolectricTest() {
+    private val directories = mutableListOf<File>()
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+    }
+
+    @After
+    fun tearDown() {
+        directories.forEach { it.deleteRecursively() }
+    }
+
+    @Test
+    fun `compressed message bodies should use less space`() {
+        val corpus = createCorpus()
+
+        val uncompressedBytes = saveCorpus(corpus, compressMessageBodies = false)
+        val compressedBytes = saveCorpus(corpus, compressMessageBodies = true)
+
+        assertThat(compressedBytes).isLessThan(uncompressedBytes)
+    }
+
+    /**
+     * Returns the number of bytes used to store the message parts.
+     */
+    private fun saveCorpus(corpus: List<Message>, compressMessageBodies: Boolean): Long {
+        val messagePartDirectory = createRandomTempDirectory().also { directories.add(it) }
+        val storageFilesProvider = object : StorageFilesProvider {
+            override fun getDatabaseFile() = error("Not implemented")
+            override fun getAttachmentDirectory() = messagePartDirectory
+        }
+        val sqliteDatabase = createDatabase()
+        val attachmentFileManager = AttachmentFileManager(storageFilesProvider, mock())
+        val saveMessageOperations = SaveMessageOperations(
+            createLockableDatabaseMock(sqliteDatabase),
+            attachmentFileManager,
+            BasicPartInfoExtractor(),
+            ThreadMessageOperations(),
+            compressMessageBodies,
+        )
+
+        corpus.forEachIndexed { index, message ->
+            saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid$index", message.toSaveData())
+        }
+
+        val databaseBytes = sqliteDatabase.longForQuery("SELECT SUM(LENGTH(data)) FROM message_parts")
+        val fileBytes = messagePartDirectory.listFiles()?.sumOf { it.length() } ?: 0L
+
+        return databaseBytes + fileBytes
+    }
+
+    private fun SQLiteDatabase.longForQuery(query: String): Long {
+        return rawQuery(query, null).use { cursor ->
+            if (cursor.moveToFirst()) cursor.getLong(0) else 0L
+        }
+    }
+
+    private fun createCorpus(): List<Message> {
+        val random = Random(1)
+        return List(MESSAGE_COUNT) { index ->
+            val paragraphs = List(random.nextInt(from = 3, until = MAX_PARAGRAPHS)) {
+                List(random.nextInt(from = 10, until = 60)) { WORDS.random(random) }.joinToString(" ")
+            }
+
+            createMessage(index, paragraphs)
+        }
+    }
+
+    private fun createMessage(index: Int, paragraphs: List<String>): Message {
+        val html = paragraphs.joinToString(
+            separator = "\n",
+            prefix = "<html><body><table width=\"100%\" cellpadding=\"0\" cellspacing=\"0\">\n",
+            postfix = "\n</table></body></html>",
+        ) { paragraph ->
+            "<tr><td style=\"font-family: Arial, sans-serif; font-size: 14px; color: #333333; padding: 8px;\">" +
+                "<p>$paragraph</p></td></tr>"
+        }
+        val base64Html = html.encodeToByteArray().toByteString().base64().chunked(76).joinToString("\r\n")
+
+        val multipart = MimeMultipart.newInstance().apply {
+            setSubType("alternative")
+            addBodyPart(MimeBodyPart(TextBody(paragraphs.joinToString("\n\n")), "text/plain"))
+            addBodyPart(
+                MimeBodyPart(BinaryMemoryBody(base64Html.encodeToByteArray(), "base64"), "text/html").apply {
+                    setHeader("Content-Transfer-Encoding", "base64")
+                },
+            )
+        }
+
+        return MimeMessage().apply {
+            setHeader("Subject", "Newsletter $index")
+            setHeader("Message-ID", "<msg$index@domain.example>")
+            MimeMessageHelper.setBody(this, multipart)
+        }
+    }
+
+    private fun Message.toSaveData(): SaveMessageData {
+        return SaveMessageData(
+            message = this,
+            subject = subject,
+            date = 0L,
+            internalDate = 0L,
+            downloadState = MessageDownloadState.FULL,
+            attachmentCount = 0,
+            previewResult = PreviewResult.none(),
+            textForSearchIndex = null,
+            encryptionType = null,
+        )
+    }
+}
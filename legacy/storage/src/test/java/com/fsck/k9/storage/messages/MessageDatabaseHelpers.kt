@@ -64,6 +64,7 @@ fun SQLiteDatabase.createMessage(
     messagePartId: Long = 0L,
     encryptionType: String? = null,
     newMessage: Boolean = false,
+    structuredDataExtracted: Boolean = false,
 ): Long {
     val values = ContentValues().apply {
         put("deleted", if (deleted) 1 else 0)
@@ -92,6 +93,7 @@ fun SQLiteDatabase.createMessage(
         put("message_part_id", messagePartId)
         put("encryption_type", encryptionType)
         put("new_message", if (newMessage) 1 else 0)
+        put("structured_data_extracted", if (structuredDataExtracted) 1 else 0)
     }
 
     return insert("messages", null, values)
@@ -129,6 +131,7 @@ fun SQLiteDatabase.readMessages(): List<MessageEntry> {
                 messagePartId = cursor.getLongOrNull("message_part_id"),
                 encryptionType = cursor.getStringOrNull("encryption_type"),
                 newMessage = cursor.getIntOrNull("new_message"),
+                structuredDataExtracted = cursor.getIntOrNull("structured_data_extracted"),
             )
         }
     }
@@ -162,6 +165,7 @@ data class MessageEntry(
     val messagePartId: Long?,
     val encryptionType: String?,
     val newMessage: Int?,
+    val structuredDataExtracted: Int?,
 )
 
 fun SQLiteDatabase.createMessagePart(
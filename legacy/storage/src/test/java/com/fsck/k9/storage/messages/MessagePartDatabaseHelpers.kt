@@ -26,6 +26,8 @@ fun SQLiteDatabase.createMessagePart(
     boundary: String? = null,
     contentId: String? = null,
     serverExtra: String? = null,
+    blobKey: String? = null,
+    dataCompression: Int = 0,
 ): Long {
     val values = ContentValues().apply {
         put("type", type)
@@ -45,6 +47,8 @@ fun SQLiteDatabase.createMessagePart(
         put("boundary", boundary)
         put("content_id", contentId)
         put("server_extra", serverExtra)
+        put("blob_key", blobKey)
+        put("data_compression", dataCompression)
     }
 
     return insert("message_parts", null, values)
@@ -72,6 +76,8 @@ fun SQLiteDatabase.readMessageParts(): List<MessagePartEntry> {
                 boundary = cursor.getStringOrNull("boundary"),
                 contentId = cursor.getStringOrNull("content_id"),
                 serverExtra = cursor.getStringOrNull("server_extra"),
+                blobKey = cursor.getStringOrNull("blob_key"),
+                dataCompression = cursor.getIntOrNull("data_compression"),
             )
         }
     }
@@ -96,6 +102,8 @@ data class MessagePartEntry(
     val boundary: String?,
     val contentId: String?,
     val serverExtra: String?,
+    val blobKey: String?,
+    val dataCompression: Int?,
 ) {
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
@@ -131,6 +139,8 @@ data class MessagePartEntry(
         if (boundary != other.boundary) return false
         if (contentId != other.contentId) return false
         if (serverExtra != other.serverExtra) return false
+        if (blobKey != other.blobKey) return false
+        if (dataCompression != other.dataCompression) return false
 
         return true
     }
@@ -154,6 +164,8 @@ data class MessagePartEntry(
         result = 31 * result + (boundary?.hashCode() ?: 0)
         result = 31 * result + (contentId?.hashCode() ?: 0)
         result = 31 * result + (serverExtra?.hashCode() ?: 0)
+        result = 31 * result + (blobKey?.hashCode() ?: 0)
+        result = 31 * result + (dataCompression ?: 0)
         return result
     }
 
@@ -176,7 +188,19 @@ data class MessagePartEntry(
             "epilogue=$epilogue, " +
             "boundary=$boundary, " +
             "contentId=$contentId, " +
-            "serverExtra=$serverExtra)"
+            "serverExtra=$serverExtra, " +
+            "blobKey=$blobKey, " +
+            "dataCompression=$dataCompression)"
+    }
+}
+
+fun SQLiteDatabase.readBlobReferenceCounts(): Map<String, Int> {
+    return rawQuery("SELECT blob_key, ref_count FROM blobs", null).use { cursor ->
+        buildMap {
+            while (cursor.moveToNext()) {
+                put(cursor.getString(0), cursor.getInt(1))
+            }
+        }
     }
 }
 
@@ -0,0 +1,39 @@
+package com.fsck.k9.storage.messages
+
+import android.database.sqlite.SQLiteDatabase
+import app.k9mail.core.android.common.database.getLongOrNull
+import app.k9mail.core.android.common.database.getStringOrNull
+import app.k9mail.core.android.common.database.map
+
+fun SQLiteDatabase.readMessageSearchEntries(): List<MessageSearchRow> {
+    return rawQuery("SELECT docid, * FROM messages_search", null).use { cursor ->
+        cursor.map {
+            MessageSearchRow(
+                docId = cursor.getLongOrNull("docid"),
+                subject = cursor.getStringOrNull("subject"),
+                senderList = cursor.getStringOrNull("sender_list"),
+                toList = cursor.getStringOrNull("to_list"),
+                ccList = cursor.getStringOrNull("cc_list"),
+                bccList = cursor.getStringOrNull("bcc_list"),
+                replyToList = cursor.getStringOrNull("reply_to_list"),
+            )
+        }
+    }
+}
+
+fun SQLiteDatabase.matchMessageSearchEntries(matchQuery: String): List<Long> {
+    return rawQuery("SELECT docid FROM messages_search WHERE messages_search MATCH ?", arrayOf(matchQuery))
+        .use { cursor ->
+            cursor.map { cursor.getLong(0) }
+        }
+}
+
+data class MessageSearchRow(
+    val docId: Long?,
+    val subject: String?,
+    val senderList: String?,
+    val toList: String?,
+    val ccList: String?,
+    val bccList: String?,
+    val replyToList: String?,
+)
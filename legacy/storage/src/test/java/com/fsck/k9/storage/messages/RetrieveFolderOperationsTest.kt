@@ -504,6 +504,63 @@ class RetrieveFolderOperationsTest : RobolectricTest() {
         assertThat(result).isEqualTo(MoreMessages.TRUE)
     }
 
+    @Test
+    fun `message counts should follow changes to read and flagged state`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId = sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = false)
+        sqliteDatabase.createMessage(folderId = folderId, read = true, flagged = true)
+
+        sqliteDatabase.execSQL("UPDATE messages SET read = 1, flagged = 1 WHERE id = ?", arrayOf(messageId))
+
+        assertThat(retrieveFolderOperations.getMessageCount(folderId)).isEqualTo(2)
+        assertThat(retrieveFolderOperations.getUnreadMessageCount(folderId)).isEqualTo(0)
+        assertThat(retrieveFolderOperations.getStarredMessageCount(conditions = null)).isEqualTo(2)
+    }
+
+    @Test
+    fun `message counts should follow messages being moved, emptied, and deleted`() {
+        val folderId1 = sqliteDatabase.createFolder()
+        val folderId2 = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId = folderId1, read = false)
+        val messageId2 = sqliteDatabase.createMessage(folderId = folderId1, read = false)
+        val messageId3 = sqliteDatabase.createMessage(folderId = folderId1, read = false)
+
+        sqliteDatabase.execSQL("UPDATE messages SET folder_id = ? WHERE id = ?", arrayOf(folderId2, messageId1))
+        sqliteDatabase.execSQL("UPDATE messages SET empty = 1 WHERE id = ?", arrayOf(messageId2))
+        sqliteDatabase.execSQL("DELETE FROM messages WHERE id = ?", arrayOf(messageId3))
+
+        assertThat(retrieveFolderOperations.getUnreadMessageCount(folderId1)).isEqualTo(0)
+        assertThat(retrieveFolderOperations.getUnreadMessageCount(folderId2)).isEqualTo(1)
+    }
+
+    @Test
+    fun `message counts should not count replaced message twice`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId = sqliteDatabase.createMessage(folderId = folderId, read = false)
+
+        sqliteDatabase.execSQL(
+            "INSERT OR REPLACE INTO messages (id, folder_id, read, empty, deleted) VALUES (?, ?, 1, 0, 0)",
+            arrayOf(messageId, folderId),
+        )
+
+        assertThat(retrieveFolderOperations.getMessageCount(folderId)).isEqualTo(1)
+        assertThat(retrieveFolderOperations.getUnreadMessageCount(folderId)).isEqualTo(0)
+    }
+
+    @Test
+    fun `get unread message count with condition on message field`() {
+        val folderId = sqliteDatabase.createFolder(integrate = true)
+        sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = true)
+        sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = false)
+        val conditions = LocalMessageSearch().apply {
+            and(MessageSearchField.FLAGGED, "1", SearchAttribute.EQUALS)
+        }.conditions
+
+        val result = retrieveFolderOperations.getUnreadMessageCount(conditions)
+
+        assertThat(result).isEqualTo(1)
+    }
+
     private val unifiedInboxConditions = LocalMessageSearch().apply {
         and(
             MessageSearchField.INTEGRATE,
@@ -1,12 +1,19 @@
 package com.fsck.k9.storage.messages
 
+import android.database.sqlite.SQLiteDatabase
+import app.k9mail.legacy.mailstore.MessageListPage
+import app.k9mail.legacy.mailstore.MessageListPageKey
+import app.k9mail.legacy.mailstore.MessageListSortColumn
+import app.k9mail.legacy.mailstore.MessageListSortOrder
 import app.k9mail.legacy.mailstore.MessageMapper
+import app.k9mail.legacy.mailstore.createPageKeyComparator
 import app.k9mail.legacy.message.extractors.PreviewResult.PreviewType
 import assertk.assertThat
 import assertk.assertions.containsExactly
 import assertk.assertions.isEmpty
 import assertk.assertions.isEqualTo
 import assertk.assertions.isFalse
+import assertk.assertions.isNull
 import assertk.assertions.isTrue
 import com.fsck.k9.mail.Address
 import com.fsck.k9.mailstore.DatabasePreviewType
@@ -16,6 +23,10 @@ import net.thunderbird.core.logging.testing.TestLogger
 import org.junit.Before
 import org.junit.Test
 
+private val DATE_SORT_ORDER = MessageListSortOrder(
+    sortColumns = listOf(MessageListSortColumn("date", ascending = false)),
+)
+
 class RetrieveMessageListOperationsTest : RobolectricTest() {
     private val sqliteDatabase = createDatabase()
     private val lockableDatabase = createLockableDatabaseMock(sqliteDatabase)
@@ -485,6 +496,210 @@ class RetrieveMessageListOperationsTest : RobolectricTest() {
         assertThat(result).containsExactly(messageId2, messageId3)
     }
 
+    @Test
+    fun `getMessagesPage() should continue after the page key`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid1", date = 100L)
+        val messageId2 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid2", date = 200L)
+        val messageId3 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid3", date = 200L)
+        val messageId4 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid4", date = 300L)
+        val messageId5 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid5", date = 400L)
+
+        val page1 = getMessagesPageFromFolder(folderId, DATE_SORT_ORDER, pageKey = null)
+        val page2 = getMessagesPageFromFolder(folderId, DATE_SORT_ORDER, page1.nextPageKey)
+        val page3 = getMessagesPageFromFolder(folderId, DATE_SORT_ORDER, page2.nextPageKey)
+
+        assertThat(page1.items).containsExactly(messageId5, messageId4)
+        assertThat(page1.nextPageKey).isEqualTo(MessageListPageKey(sortValues = listOf(300L), id = messageId4))
+        assertThat(page2.items).containsExactly(messageId3, messageId2)
+        assertThat(page3.items).containsExactly(messageId1)
+        assertThat(page3.nextPageKey).isNull()
+    }
+
+    @Test
+    fun `getMessagesPage() with text sort column`() {
+        val sortOrder = MessageListSortOrder(
+            sortColumns = listOf(MessageListSortColumn("subject", ascending = true, ignoreCase = true)),
+        )
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid1", subject = "b")
+        val messageId2 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid2", subject = "A")
+        val messageId3 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid3", subject = "a")
+        val messageId4 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid4", subject = "c")
+
+        val page1 = getMessagesPageFromFolder(folderId, sortOrder, pageKey = null)
+        val page2 = getMessagesPageFromFolder(folderId, sortOrder, page1.nextPageKey)
+
+        assertThat(page1.items).containsExactly(messageId3, messageId2)
+        assertThat(page2.items).containsExactly(messageId1, messageId4)
+    }
+
+    @Test
+    fun `getMessagesPage() should return item keys in the order of createPageKeyComparator()`() {
+        val sortOrder = MessageListSortOrder(
+            sortColumns = listOf(
+                MessageListSortColumn("subject", ascending = true, ignoreCase = true),
+                MessageListSortColumn("sender_list", ascending = false),
+            ),
+        )
+        val folderId = sqliteDatabase.createFolder()
+        val subjects = listOf("b", "A", "a", "_", "é", "\uFFFD", "\uD83D\uDE00", "ab", "")
+        val senders = listOf("z@domain.example", "Z@domain.example", "\u00E4@domain.example")
+        for ((index, subject) in subjects.withIndex()) {
+            for (sender in senders) {
+                sqliteDatabase.createMessageWithThread(
+                    folderId,
+                    uid = "uid$index-$sender",
+                    subject = subject,
+                    senderList = sender,
+                )
+            }
+        }
+
+        val page = retrieveMessageListOperations.getMessagesPage(
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            sortOrder = sortOrder,
+            pageKey = null,
+            pageSize = 100,
+        ) { message -> message.id }
+
+        assertThat(page.itemKeys.map { it.id }).isEqualTo(page.items)
+        assertThat(page.itemKeys).isEqualTo(page.itemKeys.sortedWith(sortOrder.createPageKeyComparator()))
+    }
+
+    @Test
+    fun `getMessagesPage() should return page key of last row even if it was skipped by the mapper`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid1", date = 100L)
+        val messageId2 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid2", date = 200L)
+
+        val page = retrieveMessageListOperations.getMessagesPage(
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            sortOrder = DATE_SORT_ORDER,
+            pageKey = null,
+            pageSize = 2,
+        ) { message -> message.id.takeIf { it != messageId1 } }
+
+        assertThat(page.items).containsExactly(messageId2)
+        assertThat(page.itemKeys).containsExactly(MessageListPageKey(sortValues = listOf(200L), id = messageId2))
+        assertThat(page.nextPageKey).isEqualTo(MessageListPageKey(sortValues = listOf(100L), id = messageId1))
+    }
+
+    @Test
+    fun `getThreadedMessagesPage() should sort by aggregated values`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId, uid = "uid1", date = 100L)
+        val threadId1 = sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid2", date = 200L)
+        val messageId3 = sqliteDatabase.createMessage(folderId, uid = "uid3", date = 300L)
+        sqliteDatabase.createThread(messageId3, root = threadId1)
+        val messageId4 = sqliteDatabase.createMessageWithThread(folderId, uid = "uid4", date = 50L)
+
+        val page1 = retrieveMessageListOperations.getThreadedMessagesPage(
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            sortOrder = DATE_SORT_ORDER,
+            pageKey = null,
+            pageSize = 2,
+        ) { message -> message.id to message.threadCount }
+        val page2 = retrieveMessageListOperations.getThreadedMessagesPage(
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            sortOrder = DATE_SORT_ORDER,
+            pageKey = page1.nextPageKey,
+            pageSize = 2,
+        ) { message -> message.id to message.threadCount }
+
+        assertThat(page1.items).containsExactly(messageId3 to 2, messageId2 to 1)
+        assertThat(page2.items).containsExactly(messageId4 to 1)
+        assertThat(page2.nextPageKey).isNull()
+    }
+
+    @Test
+    fun `getThreadedMessagesPage() using thread summaries should return the same result`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId, uid = "uid1", date = 100L, read = true, flagged = true)
+        val threadId1 = sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId, uid = "uid2", date = 300L, attachmentCount = 1)
+        sqliteDatabase.createThread(messageId2, root = threadId1)
+        val messageId3 = sqliteDatabase.createMessage(folderId, empty = true)
+        sqliteDatabase.createThread(messageId3, root = threadId1)
+        val messageId4 = sqliteDatabase.createMessage(folderId, uid = "uid4", date = 200L, read = true)
+        sqliteDatabase.createThread(messageId4)
+
+        val result = getThreadEntriesFromFolder(folderId, selectsWholeFolders = true)
+
+        assertThat(result).isEqualTo(getThreadEntriesFromFolder(folderId, selectsWholeFolders = false))
+        assertThat(result).containsExactly(
+            ThreadListEntry(
+                messageId2,
+                date = 300L,
+                threadCount = 2,
+                isRead = false,
+                isStarred = true,
+                hasAttachments = true,
+            ),
+            ThreadListEntry(
+                messageId4,
+                date = 200L,
+                threadCount = 1,
+                isRead = true,
+                isStarred = false,
+                hasAttachments = false,
+            ),
+        )
+    }
+
+    @Test
+    fun `getThreadedMessagesPage() using thread summaries should only aggregate messages in selected folder`() {
+        val folderId1 = sqliteDatabase.createFolder()
+        val folderId2 = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId1, uid = "uid1", date = 100L, read = true)
+        val threadId1 = sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId2, uid = "uid2", date = 200L, flagged = true)
+        sqliteDatabase.createThread(messageId2, root = threadId1)
+
+        val result = getThreadEntriesFromFolder(folderId1, selectsWholeFolders = true)
+
+        assertThat(result).containsExactly(
+            ThreadListEntry(
+                messageId1,
+                date = 100L,
+                threadCount = 1,
+                isRead = true,
+                isStarred = false,
+                hasAttachments = false,
+            ),
+        )
+    }
+
+    @Test
+    fun `getThreadedMessagesPage() using thread summaries should reflect flag changes and deleted messages`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId, uid = "uid1", date = 100L, read = true)
+        val threadId1 = sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId, uid = "uid2", date = 200L, read = true)
+        sqliteDatabase.createThread(messageId2, root = threadId1)
+
+        sqliteDatabase.execSQL("UPDATE messages SET flagged = 1 WHERE id = ?", arrayOf(messageId1))
+        sqliteDatabase.execSQL("DELETE FROM messages WHERE id = ?", arrayOf(messageId2))
+
+        val result = getThreadEntriesFromFolder(folderId, selectsWholeFolders = true)
+
+        assertThat(result).containsExactly(
+            ThreadListEntry(
+                messageId1,
+                date = 100L,
+                threadCount = 1,
+                isRead = true,
+                isStarred = true,
+                hasAttachments = false,
+            ),
+        )
+    }
+
     private fun <T> getMessagesFromFolder(folderId: Long, mapper: MessageMapper<T?>): List<T> {
         return retrieveMessageListOperations.getMessages(
             selection = "folder_id = ?",
@@ -502,4 +717,61 @@ class RetrieveMessageListOperationsTest : RobolectricTest() {
             mapper,
         )
     }
+
+    private fun getMessagesPageFromFolder(
+        folderId: Long,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+    ): MessageListPage<Long> {
+        return retrieveMessageListOperations.getMessagesPage(
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            sortOrder = sortOrder,
+            pageKey = pageKey,
+            pageSize = 2,
+        ) { message -> message.id }
+    }
+
+    private fun getThreadEntriesFromFolder(folderId: Long, selectsWholeFolders: Boolean): List<ThreadListEntry> {
+        return retrieveMessageListOperations.getThreadedMessagesPage(
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            sortOrder = DATE_SORT_ORDER,
+            pageKey = null,
+            pageSize = 10,
+            mapper = { message ->
+                ThreadListEntry(
+                    id = message.id,
+                    date = message.messageDate,
+                    threadCount = message.threadCount,
+                    isRead = message.isRead,
+                    isStarred = message.isStarred,
+                    hasAttachments = message.hasAttachments,
+                )
+            },
+            selectsWholeFolders = selectsWholeFolders,
+        ).items
+    }
+
+    private fun SQLiteDatabase.createMessageWithThread(
+        folderId: Long,
+        uid: String,
+        subject: String = "",
+        date: Long = 0L,
+        senderList: String = "",
+    ): Long {
+        val messageId = createMessage(folderId, uid = uid, subject = subject, date = date, senderList = senderList)
+        createThread(messageId)
+
+        return messageId
+    }
 }
+
+private data class ThreadListEntry(
+    val id: Long,
+    val date: Long,
+    val threadCount: Int,
+    val isRead: Boolean,
+    val isStarred: Boolean,
+    val hasAttachments: Boolean,
+)
@@ -140,6 +140,22 @@ class RetrieveMessageOperationsTest : RobolectricTest() {
         assertThat(flags).isEmpty()
     }
 
+    @Test
+    fun `get flags of multiple messages`() {
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid1", flags = "X_DOWNLOADED_FULL", read = true)
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid2", flags = "", flagged = true)
+        sqliteDatabase.createMessage(folderId = 2, uid = "uid3", flags = "")
+
+        val flags = retrieveMessageOperations.getMessageFlags(folderId = 1, listOf("uid1", "uid2", "uid3", "uid4"))
+
+        assertThat(flags).isEqualTo(
+            mapOf(
+                "uid1" to setOf(Flag.X_DOWNLOADED_FULL, Flag.SEEN),
+                "uid2" to setOf(Flag.FLAGGED),
+            ),
+        )
+    }
+
     @Test
     fun `get all message server ids and dates`() {
         sqliteDatabase.createMessage(folderId = 1, uid = "uid1", date = 23)
@@ -0,0 +1,88 @@
+package com.fsck.k9.storage.messages
+
+import app.k9mail.legacy.mailstore.StructuredDataEntry
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEmpty
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
+import com.fsck.k9.storage.RobolectricTest
+import net.thunderbird.core.logging.legacy.Log
+import net.thunderbird.core.logging.testing.TestLogger
+import org.junit.Before
+import org.junit.Test
+
+class RetrieveStructuredDataOperationsTest : RobolectricTest() {
+    private val sqliteDatabase = createDatabase()
+    private val lockableDatabase = createLockableDatabaseMock(sqliteDatabase)
+    private val retrieveStructuredDataOperations = RetrieveStructuredDataOperations(lockableDatabase)
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+    }
+
+    @Test
+    fun `get structured data of message that wasn't processed`() {
+        val messageId = sqliteDatabase.createMessage(folderId = 1, structuredDataExtracted = false)
+
+        val result = retrieveStructuredDataOperations.getStructuredData(messageId)
+
+        assertThat(result).isNull()
+    }
+
+    @Test
+    fun `get structured data of processed message without structured data`() {
+        val messageId = sqliteDatabase.createMessage(folderId = 1, structuredDataExtracted = true)
+
+        val result = retrieveStructuredDataOperations.getStructuredData(messageId)
+
+        assertThat(result).isNotNull().isEmpty()
+    }
+
+    @Test
+    fun `get structured data`() {
+        val messageId = sqliteDatabase.createMessage(folderId = 1, structuredDataExtracted = true)
+        val otherMessageId = sqliteDatabase.createMessage(folderId = 1, structuredDataExtracted = true)
+        sqliteDatabase.createStructuredData(
+            messageId,
+            types = listOf("FlightReservation", "Reservation"),
+            jsonLdId = "id1",
+            json = "{\"a\":1}",
+        )
+        sqliteDatabase.createStructuredData(otherMessageId, types = listOf("Recipe"), json = "{\"b\":2}")
+        sqliteDatabase.createStructuredData(messageId, json = "{\"c\":3}", syntax = "MICRODATA")
+
+        val result = retrieveStructuredDataOperations.getStructuredData(messageId)
+
+        assertThat(result).isNotNull().containsExactly(
+            StructuredDataEntry(
+                types = listOf("FlightReservation", "Reservation"),
+                id = "id1",
+                json = "{\"a\":1}",
+                syntax = "JSON_LD",
+            ),
+            StructuredDataEntry(types = emptyList(), id = null, json = "{\"c\":3}", syntax = "MICRODATA"),
+        )
+    }
+
+    @Test
+    fun `get message IDs with structured data type`() {
+        val messageId1 = sqliteDatabase.createMessage(folderId = 1, date = 1000L)
+        val messageId2 = sqliteDatabase.createMessage(folderId = 1, date = 3000L)
+        val messageId3 = sqliteDatabase.createMessage(folderId = 2, date = 2000L)
+        val deletedMessageId = sqliteDatabase.createMessage(folderId = 1, deleted = true)
+        val otherMessageId = sqliteDatabase.createMessage(folderId = 1)
+        sqliteDatabase.createStructuredData(messageId1, types = listOf("FlightReservation"))
+        sqliteDatabase.createStructuredData(messageId2, types = listOf("FlightReservation"))
+        sqliteDatabase.createStructuredData(messageId2, types = listOf("FlightReservation"))
+        sqliteDatabase.createStructuredData(messageId3, types = listOf("FlightReservation", "Reservation"))
+        sqliteDatabase.createStructuredData(deletedMessageId, types = listOf("FlightReservation"))
+        sqliteDatabase.createStructuredData(otherMessageId, types = listOf("Recipe"))
+        sqliteDatabase.createStructuredData(otherMessageId, types = listOf("FlightReservationX"))
+
+        val result = retrieveStructuredDataOperations.getMessageIdsWithStructuredDataType("FlightReservation")
+
+        assertThat(result).containsExactly(messageId2, messageId3, messageId1)
+    }
+}
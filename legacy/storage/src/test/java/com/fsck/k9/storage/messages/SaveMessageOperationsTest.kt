@@ -1,9 +1,13 @@
 package com.fsck.k9.storage.messages
 
 import app.k9mail.legacy.mailstore.SaveMessageData
+import app.k9mail.legacy.mailstore.StructuredDataEntry
 import app.k9mail.legacy.message.extractors.PreviewResult
 import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.containsExactlyInAnyOrder
 import assertk.assertions.hasSize
+import assertk.assertions.isEmpty
 import assertk.assertions.isEqualTo
 import assertk.assertions.isNotNull
 import assertk.assertions.isNull
@@ -15,12 +19,18 @@ import com.fsck.k9.mail.Message
 import com.fsck.k9.mail.MessageDownloadState
 import com.fsck.k9.mail.Multipart
 import com.fsck.k9.mail.Part
+import com.fsck.k9.mail.internet.MimeMessage
+import com.fsck.k9.mail.internet.MimeMessageHelper
 import com.fsck.k9.mail.testing.message.buildMessage
+import com.fsck.k9.mailstore.BinaryMemoryBody
+import com.fsck.k9.mailstore.DataCompression
 import com.fsck.k9.mailstore.StorageFilesProvider
 import com.fsck.k9.message.extractors.BasicPartInfoExtractor
 import com.fsck.k9.storage.RobolectricTest
 import java.io.ByteArrayOutputStream
 import java.util.Stack
+import kotlin.random.Random
+import net.thunderbird.feature.search.legacy.sql.FullTextSearchTerms
 import net.thunderbird.core.logging.legacy.Log
 import net.thunderbird.core.logging.testing.TestLogger
 import org.junit.After
@@ -45,6 +55,13 @@ class SaveMessageOperationsTest : RobolectricTest() {
         basicPartInfoExtractor,
         threadMessageOperations,
     )
+    private val compressingSaveMessageOperations = SaveMessageOperations(
+        lockableDatabase,
+        attachmentFileManager,
+        basicPartInfoExtractor,
+        threadMessageOperations,
+        compressMessageBodies = true,
+    )
 
     @Before
     fun setUp() {
@@ -506,6 +523,256 @@ class SaveMessageOperationsTest : RobolectricTest() {
         assertThat(thread.messageId).isEqualTo(message.id)
     }
 
+    @Test
+    fun `save message with structured data`() {
+        val messageData = buildMessage {
+            textBody("booking")
+        }.toSaveMessageData(
+            structuredData = listOf(
+                StructuredDataEntry(
+                    types = listOf("FlightReservation", "Reservation"),
+                    id = "res1",
+                    json = "{\"@id\":\"res1\"}",
+                    syntax = "JSON_LD",
+                ),
+                StructuredDataEntry(types = emptyList(), id = null, json = "{}", syntax = "MICRODATA"),
+            ),
+        )
+
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", messageData)
+
+        val message = sqliteDatabase.readMessages().first()
+        assertThat(message.structuredDataExtracted).isEqualTo(1)
+
+        val structuredData = sqliteDatabase.readStructuredData()
+        assertThat(structuredData.map { listOf(it.messageId, it.types, it.jsonLdId, it.syntax) }).containsExactly(
+            listOf(message.id, listOf("FlightReservation", "Reservation"), "res1", "JSON_LD"),
+            listOf(message.id, emptyList<String>(), null, "MICRODATA"),
+        )
+    }
+
+    @Test
+    fun `replacing message should replace structured data`() {
+        val existingMessageData = buildMessage {
+            textBody("old")
+        }.toSaveMessageData(
+            structuredData = listOf(
+                StructuredDataEntry(types = listOf("FlightReservation"), id = null, json = "{}", syntax = "JSON_LD"),
+            ),
+        )
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", existingMessageData)
+        val messageData = buildMessage {
+            textBody("new")
+        }.toSaveMessageData(structuredData = null)
+
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", messageData)
+
+        val message = sqliteDatabase.readMessages().first()
+        assertThat(message.structuredDataExtracted).isEqualTo(0)
+        assertThat(sqliteDatabase.readStructuredData()).isEmpty()
+        assertThat(sqliteDatabase.readStructuredDataTypes()).isEmpty()
+    }
+
+    @Test
+    fun `save message should add subject and addresses to search index`() {
+        val messageData = buildMessage {
+            header("Subject", "Quarterly report")
+            header("From", "Alice <alice@domain.example>")
+            header("To", "Bob <bob@domain.example>")
+
+            textBody("Text")
+        }.toSaveMessageData()
+
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", messageData)
+
+        val message = sqliteDatabase.readMessages().first()
+        val searchEntries = sqliteDatabase.readMessageSearchEntries()
+        assertThat(searchEntries).hasSize(1)
+        with(searchEntries.first()) {
+            assertThat(docId).isEqualTo(message.id)
+            assertThat(subject).isEqualTo(FullTextSearchTerms.createIndexText("Quarterly report"))
+            assertThat(senderList).isEqualTo(FullTextSearchTerms.createIndexText(message.senderList))
+            assertThat(toList).isEqualTo(FullTextSearchTerms.createIndexText(message.toList))
+        }
+        assertThat(sqliteDatabase.matchMessageSearchEntries("subject:\"quart*\"")).containsExactly(message.id)
+        assertThat(sqliteDatabase.matchMessageSearchEntries("subject:\"port*\"")).containsExactly(message.id)
+        assertThat(sqliteDatabase.matchMessageSearchEntries("sender_list:\"ample*\"")).containsExactly(message.id)
+        assertThat(sqliteDatabase.matchMessageSearchEntries("sender_list:\"bob*\"")).isEmpty()
+    }
+
+    @Test
+    fun `search index should find substrings of text without word separators`() {
+        val messageData = buildMessage {
+            header("Subject", "=?UTF-8?B?5Lya6K2w44Gu6K2w5LqL6Yyy?=")
+            textBody("Text")
+        }.toSaveMessageData()
+
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", messageData)
+
+        val message = sqliteDatabase.readMessages().first()
+        assertThat(message.subject).isEqualTo("会議の議事録")
+        assertThat(sqliteDatabase.matchMessageSearchEntries("subject:\"議事*\"")).containsExactly(message.id)
+    }
+
+    @Test
+    fun `replacing message should update search index`() {
+        val existingMessageData = buildMessage {
+            header("Subject", "Old subject")
+            textBody("old")
+        }.toSaveMessageData()
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", existingMessageData)
+        val messageData = buildMessage {
+            header("Subject", "New subject")
+            textBody("new")
+        }.toSaveMessageData()
+
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", messageData)
+
+        val searchEntries = sqliteDatabase.readMessageSearchEntries()
+        assertThat(searchEntries.map { it.subject })
+            .containsExactly(FullTextSearchTerms.createIndexText("New subject"))
+    }
+
+    @Test
+    fun `save message with compression enabled should store compressed body in database`() {
+        val messageData = buildMessage {
+            header("Message-ID", "<msg0001@domain.example>")
+
+            textBody("<p>Lorem ipsum dolor sit amet</p>\n".repeat(100))
+        }.toSaveMessageData()
+
+        compressingSaveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", messageData)
+
+        val messagePart = sqliteDatabase.readMessageParts().single()
+        assertThat(messagePart.dataLocation).isEqualTo(DataLocation.IN_DATABASE)
+        assertThat(messagePart.dataCompression).isEqualTo(DataCompression.DEFLATE)
+        val data = DataCompression.decompress(messagePart.data!!, DataCompression.DEFLATE)
+        assertThat(data.decodeToString()).isEqualTo(messageData.message.bodyAsString())
+    }
+
+    @Test
+    fun `save message with compression enabled should store compressed body on disk`() {
+        val messageData = buildMessage {
+            header("Message-ID", "<msg0001@domain.example>")
+
+            dataBody(size = 20 * 1024)
+        }.toSaveMessageData()
+
+        compressingSaveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", messageData)
+
+        val messagePart = sqliteDatabase.readMessageParts().single()
+        assertThat(messagePart.dataLocation).isEqualTo(DataLocation.ON_DISK)
+        assertThat(messagePart.dataCompression).isEqualTo(DataCompression.DEFLATE)
+        assertThat(messagePart.decodedBodySize).isEqualTo(20 * 1024)
+        val file = attachmentFileManager.getBlobFile(messagePart.blobKey!!)
+        val data = DataCompression.decompress(file.readBytes(), DataCompression.DEFLATE)
+        assertThat(data.decodeToString()).isEqualTo("A".repeat(20 * 1024))
+    }
+
+    @Test
+    fun `save message with compression enabled should not compress data that doesn't shrink`() {
+        val randomData = Random(42).nextBytes(1024)
+        val message = MimeMessage().apply {
+            setHeader("Message-ID", "<msg0001@domain.example>")
+            setHeader("Content-Type", "application/octet-stream")
+            MimeMessageHelper.setBody(this, BinaryMemoryBody(randomData, "8bit"))
+        }
+
+        val messageData = message.toSaveMessageData()
+
+        compressingSaveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", messageData)
+
+        val messagePart = sqliteDatabase.readMessageParts().single()
+        assertThat(messagePart.dataCompression).isEqualTo(DataCompression.NONE)
+        assertThat(messagePart.data?.toList()).isEqualTo(randomData.toList())
+    }
+
+    @Test
+    fun `save multiple remote messages`() {
+        val messages = listOf("uid1", "uid2", "uid3").map { serverId ->
+            serverId to buildMessage {
+                header("Message-ID", "<$serverId@domain.example>")
+
+                textBody(serverId)
+            }.toSaveMessageData()
+        }
+
+        saveMessageOperations.saveRemoteMessages(folderId = 1, messages.asSequence())
+
+        val savedMessages = sqliteDatabase.readMessages()
+        assertThat(savedMessages.map { it.uid }).containsExactlyInAnyOrder("uid1", "uid2", "uid3")
+        assertThat(savedMessages.map { it.empty }).containsExactly(0, 0, 0)
+
+        val threads = sqliteDatabase.readThreads()
+        assertThat(threads).hasSize(3)
+        assertThat(threads.all { it.root == it.id && it.parent == null }).isEqualTo(true)
+    }
+
+    @Test
+    fun `save remote messages with reply before its parent should thread them without leftover empty messages`() {
+        val reply = buildMessage {
+            header("Message-ID", "<msg0002@domain.example>")
+            header("In-Reply-To", "<msg0001@domain.example>")
+
+            textBody()
+        }.toSaveMessageData()
+        val parent = buildMessage {
+            header("Message-ID", "<msg0001@domain.example>")
+
+            textBody()
+        }.toSaveMessageData()
+        val secondReply = buildMessage {
+            header("Message-ID", "<msg0003@domain.example>")
+            header("In-Reply-To", "<msg0001@domain.example>")
+
+            textBody()
+        }.toSaveMessageData()
+
+        saveMessageOperations.saveRemoteMessages(
+            folderId = 1,
+            sequenceOf("uid2" to reply, "uid1" to parent, "uid3" to secondReply),
+        )
+
+        val messages = sqliteDatabase.readMessages()
+        assertThat(messages).hasSize(3)
+        assertThat(messages.map { it.empty }).containsExactly(0, 0, 0)
+
+        val threads = sqliteDatabase.readThreads()
+        assertThat(threads).hasSize(3)
+
+        val rootThread = threads.single { it.parent == null }
+        assertThat(messages.single { it.id == rootThread.messageId }.uid).isEqualTo("uid1")
+        assertThat(threads.all { it.root == rootThread.id }).isEqualTo(true)
+        assertThat(threads.count { it.parent == rootThread.id }).isEqualTo(2)
+    }
+
+    @Test
+    fun `save remote messages with server ID already existing in MessageStore should replace that message`() {
+        val existingMessageData = buildMessage {
+            textBody("old")
+        }.toSaveMessageData()
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", existingMessageData)
+        val messageData = buildMessage {
+            textBody("new")
+        }.toSaveMessageData()
+        val otherMessageData = buildMessage {
+            textBody("other")
+        }.toSaveMessageData()
+
+        saveMessageOperations.saveRemoteMessages(
+            folderId = 1,
+            sequenceOf("uid1" to messageData, "uid2" to otherMessageData),
+        )
+
+        val messages = sqliteDatabase.readMessages()
+        assertThat(messages.map { it.uid }).containsExactlyInAnyOrder("uid1", "uid2")
+
+        val messageParts = sqliteDatabase.readMessageParts()
+        assertThat(messageParts.map { it.data?.toString(Charsets.UTF_8) }).containsExactlyInAnyOrder("new", "other")
+
+        assertThat(sqliteDatabase.readThreads()).hasSize(2)
+    }
+
     private fun Message.toSaveMessageData(
         subject: String? = getSubject(),
         date: Long = sentDate?.time ?: System.currentTimeMillis(),
@@ -515,6 +782,7 @@ class SaveMessageOperationsTest : RobolectricTest() {
         previewResult: PreviewResult = PreviewResult.none(),
         textForSearchIndex: String? = null,
         encryptionType: String? = null,
+        structuredData: List<StructuredDataEntry>? = null,
     ): SaveMessageData {
         return SaveMessageData(
             message = this,
@@ -526,6 +794,7 @@ class SaveMessageOperationsTest : RobolectricTest() {
             previewResult,
             textForSearchIndex,
             encryptionType,
+            structuredData,
         )
     }
 
@@ -557,4 +826,10 @@ class SaveMessageOperationsTest : RobolectricTest() {
     }
 
     private fun Message.boundary(): String? = (body as Multipart).boundary
+
+    private fun Message.bodyAsString(): String {
+        val outputStream = ByteArrayOutputStream()
+        body.writeTo(outputStream)
+        return outputStream.toString("UTF-8")
+    }
 }
@@ -0,0 +1,130 @@
+package com.fsck.k9.storage.messages
+
+import android.database.sqlite.SQLiteDatabase
+import app.k9mail.legacy.mailstore.SaveMessageData
+import app.k9mail.legacy.message.extractors.PreviewResult
+import assertk.assertThat
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import com.fsck.k9.mail.Message
+import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.internet.BinaryTempFileBody
+import com.fsck.k9.mail.internet.MimeMessage
+import com.fsck.k9.mailstore.StorageFilesProvider
+import com.fsck.k9.message.extractors.BasicPartInfoExtractor
+import com.fsck.k9.storage.RobolectricTest
+import kotlin.random.Random
+import net.thunderbird.core.logging.legacy.Log
+import net.thunderbird.core.logging.testing.TestLogger
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.mock
+
+private const val MESSAGE_COUNT = 1000
+
+private val WORDS = listOf(
+    "hello", "lunch", "tomorrow", "meeting", "thanks", "sounds", "good", "see", "you", "later",
+    "call", "me", "when", "free", "ok", "sure", "maybe", "friday", "weekend", "plan",
+)
+
+/**
+ * Parses and saves a corpus of small two-part messages, like a typical mailbox full of short conversations. Checks that
+ * no temp files are created for the message parts.
+ */
+class SmallMessageSyncTest : RobolectricTest() {
+    private val tempDirectory = createRandomTempDirectory()
+    private val messagePartDirectory = createRandomTempDirectory()
+
+    @Before
+    fun setUp() {
+        Log.logger = TestLogger()
+        BinaryTempFileBody.setTempDirectory(tempDirectory)
+    }
+
+    @After
+    fun tearDown() {
+        tempDirectory.deleteRecursively()
+        messagePartDirectory.deleteRecursively()
+    }
+
+    @Test
+    fun `small messages should be parsed and saved without temp files`() {
+        val corpus = createCorpus()
+        val storageFilesProvider = object : StorageFilesProvider {
+            override fun getDatabaseFile() = error("Not implemented")
+            override fun getAttachmentDirectory() = messagePartDirectory
+        }
+        val sqliteDatabase = createDatabase()
+        val saveMessageOperations = SaveMessageOperations(
+            createLockableDatabaseMock(sqliteDatabase),
+            AttachmentFileManager(storageFilesProvider, mock()),
+            BasicPartInfoExtractor(),
+            ThreadMessageOperations(),
+            compressMessageBodies = false,
+        )
+
+        val messages = corpus.map { MimeMessage.parseMimeMessage(it.inputStream(), false) }
+        val tempFiles = tempDirectory.listFiles()!!.toList()
+
+        saveMessageOperations.saveRemoteMessages(
+            folderId = 1,
+            messages.asSequence().mapIndexed { index, message -> "uid$index" to message.toSaveData() },
+        )
+
+        assertThat(tempFiles).isEmpty()
+        assertThat(messagePartDirectory.listFiles()!!.toList()).isEmpty()
+        assertThat(sqliteDatabase.countMessages()).isEqualTo(MESSAGE_COUNT)
+    }
+
+    private fun SQLiteDatabase.countMessages(): Int {
+        return rawQuery("SELECT COUNT(*) FROM messages", null).use { cursor ->
+            if (cursor.moveToFirst()) cursor.getInt(0) else 0
+        }
+    }
+
+    private fun createCorpus(): List<ByteArray> {
+        val random = Random(1)
+        return List(MESSAGE_COUNT) { index ->
+            val text = List(random.nextInt(from = 5, until = 80)) { WORDS.random(random) }.joinToString(" ")
+            createRawMessage(index, text).encodeToByteArray()
+        }
+    }
+
+    private fun createRawMessage(index: Int, text: String): String {
+        return """
+            From: Alice <alice@domain.example>
+            To: Bob <bob@domain.example>
+            Subject: Message $index
+            Message-ID: <msg$index@domain.example>
+            MIME-Version: 1.0
+            Content-Type: multipart/alternative; boundary="boundary"
+
+            --boundary
+            Content-Type: text/plain; charset=UTF-8
+            Content-Transfer-Encoding: 7bit
+
+            $text
+            --boundary
+            Content-Type: text/html; charset=UTF-8
+            Content-Transfer-Encoding: 7bit
+
+            <html><body><p>$text</p></body></html>
+            --boundary--
+        """.trimIndent().replace("\n", "\r\n")
+    }
+
+    private fun Message.toSaveData(): SaveMessageData {
+        return SaveMessageData(
+            message = this,
+            subject = subject,
+            date = 0L,
+            internalDate = 0L,
+            downloadState = MessageDownloadState.FULL,
+            attachmentCount = 0,
+            previewResult = PreviewResult.none(),
+            textForSearchIndex = null,
+            encryptionType = null,
+        )
+    }
+}
@@ -0,0 +1,66 @@
+package com.fsck.k9.storage.messages
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import app.k9mail.core.android.common.database.getLongOrNull
+import app.k9mail.core.android.common.database.getStringOrNull
+import app.k9mail.core.android.common.database.map
+
+fun SQLiteDatabase.createStructuredData(
+    messageId: Long,
+    types: List<String> = emptyList(),
+    jsonLdId: String? = null,
+    json: String = "{}",
+    syntax: String = "JSON_LD",
+): Long {
+    val values = ContentValues().apply {
+        put("message_id", messageId)
+        put("json_ld_id", jsonLdId)
+        put("json", json)
+        put("syntax", syntax)
+    }
+
+    val structuredDataId = insert("structured_data", null, values)
+    for (type in types) {
+        val typeValues = ContentValues().apply {
+            put("structured_data_id", structuredDataId)
+            put("type", type)
+        }
+
+        insert("structured_data_types", null, typeValues)
+    }
+
+    return structuredDataId
+}
+
+fun SQLiteDatabase.readStructuredData(): List<StructuredDataRow> {
+    return rawQuery("SELECT * FROM structured_data", null).use { cursor ->
+        cursor.map {
+            StructuredDataRow(
+                id = cursor.getLongOrNull("id"),
+                messageId = cursor.getLongOrNull("message_id"),
+                types = readStructuredDataTypes(structuredDataId = cursor.getLongOrNull("id")),
+                jsonLdId = cursor.getStringOrNull("json_ld_id"),
+                json = cursor.getStringOrNull("json"),
+                syntax = cursor.getStringOrNull("syntax"),
+            )
+        }
+    }
+}
+
+fun SQLiteDatabase.readStructuredDataTypes(structuredDataId: Long? = null): List<String> {
+    val selection = if (structuredDataId != null) "structured_data_id = $structuredDataId" else null
+
+    return query("structured_data_types", arrayOf("type"), selection, null, null, null, "id").use { cursor ->
+        cursor.map { cursor.getString(0) }
+    }
+}
+
+data class StructuredDataRow(
+    val id: Long?,
+    val messageId: Long?,
+    val types: List<String>,
+    val jsonLdId: String?,
+    val json: String?,
+    val syntax: String?,
+)
@@ -4,6 +4,7 @@ import android.content.ContentValues
 import android.database.sqlite.SQLiteDatabase
 import assertk.assertThat
 import assertk.assertions.containsExactlyInAnyOrder
+import com.fsck.k9.mailstore.AttachmentBlobStore
 import com.fsck.k9.mailstore.MigrationsHelper
 import com.fsck.k9.storage.messages.FolderEntry
 import com.fsck.k9.storage.messages.readFolders
@@ -135,6 +136,10 @@ class MigrationTo88Test {
             override fun saveAccount() {
                 throw UnsupportedOperationException("not implemented")
             }
+
+            override fun getAttachmentBlobStore(): AttachmentBlobStore {
+                throw UnsupportedOperationException("not implemented")
+            }
         }
     }
 
@@ -0,0 +1,117 @@
+package com.fsck.k9.storage.migrations
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import app.k9mail.core.android.common.database.map
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEmpty
+import kotlin.test.Test
+import org.junit.After
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class MigrationTo89Test {
+    private val database = createDatabaseVersion88()
+    private val migration = MigrationTo89(database)
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun `existing messages should not be marked as extracted`() {
+        database.createMessageVersion88()
+
+        migration.addStructuredDataTable()
+
+        val values = database.rawQuery("SELECT structured_data_extracted FROM messages", null).use { cursor ->
+            cursor.map { cursor.getInt(0) }
+        }
+        assertThat(values).containsExactly(0)
+    }
+
+    @Test
+    fun `deleting structured data should delete its types`() {
+        val messageId = database.createMessageVersion88()
+        migration.addStructuredDataTable()
+        val structuredDataId1 = database.createStructuredData(messageId, types = listOf("EventReservation", "Event"))
+        val structuredDataId2 = database.createStructuredData(messageId, types = listOf("Order"))
+
+        database.delete("structured_data", "id = ?", arrayOf(structuredDataId1.toString()))
+
+        assertThat(database.readStructuredDataTypes()).containsExactly(structuredDataId2 to "Order")
+    }
+
+    @Test
+    fun `deleting message should delete its structured data and types`() {
+        val messageId = database.createMessageVersion88()
+        migration.addStructuredDataTable()
+        database.createStructuredData(messageId, types = listOf("Order"))
+
+        database.delete("messages", "id = ?", arrayOf(messageId.toString()))
+
+        val structuredDataIds = database.rawQuery("SELECT id FROM structured_data", null).use { cursor ->
+            cursor.map { cursor.getLong(0) }
+        }
+        assertThat(structuredDataIds).isEmpty()
+        assertThat(database.readStructuredDataTypes()).isEmpty()
+    }
+
+    private fun createDatabaseVersion88(): SQLiteDatabase {
+        return SQLiteDatabase.create(null).apply {
+            execSQL(
+                """
+                CREATE TABLE messages (
+                    id INTEGER PRIMARY KEY,
+                    folder_id INTEGER,
+                    uid TEXT,
+                    subject TEXT,
+                    message_part_id INTEGER,
+                    empty INTEGER DEFAULT 0
+                )
+                """.trimIndent(),
+            )
+            execSQL("CREATE TABLE message_parts (id INTEGER PRIMARY KEY, root INTEGER)")
+            execSQL("CREATE TABLE threads (id INTEGER PRIMARY KEY, message_id INTEGER, root INTEGER)")
+            execSQL("CREATE VIRTUAL TABLE messages_fulltext USING fts4 (fulltext)")
+        }
+    }
+
+    private fun SQLiteDatabase.createMessageVersion88(): Long {
+        val values = ContentValues().apply {
+            put("folder_id", 1)
+            put("uid", "uid")
+            put("subject", "irrelevant")
+        }
+
+        return insert("messages", null, values)
+    }
+
+    private fun SQLiteDatabase.createStructuredData(messageId: Long, types: List<String>): Long {
+        val values = ContentValues().apply {
+            put("message_id", messageId)
+            put("json", "{}")
+            put("syntax", "JSON_LD")
+        }
+        val structuredDataId = insert("structured_data", null, values)
+
+        for (type in types) {
+            val typeValues = ContentValues().apply {
+                put("structured_data_id", structuredDataId)
+                put("type", type)
+            }
+            insert("structured_data_types", null, typeValues)
+        }
+
+        return structuredDataId
+    }
+
+    private fun SQLiteDatabase.readStructuredDataTypes(): List<Pair<Long, String>> {
+        return rawQuery("SELECT structured_data_id, type FROM structured_data_types ORDER BY id", null).use { cursor ->
+            cursor.map { cursor.getLong(0) to cursor.getString(1) }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.fsck.k9.storage.migrations
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import app.k9mail.core.android.common.database.map
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEmpty
+import kotlin.test.Test
+import net.thunderbird.feature.search.legacy.sql.FullTextSearchTerms
+import org.junit.After
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class MigrationTo90Test {
+    private val database = createDatabaseVersion89()
+    private val migration = MigrationTo90(database)
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun `existing messages should be added to search index`() {
+        val messageId = database.createMessageVersion89(
+            subject = "Quarterly report",
+            senderList = "alice@domain.example;Alice",
+            toList = "bob@domain.example;Bob",
+        )
+
+        migration.addMessageSearchTable()
+
+        val entries = database.rawQuery("SELECT docid, subject, sender_list, to_list FROM messages_search", null)
+            .use { cursor ->
+                cursor.map { listOf(cursor.getLong(0), cursor.getString(1), cursor.getString(2), cursor.getString(3)) }
+            }
+        assertThat(entries).containsExactly(
+            listOf(
+                messageId,
+                FullTextSearchTerms.createIndexText("Quarterly report"),
+                FullTextSearchTerms.createIndexText("alice@domain.example;Alice"),
+                FullTextSearchTerms.createIndexText("bob@domain.example;Bob"),
+            ),
+        )
+    }
+
+    @Test
+    fun `search index should match substrings of words`() {
+        val messageId = database.createMessageVersion89(senderList = "alice@domain.example;Alice")
+
+        migration.addMessageSearchTable()
+
+        assertThat(database.matchSearchIndex("sender_list:\"ample*\"")).containsExactly(messageId)
+        assertThat(database.matchSearchIndex("sender_list:\"bob*\"")).isEmpty()
+    }
+
+    @Test
+    fun `placeholder messages should not be added to search index`() {
+        database.createMessageVersion89(subject = "Placeholder", empty = true)
+
+        migration.addMessageSearchTable()
+
+        assertThat(database.matchSearchIndex("subject:\"placeholder*\"")).isEmpty()
+    }
+
+    @Test
+    fun `deleting message should remove it from search index`() {
+        val messageId = database.createMessageVersion89(subject = "Quarterly report")
+        migration.addMessageSearchTable()
+
+        database.delete("messages", "id = ?", arrayOf(messageId.toString()))
+
+        assertThat(database.matchSearchIndex("subject:\"report*\"")).isEmpty()
+    }
+
+    private fun createDatabaseVersion89(): SQLiteDatabase {
+        return SQLiteDatabase.create(null).apply {
+            execSQL(
+                """
+                CREATE TABLE messages (
+                    id INTEGER PRIMARY KEY,
+                    folder_id INTEGER,
+                    uid TEXT,
+                    subject TEXT,
+                    sender_list TEXT,
+                    to_list TEXT,
+                    cc_list TEXT,
+                    bcc_list TEXT,
+                    reply_to_list TEXT,
+                    message_part_id INTEGER,
+                    empty INTEGER DEFAULT 0
+                )
+                """.trimIndent(),
+            )
+            execSQL("CREATE TABLE message_parts (id INTEGER PRIMARY KEY, root INTEGER)")
+            execSQL("CREATE TABLE threads (id INTEGER PRIMARY KEY, message_id INTEGER, root INTEGER)")
+            execSQL("CREATE TABLE structured_data (id INTEGER PRIMARY KEY, message_id INTEGER NOT NULL)")
+            execSQL("CREATE VIRTUAL TABLE messages_fulltext USING fts4 (fulltext)")
+        }
+    }
+
+    private fun SQLiteDatabase.createMessageVersion89(
+        subject: String? = null,
+        senderList: String? = null,
+        toList: String? = null,
+        empty: Boolean = false,
+    ): Long {
+        val values = ContentValues().apply {
+            put("folder_id", 1)
+            put("uid", "uid")
+            put("subject", subject)
+            put("sender_list", senderList)
+            put("to_list", toList)
+            put("empty", if (empty) 1 else 0)
+        }
+
+        return insert("messages", null, values)
+    }
+
+    private fun SQLiteDatabase.matchSearchIndex(matchQuery: String): List<Long> {
+        return rawQuery("SELECT docid FROM messages_search WHERE messages_search MATCH ?", arrayOf(matchQuery))
+            .use { cursor ->
+                cursor.map { cursor.getLong(0) }
+            }
+    }
+}
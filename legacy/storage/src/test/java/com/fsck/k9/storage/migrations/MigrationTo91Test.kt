@@ -0,0 +1,166 @@
+package com.fsck.k9.storage.migrations
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import app.k9mail.core.android.common.database.map
+import assertk.assertThat
+import assertk.assertions.containsExactlyInAnyOrder
+import kotlin.test.Test
+import org.junit.After
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class MigrationTo91Test {
+    private val database = createDatabaseVersion90()
+    private val migration = MigrationTo91(database)
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun `counts of existing messages`() {
+        val folderId1 = database.createFolderVersion90()
+        val folderId2 = database.createFolderVersion90()
+        val folderId3 = database.createFolderVersion90()
+        database.createMessageVersion90(folderId1, read = false, flagged = true)
+        database.createMessageVersion90(folderId1, read = true, flagged = false)
+        database.createMessageVersion90(folderId1, read = false, flagged = false, empty = true)
+        database.createMessageVersion90(folderId1, read = false, flagged = true, deleted = true)
+        database.createMessageVersion90(folderId2, read = true, flagged = true)
+
+        migration.addFolderCountsTable()
+
+        assertThat(database.readFolderCounts()).containsExactlyInAnyOrder(
+            FolderCounts(folderId1, total = 2, unread = 1, starred = 1),
+            FolderCounts(folderId2, total = 1, unread = 0, starred = 1),
+            FolderCounts(folderId3, total = 0, unread = 0, starred = 0),
+        )
+    }
+
+    @Test
+    fun `counts should be kept up to date`() {
+        val folderId1 = database.createFolderVersion90()
+        val folderId2 = database.createFolderVersion90()
+        migration.addFolderCountsTable()
+        val folderId3 = database.createFolderVersion90()
+
+        val messageId1 = database.createMessageVersion90(folderId1, read = false, flagged = false)
+        val messageId2 = database.createMessageVersion90(folderId1, read = false, flagged = true)
+        val messageId3 = database.createMessageVersion90(folderId2, read = false, flagged = false)
+        database.updateMessage(messageId1, ContentValues().apply { put("read", 1) })
+        database.updateMessage(messageId2, ContentValues().apply { put("folder_id", folderId3) })
+        database.delete("messages", "id = ?", arrayOf(messageId3.toString()))
+
+        assertThat(database.readFolderCounts()).containsExactlyInAnyOrder(
+            FolderCounts(folderId1, total = 1, unread = 0, starred = 0),
+            FolderCounts(folderId2, total = 0, unread = 0, starred = 0),
+            FolderCounts(folderId3, total = 1, unread = 1, starred = 1),
+        )
+    }
+
+    @Test
+    fun `replacing message should not count it twice`() {
+        val folderId = database.createFolderVersion90()
+        migration.addFolderCountsTable()
+        val messageId = database.createMessageVersion90(folderId, read = false, flagged = true)
+
+        val values = ContentValues().apply {
+            put("id", messageId)
+            put("folder_id", folderId)
+            put("read", 1)
+            put("flagged", 0)
+            put("empty", 0)
+            put("deleted", 0)
+        }
+        database.replace("messages", null, values)
+
+        assertThat(database.readFolderCounts()).containsExactlyInAnyOrder(
+            FolderCounts(folderId, total = 1, unread = 0, starred = 0),
+        )
+    }
+
+    @Test
+    fun `deleting folder should delete its counts`() {
+        val folderId1 = database.createFolderVersion90()
+        val folderId2 = database.createFolderVersion90()
+        migration.addFolderCountsTable()
+
+        database.delete("folders", "id = ?", arrayOf(folderId1.toString()))
+
+        assertThat(database.readFolderCounts()).containsExactlyInAnyOrder(
+            FolderCounts(folderId2, total = 0, unread = 0, starred = 0),
+        )
+    }
+
+    private fun createDatabaseVersion90(): SQLiteDatabase {
+        return SQLiteDatabase.create(null).apply {
+            execSQL("CREATE TABLE folders (id INTEGER PRIMARY KEY, name TEXT)")
+            execSQL(
+                """
+                CREATE TABLE messages (
+                    id INTEGER PRIMARY KEY,
+                    folder_id INTEGER,
+                    read INTEGER default 0,
+                    flagged INTEGER default 0,
+                    empty INTEGER default 0,
+                    deleted INTEGER default 0
+                )
+                """.trimIndent(),
+            )
+        }
+    }
+
+    private fun SQLiteDatabase.createFolderVersion90(): Long {
+        val values = ContentValues().apply {
+            put("name", "irrelevant")
+        }
+
+        return insert("folders", null, values)
+    }
+
+    private fun SQLiteDatabase.createMessageVersion90(
+        folderId: Long,
+        read: Boolean,
+        flagged: Boolean,
+        empty: Boolean = false,
+        deleted: Boolean = false,
+    ): Long {
+        val values = ContentValues().apply {
+            put("folder_id", folderId)
+            put("read", read)
+            put("flagged", flagged)
+            put("empty", empty)
+            put("deleted", deleted)
+        }
+
+        return insert("messages", null, values)
+    }
+
+    private fun SQLiteDatabase.updateMessage(messageId: Long, values: ContentValues) {
+        update("messages", values, "id = ?", arrayOf(messageId.toString()))
+    }
+
+    private fun SQLiteDatabase.readFolderCounts(): List<FolderCounts> {
+        return rawQuery("SELECT folder_id, total_count, unread_count, starred_count FROM folder_counts", null)
+            .use { cursor ->
+                cursor.map {
+                    FolderCounts(
+                        folderId = cursor.getLong(0),
+                        total = cursor.getInt(1),
+                        unread = cursor.getInt(2),
+                        starred = cursor.getInt(3),
+                    )
+                }
+            }
+    }
+
+    private data class FolderCounts(
+        val folderId: Long,
+        val total: Int,
+        val unread: Int,
+        val starred: Int,
+    )
+}
@@ -0,0 +1,192 @@
+package com.fsck.k9.storage.migrations
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import app.k9mail.core.android.common.database.getStringOrNull
+import app.k9mail.core.android.common.database.map
+import assertk.assertThat
+import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isNotEqualTo
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
+import assertk.assertions.isTrue
+import com.fsck.k9.mailstore.AttachmentBlobStore
+import com.fsck.k9.mailstore.MigrationsHelper
+import com.fsck.k9.mailstore.StorageFilesProvider
+import com.fsck.k9.storage.messages.createRandomTempDirectory
+import kotlin.test.Test
+import net.thunderbird.core.android.account.LegacyAccount
+import org.junit.After
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+private const val DATA_LOCATION_IN_DATABASE = 1
+private const val DATA_LOCATION_ON_DISK = 2
+
+@RunWith(RobolectricTestRunner::class)
+class MigrationTo92Test {
+    private val attachmentDirectory = createRandomTempDirectory()
+    private val attachmentBlobStore = AttachmentBlobStore(
+        object : StorageFilesProvider {
+            override fun getDatabaseFile() = error("Not implemented")
+            override fun getAttachmentDirectory() = attachmentDirectory
+        },
+    )
+
+    private val database = createDatabaseVersion91()
+    private val migrationHelper = createMigrationsHelper()
+    private val migration = MigrationTo92(database, migrationHelper)
+
+    @After
+    fun tearDown() {
+        database.close()
+        attachmentDirectory.deleteRecursively()
+    }
+
+    @Test
+    fun `message parts with identical files should share one blob`() {
+        val messagePartId1 = database.createMessagePartVersion91(dataLocation = DATA_LOCATION_ON_DISK)
+        val messagePartId2 = database.createMessagePartVersion91(dataLocation = DATA_LOCATION_ON_DISK)
+        val messagePartId3 = database.createMessagePartVersion91(dataLocation = DATA_LOCATION_ON_DISK)
+        writeMessagePartFile(messagePartId1, "same")
+        writeMessagePartFile(messagePartId2, "same")
+        writeMessagePartFile(messagePartId3, "different")
+
+        migration.addMessagePartBlobKeys()
+
+        val blobKeys = database.readBlobKeys()
+        val sharedBlobKey = blobKeys.getValue(messagePartId1)
+        val otherBlobKey = blobKeys.getValue(messagePartId3)
+        assertThat(sharedBlobKey).isNotNull()
+        assertThat(blobKeys[messagePartId2]).isEqualTo(sharedBlobKey)
+        assertThat(otherBlobKey).isNotNull().isNotEqualTo(sharedBlobKey)
+        assertThat(attachmentBlobStore.getBlobFile(sharedBlobKey!!).readText()).isEqualTo("same")
+        assertThat(attachmentBlobStore.getBlobFile(otherBlobKey!!).readText()).isEqualTo("different")
+        assertThat(database.readBlobs()).containsExactlyInAnyOrder(sharedBlobKey to 2, otherBlobKey to 1)
+    }
+
+    @Test
+    fun `message part with missing file should keep blob_key NULL`() {
+        val messagePartId = database.createMessagePartVersion91(dataLocation = DATA_LOCATION_ON_DISK)
+
+        migration.addMessagePartBlobKeys()
+
+        assertThat(database.readBlobKeys().getValue(messagePartId)).isNull()
+        assertThat(database.readBlobs()).isEmpty()
+    }
+
+    @Test
+    fun `message part stored in database should keep blob_key NULL`() {
+        val messagePartId = database.createMessagePartVersion91(dataLocation = DATA_LOCATION_IN_DATABASE)
+
+        migration.addMessagePartBlobKeys()
+
+        assertThat(database.readBlobKeys().getValue(messagePartId)).isNull()
+    }
+
+    @Test
+    fun `migration should keep message part files`() {
+        val messagePartId = database.createMessagePartVersion91(dataLocation = DATA_LOCATION_ON_DISK)
+        writeMessagePartFile(messagePartId, "data")
+
+        migration.addMessagePartBlobKeys()
+
+        assertThat(attachmentBlobStore.getMessagePartFile(messagePartId).exists()).isTrue()
+    }
+
+    @Test
+    fun `deleteOrphanedFiles() after migration should only delete files that were copied to the blob store`() {
+        val messagePartId1 = database.createMessagePartVersion91(dataLocation = DATA_LOCATION_ON_DISK)
+        val messagePartId2 = database.createMessagePartVersion91(dataLocation = DATA_LOCATION_ON_DISK)
+        val messagePartId3 = database.createMessagePartVersion91(dataLocation = DATA_LOCATION_ON_DISK)
+        writeMessagePartFile(messagePartId1, "same")
+        writeMessagePartFile(messagePartId2, "same")
+        writeMessagePartFile(messagePartId3, "different")
+
+        migration.addMessagePartBlobKeys()
+        // Simulate a message part whose file couldn't be copied to the blob store
+        database.execSQL("UPDATE message_parts SET blob_key = NULL WHERE id = $messagePartId3")
+        attachmentBlobStore.deleteOrphanedFiles(database)
+
+        val blobKeys = database.readBlobKeys()
+        assertThat(attachmentBlobStore.getMessagePartFile(messagePartId1).exists()).isFalse()
+        assertThat(attachmentBlobStore.getMessagePartFile(messagePartId2).exists()).isFalse()
+        assertThat(attachmentBlobStore.getMessagePartFile(messagePartId3).readText()).isEqualTo("different")
+        assertThat(attachmentBlobStore.getBlobFile(blobKeys.getValue(messagePartId1)!!).readText()).isEqualTo("same")
+    }
+
+    private fun writeMessagePartFile(messagePartId: Long, content: String) {
+        attachmentBlobStore.getMessagePartFile(messagePartId).writeText(content)
+    }
+
+    private fun createMigrationsHelper(): MigrationsHelper {
+        return object : MigrationsHelper {
+            override fun getAccount(): LegacyAccount {
+                throw UnsupportedOperationException("not implemented")
+            }
+
+            override fun saveAccount() {
+                throw UnsupportedOperationException("not implemented")
+            }
+
+            override fun getAttachmentBlobStore(): AttachmentBlobStore {
+                return attachmentBlobStore
+            }
+        }
+    }
+
+    private fun createDatabaseVersion91(): SQLiteDatabase {
+        return SQLiteDatabase.create(null).apply {
+            execSQL(
+                """
+                CREATE TABLE message_parts (
+                    id INTEGER PRIMARY KEY,
+                    type INTEGER NOT NULL,
+                    root INTEGER,
+                    parent INTEGER NOT NULL,
+                    seq INTEGER NOT NULL,
+                    mime_type TEXT,
+                    decoded_body_size INTEGER,
+                    display_name TEXT,
+                    header TEXT,
+                    encoding TEXT,
+                    charset TEXT,
+                    data_location INTEGER NOT NULL,
+                    data BLOB,
+                    preamble TEXT,
+                    epilogue TEXT,
+                    boundary TEXT,
+                    content_id TEXT,
+                    server_extra TEXT
+                )
+                """.trimIndent(),
+            )
+        }
+    }
+
+    private fun SQLiteDatabase.createMessagePartVersion91(dataLocation: Int): Long {
+        val values = ContentValues().apply {
+            put("type", 0)
+            put("parent", -1)
+            put("seq", 0)
+            put("data_location", dataLocation)
+        }
+
+        return insert("message_parts", null, values)
+    }
+
+    private fun SQLiteDatabase.readBlobKeys(): Map<Long, String?> {
+        return rawQuery("SELECT id, blob_key FROM message_parts", null).use { cursor ->
+            cursor.map { cursor.getLong(0) to cursor.getStringOrNull("blob_key") }.toMap()
+        }
+    }
+
+    private fun SQLiteDatabase.readBlobs(): List<Pair<String, Int>> {
+        return rawQuery("SELECT blob_key, ref_count FROM blobs", null).use { cursor ->
+            cursor.map { cursor.getString(0) to cursor.getInt(1) }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.fsck.k9.storage.migrations
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import app.k9mail.core.android.common.database.map
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import kotlin.test.Test
+import org.junit.After
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class MigrationTo93Test {
+    private val database = createDatabaseVersion92()
+    private val migration = MigrationTo93(database)
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun `existing message parts should be uncompressed`() {
+        database.createMessagePartVersion92()
+
+        migration.addMessagePartDataCompressionColumn()
+
+        assertThat(database.readDataCompression()).containsExactly(0)
+    }
+
+    @Test
+    fun `new message parts should be uncompressed by default`() {
+        migration.addMessagePartDataCompressionColumn()
+
+        database.createMessagePartVersion92()
+
+        assertThat(database.readDataCompression()).containsExactly(0)
+    }
+
+    private fun createDatabaseVersion92(): SQLiteDatabase {
+        return SQLiteDatabase.create(null).apply {
+            execSQL(
+                """
+                CREATE TABLE message_parts (
+                    id INTEGER PRIMARY KEY,
+                    type INTEGER NOT NULL,
+                    root INTEGER,
+                    parent INTEGER NOT NULL,
+                    seq INTEGER NOT NULL,
+                    data_location INTEGER NOT NULL,
+                    data BLOB,
+                    blob_key TEXT
+                )
+                """.trimIndent(),
+            )
+        }
+    }
+
+    private fun SQLiteDatabase.createMessagePartVersion92(): Long {
+        val values = ContentValues().apply {
+            put("type", 0)
+            put("parent", -1)
+            put("seq", 0)
+            put("data_location", 1)
+            put("data", "data".toByteArray())
+        }
+
+        return insert("message_parts", null, values)
+    }
+
+    private fun SQLiteDatabase.readDataCompression(): List<Int> {
+        return rawQuery("SELECT data_compression FROM message_parts", null).use { cursor ->
+            cursor.map { cursor.getInt(0) }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.fsck.k9.storage.migrations
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import app.k9mail.core.android.common.database.map
+import assertk.assertThat
+import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.isEmpty
+import kotlin.test.Test
+import org.junit.After
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class MigrationTo94Test {
+    private val database = createDatabaseVersion93()
+    private val migration = MigrationTo94(database)
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun `existing threads should be summarized per folder`() {
+        val messageId1 = database.createMessageVersion93(folderId = 1, date = 100, internalDate = 300, read = true)
+        val root = database.createThreadVersion93(messageId1)
+        val messageId2 = database.createMessageVersion93(folderId = 1, date = 200, internalDate = 250, flagged = true)
+        database.createThreadVersion93(messageId2, root)
+        val messageId3 = database.createMessageVersion93(folderId = 2, date = 150, attachmentCount = 2)
+        database.createThreadVersion93(messageId3, root)
+        val messageId4 = database.createMessageVersion93(folderId = 1, date = 400, deleted = true)
+        database.createThreadVersion93(messageId4, root)
+
+        migration.addThreadSummaryTable()
+
+        assertThat(database.readThreadSummaries()).containsExactlyInAnyOrder(
+            ThreadSummary(
+                folderId = 1,
+                root,
+                messageId2,
+                date = 200,
+                internalDate = 300,
+                messageCount = 2,
+                unread = 1,
+                flagged = 1,
+            ),
+            ThreadSummary(folderId = 2, root, messageId3, date = 150, messageCount = 1, unread = 1, attachments = 2),
+        )
+    }
+
+    @Test
+    fun `new messages should be added to thread summary`() {
+        migration.addThreadSummaryTable()
+
+        val messageId1 = database.createMessageVersion93(folderId = 1, date = 200, internalDate = 200)
+        val root = database.createThreadVersion93(messageId1)
+        val messageId2 = database.createMessageVersion93(folderId = 1, date = 100, internalDate = 300, read = true)
+        database.createThreadVersion93(messageId2, root)
+        val messageId3 = database.createMessageVersion93(folderId = 1, date = 150, empty = true)
+        database.createThreadVersion93(messageId3, root)
+
+        assertThat(database.readThreadSummaries()).containsExactlyInAnyOrder(
+            ThreadSummary(folderId = 1, root, messageId1, date = 200, internalDate = 300, messageCount = 2, unread = 1),
+        )
+    }
+
+    @Test
+    fun `changing flags should update counts`() {
+        val messageId1 = database.createMessageVersion93(folderId = 1, date = 200)
+        val root = database.createThreadVersion93(messageId1)
+        val messageId2 = database.createMessageVersion93(folderId = 1, date = 100)
+        database.createThreadVersion93(messageId2, root)
+        migration.addThreadSummaryTable()
+
+        database.updateMessage(messageId1, ContentValues().apply { put("read", 1) })
+        database.updateMessage(messageId2, ContentValues().apply { put("flagged", 1) })
+        database.updateMessage(messageId2, ContentValues().apply { put("answered", 1) })
+        database.updateMessage(messageId2, ContentValues().apply { put("attachment_count", 3) })
+
+        assertThat(database.readThreadSummaries()).containsExactlyInAnyOrder(
+            ThreadSummary(
+                folderId = 1,
+                root,
+                messageId1,
+                date = 200,
+                messageCount = 2,
+                unread = 1,
+                flagged = 1,
+                answered = 1,
+                attachments = 3,
+            ),
+        )
+    }
+
+    @Test
+    fun `removing latest message should recompute thread summary`() {
+        val messageId1 = database.createMessageVersion93(folderId = 1, date = 100, internalDate = 100)
+        val root = database.createThreadVersion93(messageId1)
+        val messageId2 = database.createMessageVersion93(folderId = 1, date = 300, internalDate = 300)
+        database.createThreadVersion93(messageId2, root)
+        val messageId3 = database.createMessageVersion93(folderId = 1, date = 200, internalDate = 200)
+        database.createThreadVersion93(messageId3, root)
+        migration.addThreadSummaryTable()
+
+        database.updateMessage(messageId2, ContentValues().apply { put("deleted", 1) })
+
+        assertThat(database.readThreadSummaries()).containsExactlyInAnyOrder(
+            ThreadSummary(folderId = 1, root, messageId3, date = 200, internalDate = 200, messageCount = 2, unread = 2),
+        )
+    }
+
+    @Test
+    fun `moving message should update both folders`() {
+        val messageId1 = database.createMessageVersion93(folderId = 1, date = 100)
+        val root = database.createThreadVersion93(messageId1)
+        val messageId2 = database.createMessageVersion93(folderId = 1, date = 200, flagged = true)
+        database.createThreadVersion93(messageId2, root)
+        migration.addThreadSummaryTable()
+
+        database.updateMessage(messageId2, ContentValues().apply { put("folder_id", 2) })
+
+        assertThat(database.readThreadSummaries()).containsExactlyInAnyOrder(
+            ThreadSummary(folderId = 1, root, messageId1, date = 100, messageCount = 1, unread = 1),
+            ThreadSummary(folderId = 2, root, messageId2, date = 200, messageCount = 1, unread = 1, flagged = 1),
+        )
+    }
+
+    @Test
+    fun `moving message to another thread should update both threads`() {
+        val messageId1 = database.createMessageVersion93(folderId = 1, date = 100)
+        val root1 = database.createThreadVersion93(messageId1)
+        val messageId2 = database.createMessageVersion93(folderId = 1, date = 200)
+        val threadId2 = database.createThreadVersion93(messageId2, root1)
+        val messageId3 = database.createMessageVersion93(folderId = 1, date = 300)
+        val root2 = database.createThreadVersion93(messageId3)
+        migration.addThreadSummaryTable()
+
+        database.execSQL("UPDATE threads SET root = $root2 WHERE id = $threadId2")
+
+        assertThat(database.readThreadSummaries()).containsExactlyInAnyOrder(
+            ThreadSummary(folderId = 1, root1, messageId1, date = 100, messageCount = 1, unread = 1),
+            ThreadSummary(folderId = 1, root2, messageId3, date = 300, messageCount = 2, unread = 2),
+        )
+    }
+
+    @Test
+    fun `deleting last message of thread should remove thread summary`() {
+        val messageId = database.createMessageVersion93(folderId = 1, date = 100)
+        database.createThreadVersion93(messageId)
+        migration.addThreadSummaryTable()
+
+        database.delete("messages", "id = ?", arrayOf(messageId.toString()))
+
+        assertThat(database.readThreadSummaries()).isEmpty()
+    }
+
+    @Test
+    fun `replacing message should not count it twice`() {
+        val messageId1 = database.createMessageVersion93(folderId = 1, date = 100)
+        val root = database.createThreadVersion93(messageId1)
+        val messageId2 = database.createMessageVersion93(folderId = 1, date = 200)
+        database.createThreadVersion93(messageId2, root)
+        migration.addThreadSummaryTable()
+
+        val values = ContentValues().apply {
+            put("id", messageId2)
+            put("folder_id", 1)
+            put("date", 50)
+            put("read", 1)
+        }
+        database.replace("messages", null, values)
+
+        assertThat(database.readThreadSummaries()).containsExactlyInAnyOrder(
+            ThreadSummary(folderId = 1, root, messageId1, date = 100, messageCount = 2, unread = 1),
+        )
+    }
+
+    private fun createDatabaseVersion93(): SQLiteDatabase {
+        return SQLiteDatabase.create(null).apply {
+            execSQL(
+                """
+                CREATE TABLE messages (
+                    id INTEGER PRIMARY KEY,
+                    folder_id INTEGER,
+                    date INTEGER,
+                    internal_date INTEGER,
+                    read INTEGER default 0,
+                    flagged INTEGER default 0,
+                    answered INTEGER default 0,
+                    forwarded INTEGER default 0,
+                    attachment_count INTEGER,
+                    empty INTEGER default 0,
+                    deleted INTEGER default 0
+                )
+                """.trimIndent(),
+            )
+            execSQL("CREATE TABLE threads (id INTEGER PRIMARY KEY, message_id INTEGER, root INTEGER, parent INTEGER)")
+            execSQL(
+                "CREATE TRIGGER set_thread_root AFTER INSERT ON threads " +
+                    "BEGIN UPDATE threads SET root=id WHERE root IS NULL AND ROWID = NEW.ROWID; END",
+            )
+            execSQL(
+                "CREATE TRIGGER delete_message BEFORE DELETE ON messages " +
+                    "BEGIN DELETE FROM threads WHERE message_id = OLD.id; END",
+            )
+        }
+    }
+
+    private fun SQLiteDatabase.createMessageVersion93(
+        folderId: Long,
+        date: Long,
+        internalDate: Long? = null,
+        read: Boolean = false,
+        flagged: Boolean = false,
+        attachmentCount: Int = 0,
+        empty: Boolean = false,
+        deleted: Boolean = false,
+    ): Long {
+        val values = ContentValues().apply {
+            put("folder_id", folderId)
+            put("date", date)
+            put("internal_date", internalDate)
+            put("read", read)
+            put("flagged", flagged)
+            put("attachment_count", attachmentCount)
+            put("empty", empty)
+            put("deleted", deleted)
+        }
+
+        return insert("messages", null, values)
+    }
+
+    /**
+     * Returns the root of the thread, i.e. the ID of the new 'threads' row if no [root] was given.
+     */
+    private fun SQLiteDatabase.createThreadVersion93(messageId: Long, root: Long? = null): Long {
+        val values = ContentValues().apply {
+            put("message_id", messageId)
+            put("root", root)
+        }
+
+        return insert("threads", null, values)
+    }
+
+    private fun SQLiteDatabase.updateMessage(messageId: Long, values: ContentValues) {
+        update("messages", values, "id = ?", arrayOf(messageId.toString()))
+    }
+
+    private fun SQLiteDatabase.readThreadSummaries(): List<ThreadSummary> {
+        return rawQuery(
+            "SELECT folder_id, root, message_id, date, internal_date, message_count, unread_count, flagged_count, " +
+                "answered_count, attachment_count FROM thread_summary",
+            null,
+        ).use { cursor ->
+            cursor.map {
+                ThreadSummary(
+                    folderId = cursor.getLong(0),
+                    root = cursor.getLong(1),
+                    messageId = cursor.getLong(2),
+                    date = cursor.getLong(3),
+                    internalDate = if (cursor.isNull(4)) null else cursor.getLong(4),
+                    messageCount = cursor.getInt(5),
+                    unread = cursor.getInt(6),
+                    flagged = cursor.getInt(7),
+                    answered = cursor.getInt(8),
+                    attachments = cursor.getInt(9),
+                )
+            }
+        }
+    }
+
+    private data class ThreadSummary(
+        val folderId: Long,
+        val root: Long,
+        val messageId: Long,
+        val date: Long,
+        val internalDate: Long? = null,
+        val messageCount: Int,
+        val unread: Int,
+        val flagged: Int = 0,
+        val answered: Int = 0,
+        val attachments: Int = 0,
+    )
+}
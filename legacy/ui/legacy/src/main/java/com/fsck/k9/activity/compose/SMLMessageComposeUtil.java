@@ -20,9 +20,11 @@ import android.widget.EditText;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import app.k9mail.legacy.di.DI;
 import com.audriga.h2lj.parser.StructuredDataExtractionUtils;
 import com.fsck.k9.activity.misc.Attachment;
 import com.fsck.k9.helper.MimeTypeUtil;
+import com.fsck.k9.sml.SMLCardRenderer;
 import com.fsck.k9.sml.SMLUtil;
 import com.fsck.k9.view.MessageWebView;
 import com.google.android.material.materialswitch.MaterialSwitch;
@@ -121,8 +123,7 @@ public class SMLMessageComposeUtil {
     public void enrichSharedUrlToSml(String url) {
         List<JSONObject> data = StructuredDataExtractionUtils.downloadParseAndRefineStructuredData(url, true, true);
         try {
-            org.audriga.ld2h.MustacheRenderer ld2hRenderer = new org.audriga.ld2h.MustacheRenderer();
-            data = ld2hRenderer.filterRenderable(data);
+            data = DI.get(SMLCardRenderer.class).filterRenderable(data);
         } catch (IOException ignored) {
         }
         if (!data.isEmpty()) {
@@ -231,12 +232,7 @@ public class SMLMessageComposeUtil {
      */
     @NonNull
     private static Ld2hResult ld2hRenderSmlPayload(List<JSONObject> smlPayload) {
-        org.audriga.ld2h.MustacheRenderer ld2hRenderer = null;
-        try {
-            ld2hRenderer = new org.audriga.ld2h.MustacheRenderer();
-        } catch (IOException e) {
-            //throw new RuntimeException(e);
-        }
+        SMLCardRenderer ld2hRenderer = DI.get(SMLCardRenderer.class);
         ArrayList<String> renderedDisplayHTMLs = new ArrayList<>(smlPayload.size());
         ArrayList<String> types = new ArrayList<>(smlPayload.size());
         for (JSONObject jsonObject : smlPayload) {
@@ -251,7 +247,7 @@ public class SMLMessageComposeUtil {
             String ld2hRenderResult = null;
             try {
                 List<ButtonDescription> buttons = SMLUtil.getButtons(jsonObject);
-                ld2hRenderResult = (ld2hRenderer != null) ? ld2hRenderer.render(jsonObject, buttons) : null;
+                ld2hRenderResult = ld2hRenderer.render(jsonObject, buttons);
             } catch (IOException e) {
                 // todo handle
             }
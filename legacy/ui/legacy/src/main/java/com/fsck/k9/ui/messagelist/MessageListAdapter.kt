@@ -24,6 +24,11 @@ private const val FOOTER_ID = 1L
 private const val TYPE_MESSAGE = 0
 private const val TYPE_FOOTER = 1
 
+/**
+ * Number of messages from the end of the list at which to start loading the next page.
+ */
+private const val LOAD_MORE_THRESHOLD = 20
+
 class MessageListAdapter internal constructor(
     private val theme: Theme,
     private val res: Resources,
@@ -124,6 +129,11 @@ class MessageListAdapter internal constructor(
             }
         }
 
+    /**
+     * `true` if there are more messages in the local database. Binding one of the last messages then requests more.
+     */
+    var hasMoreItems: Boolean = false
+
     private val hasFooter: Boolean
         get() = footerText != null
 
@@ -239,6 +249,10 @@ class MessageListAdapter internal constructor(
                     isActive = isActiveMessage(messageListItem),
                     isSelected = isSelected(messageListItem),
                 )
+
+                if (hasMoreItems && position >= messages.size - LOAD_MORE_THRESHOLD) {
+                    listItemListener.onLoadMoreItems()
+                }
             }
 
             TYPE_FOOTER -> {
@@ -346,4 +360,5 @@ interface MessageListItemActionListener {
     fun onToggleMessageSelection(item: MessageListItem)
     fun onToggleMessageFlag(item: MessageListItem)
     fun onFooterClicked()
+    fun onLoadMoreItems()
 }
@@ -654,6 +654,10 @@ class MessageListFragment :
         }
     }
 
+    override fun onLoadMoreItems() {
+        viewModel.loadMoreMessageListItems()
+    }
+
     override fun onMessageClicked(messageListItem: MessageListItem) {
         if (!isActive) {
             // Ignore click events that are delivered after the Fragment is no longer active. This could happen when
@@ -1038,7 +1042,7 @@ class MessageListFragment :
         val currentFolder = this.currentFolder
         val account = this.account
 
-        val footerText = if (initialMessageListLoad) {
+        val footerText = if (initialMessageListLoad || adapter.hasMoreItems) {
             null
         } else if (localSearch.isManualSearch || currentFolder == null || account == null) {
             null
@@ -1617,6 +1621,7 @@ class MessageListFragment :
             }
         }
 
+        adapter.hasMoreItems = messageListInfo.hasMoreItems
         adapter.messages = messageListItems
 
         rememberedSelected?.let {
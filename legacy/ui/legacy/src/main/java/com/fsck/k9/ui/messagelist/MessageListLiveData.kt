@@ -6,6 +6,7 @@ import app.k9mail.legacy.mailstore.MessageListRepository
 import com.fsck.k9.search.getAccountUuids
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import net.thunderbird.core.android.account.AccountManager
@@ -22,10 +23,28 @@ class MessageListLiveData(
         loadMessageListAsync()
     }
 
+    private var loadJob: Job? = null
+
     private fun loadMessageListAsync() {
-        coroutineScope.launch(Dispatchers.Main) {
+        // Keep the messages the user has already scrolled to
+        val minimumItemCount = value?.messageListItems?.size ?: 0
+
+        loadJob?.cancel()
+        loadJob = coroutineScope.launch(Dispatchers.Main) {
+            val messageList = withContext(Dispatchers.IO) {
+                messageListLoader.getMessageList(config, minimumItemCount)
+            }
+            value = messageList
+        }
+    }
+
+    fun loadMoreMessageListItems() {
+        val messageListInfo = value ?: return
+        if (!messageListInfo.hasMoreItems || loadJob?.isActive == true) return
+
+        loadJob = coroutineScope.launch(Dispatchers.Main) {
             val messageList = withContext(Dispatchers.IO) {
-                messageListLoader.getMessageList(config)
+                messageListLoader.getMoreMessages(config, messageListInfo)
             }
             value = messageList
         }
@@ -1,6 +1,12 @@
 package com.fsck.k9.ui.messagelist
 
+import android.database.DatabaseUtils
+import app.k9mail.legacy.mailstore.MessageListPage
+import app.k9mail.legacy.mailstore.MessageListPageKey
 import app.k9mail.legacy.mailstore.MessageListRepository
+import app.k9mail.legacy.mailstore.MessageListSortColumn
+import app.k9mail.legacy.mailstore.MessageListSortOrder
+import app.k9mail.legacy.mailstore.createPageKeyComparator
 import com.fsck.k9.Preferences
 import com.fsck.k9.helper.MessageHelper
 import com.fsck.k9.mailstore.LocalStoreProvider
@@ -11,9 +17,18 @@ import net.thunderbird.core.android.account.SortType
 import net.thunderbird.core.logging.legacy.Log
 import net.thunderbird.core.preference.GeneralSettingsManager
 import net.thunderbird.feature.search.legacy.LocalMessageSearch
+import net.thunderbird.feature.search.legacy.SearchConditionTreeNode
 import net.thunderbird.feature.search.legacy.api.MessageSearchField
 import net.thunderbird.feature.search.legacy.sql.SqlWhereClause
 
+private const val PAGE_SIZE = 100
+
+private val FOLDER_SEARCH_FIELDS = setOf(
+    MessageSearchField.FOLDER,
+    MessageSearchField.INTEGRATE,
+    MessageSearchField.VISIBLE,
+)
+
 class MessageListLoader(
     private val preferences: Preferences,
     private val localStoreProvider: LocalStoreProvider,
@@ -22,9 +37,15 @@ class MessageListLoader(
     private val generalSettingsManager: GeneralSettingsManager,
 ) {
 
-    fun getMessageList(config: MessageListConfig): MessageListInfo {
+    /**
+     * Load the message list from the start.
+     *
+     * @param minimumItemCount Load at least this many messages (if available), e.g. to keep the messages the user has
+     *   already scrolled to when reloading the list.
+     */
+    fun getMessageList(config: MessageListConfig, minimumItemCount: Int = 0): MessageListInfo {
         return try {
-            getMessageListInfo(config)
+            getMessageListInfo(config, minimumItemCount)
         } catch (e: Exception) {
             Log.e(e, "Error while fetching message list")
 
@@ -33,48 +54,182 @@ class MessageListLoader(
         }
     }
 
-    private fun getMessageListInfo(config: MessageListConfig): MessageListInfo {
-        val accounts = config.search.getAccounts(preferences)
-        val messageListItems = accounts
-            .flatMap { account ->
-                loadMessageListForAccount(account, config)
-            }
-            .sortedWith(config)
+    /**
+     * Load the next page of the message list and append it to [messageListInfo].
+     */
+    fun getMoreMessages(config: MessageListConfig, messageListInfo: MessageListInfo): MessageListInfo {
+        val pagingState = messageListInfo.pagingState ?: return messageListInfo
 
-        val hasMoreMessages = loadHasMoreMessages(accounts, config.search.folderIds)
+        return try {
+            val (messageListItems, nextPagingState) = loadMessageListItems(config, pagingState, PAGE_SIZE)
+
+            messageListInfo.copy(
+                messageListItems = messageListInfo.messageListItems + messageListItems,
+                pagingState = nextPagingState,
+            )
+        } catch (e: Exception) {
+            Log.e(e, "Error while fetching more messages")
 
-        return MessageListInfo(messageListItems, hasMoreMessages)
+            messageListInfo.copy(pagingState = null)
+        }
     }
 
-    private fun loadMessageListForAccount(account: LegacyAccount, config: MessageListConfig): List<MessageListItem> {
-        val accountUuid = account.uuid
+    private fun getMessageListInfo(config: MessageListConfig, minimumItemCount: Int): MessageListInfo {
+        val accounts = config.search.getAccounts(preferences)
+        val hasMoreMessages = loadHasMoreMessages(accounts, config.search.folderIds)
+
         val threadId = getThreadId(config.search)
+        if (threadId != null) {
+            val messageListItems = accounts
+                .flatMap { account ->
+                    loadThread(account, threadId, config)
+                }
+                .sortedWith(config)
+
+            return MessageListInfo(messageListItems, hasMoreMessages)
+        }
+
+        val pagingState = MessageListPagingState(
+            accounts.map { account -> AccountPagingState(account) },
+        )
+        val itemCount = maxOf(minimumItemCount, PAGE_SIZE)
+        val (messageListItems, nextPagingState) = loadMessageListItems(config, pagingState, itemCount)
+
+        return MessageListInfo(messageListItems, hasMoreMessages, nextPagingState)
+    }
+
+    private fun loadThread(account: LegacyAccount, threadId: Long, config: MessageListConfig): List<MessageListItem> {
         val sortOrder = buildSortOrder(config)
         val mapper = MessageListItemMapper(messageHelper, account, generalSettingsManager)
 
-        return when {
-            threadId != null -> {
-                messageListRepository.getThread(accountUuid, threadId, sortOrder, mapper)
-            }
+        return messageListRepository.getThread(account.uuid, threadId, sortOrder, mapper)
+    }
 
-            config.showingThreadedList -> {
-                val (selection, selectionArgs) = buildSelection(account, config)
-                messageListRepository.getThreadedMessages(accountUuid, selection, selectionArgs, sortOrder, mapper)
-            }
+    /**
+     * Merges the pages of all accounts in sort order until [itemCount] messages have been taken.
+     *
+     * Pages are only loaded from an account once all messages of its previous page have been taken. Messages that were
+     * loaded but not taken are kept in the returned [MessageListPagingState] for the next call.
+     *
+     * The pages are merged by the sort values the database returned for each message. So the merged list has the same
+     * order as the pages themselves.
+     */
+    private fun loadMessageListItems(
+        config: MessageListConfig,
+        pagingState: MessageListPagingState,
+        itemCount: Int,
+    ): Pair<List<MessageListItem>, MessageListPagingState?> {
+        // The comparator only depends on the sort directions, which are the same for every account.
+        val comparator = buildPagedSortOrder(config, account = null).createPageKeyComparator()
+        val accountPageLoaders = pagingState.accounts.map { accountPagingState ->
+            AccountPageLoader(accountPagingState, config)
+        }
+
+        val messageListItems = mutableListOf<MessageListItem>()
+        while (messageListItems.size < itemCount) {
+            val nextAccountPageLoader = accountPageLoaders
+                .filter { it.hasMoreEntries() }
+                .minWithOrNull(compareBy(comparator) { it.peek().key })
+                ?: break
+
+            messageListItems.add(nextAccountPageLoader.take().item)
+        }
+
+        val accountPagingStates = accountPageLoaders
+            .filterNot { it.isExhausted }
+            .map { it.toPagingState() }
+        val nextPagingState = if (accountPagingStates.isEmpty()) null else MessageListPagingState(accountPagingStates)
+
+        return messageListItems to nextPagingState
+    }
 
-            else -> {
-                val (selection, selectionArgs) = buildSelection(account, config)
-                messageListRepository.getMessages(accountUuid, selection, selectionArgs, sortOrder, mapper)
+    private inner class AccountPageLoader(
+        accountPagingState: AccountPagingState,
+        private val config: MessageListConfig,
+    ) {
+        private val account = accountPagingState.account
+        private val entries = ArrayDeque(accountPagingState.entries)
+        private var nextPageKey = accountPagingState.nextPageKey
+        private var isLastPageLoaded = accountPagingState.isLastPageLoaded
+
+        val isExhausted: Boolean
+            get() = entries.isEmpty() && isLastPageLoaded
+
+        fun hasMoreEntries(): Boolean {
+            while (entries.isEmpty() && !isLastPageLoaded) {
+                loadNextPage()
             }
+
+            return entries.isNotEmpty()
+        }
+
+        fun peek(): PagedMessageListItem = entries.first()
+
+        fun take(): PagedMessageListItem = entries.removeFirst()
+
+        fun toPagingState(): AccountPagingState {
+            return AccountPagingState(account, entries.toList(), nextPageKey, isLastPageLoaded)
+        }
+
+        private fun loadNextPage() {
+            val page = loadMessageListPage(account, config, nextPageKey)
+
+            page.items.zip(page.itemKeys).mapTo(entries) { (item, key) -> PagedMessageListItem(key, item) }
+            nextPageKey = page.nextPageKey
+            isLastPageLoaded = page.nextPageKey == null
+        }
+    }
+
+    private fun loadMessageListPage(
+        account: LegacyAccount,
+        config: MessageListConfig,
+        pageKey: MessageListPageKey?,
+    ): MessageListPage<MessageListItem> {
+        val accountUuid = account.uuid
+        val sortOrder = buildPagedSortOrder(config, account)
+        val mapper = MessageListItemMapper(messageHelper, account, generalSettingsManager)
+
+        return if (config.showingThreadedList) {
+            // The active message is always in one of the selected folders. So it doesn't need to be selected explicitly
+            // and the precomputed thread aggregates can be used.
+            val selectsWholeFolders = config.search.conditions.usesOnlyFolderFields()
+            val (selection, selectionArgs) = buildSelection(account, config, selectActiveMessage = !selectsWholeFolders)
+
+            messageListRepository.getThreadedMessagesPage(
+                accountUuid,
+                selection,
+                selectionArgs,
+                sortOrder,
+                pageKey,
+                PAGE_SIZE,
+                mapper,
+                selectsWholeFolders,
+            )
+        } else {
+            val (selection, selectionArgs) = buildSelection(account, config)
+
+            messageListRepository.getMessagesPage(
+                accountUuid,
+                selection,
+                selectionArgs,
+                sortOrder,
+                pageKey,
+                PAGE_SIZE,
+                mapper,
+            )
         }
     }
 
-    private fun buildSelection(account: LegacyAccount, config: MessageListConfig): Pair<String, Array<String>> {
+    private fun buildSelection(
+        account: LegacyAccount,
+        config: MessageListConfig,
+        selectActiveMessage: Boolean = true,
+    ): Pair<String, Array<String>> {
         val query = StringBuilder()
         val queryArgs = mutableListOf<String>()
 
         val activeMessage = config.activeMessage
-        val selectActive = activeMessage != null && activeMessage.accountUuid == account.uuid
+        val selectActive = selectActiveMessage && activeMessage != null && activeMessage.accountUuid == account.uuid
         if (selectActive && activeMessage != null) {
             query.append("(${MessageColumns.UID} = ? AND ${MessageColumns.FOLDER_ID} = ?) OR (")
             queryArgs.add(activeMessage.uid)
@@ -98,6 +253,10 @@ class MessageListLoader(
         return selection to selectionArgs
     }
 
+    private fun SearchConditionTreeNode.usesOnlyFolderFields(): Boolean {
+        return getLeafSet().all { leaf -> leaf.condition?.field in FOLDER_SEARCH_FIELDS }
+    }
+
     private fun getThreadId(search: LocalMessageSearch): Long? {
         return search.leafSet.firstOrNull {
             it.condition?.field == MessageSearchField.THREAD_ID
@@ -129,8 +288,90 @@ class MessageListLoader(
         return "$sortColumn$sortDirection, $secondarySort${MessageColumns.ID} DESC"
     }
 
+    /**
+     * Same order as [buildSortOrder], but with sort expressions that can't be `NULL` as required for keyset pagination.
+     *
+     * The read and starred state of the messages in [MessageListConfig.sortOverrides] is replaced with the remembered
+     * values for [account], so these messages keep their position in the list.
+     */
+    private fun buildPagedSortOrder(config: MessageListConfig, account: LegacyAccount?): MessageListSortOrder {
+        val sortColumn = when (config.sortType) {
+            SortType.SORT_ARRIVAL -> MessageListSortColumn(
+                "IFNULL(${MessageColumns.INTERNAL_DATE}, 0)",
+                config.sortAscending,
+            )
+            SortType.SORT_ATTACHMENT -> MessageListSortColumn(
+                "(IFNULL(${MessageColumns.ATTACHMENT_COUNT}, 0) < 1)",
+                config.sortAscending,
+            )
+            SortType.SORT_FLAGGED -> MessageListSortColumn(
+                "(${overriddenSortExpression(config, account, MessageColumns.FLAGGED) { it.isStarred }} != 1)",
+                config.sortAscending,
+            )
+            SortType.SORT_SENDER -> MessageListSortColumn(
+                "IFNULL(${MessageColumns.SENDER_LIST}, '')", // FIXME
+                config.sortAscending,
+            )
+            SortType.SORT_SUBJECT -> MessageListSortColumn(
+                "IFNULL(${MessageColumns.SUBJECT}, '')",
+                config.sortAscending,
+                ignoreCase = true,
+            )
+            SortType.SORT_UNREAD -> MessageListSortColumn(
+                overriddenSortExpression(config, account, MessageColumns.READ) { it.isRead },
+                config.sortAscending,
+            )
+            SortType.SORT_DATE -> MessageListSortColumn(
+                "IFNULL(${MessageColumns.DATE}, 0)",
+                config.sortAscending,
+            )
+        }
+
+        val sortColumns = buildList {
+            add(sortColumn)
+
+            if (config.sortType != SortType.SORT_DATE && config.sortType != SortType.SORT_ARRIVAL) {
+                add(MessageListSortColumn("IFNULL(${MessageColumns.DATE}, 0)", config.sortDateAscending))
+            }
+        }
+
+        return MessageListSortOrder(sortColumns, idAscending = false)
+    }
+
+    /**
+     * Returns an expression for the boolean [columnName] that uses the value of [MessageListConfig.sortOverrides] for
+     * the messages of [account] it contains.
+     *
+     * The values are inlined because sort expressions can't have arguments.
+     */
+    private fun overriddenSortExpression(
+        config: MessageListConfig,
+        account: LegacyAccount?,
+        columnName: String,
+        overrideValue: (MessageSortOverride) -> Boolean,
+    ): String {
+        val sortOverrides = config.sortOverrides.filterKeys { it.accountUuid == account?.uuid }
+        if (sortOverrides.isEmpty()) return "IFNULL($columnName, 0)"
+
+        return sortOverrides.entries.joinToString(
+            separator = " ",
+            prefix = "CASE ",
+            postfix = " ELSE IFNULL($columnName, 0) END",
+        ) { (messageReference, sortOverride) ->
+            val folderId = messageReference.folderId
+            val uid = DatabaseUtils.sqlEscapeString(messageReference.uid)
+            val value = if (overrideValue(sortOverride)) 1 else 0
+
+            "WHEN ${MessageColumns.FOLDER_ID} = $folderId AND ${MessageColumns.UID} = $uid THEN $value"
+        }
+    }
+
     private fun List<MessageListItem>.sortedWith(config: MessageListConfig): List<MessageListItem> {
-        val comparator = when (config.sortType) {
+        return this.sortedWith(createComparator(config))
+    }
+
+    private fun createComparator(config: MessageListConfig): Comparator<MessageListItem> {
+        return when (config.sortType) {
             SortType.SORT_DATE -> {
                 compareBy(config.sortAscending) { it.messageDate }
             }
@@ -166,8 +407,6 @@ class MessageListLoader(
                     .thenByDate(config)
             }
         }.thenByDescending { it.databaseId }
-
-        return this.sortedWith(comparator)
     }
 
     private fun loadHasMoreMessages(accounts: List<LegacyAccount>, folderIds: List<Long>): Boolean {
@@ -208,4 +447,37 @@ private fun Comparator<MessageListItem>.thenByDate(config: MessageListConfig): C
     }
 }
 
-data class MessageListInfo(val messageListItems: List<MessageListItem>, val hasMoreMessages: Boolean)
+/**
+ * @param hasMoreMessages `true` if more messages can be downloaded from the server.
+ * @param pagingState Where to continue loading the message list. `null` if all messages have been loaded.
+ */
+data class MessageListInfo(
+    val messageListItems: List<MessageListItem>,
+    val hasMoreMessages: Boolean,
+    val pagingState: MessageListPagingState? = null,
+) {
+    /**
+     * `true` if there are more messages in the local database that haven't been loaded yet.
+     */
+    val hasMoreItems: Boolean
+        get() = pagingState != null
+}
+
+class MessageListPagingState internal constructor(
+    internal val accounts: List<AccountPagingState>,
+)
+
+internal class AccountPagingState(
+    val account: LegacyAccount,
+    val entries: List<PagedMessageListItem> = emptyList(),
+    val nextPageKey: MessageListPageKey? = null,
+    val isLastPageLoaded: Boolean = false,
+)
+
+/**
+ * A loaded [MessageListItem] and its position in the message list of its account.
+ */
+internal class PagedMessageListItem(
+    val key: MessageListPageKey,
+    val item: MessageListItem,
+)
@@ -36,6 +36,10 @@ class MessageListViewModel(
         }
     }
 
+    fun loadMoreMessageListItems() {
+        currentMessageListLiveData?.loadMoreMessageListItems()
+    }
+
     private fun removeCurrentMessageListLiveData() {
         currentMessageListLiveData?.let {
             currentMessageListLiveData = null
@@ -32,7 +32,10 @@ import com.fsck.k9.mail.Address
 import com.fsck.k9.mailstore.AttachmentResolver
 import com.fsck.k9.mailstore.AttachmentViewInfo
 import com.fsck.k9.mailstore.MessageViewInfo
+import com.fsck.k9.mailstore.SMLMessageView
 import com.fsck.k9.message.html.DisplayHtml
+import com.fsck.k9.sml.SMLCardRenderPipeline
+import com.fsck.k9.sml.SMLPendingCard
 import com.fsck.k9.ui.R
 import com.fsck.k9.view.MessageWebView
 import com.fsck.k9.view.MessageWebView.OnPageFinishedListener
@@ -52,6 +55,7 @@ class MessageContainerView(context: Context, attrs: AttributeSet?) :
     private val webViewConfigProvider: WebViewConfigProvider by inject()
     private val clipboardManager: ClipboardManager by inject()
     private val linkTextHandler: LinkTextHandler by inject()
+    private val cardRenderPipeline: SMLCardRenderPipeline by inject()
 
     private lateinit var layoutInflater: LayoutInflater
 
@@ -68,6 +72,11 @@ class MessageContainerView(context: Context, attrs: AttributeSet?) :
     private var attachmentCallback: AttachmentViewCallback? = null
     private var currentAttachmentResolver: AttachmentResolver? = null
 
+    private var pendingCards: List<SMLPendingCard> = emptyList()
+    private val renderedCards = mutableMapOf<SMLPendingCard, String>()
+    private var cardRenderJob: SMLCardRenderPipeline.RenderJob? = null
+    private var isContentLoaded = false
+
     @get:JvmName("hasHiddenExternalImages")
     var hasHiddenExternalImages = false
         private set
@@ -92,6 +101,18 @@ class MessageContainerView(context: Context, attrs: AttributeSet?) :
         unsignedText = findViewById(R.id.message_unsigned_text)
     }
 
+    override fun onAttachedToWindow() {
+        super.onAttachedToWindow()
+
+        // Continue with the cards whose rendering was cancelled when this view was detached
+        startCardRendering(pendingCards.filterNot { it in renderedCards })
+    }
+
+    override fun onDetachedFromWindow() {
+        cancelCardRendering()
+        super.onDetachedFromWindow()
+    }
+
     override fun onCreateContextMenu(menu: ContextMenu, view: View, menuInfo: ContextMenuInfo?) {
         super.onCreateContextMenu(menu)
 
@@ -441,10 +462,19 @@ class MessageContainerView(context: Context, attrs: AttributeSet?) :
         displayHtmlContentWithInlineAttachments(
             htmlText = textToDisplay,
             attachmentResolver = messageViewInfo.attachmentResolver,
-            onPageFinishedListener = onRenderingFinishedListener::onLoadFinished,
+            onPageFinishedListener = {
+                onContentLoaded()
+                onRenderingFinishedListener.onLoadFinished()
+            },
             messageReference = messageReference,
         )
 
+        // The message is displayed with empty placeholders. Cards are inserted one by one as soon as they are rendered.
+        pendingCards = messageViewInfo.pendingCards.orEmpty()
+        if (isAttachedToWindow) {
+            startCardRendering(pendingCards)
+        }
+
         if (!messageViewInfo.extraText.isNullOrEmpty()) {
             unsignedTextContainer.isVisible = true
             unsignedTextDivider.isGone = hideUnsignedTextDivider
@@ -466,13 +496,54 @@ class MessageContainerView(context: Context, attrs: AttributeSet?) :
     private fun refreshDisplayedContent() {
         val htmlText = checkNotNull(currentHtmlText)
 
+        isContentLoaded = false
         messageContentView.displayHtmlContentWithInlineAttachments(
             htmlText = htmlText,
             attachmentResolver = currentAttachmentResolver,
-            onPageFinishedListener = null,
+            onPageFinishedListener = ::onContentLoaded,
         )
     }
 
+    private fun startCardRendering(cards: List<SMLPendingCard>) {
+        if (cards.isEmpty() || cardRenderJob != null) return
+
+        lateinit var job: SMLCardRenderPipeline.RenderJob
+        job = cardRenderPipeline.render(cards) { card, html ->
+            post {
+                if (!job.isCancelled) {
+                    onCardRendered(card, html)
+                }
+            }
+        }
+        cardRenderJob = job
+    }
+
+    private fun cancelCardRendering() {
+        cardRenderJob?.cancel()
+        cardRenderJob = null
+    }
+
+    private fun onCardRendered(card: SMLPendingCard, html: String) {
+        renderedCards[card] = html
+        if (isContentLoaded) {
+            insertCard(card, html)
+        }
+    }
+
+    private fun onContentLoaded() {
+        // onPageFinished() can be called more than once for the same page
+        if (isContentLoaded) return
+
+        isContentLoaded = true
+        for ((card, html) in renderedCards) {
+            insertCard(card, html)
+        }
+    }
+
+    private fun insertCard(card: SMLPendingCard, html: String) {
+        messageContentView.evaluateJavascript(SMLMessageView.getCardInsertionJavaScript(card, html), null)
+    }
+
     private fun clearDisplayedContent() {
         messageContentView.displayHtmlContentWithInlineAttachments(
             htmlText = "",
@@ -531,6 +602,11 @@ class MessageContainerView(context: Context, attrs: AttributeSet?) :
         setLoadPictures(false)
         attachmentsContainer.removeAllViews()
 
+        cancelCardRendering()
+        pendingCards = emptyList()
+        renderedCards.clear()
+        isContentLoaded = false
+
         currentHtmlText = null
         currentAttachmentResolver = null
 
@@ -47,6 +47,7 @@ import com.fsck.k9.message.SimpleMessageFormat
 import com.fsck.k9.message.SimpleSmlMessageBuilder
 import com.fsck.k9.message.SmlMessageUtil
 import com.fsck.k9.provider.AttachmentTempFileProvider
+import com.fsck.k9.sml.SMLCardRenderer
 import com.fsck.k9.sml.SMLUtil
 import com.fsck.k9.sml.SMLUtil.getButtons
 import com.fsck.k9.ui.R
@@ -100,7 +101,6 @@ import okhttp3.Request.Builder
 import okhttp3.RequestBody.Companion.toRequestBody
 import okio.ByteString.Companion.encodeUtf8
 import org.audriga.ld2h.JsonLdDeserializer
-import org.audriga.ld2h.MustacheRenderer
 import org.json.JSONArray
 import org.json.JSONException
 import org.json.JSONObject
@@ -115,6 +115,7 @@ class SMLWebViewClientExtensions(
     private val logger: Logger by inject()
 //    private val preferenceManager: PreferenceManager<GeneralSettings> by inject()
     private val generalSettingsManager: GeneralSettingsManager by inject()
+    private val cardRenderer: SMLCardRenderer by inject()
 
     fun shouldOverrideUrlLoading(webView: WebView, uri: Uri): Boolean {
         return when (uri.scheme) {
@@ -411,7 +412,6 @@ class SMLWebViewClientExtensions(
     private fun xpopupcard(context: Context, uri: Uri) {
         val encodedJsons = uri.schemeSpecificPart.split(",")
         val decodedJsonTexts = encodedJsons.map { String(Base64.decode(it, Base64.NO_WRAP + Base64.URL_SAFE)) }
-        val ld2hRenderer = MustacheRenderer()
         val renderedDisplayHTMLs = ArrayList<String>()
         for (decodedJsonText in decodedJsonTexts) {
             val jsonObject: JSONObject
@@ -428,7 +428,7 @@ class SMLWebViewClientExtensions(
             val shareAsFileButtonDesc = SMLUtil.getShareAsFileButtonDesc(jsonObject, type)
             val shareAsMailButtonDesc = SMLUtil.getShareAsMailButtonDesc(jsonObject)
             val ld2hRenderResult =
-                ld2hRenderer.render(jsonObject, listOf(webUrlButtonDesc, shareAsFileButtonDesc, shareAsMailButtonDesc))
+                cardRenderer.render(jsonObject, listOf(webUrlButtonDesc, shareAsFileButtonDesc, shareAsMailButtonDesc))
             if (ld2hRenderResult != null) {
                 renderedDisplayHTMLs.add(ld2hRenderResult)
             }
@@ -442,7 +442,6 @@ class SMLWebViewClientExtensions(
         val maxCards = 5
         val encodedUrls = uri.schemeSpecificPart.split(",")
         val urls = encodedUrls.map { String(Base64.decode(it, Base64.NO_WRAP + Base64.URL_SAFE)) }
-        val ld2hRenderer = MustacheRenderer()
         val renderedDisplayHTMLs = ArrayList<String>()
         val typesToSkip = arrayOf("Organization", "NewsMediaOrganization", "WebSite", "BreadcrumbList", "WebPage")
         for (url in urls) {
@@ -469,7 +468,7 @@ class SMLWebViewClientExtensions(
                         val webUrlButtonDesc = SMLUtil.getWebUrlButtonDesc(jsonObject)
                         val shareAsFileButtonDesc = SMLUtil.getShareAsFileButtonDesc(jsonObject, type)
                         val shareAsMailButtonDesc = SMLUtil.getShareAsMailButtonDesc(jsonObject)
-                        val ld2hRenderResult = ld2hRenderer.render(
+                        val ld2hRenderResult = cardRenderer.render(
                             jsonObject,
                             listOf(webUrlButtonDesc, shareAsFileButtonDesc, shareAsMailButtonDesc),
                         )
@@ -513,12 +512,10 @@ class SMLWebViewClientExtensions(
                 showToast(context, "Could not parse response")
                 return
             }
-            val renderer = MustacheRenderer()
-
             val renderedHTMLs: ArrayList<String> = ArrayList(jsonLds.size)
             for (jsonObject in jsonLds) {
                 val buttons = getButtons(jsonObject)
-                val result: String = renderer.render(jsonObject, buttons)
+                val result = cardRenderer.render(jsonObject, buttons) ?: continue
                 renderedHTMLs.add(result)
             }
 
@@ -571,12 +568,10 @@ class SMLWebViewClientExtensions(
                 showToast(context, "Could not parse response")
                 return
             }
-            val renderer = MustacheRenderer()
-
             val renderedHTMLs: ArrayList<String> = ArrayList(jsonLds.size)
             for (jsonObject in jsonLds) {
                 val buttons = getButtons(jsonObject)
-                val result: String = renderer.render(jsonObject, buttons)
+                val result = cardRenderer.render(jsonObject, buttons) ?: continue
                 renderedHTMLs.add(result)
             }
 
@@ -30,6 +30,8 @@ import net.thunderbird.core.android.testing.RobolectricTest
 import net.thunderbird.core.testing.TestClock
 import org.junit.Test
 import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.verify
 import org.robolectric.Robolectric
 
 private const val SOME_ACCOUNT_UUID = "6b84207b-25de-4dab-97c3-953bbf03fec6"
@@ -377,6 +379,26 @@ class MessageListAdapterTest : RobolectricTest() {
         assertThat(view.secondLineView.textSize).isEqualTo(22f)
     }
 
+    @Test
+    fun withMoreItems_bindingLastMessage_shouldRequestMoreItems() {
+        val adapter = createAdapter()
+        adapter.hasMoreItems = true
+
+        adapter.createAndBindView()
+
+        verify(listItemListener).onLoadMoreItems()
+    }
+
+    @Test
+    fun withoutMoreItems_bindingLastMessage_shouldNotRequestMoreItems() {
+        val adapter = createAdapter()
+        adapter.hasMoreItems = false
+
+        adapter.createAndBindView()
+
+        verify(listItemListener, never()).onLoadMoreItems()
+    }
+
     fun createFontSizes(
         subject: Int = FONT_DEFAULT,
         sender: Int = FONT_DEFAULT,
@@ -0,0 +1,195 @@
+package com.fsck.k9.ui.messagelist
+
+import app.k9mail.legacy.mailstore.MessageDetailsAccessor
+import app.k9mail.legacy.mailstore.MessageListChangedListener
+import app.k9mail.legacy.mailstore.MessageListPage
+import app.k9mail.legacy.mailstore.MessageListPageKey
+import app.k9mail.legacy.mailstore.MessageListRepository
+import app.k9mail.legacy.mailstore.MessageListSortOrder
+import app.k9mail.legacy.mailstore.MessageMapper
+import app.k9mail.legacy.message.extractors.PreviewResult
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNull
+import com.fsck.k9.Preferences
+import com.fsck.k9.helper.MessageHelper
+import com.fsck.k9.mail.Address
+import net.thunderbird.core.android.account.LegacyAccount
+import net.thunderbird.core.android.account.SortType
+import net.thunderbird.core.android.testing.RobolectricTest
+import net.thunderbird.feature.search.legacy.LocalMessageSearch
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+
+private const val ACCOUNT_UUID_1 = "00000000-0000-4000-0000-000000000001"
+private const val ACCOUNT_UUID_2 = "00000000-0000-4000-0000-000000000002"
+
+class MessageListLoaderTest : RobolectricTest() {
+    private val account1 = LegacyAccount(ACCOUNT_UUID_1)
+    private val account2 = LegacyAccount(ACCOUNT_UUID_2)
+    private val preferences = mock<Preferences> {
+        on { getAccounts() } doReturn listOf(account1, account2)
+    }
+    private val messageHelper = mock<MessageHelper> {
+        on { getSenderDisplayName(any()) } doAnswer { invocation ->
+            invocation.getArgument<Address>(0).personal
+        }
+    }
+
+    @Test
+    fun `paging through sender sorted list of multiple accounts should use the database sort order`() {
+        // Sender names are sorted in the opposite order of the addresses, which the database uses to sort.
+        val messages1 = (0 until 150).map { index -> createMessage(id = index + 1L, senderIndex = index * 2) }
+        val messages2 = (0 until 120).map { index -> createMessage(id = index + 1L, senderIndex = index * 2 + 1) }
+        val messageListLoader = createMessageListLoader(
+            mapOf(
+                ACCOUNT_UUID_1 to messages1,
+                ACCOUNT_UUID_2 to messages2,
+            ),
+        )
+        val config = createConfig(sortType = SortType.SORT_SENDER)
+
+        var messageListInfo = messageListLoader.getMessageList(config)
+        val firstPageSize = messageListInfo.messageListItems.size
+        while (messageListInfo.hasMoreItems) {
+            messageListInfo = messageListLoader.getMoreMessages(config, messageListInfo)
+        }
+
+        assertThat(firstPageSize).isEqualTo(100)
+        assertThat(messageListInfo.pagingState).isNull()
+        assertThat(messageListInfo.messageListItems.map { it.messageUid })
+            .isEqualTo((messages1 + messages2).sortedBy { it.senderList }.map { it.uid })
+    }
+
+    private fun createMessageListLoader(messages: Map<String, List<FakeMessage>>): MessageListLoader {
+        return MessageListLoader(
+            preferences = preferences,
+            localStoreProvider = mock(),
+            messageListRepository = FakeMessageListRepository(messages),
+            messageHelper = messageHelper,
+            generalSettingsManager = mock(),
+        )
+    }
+
+    private fun createConfig(sortType: SortType): MessageListConfig {
+        return MessageListConfig(
+            search = LocalMessageSearch(),
+            showingThreadedList = false,
+            sortType = sortType,
+            sortAscending = true,
+            sortDateAscending = false,
+            activeMessage = null,
+            sortOverrides = emptyMap(),
+        )
+    }
+
+    private fun createMessage(id: Long, senderIndex: Int): FakeMessage {
+        val address = "sender%03d@domain.example".format(senderIndex)
+        val name = "Name %03d".format(999 - senderIndex)
+
+        return FakeMessage(id, uid = "uid-$address", senderList = address, senderName = name)
+    }
+}
+
+private data class FakeMessage(
+    val id: Long,
+    val uid: String,
+    val senderList: String,
+    val senderName: String,
+)
+
+/**
+ * Returns pages of the given messages, which have to be in the order of `sender_list ASC, date DESC, id DESC`.
+ */
+private class FakeMessageListRepository(
+    private val messages: Map<String, List<FakeMessage>>,
+) : MessageListRepository {
+    override fun <T> getMessagesPage(
+        accountUuid: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
+        messageMapper: MessageMapper<T>,
+    ): MessageListPage<T> {
+        val accountMessages = messages.getValue(accountUuid)
+        val startIndex = if (pageKey == null) 0 else accountMessages.indexOfFirst { it.id == pageKey.id } + 1
+        val pageMessages = accountMessages.drop(startIndex).take(pageSize)
+        val pageKeys = pageMessages.map { message ->
+            MessageListPageKey(sortValues = listOf(message.senderList, 0L), id = message.id)
+        }
+
+        return MessageListPage(
+            items = pageMessages.map { message -> messageMapper.map(FakeMessageDetailsAccessor(message)) },
+            itemKeys = pageKeys,
+            nextPageKey = if (pageMessages.size == pageSize) pageKeys.last() else null,
+        )
+    }
+
+    override fun <T> getThreadedMessagesPage(
+        accountUuid: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: MessageListSortOrder,
+        pageKey: MessageListPageKey?,
+        pageSize: Int,
+        messageMapper: MessageMapper<T>,
+        selectsWholeFolders: Boolean,
+    ): MessageListPage<T> = throw UnsupportedOperationException()
+
+    override fun addListener(listener: MessageListChangedListener) = throw UnsupportedOperationException()
+
+    override fun addListener(accountUuid: String, listener: MessageListChangedListener) =
+        throw UnsupportedOperationException()
+
+    override fun removeListener(listener: MessageListChangedListener) = throw UnsupportedOperationException()
+
+    override fun notifyMessageListChanged(accountUuid: String) = throw UnsupportedOperationException()
+
+    override fun <T> getMessages(
+        accountUuid: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: String,
+        messageMapper: MessageMapper<T>,
+    ): List<T> = throw UnsupportedOperationException()
+
+    override fun <T> getThreadedMessages(
+        accountUuid: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        sortOrder: String,
+        messageMapper: MessageMapper<T>,
+    ): List<T> = throw UnsupportedOperationException()
+
+    override fun <T> getThread(
+        accountUuid: String,
+        threadId: Long,
+        sortOrder: String,
+        messageMapper: MessageMapper<T>,
+    ): List<T> = throw UnsupportedOperationException()
+}
+
+private class FakeMessageDetailsAccessor(message: FakeMessage) : MessageDetailsAccessor {
+    override val id = message.id
+    override val messageServerId = message.uid
+    override val folderId = 1L
+    override val fromAddresses = listOf(Address(message.senderList, message.senderName))
+    override val toAddresses = emptyList<Address>()
+    override val ccAddresses = emptyList<Address>()
+    override val messageDate = 0L
+    override val internalDate = 0L
+    override val subject: String? = null
+    override val preview: PreviewResult = PreviewResult.none()
+    override val isRead = false
+    override val isStarred = false
+    override val isAnswered = false
+    override val isForwarded = false
+    override val hasAttachments = false
+    override val threadRoot = message.id
+    override val threadCount = 0
+}
@@ -0,0 +1,21 @@
+package app.k9mail.html.cleaner
+
+import org.jsoup.nodes.Document
+
+/**
+ * An additional processing step that [HtmlProcessor] runs on the parsed HTML, so callers don't have to parse the HTML
+ * again.
+ */
+interface HtmlDocumentVisitor {
+    /**
+     * Name of this step in [ProcessedHtml.stageTimings].
+     */
+    val name: String
+
+    /**
+     * Called with the document as parsed from the input, before it is sanitized.
+     *
+     * Changes to the document are allowed. They are sanitized together with the rest of the document.
+     */
+    fun visit(document: Document)
+}
@@ -1,14 +1,32 @@
 package app.k9mail.html.cleaner
 
+import org.jsoup.Jsoup
 import org.jsoup.nodes.Document
 
 class HtmlProcessor(private val htmlHeadProvider: HtmlHeadProvider) {
     private val htmlSanitizer = HtmlSanitizer()
 
     fun processForDisplay(html: String): String {
-        return htmlSanitizer.sanitize(html)
-            .addCustomHeadContents()
-            .toCompactString()
+        return processForDisplay(html, visitors = emptyList()).html
+    }
+
+    /**
+     * Parses [html] once, runs [visitors] on the parsed document, then sanitizes and serializes it.
+     */
+    fun processForDisplay(html: String, visitors: List<HtmlDocumentVisitor>): ProcessedHtml {
+        val stageTimer = StageTimer()
+
+        val dirtyDocument = stageTimer.measure("parse") { Jsoup.parse(html) }
+        for (visitor in visitors) {
+            stageTimer.measure(visitor.name) { visitor.visit(dirtyDocument) }
+        }
+
+        val cleanedDocument = stageTimer.measure("sanitize") {
+            htmlSanitizer.sanitize(dirtyDocument).addCustomHeadContents()
+        }
+        val processedHtml = stageTimer.measure("serialize") { cleanedDocument.toCompactString() }
+
+        return ProcessedHtml(processedHtml, stageTimer.timings)
     }
 
     private fun Document.addCustomHeadContents() = apply {
@@ -22,4 +40,15 @@ class HtmlProcessor(private val htmlHeadProvider: HtmlHeadProvider) {
 
         return html()
     }
+
+    private class StageTimer {
+        val timings = mutableListOf<HtmlStageTiming>()
+
+        inline fun <T> measure(stage: String, block: () -> T): T {
+            val startTime = System.nanoTime()
+            val result = block()
+            timings.add(HtmlStageTiming(stage, System.nanoTime() - startTime))
+            return result
+        }
+    }
 }
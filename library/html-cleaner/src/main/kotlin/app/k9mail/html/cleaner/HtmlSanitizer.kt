@@ -8,7 +8,10 @@ internal class HtmlSanitizer {
     private val bodyCleaner = BodyCleaner()
 
     fun sanitize(html: String): Document {
-        val dirtyDocument = Jsoup.parse(html)
+        return sanitize(Jsoup.parse(html))
+    }
+
+    fun sanitize(dirtyDocument: Document): Document {
         val cleanedDocument = bodyCleaner.clean(dirtyDocument)
         headCleaner.clean(dirtyDocument, cleanedDocument)
         return cleanedDocument
@@ -0,0 +1,6 @@
+package app.k9mail.html.cleaner
+
+data class HtmlStageTiming(
+    val stage: String,
+    val durationNanos: Long,
+)
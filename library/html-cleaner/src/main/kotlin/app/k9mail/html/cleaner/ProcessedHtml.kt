@@ -0,0 +1,11 @@
+package app.k9mail.html.cleaner
+
+/**
+ * The result of [HtmlProcessor.processForDisplay].
+ *
+ * @param stageTimings The time spent in each processing stage, in the order the stages were run.
+ */
+class ProcessedHtml(
+    val html: String,
+    val stageTimings: List<HtmlStageTiming>,
+)
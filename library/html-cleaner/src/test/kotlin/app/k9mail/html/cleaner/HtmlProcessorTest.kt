@@ -0,0 +1,61 @@
+package app.k9mail.html.cleaner
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import org.jsoup.nodes.Document
+import org.junit.Test
+
+class HtmlProcessorTest {
+    private val htmlProcessor = HtmlProcessor(
+        object : HtmlHeadProvider {
+            override val headHtml = """<meta name="viewport" content="width=device-width">"""
+        },
+    )
+
+    @Test
+    fun `visitor should see unsanitized document`() {
+        val visitor = TestVisitor { document ->
+            assertThat(document.select("script").size).isEqualTo(1)
+        }
+
+        htmlProcessor.processForDisplay("<html><body><script>alert(1)</script>Text</body></html>", listOf(visitor))
+    }
+
+    @Test
+    fun `changes made by visitor should be sanitized`() {
+        val visitor = TestVisitor { document ->
+            document.body().append("""<a href="xloadcards://abc" onclick="evil()">Load</a><script>evil()</script>""")
+        }
+
+        val result = htmlProcessor.processForDisplay("<html><body>Text</body></html>", listOf(visitor))
+
+        assertThat(result.html).isEqualTo(
+            """<html><head><meta name="viewport" content="width=device-width"></head>""" +
+                """<body>Text<a href="xloadcards://abc">Load</a></body></html>""",
+        )
+    }
+
+    @Test
+    fun `should report time of every stage`() {
+        val result = htmlProcessor.processForDisplay("<p>Text</p>", listOf(TestVisitor(name = "first") {}))
+
+        assertThat(result.stageTimings.map { it.stage }).containsExactly("parse", "first", "sanitize", "serialize")
+    }
+
+    @Test
+    fun `processing without visitors should return the same HTML as with visitors`() {
+        val html = "<html><body><p>Text</p></body></html>"
+
+        val result = htmlProcessor.processForDisplay(html)
+
+        assertThat(result).isEqualTo(htmlProcessor.processForDisplay(html, listOf(TestVisitor {})).html)
+    }
+
+    private class TestVisitor(
+        override val name: String = "test",
+        private val block: (Document) -> Unit,
+    ) : HtmlDocumentVisitor {
+        override fun visit(document: Document) = block(document)
+    }
+}
@@ -0,0 +1,16 @@
+plugins {
+    id(ThunderbirdPlugins.Library.jvm)
+    alias(libs.plugins.android.lint)
+}
+
+dependencies {
+    api(files("../../libs/h2lj.jar"))
+
+    implementation(libs.jsoup)
+    implementation(libs.okio)
+
+    // Part of the Android platform
+    compileOnly(libs.json)
+
+    testImplementation(libs.json)
+}
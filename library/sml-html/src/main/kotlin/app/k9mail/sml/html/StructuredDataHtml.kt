@@ -0,0 +1,57 @@
+package app.k9mail.sml.html
+
+import com.audriga.h2lj.model.StructuredData
+import com.audriga.h2lj.parser.StructuredDataExtractionUtils
+import okio.ByteString.Companion.encodeUtf8
+import org.jsoup.nodes.Document
+
+/**
+ * The DOM operations of the SML message view that only depend on the parsed HTML of a message.
+ */
+object StructuredDataHtml {
+    private const val POPUP_CARD_SCHEME = "xpopupcard"
+
+    /**
+     * Same as [StructuredDataExtractionUtils.parseStructuredDataPart] with JSON-LD and microdata as fallback, but works
+     * on an already parsed document.
+     */
+    @JvmStatic
+    fun parseStructuredData(document: Document): List<StructuredData> {
+        val data = document.select("script[type=application/ld+json]").flatMap { scriptElement ->
+            StructuredDataExtractionUtils.parseStructuredDataFromJsonStr(scriptElement.html().trim())
+        }
+        if (data.isNotEmpty()) return data
+
+        return document.select("[itemscope]:not([itemscope] [itemscope])").map { element ->
+            StructuredDataExtractionUtils.parseStructuredDataFromDivElement(element)
+        }
+    }
+
+    /**
+     * Adds a button to show the card after every link whose `data-id` attribute matches the `@id` of an entry in
+     * [data]. This is the newsletter with embedded structured data case.
+     *
+     * @return `true` if at least one button was added to the document.
+     */
+    @JvmStatic
+    fun addInlineCardButtons(document: Document, data: List<StructuredData>): Boolean {
+        val idToJsonLd = data
+            .map { it.json }
+            .filter { it.optString("@id").isNotEmpty() }
+            .associateBy { it.optString("@id") }
+        if (idToJsonLd.isEmpty()) return false
+
+        var didModifyHtml = false
+        for (linkElement in document.select("a[href][data-id]")) {
+            val jsonObject = idToJsonLd[linkElement.attr("data-id")] ?: continue
+
+            val encodedJsonLd = jsonObject.toString().encodeUtf8().base64Url()
+            linkElement.after(
+                """<a href="$POPUP_CARD_SCHEME://$encodedJsonLd"><span class="material-icons">web_asset</span></a>""",
+            )
+            didModifyHtml = true
+        }
+
+        return didModifyHtml
+    }
+}
@@ -0,0 +1,85 @@
+package app.k9mail.sml.html
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.hasSize
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import okio.ByteString.Companion.decodeBase64
+import org.jsoup.Jsoup
+import org.junit.Test
+
+class StructuredDataHtmlTest {
+    @Test
+    fun `parseStructuredData() should return JSON-LD`() {
+        val document = Jsoup.parse(
+            """
+            <html><head>
+            <script type="application/ld+json">
+            {"@context": "https://schema.org", "@type": "Event", "name": "Concert"}
+            </script>
+            </head><body></body></html>
+            """.trimIndent(),
+        )
+
+        val data = StructuredDataHtml.parseStructuredData(document)
+
+        assertThat(data).hasSize(1)
+        assertThat(data.single().json.getString("name")).isEqualTo("Concert")
+    }
+
+    @Test
+    fun `parseStructuredData() without JSON-LD should return top-level microdata items`() {
+        val document = Jsoup.parse(
+            """
+            <div itemscope itemtype="https://schema.org/Event">
+              <span itemprop="name">Concert</span>
+              <div itemprop="location" itemscope itemtype="https://schema.org/Place">
+                <span itemprop="name">Hall</span>
+              </div>
+            </div>
+            """.trimIndent(),
+        )
+
+        val data = StructuredDataHtml.parseStructuredData(document)
+
+        assertThat(data).hasSize(1)
+    }
+
+    @Test
+    fun `addInlineCardButtons() should add button after link with matching data-id`() {
+        val document = Jsoup.parse(
+            """
+            <script type="application/ld+json">{"@type": "Recipe", "@id": "recipe-1", "name": "Soup"}</script>
+            <a href="https://domain.example/soup" data-id="recipe-1">Soup</a>
+            <a href="https://domain.example/other" data-id="recipe-2">Other</a>
+            """.trimIndent(),
+        )
+        val data = StructuredDataHtml.parseStructuredData(document)
+
+        val result = StructuredDataHtml.addInlineCardButtons(document, data)
+
+        assertThat(result).isTrue()
+        val buttonLinks = document.select("a[href^=xpopupcard://]")
+        assertThat(buttonLinks.map { it.previousElementSibling()?.attr("data-id") }).containsExactly("recipe-1")
+        val encodedJsonLd = buttonLinks.single().attr("href").removePrefix("xpopupcard://")
+        assertThat(encodedJsonLd.decodeBase64()?.utf8()).isEqualTo(data.single().json.toString())
+    }
+
+    @Test
+    fun `addInlineCardButtons() without ids should not change document`() {
+        val document = Jsoup.parse(
+            """
+            <script type="application/ld+json">{"@type": "Recipe", "name": "Soup"}</script>
+            <a href="https://domain.example/soup" data-id="recipe-1">Soup</a>
+            """.trimIndent(),
+        )
+        val data = StructuredDataHtml.parseStructuredData(document)
+
+        val result = StructuredDataHtml.addInlineCardButtons(document, data)
+
+        assertThat(result).isFalse()
+        assertThat(document.select("a[href^=xpopupcard://]")).hasSize(0)
+    }
+}
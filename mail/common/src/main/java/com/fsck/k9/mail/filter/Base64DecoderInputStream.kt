@@ -0,0 +1,168 @@
+package com.fsck.k9.mail.filter
+
+import java.io.IOException
+import java.io.InputStream
+
+/**
+ * Decodes the Base64 data read from [input].
+ *
+ * The output is the same as that of mime4j's `Base64InputStream` in lenient mode:
+ * - Characters outside the Base64 alphabet are skipped.
+ * - Decoding stops at the first padding character. The remaining input is ignored.
+ * - An incomplete group at the end of the input is dropped.
+ *
+ * But instead of decoding one character at a time, this class decodes whole blocks of input into a reusable buffer.
+ * Runs of four valid characters are decoded as a group without further checks.
+ *
+ * Closing this stream doesn't close the wrapped stream.
+ */
+open class Base64DecoderInputStream(private val input: InputStream) : InputStream() {
+    private val inputBuffer = ByteArray(BUFFER_SIZE)
+    private val outputBuffer = ByteArray(BUFFER_SIZE)
+    private var outputPosition = 0
+    private var outputLimit = 0
+    private var pendingBits = 0
+    private var pendingSextetCount = 0
+    private var endOfData = false
+    private var closed = false
+
+    @Throws(IOException::class)
+    override fun read(): Int {
+        checkNotClosed()
+
+        if (outputPosition == outputLimit && !fillOutputBuffer()) return EOF
+
+        return outputBuffer[outputPosition++].toInt() and 0xFF
+    }
+
+    @Throws(IOException::class)
+    override fun read(buffer: ByteArray, offset: Int, length: Int): Int {
+        checkNotClosed()
+        if (offset < 0 || length < 0 || offset + length > buffer.size) throw IndexOutOfBoundsException()
+        if (length == 0) return 0
+
+        if (outputPosition == outputLimit && !fillOutputBuffer()) return EOF
+
+        val count = minOf(length, outputLimit - outputPosition)
+        outputBuffer.copyInto(
+            destination = buffer,
+            destinationOffset = offset,
+            startIndex = outputPosition,
+            endIndex = outputPosition + count,
+        )
+        outputPosition += count
+
+        return count
+    }
+
+    override fun available(): Int {
+        return outputLimit - outputPosition
+    }
+
+    @Throws(IOException::class)
+    override fun close() {
+        closed = true
+    }
+
+    /**
+     * Reads and decodes input until at least one decoded byte is available or the end of the data has been reached.
+     *
+     * @return `false` if there's no more decoded data.
+     */
+    private fun fillOutputBuffer(): Boolean {
+        outputPosition = 0
+        outputLimit = 0
+
+        while (outputLimit == 0 && !endOfData) {
+            val count = input.read(inputBuffer, 0, BUFFER_SIZE)
+            if (count == EOF) {
+                endOfData = true
+            } else {
+                decodeInputBuffer(count)
+            }
+        }
+
+        return outputLimit > 0
+    }
+
+    /**
+     * Decodes the first [count] bytes of [inputBuffer].
+     *
+     * [outputBuffer] is large enough for the result since 4 input bytes decode to at most 3 output bytes.
+     */
+    private fun decodeInputBuffer(count: Int) {
+        var position = 0
+
+        while (position < count) {
+            if (pendingSextetCount == 0 && count - position >= 4) {
+                val sextet1 = DECODE_TABLE[inputBuffer[position].toInt() and 0xFF]
+                val sextet2 = DECODE_TABLE[inputBuffer[position + 1].toInt() and 0xFF]
+                val sextet3 = DECODE_TABLE[inputBuffer[position + 2].toInt() and 0xFF]
+                val sextet4 = DECODE_TABLE[inputBuffer[position + 3].toInt() and 0xFF]
+
+                // Invalid characters and the padding character map to -1
+                if ((sextet1 or sextet2 or sextet3 or sextet4) >= 0) {
+                    writeGroup((sextet1 shl 18) or (sextet2 shl 12) or (sextet3 shl 6) or sextet4)
+                    position += 4
+                    continue
+                }
+            }
+
+            val value = inputBuffer[position++].toInt() and 0xFF
+            if (value == PAD) {
+                decodePad()
+                return
+            }
+
+            val sextet = DECODE_TABLE[value]
+            if (sextet < 0) continue
+
+            pendingBits = (pendingBits shl 6) or sextet
+            pendingSextetCount++
+            if (pendingSextetCount == 4) {
+                writeGroup(pendingBits)
+                pendingBits = 0
+                pendingSextetCount = 0
+            }
+        }
+    }
+
+    private fun writeGroup(group: Int) {
+        outputBuffer[outputLimit] = (group ushr 16).toByte()
+        outputBuffer[outputLimit + 1] = (group ushr 8).toByte()
+        outputBuffer[outputLimit + 2] = group.toByte()
+        outputLimit += 3
+    }
+
+    private fun decodePad() {
+        when (pendingSextetCount) {
+            2 -> {
+                outputBuffer[outputLimit++] = (pendingBits ushr 4).toByte()
+            }
+            3 -> {
+                outputBuffer[outputLimit++] = (pendingBits ushr 10).toByte()
+                outputBuffer[outputLimit++] = (pendingBits ushr 2).toByte()
+            }
+        }
+
+        pendingBits = 0
+        pendingSextetCount = 0
+        endOfData = true
+    }
+
+    private fun checkNotClosed() {
+        if (closed) throw IOException("Stream has been closed")
+    }
+
+    companion object {
+        private const val BUFFER_SIZE = 8192
+        private const val EOF = -1
+        private const val PAD = '='.code
+
+        private val DECODE_TABLE = IntArray(256) { -1 }.apply {
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".forEachIndexed { index, char ->
+                this[char.code] = index
+            }
+        }
+    }
+}
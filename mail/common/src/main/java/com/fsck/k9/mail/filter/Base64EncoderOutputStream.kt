@@ -0,0 +1,150 @@
+package com.fsck.k9.mail.filter
+
+import java.io.FilterOutputStream
+import java.io.IOException
+import java.io.OutputStream
+
+/**
+ * Base64-encodes all data written to it, using lines of [DEFAULT_LINE_LENGTH] characters terminated by CRLF.
+ *
+ * The output is the same as that of [Base64OutputStream] in encoding mode. But instead of converting one byte at a
+ * time and allocating a new array for every write, this class encodes whole 3-byte groups into a reusable buffer.
+ *
+ * Closing this stream writes the final group and line break. The wrapped stream is flushed but not closed.
+ */
+class Base64EncoderOutputStream(out: OutputStream) : FilterOutputStream(out) {
+    private val buffer = ByteArray(BUFFER_SIZE)
+    private var bufferPosition = 0
+    private var linePosition = 0
+    private var pendingBits = 0
+    private var pendingByteCount = 0
+    private var closed = false
+
+    @Throws(IOException::class)
+    override fun write(oneByte: Int) {
+        checkNotClosed()
+
+        pendingBits = (pendingBits shl 8) or (oneByte and 0xFF)
+        pendingByteCount++
+        if (pendingByteCount == 3) {
+            encodePendingGroup()
+        }
+    }
+
+    @Throws(IOException::class)
+    override fun write(data: ByteArray, offset: Int, length: Int) {
+        checkNotClosed()
+        if (offset < 0 || length < 0 || offset + length > data.size) throw IndexOutOfBoundsException()
+
+        var position = offset
+        val end = offset + length
+
+        while (pendingByteCount != 0 && position < end) {
+            write(data[position++].toInt())
+        }
+
+        while (end - position >= 3) {
+            val group = ((data[position].toInt() and 0xFF) shl 16) or
+                ((data[position + 1].toInt() and 0xFF) shl 8) or
+                (data[position + 2].toInt() and 0xFF)
+            position += 3
+
+            encodeGroup(group)
+        }
+
+        while (position < end) {
+            write(data[position++].toInt())
+        }
+    }
+
+    @Throws(IOException::class)
+    override fun flush() {
+        writeBuffer()
+        out.flush()
+    }
+
+    @Throws(IOException::class)
+    override fun close() {
+        if (closed) return
+
+        ensureBufferSpace()
+        when (pendingByteCount) {
+            1 -> {
+                val bits = pendingBits shl 16
+                buffer[bufferPosition++] = ENCODE_TABLE[(bits ushr 18) and 0x3F]
+                buffer[bufferPosition++] = ENCODE_TABLE[(bits ushr 12) and 0x3F]
+                buffer[bufferPosition++] = PAD
+                buffer[bufferPosition++] = PAD
+            }
+            2 -> {
+                val bits = pendingBits shl 8
+                buffer[bufferPosition++] = ENCODE_TABLE[(bits ushr 18) and 0x3F]
+                buffer[bufferPosition++] = ENCODE_TABLE[(bits ushr 12) and 0x3F]
+                buffer[bufferPosition++] = ENCODE_TABLE[(bits ushr 6) and 0x3F]
+                buffer[bufferPosition++] = PAD
+            }
+        }
+        buffer[bufferPosition++] = CR
+        buffer[bufferPosition++] = LF
+
+        closed = true
+        flush()
+    }
+
+    private fun encodePendingGroup() {
+        val group = pendingBits
+        pendingBits = 0
+        pendingByteCount = 0
+
+        encodeGroup(group)
+    }
+
+    private fun encodeGroup(group: Int) {
+        ensureBufferSpace()
+
+        buffer[bufferPosition] = ENCODE_TABLE[(group ushr 18) and 0x3F]
+        buffer[bufferPosition + 1] = ENCODE_TABLE[(group ushr 12) and 0x3F]
+        buffer[bufferPosition + 2] = ENCODE_TABLE[(group ushr 6) and 0x3F]
+        buffer[bufferPosition + 3] = ENCODE_TABLE[group and 0x3F]
+        bufferPosition += 4
+
+        linePosition += 4
+        if (linePosition >= DEFAULT_LINE_LENGTH) {
+            buffer[bufferPosition++] = CR
+            buffer[bufferPosition++] = LF
+            linePosition = 0
+        }
+    }
+
+    /**
+     * Makes sure there's room for one encoded group followed by a line break.
+     */
+    private fun ensureBufferSpace() {
+        if (BUFFER_SIZE - bufferPosition < MAX_GROUP_OUTPUT_SIZE) {
+            writeBuffer()
+        }
+    }
+
+    private fun writeBuffer() {
+        if (bufferPosition > 0) {
+            out.write(buffer, 0, bufferPosition)
+            bufferPosition = 0
+        }
+    }
+
+    private fun checkNotClosed() {
+        if (closed) throw IOException("Stream has been closed")
+    }
+
+    companion object {
+        const val DEFAULT_LINE_LENGTH = 76
+
+        private const val BUFFER_SIZE = 8192
+        private const val MAX_GROUP_OUTPUT_SIZE = 6
+        private const val PAD = '='.code.toByte()
+        private const val CR = '\r'.code.toByte()
+        private const val LF = '\n'.code.toByte()
+
+        private val ENCODE_TABLE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".encodeToByteArray()
+    }
+}
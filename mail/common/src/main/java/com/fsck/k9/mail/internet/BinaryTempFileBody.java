@@ -1,6 +1,8 @@
 package com.fsck.k9.mail.internet;
 
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -11,8 +13,9 @@ import java.io.OutputStream;
 
 import net.thunderbird.core.logging.legacy.Log;
 import net.thunderbird.core.common.exception.MessagingException;
-import com.fsck.k9.mail.filter.Base64OutputStream;
+import com.fsck.k9.mail.filter.Base64EncoderOutputStream;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.ThresholdingOutputStream;
 import org.apache.james.mime4j.codec.QuotedPrintableOutputStream;
 import org.apache.james.mime4j.util.MimeUtil;
 
@@ -22,11 +25,17 @@ import org.apache.james.mime4j.util.MimeUtil;
  * the user to write to the temp file. After the write the body is available via getInputStream
  * and writeTo one time. After writeTo is called, or the InputStream returned from
  * getInputStream is closed the file is deleted and the Body should be considered disposed of.
+ * <p>
+ * Bodies of up to {@link #MEMORY_BACKED_THRESHOLD} bytes are kept in memory. The temp file is only created when more
+ * data is written or {@link #getFile()} is called.
  */
 public class BinaryTempFileBody implements RawDataBody, SizeAware {
+    public static final int MEMORY_BACKED_THRESHOLD = 16 * 1024;
+
     private static File mTempDirectory;
 
     private File mFile;
+    private byte[] mData = new byte[0];
 
     String mEncoding = null;
 
@@ -54,14 +63,13 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
         }
 
         try {
-            File newFile = File.createTempFile("body", null, mTempDirectory);
-            final OutputStream out = new FileOutputStream(newFile);
+            final OutputStream out = getOutputStream();
             try {
                 OutputStream wrappedOut;
                 if (MimeUtil.ENC_QUOTED_PRINTABLE.equals(encoding)) {
                     wrappedOut = new QuotedPrintableOutputStream(out, false);
                 } else if (MimeUtil.ENC_BASE64.equals(encoding)) {
-                    wrappedOut = new Base64OutputStream(out);
+                    wrappedOut = new Base64EncoderOutputStream(out);
                 } else {
                     throw new RuntimeException("Target encoding not supported: " + encoding);
                 }
@@ -74,10 +82,10 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
                     IOUtils.closeQuietly(wrappedOut);
                 }
             } finally {
-                IOUtils.closeQuietly(out);
+                // Replaces the current data
+                out.close();
             }
 
-            mFile = newFile;
             mEncoding = encoding;
         } catch (IOException e) {
             throw new MessagingException("Unable to convert body", e);
@@ -93,14 +101,16 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
     }
 
     public OutputStream getOutputStream() throws IOException {
-        mFile = File.createTempFile("body", null, mTempDirectory);
-        mFile.deleteOnExit();
-        return new FileOutputStream(mFile);
+        return new MemoryOrFileOutputStream();
     }
 
     public InputStream getInputStream() throws MessagingException {
+        if (mData != null) {
+            return new BinaryTempFileBodyInputStream(new ByteArrayInputStream(mData), null);
+        }
+
         try {
-            return new BinaryTempFileBodyInputStream(new FileInputStream(mFile));
+            return new BinaryTempFileBodyInputStream(new FileInputStream(mFile), mFile);
         } catch (IOException ioe) {
             throw new MessagingException("Unable to open body", ioe);
         }
@@ -117,16 +127,94 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
 
     @Override
     public long getSize() {
-        return mFile.length();
+        return mData != null ? mData.length : mFile.length();
     }
 
-    public File getFile() {
+    /**
+     * Returns the temp file containing the body. A memory-backed body is written to a temp file first.
+     */
+    public File getFile() throws IOException {
+        if (mData != null) {
+            File file = createTempFile();
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(mData);
+            } finally {
+                out.close();
+            }
+
+            mFile = file;
+            mData = null;
+        }
+
         return mFile;
     }
 
+    /**
+     * Returns {@code true} if the body is kept in memory rather than in a temp file.
+     */
+    public boolean isMemoryBacked() {
+        return mData != null;
+    }
+
+    private static File createTempFile() throws IOException {
+        File file = File.createTempFile("body", null, mTempDirectory);
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Buffers data in memory and switches to a temp file once more than {@link #MEMORY_BACKED_THRESHOLD} bytes have
+     * been written. The data becomes the body's content when the stream is closed.
+     */
+    private class MemoryOrFileOutputStream extends ThresholdingOutputStream {
+        private ByteArrayOutputStream memoryOutputStream = new ByteArrayOutputStream();
+        private File file;
+        private OutputStream fileOutputStream;
+        private boolean closed = false;
+
+        MemoryOrFileOutputStream() {
+            super(MEMORY_BACKED_THRESHOLD);
+        }
+
+        @Override
+        protected OutputStream getStream() {
+            return fileOutputStream != null ? fileOutputStream : memoryOutputStream;
+        }
+
+        @Override
+        protected void thresholdReached() throws IOException {
+            file = createTempFile();
+            fileOutputStream = new FileOutputStream(file);
+            memoryOutputStream.writeTo(fileOutputStream);
+            memoryOutputStream = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            super.close();
+
+            if (fileOutputStream != null) {
+                mFile = file;
+                mData = null;
+            } else {
+                mFile = null;
+                mData = memoryOutputStream.toByteArray();
+            }
+        }
+    }
+
     class BinaryTempFileBodyInputStream extends FilterInputStream {
-        public BinaryTempFileBodyInputStream(InputStream in) {
+        private final File file;
+
+        public BinaryTempFileBodyInputStream(InputStream in, File file) {
             super(in);
+            this.file = file;
         }
 
         @Override
@@ -134,10 +222,12 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
             try {
                 super.close();
             } finally {
-                Log.d("Deleting temporary binary file: %s", mFile.getName());
-                boolean fileSuccessfullyDeleted = mFile.delete();
-                if (!fileSuccessfullyDeleted) {
-                    Log.i("Failed to delete temporary binary file: %s", mFile.getName());
+                if (file != null) {
+                    Log.d("Deleting temporary binary file: %s", file.getName());
+                    boolean fileSuccessfullyDeleted = file.delete();
+                    if (!fileSuccessfullyDeleted) {
+                        Log.i("Failed to delete temporary binary file: %s", file.getName());
+                    }
                 }
             }
         }
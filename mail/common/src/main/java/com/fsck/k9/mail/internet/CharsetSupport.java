@@ -6,11 +6,18 @@ import net.thunderbird.core.common.exception.MessagingException;
 
 import org.apache.commons.io.IOUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import static com.fsck.k9.mail.internet.JisSupport.SHIFT_JIS;
 
@@ -28,6 +35,22 @@ public class CharsetSupport {
             {"iso-2022-jp-[\\d]+", "iso-2022-jp"}
     };
 
+    private static final int CHARSET_CACHE_SIZE = 32;
+
+    /**
+     * Charsets resolved by {@link #resolveCharset(String)}, keyed by charset name. Most messages only use a handful of
+     * charsets, so a small cache avoids repeating the lookup and the fall-back rules for every header and body part.
+     */
+    private static final Map<String, Charset> charsetCache =
+            new LinkedHashMap<String, Charset>(CHARSET_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Charset> eldest) {
+                    return size() > CHARSET_CACHE_SIZE;
+                }
+            };
+
+    private static final ThreadLocal<CharsetDecoder> cachedDecoder = new ThreadLocal<>();
+
 
     static String fixupCharset(String charset, Message message) throws MessagingException {
         if (charset == null || "0".equals(charset))
@@ -66,16 +89,86 @@ public class CharsetSupport {
             charset = SHIFT_JIS;
         }
 
+        String str = IOUtils.toString(in, resolveCharset(charset));
+
+        if (isIphoneString)
+            str = importStringFromIphone(str);
+        return str;
+    }
+
+    /**
+     * Decodes {@code data} using the given charset, like {@link #readToString(InputStream, String)}.
+     * <p>
+     * Data that only contains ASCII characters and uses an ASCII-compatible charset is converted without going through
+     * a {@link CharsetDecoder}. Otherwise a decoder is reused if the previous call on this thread used the same
+     * charset.
+     */
+    static String decode(byte[] data, String charset) throws IOException {
+        if (isJisVariant(charset)) {
+            return readToString(new ByteArrayInputStream(data), charset);
+        }
+
+        Charset resolvedCharset = resolveCharset(charset);
+        if (isAsciiCompatible(resolvedCharset) && isAscii(data)) {
+            return new String(data, StandardCharsets.ISO_8859_1);
+        }
+
+        CharsetDecoder decoder = cachedDecoder.get();
+        if (decoder == null || !decoder.charset().equals(resolvedCharset)) {
+            decoder = resolvedCharset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            cachedDecoder.set(decoder);
+        }
+
+        return decoder.decode(ByteBuffer.wrap(data)).toString();
+    }
+
+    private static boolean isJisVariant(String charset) {
+        return (charset.startsWith("x-") && charset.endsWith("-iso-2022-jp-2007")) || JisSupport.isShiftJis(charset);
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.UTF_8) ||
+                charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isAscii(byte[] data) {
+        for (byte b : data) {
+            if (b < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the Java charset for a MIME charset name, applying {@link #CHARSET_FALLBACK_MAP} and falling back to
+     * {@link #DEFAULT_CHARSET} if the charset isn't supported.
+     */
+    static Charset resolveCharset(String charset) {
+        synchronized (charsetCache) {
+            Charset cachedCharset = charsetCache.get(charset);
+            if (cachedCharset != null) {
+                return cachedCharset;
+            }
+        }
+
+        Charset resolvedCharset = lookUpCharset(charset);
+
+        synchronized (charsetCache) {
+            charsetCache.put(charset, resolvedCharset);
+        }
+
+        return resolvedCharset;
+    }
+
+    private static Charset lookUpCharset(String charset) {
         /*
          * See if there is conversion from the MIME charset to the Java one.
          * this function may also throw an exception if the charset name is not known
          */
-        boolean supported;
-        try {
-            supported = Charset.isSupported(charset);
-        } catch (IllegalCharsetNameException e) {
-            supported = false;
-        }
+        boolean supported = isCharsetSupported(charset);
 
         for (String[] rule: CHARSET_FALLBACK_MAP) {
             if (supported) {
@@ -85,11 +178,7 @@ public class CharsetSupport {
             if (charset.matches(rule[0])) {
                 Log.e("I don't know how to deal with the charset %s. Falling back to %s", charset, rule[1]);
                 charset = rule[1];
-                try {
-                    supported = Charset.isSupported(charset);
-                } catch (IllegalCharsetNameException e) {
-                    supported = false;
-                }
+                supported = isCharsetSupported(charset);
             }
         }
 
@@ -97,14 +186,15 @@ public class CharsetSupport {
             charset = DEFAULT_CHARSET;
         }
 
-        /*
-         * Convert and return as new String
-         */
-        String str = IOUtils.toString(in, charset);
+        return Charset.forName(charset);
+    }
 
-        if (isIphoneString)
-            str = importStringFromIphone(str);
-        return str;
+    private static boolean isCharsetSupported(String charset) {
+        try {
+            return Charset.isSupported(charset);
+        } catch (IllegalCharsetNameException e) {
+            return false;
+        }
     }
 
     private static String importStringFromIphone(String str) {
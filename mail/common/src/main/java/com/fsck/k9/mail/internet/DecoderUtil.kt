@@ -106,8 +106,7 @@ internal object DecoderUtil {
 
     private fun charsetDecode(word: EncodedWord): String? {
         return try {
-            val inputStream = Buffer().write(word.data).inputStream()
-            CharsetSupport.readToString(inputStream, word.charset)
+            CharsetSupport.decode(word.data.toByteArray(), word.charset)
         } catch (e: IOException) {
             null
         }
@@ -7,9 +7,17 @@ import java.io.IOException
 import java.io.OutputStream
 import java.util.ArrayList
 import java.util.LinkedHashSet
-
+import java.util.Locale
+
+/**
+ * The header fields of a message or body part.
+ *
+ * Fields are kept in their original order for [writeTo]. In addition, they are indexed by their lower case name so
+ * looking up, replacing, or removing a header doesn't require a scan of all fields.
+ */
 class MimeHeader {
     private val fields: MutableList<Field> = ArrayList()
+    private val fieldsByName: MutableMap<String, MutableList<Field>> = HashMap()
 
     val headerNames: Set<String>
         get() = fields.mapTo(LinkedHashSet()) { it.name }
@@ -21,6 +29,7 @@ class MimeHeader {
 
     fun clear() {
         fields.clear()
+        fieldsByName.clear()
     }
 
     fun getFirstHeader(name: String): String? {
@@ -30,13 +39,13 @@ class MimeHeader {
     fun addHeader(name: String, value: String) {
         requireValidHeader(name, value)
         val field = NameValueField(name, value)
-        fields.add(field)
+        add(field)
     }
 
     fun addRawHeader(name: String, raw: String) {
         requireValidRawHeader(name, raw)
         val field = RawField(name, raw)
-        fields.add(field)
+        add(field)
     }
 
     fun setHeader(name: String, value: String) {
@@ -45,17 +54,27 @@ class MimeHeader {
     }
 
     fun getHeader(name: String): Array<String> {
-        return fields.asSequence()
-            .filter { field -> field.name.equals(name, ignoreCase = true) }
-            .map { field -> field.value }
-            .toList()
-            .toTypedArray()
+        val namedFields = fieldsByName[name.toIndexKey()] ?: return emptyArray()
+        return Array(namedFields.size) { index -> namedFields[index].value }
     }
 
     fun removeHeader(name: String) {
-        fields.removeAll { field -> field.name.equals(name, ignoreCase = true) }
+        val removedFields = fieldsByName.remove(name.toIndexKey()) ?: return
+        if (removedFields.size == 1) {
+            fields.remove(removedFields.first())
+        } else {
+            val removedFieldSet = removedFields.toSet()
+            fields.removeAll { field -> field in removedFieldSet }
+        }
     }
 
+    private fun add(field: Field) {
+        fields.add(field)
+        fieldsByName.getOrPut(field.name.toIndexKey()) { ArrayList(1) }.add(field)
+    }
+
+    private fun String.toIndexKey(): String = lowercase(Locale.ROOT)
+
     override fun toString(): String {
         return buildString {
             appendFields()
@@ -128,15 +147,14 @@ class MimeHeader {
         }
 
         class RawField(name: String, val raw: String) : Field(name) {
-            override val value: String
-                get() {
-                    val delimiterIndex = raw.indexOf(':')
-                    return if (delimiterIndex == raw.lastIndex) {
-                        ""
-                    } else {
-                        raw.substring(delimiterIndex + 1).trim()
-                    }
+            override val value: String by lazy(LazyThreadSafetyMode.NONE) {
+                val delimiterIndex = raw.indexOf(':')
+                if (delimiterIndex == raw.lastIndex) {
+                    ""
+                } else {
+                    raw.substring(delimiterIndex + 1).trim()
                 }
+            }
 
             override fun toString(): String {
                 return raw
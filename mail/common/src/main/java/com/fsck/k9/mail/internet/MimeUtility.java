@@ -16,7 +16,7 @@ import com.fsck.k9.mail.Message;
 import net.thunderbird.core.common.exception.MessagingException;
 import com.fsck.k9.mail.Multipart;
 import com.fsck.k9.mail.Part;
-import org.apache.james.mime4j.codec.Base64InputStream;
+import com.fsck.k9.mail.filter.Base64DecoderInputStream;
 import org.apache.james.mime4j.codec.QuotedPrintableInputStream;
 import org.apache.james.mime4j.util.MimeUtil;
 
@@ -139,7 +139,7 @@ public class MimeUtility {
                     || MimeUtil.ENC_BINARY.equalsIgnoreCase(encoding)) {
                 inputStream = rawInputStream;
             } else if (MimeUtil.ENC_BASE64.equalsIgnoreCase(encoding)) {
-                inputStream = new Base64InputStream(rawInputStream, false) {
+                inputStream = new Base64DecoderInputStream(rawInputStream) {
                     @Override
                     public void close() throws IOException {
                         super.close();
@@ -0,0 +1,131 @@
+package com.fsck.k9.mail.filter
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isInstanceOf
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.io.InputStream
+import kotlin.random.Random
+import kotlin.test.Test
+import org.apache.james.mime4j.codec.Base64InputStream
+
+private const val RANDOM_INPUT_COUNT = 500
+private const val MAX_RANDOM_INPUT_SIZE = 1000
+private const val MALFORMED_INPUT_CHARACTERS =
+    "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/=\r\n \t-_*\u0000ÿ"
+
+class Base64DecoderInputStreamTest {
+    @Test
+    fun `decode short input`() {
+        assertThat(decode("")).isEqualTo("")
+        assertThat(decode("YQ==\r\n")).isEqualTo("a")
+        assertThat(decode("YWI=\r\n")).isEqualTo("ab")
+        assertThat(decode("YWJj\r\n")).isEqualTo("abc")
+    }
+
+    @Test
+    fun `characters outside the Base64 alphabet should be skipped`() {
+        assertThat(decode("Y W\r\nJ*j")).isEqualTo("abc")
+    }
+
+    @Test
+    fun `input after padding should be ignored`() {
+        assertThat(decode("YQ==YWJj")).isEqualTo("a")
+    }
+
+    @Test
+    fun `incomplete group at end of input should be dropped`() {
+        assertThat(decode("YWJjY")).isEqualTo("abc")
+    }
+
+    @Test
+    fun `output should match mime4j for encoded random input and read sizes`() {
+        val random = Random(1)
+
+        repeat(RANDOM_INPUT_COUNT) {
+            val data = random.nextBytes(random.nextInt(MAX_RANDOM_INPUT_SIZE))
+            val input = ByteArrayOutputStream().also { output ->
+                Base64EncoderOutputStream(output).use { it.write(data) }
+            }.toByteArray()
+
+            assertDecodedLikeMime4j(input, random)
+        }
+    }
+
+    @Test
+    fun `output should match mime4j for malformed input`() {
+        val random = Random(1)
+
+        repeat(RANDOM_INPUT_COUNT) {
+            val input = ByteArray(random.nextInt(MAX_RANDOM_INPUT_SIZE)) {
+                MALFORMED_INPUT_CHARACTERS[random.nextInt(MALFORMED_INPUT_CHARACTERS.length)].code.toByte()
+            }
+
+            assertDecodedLikeMime4j(input, random)
+        }
+    }
+
+    @Test
+    fun `read after close should throw`() {
+        val inputStream = Base64DecoderInputStream(ByteArrayInputStream("YWJj".toByteArray()))
+        inputStream.close()
+
+        assertFailure {
+            inputStream.read()
+        }.isInstanceOf<IOException>()
+    }
+
+    private fun assertDecodedLikeMime4j(input: ByteArray, random: Random) {
+        val expected = Base64InputStream(ByteArrayInputStream(input), false).use { it.readBytes() }
+        val actual = Base64DecoderInputStream(ChunkedInputStream(input, random)).use { it.readInRandomChunks(random) }
+
+        assertThat(actual.toList()).isEqualTo(expected.toList())
+    }
+
+    private fun decode(input: String): String {
+        return Base64DecoderInputStream(ByteArrayInputStream(input.toByteArray())).use { it.readBytes() }
+            .decodeToString()
+    }
+
+    private fun InputStream.readInRandomChunks(random: Random): ByteArray {
+        val output = ByteArrayOutputStream()
+        val buffer = ByteArray(100)
+        while (true) {
+            if (random.nextInt(10) == 0) {
+                val value = read()
+                if (value == -1) break
+                output.write(value)
+            } else {
+                val count = read(buffer, 0, random.nextInt(1, buffer.size))
+                if (count == -1) break
+                output.write(buffer, 0, count)
+            }
+        }
+
+        return output.toByteArray()
+    }
+
+    /**
+     * Returns the data in chunks of random size, so groups are split across reads from the wrapped stream.
+     */
+    private class ChunkedInputStream(private val data: ByteArray, private val random: Random) : InputStream() {
+        private var position = 0
+
+        override fun read(): Int {
+            return if (position < data.size) data[position++].toInt() and 0xFF else -1
+        }
+
+        override fun read(buffer: ByteArray, offset: Int, length: Int): Int {
+            if (position == data.size) return -1
+
+            val count = random.nextInt(1, 10).coerceAtMost(length).coerceAtMost(data.size - position)
+            data.copyInto(buffer, destinationOffset = offset, startIndex = position, endIndex = position + count)
+            position += count
+
+            return count
+        }
+    }
+}
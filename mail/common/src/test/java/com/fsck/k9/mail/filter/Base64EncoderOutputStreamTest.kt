@@ -0,0 +1,83 @@
+package com.fsck.k9.mail.filter
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isInstanceOf
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import kotlin.random.Random
+import kotlin.test.Test
+
+private const val RANDOM_INPUT_COUNT = 500
+private const val MAX_RANDOM_INPUT_SIZE = 1000
+
+class Base64EncoderOutputStreamTest {
+    @Test
+    fun `encode short input`() {
+        assertThat(encode("".toByteArray())).isEqualTo("\r\n")
+        assertThat(encode("a".toByteArray())).isEqualTo("YQ==\r\n")
+        assertThat(encode("ab".toByteArray())).isEqualTo("YWI=\r\n")
+        assertThat(encode("abc".toByteArray())).isEqualTo("YWJj\r\n")
+    }
+
+    @Test
+    fun `encoded output should be split into lines of 76 characters`() {
+        val input = ByteArray(60) { it.toByte() }
+
+        val output = encode(input)
+
+        assertThat(output).isEqualTo(
+            "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8gISIjJCUmJygpKissLS4vMDEyMzQ1Njc4\r\n" +
+                "OTo7\r\n",
+        )
+    }
+
+    @Test
+    fun `output should match Base64OutputStream for random input and write sizes`() {
+        val random = Random(1)
+
+        repeat(RANDOM_INPUT_COUNT) {
+            val input = random.nextBytes(random.nextInt(MAX_RANDOM_INPUT_SIZE))
+
+            val expected = ByteArrayOutputStream().also { output ->
+                Base64OutputStream(output).use { it.writeInRandomChunks(input, random) }
+            }
+            val actual = ByteArrayOutputStream().also { output ->
+                Base64EncoderOutputStream(output).use { it.writeInRandomChunks(input, random) }
+            }
+
+            assertThat(actual.toByteArray().decodeToString()).isEqualTo(expected.toByteArray().decodeToString())
+        }
+    }
+
+    @Test
+    fun `write after close should throw`() {
+        val outputStream = Base64EncoderOutputStream(ByteArrayOutputStream())
+        outputStream.close()
+
+        assertFailure {
+            outputStream.write(1)
+        }.isInstanceOf<IOException>()
+    }
+
+    private fun encode(input: ByteArray): String {
+        val output = ByteArrayOutputStream()
+        Base64EncoderOutputStream(output).use { it.write(input) }
+        return output.toByteArray().decodeToString()
+    }
+
+    private fun OutputStream.writeInRandomChunks(input: ByteArray, random: Random) {
+        var position = 0
+        while (position < input.size) {
+            val length = random.nextInt(1, 100).coerceAtMost(input.size - position)
+            if (length == 1 && random.nextBoolean()) {
+                write(input[position].toInt())
+            } else {
+                write(input, position, length)
+            }
+            position += length
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.fsck.k9.mail.internet
+
+import assertk.assertThat
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isNotNull
+import assertk.assertions.isTrue
+import java.io.File
+import java.nio.file.Files
+import org.apache.james.mime4j.util.MimeUtil
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+private const val SMALL_BODY = "Hello world"
+
+class BinaryTempFileBodyTest {
+    private lateinit var tempDirectory: File
+
+    @Before
+    fun setUp() {
+        tempDirectory = Files.createTempDirectory("BinaryTempFileBodyTest").toFile()
+        BinaryTempFileBody.setTempDirectory(tempDirectory)
+    }
+
+    @After
+    fun tearDown() {
+        tempDirectory.deleteRecursively()
+    }
+
+    @Test
+    fun `small body should be kept in memory`() {
+        val body = createBody(SMALL_BODY.toByteArray())
+
+        assertThat(body.isMemoryBacked).isTrue()
+        assertThat(body.size).isEqualTo(SMALL_BODY.length.toLong())
+        assertThat(body.readBytes().decodeToString()).isEqualTo(SMALL_BODY)
+        assertThat(tempDirectory.listFiles()!!.toList()).isEmpty()
+    }
+
+    @Test
+    fun `large body should be written to a temp file`() {
+        val data = ByteArray(BinaryTempFileBody.MEMORY_BACKED_THRESHOLD + 1) { (it % 128).toByte() }
+
+        val body = createBody(data)
+
+        assertThat(body.isMemoryBacked).isFalse()
+        assertThat(body.size).isEqualTo(data.size.toLong())
+        assertThat(tempDirectory.listFiles()!!.size).isEqualTo(1)
+        assertThat(body.readBytes().contentEquals(data)).isTrue()
+        assertThat(tempDirectory.listFiles()!!.toList()).isEmpty()
+    }
+
+    @Test
+    fun `getFile() should write memory-backed body to a temp file`() {
+        val body = createBody(SMALL_BODY.toByteArray())
+
+        val file = body.file
+
+        assertThat(body.isMemoryBacked).isFalse()
+        assertThat(file).isNotNull()
+        assertThat(file.readText()).isEqualTo(SMALL_BODY)
+    }
+
+    @Test
+    fun `body without data should be empty`() {
+        val body = BinaryTempFileBody(MimeUtil.ENC_8BIT)
+
+        assertThat(body.size).isEqualTo(0L)
+        assertThat(body.readBytes().size).isEqualTo(0)
+    }
+
+    @Test
+    fun `setEncoding() should convert memory-backed body`() {
+        val body = createBody(SMALL_BODY.toByteArray())
+
+        body.setEncoding(MimeUtil.ENC_BASE64)
+
+        assertThat(body.encoding).isEqualTo(MimeUtil.ENC_BASE64)
+        assertThat(body.readBytes().decodeToString().trim()).isEqualTo("SGVsbG8gd29ybGQ=")
+    }
+
+    private fun createBody(data: ByteArray): BinaryTempFileBody {
+        return BinaryTempFileBody(MimeUtil.ENC_8BIT).apply {
+            outputStream.use { it.write(data) }
+        }
+    }
+
+    private fun BinaryTempFileBody.readBytes(): ByteArray {
+        return inputStream.use { it.readBytes() }
+    }
+}
@@ -4,6 +4,7 @@ package com.fsck.k9.mail.internet;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.Test;
 
@@ -119,4 +120,43 @@ public class CharsetSupportTest {
 
         assertEquals("input", result);
     }
+
+    @Test
+    public void decode_withAsciiData_shouldReturnString() throws IOException {
+        String result = CharsetSupport.decode("input".getBytes(StandardCharsets.US_ASCII), "utf-8");
+
+        assertEquals("input", result);
+    }
+
+    @Test
+    public void decode_withUtf8Data_shouldDecodeData() throws IOException {
+        String result = CharsetSupport.decode("Grüße".getBytes(StandardCharsets.UTF_8), "utf-8");
+
+        assertEquals("Grüße", result);
+    }
+
+    @Test
+    public void decode_withDifferentCharsets_shouldUseMatchingDecoder() throws IOException {
+        byte[] data = "Grüße".getBytes(StandardCharsets.ISO_8859_1);
+
+        String latin1Result = CharsetSupport.decode(data, "iso-8859-1");
+        String utf8Result = CharsetSupport.decode(data, "utf-8");
+
+        assertEquals("Grüße", latin1Result);
+        assertEquals("Gr\uFFFD\uFFFDe", utf8Result);
+    }
+
+    @Test
+    public void decode_withUnsupportedCharset_shouldFallBackToAscii() throws IOException {
+        String result = CharsetSupport.decode("input".getBytes(StandardCharsets.US_ASCII), "unsupported");
+
+        assertEquals("input", result);
+    }
+
+    @Test
+    public void resolveCharset_withSameName_shouldReturnSameCharset() {
+        assertEquals(StandardCharsets.UTF_8, CharsetSupport.resolveCharset("utf-8"));
+        assertEquals(StandardCharsets.UTF_8, CharsetSupport.resolveCharset("utf-8"));
+        assertEquals(StandardCharsets.US_ASCII, CharsetSupport.resolveCharset("invalid\n"));
+    }
 }
@@ -0,0 +1,45 @@
+package com.fsck.k9.mail.internet
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import java.nio.charset.Charset
+import kotlin.test.Test
+import okio.ByteString.Companion.toByteString
+
+private val SUBJECTS = listOf(
+    "Meeting tomorrow" to "utf-8",
+    "Grüße aus München" to "utf-8",
+    "Réunion de l'équipe" to "iso-8859-1",
+    "Invoice €42 – overdue" to "windows-1252",
+    "Привет" to "koi8-r",
+    "Plain subject" to "us-ascii",
+)
+
+/**
+ * Decodes subjects in a mix of charsets, like when mapping the message list, and compares the charset conversion of
+ * [CharsetSupport.decode] with [CharsetSupport.readToString].
+ */
+class HeaderDecodingTest {
+    @Test
+    fun `decode() should return the same result as readToString()`() {
+        for ((subject, charset) in SUBJECTS) {
+            val data = subject.toByteArray(Charset.forName(charset))
+
+            val decoded = CharsetSupport.decode(data, charset)
+
+            assertThat(decoded).isEqualTo(CharsetSupport.readToString(data.inputStream(), charset))
+        }
+    }
+
+    @Test
+    fun `unfoldAndDecode() should return original subjects`() {
+        val encodedSubjects = SUBJECTS.map { (subject, charset) ->
+            val encodedText = subject.toByteArray(Charset.forName(charset)).toByteString().base64()
+            "=?$charset?B?$encodedText?="
+        }
+
+        val decodedSubjects = encodedSubjects.map { MimeUtility.unfoldAndDecode(it, null) }
+
+        assertThat(decodedSubjects).isEqualTo(SUBJECTS.map { (subject, _) -> subject })
+    }
+}
@@ -0,0 +1,94 @@
+package com.fsck.k9.mail.internet
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNull
+import com.fsck.k9.mail.Header
+import com.fsck.k9.mail.testing.crlf
+import java.io.ByteArrayOutputStream
+import org.junit.Test
+
+class MimeHeaderTest {
+    private val header = MimeHeader()
+
+    @Test
+    fun `getHeader() should ignore case of header name`() {
+        header.addHeader("Received", "one")
+        header.addRawHeader("received", "received: two")
+        header.addHeader("Subject", "subject")
+        header.addHeader("RECEIVED", "three")
+
+        assertThat(header.getHeader("Received")).containsExactly("one", "two", "three")
+        assertThat(header.getHeader("rEcEiVeD")).containsExactly("one", "two", "three")
+        assertThat(header.getFirstHeader("SUBJECT")).isEqualTo("subject")
+    }
+
+    @Test
+    fun `getHeader() with unknown header name should return empty array`() {
+        header.addHeader("Subject", "subject")
+
+        assertThat(header.getHeader("From")).isEmpty()
+        assertThat(header.getFirstHeader("From")).isNull()
+    }
+
+    @Test
+    fun `removeHeader() should remove all fields with that name and keep the order of remaining fields`() {
+        header.addHeader("To", "to")
+        header.addHeader("Received", "one")
+        header.addHeader("Subject", "subject")
+        header.addHeader("received", "two")
+        header.addHeader("From", "from")
+
+        header.removeHeader("RECEIVED")
+
+        assertThat(header.getHeader("Received")).isEmpty()
+        assertThat(header.headers).containsExactly(
+            Header("To", "to"),
+            Header("Subject", "subject"),
+            Header("From", "from"),
+        )
+    }
+
+    @Test
+    fun `setHeader() should replace existing fields`() {
+        header.addHeader("Subject", "one")
+        header.addHeader("From", "from")
+        header.addHeader("subject", "two")
+
+        header.setHeader("SUBJECT", "three")
+
+        assertThat(header.getHeader("Subject")).containsExactly("three")
+        assertThat(header.headerNames).containsExactly("From", "SUBJECT")
+    }
+
+    @Test
+    fun `clear() should remove all fields`() {
+        header.addHeader("Subject", "subject")
+
+        header.clear()
+
+        assertThat(header.getHeader("Subject")).isEmpty()
+        assertThat(header.headers).isEmpty()
+    }
+
+    @Test
+    fun `writeTo() should write raw fields unchanged`() {
+        header.addRawHeader("Subject", "Subject:  =?UTF-8?Q?folded?=\r\n\t=?UTF-8?Q?_subject?=")
+        header.addHeader("From", "alice@domain.example")
+
+        val output = ByteArrayOutputStream()
+        header.writeTo(output)
+
+        assertThat(output.toByteArray().decodeToString()).isEqualTo(
+            """
+            Subject:  =?UTF-8?Q?folded?=
+            ${"\t"}=?UTF-8?Q?_subject?=
+            From: alice@domain.example
+
+            """.trimIndent().crlf(),
+        )
+        assertThat(header.getFirstHeader("subject")).isEqualTo("=?UTF-8?Q?folded?=\r\n\t=?UTF-8?Q?_subject?=")
+    }
+}
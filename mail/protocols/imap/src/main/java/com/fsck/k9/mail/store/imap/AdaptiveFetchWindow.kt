@@ -0,0 +1,62 @@
+package com.fsck.k9.mail.store.imap
+
+import kotlin.math.roundToInt
+import kotlin.time.Duration
+
+/**
+ * Weight of the most recent window when updating the throughput estimates.
+ */
+private const val SMOOTHING_FACTOR = 0.5
+
+/**
+ * Decides how many messages to request with the next `UID FETCH` command.
+ *
+ * After each window the observed throughput is used to pick a window size that should take about
+ * [FetchWindowConfig.targetRoundTripMillis] to complete. When byte counts are available, the estimate is based on bytes
+ * per second and the average message size. Otherwise the round-trip time per message is used. To avoid oscillating,
+ * the window size changes by at most a factor of two between windows.
+ */
+internal class AdaptiveFetchWindow(
+    private val config: FetchWindowConfig,
+    isBodyFetch: Boolean,
+) {
+    private val maxWindowSize = if (isBodyFetch) config.maxBodyWindowSize else config.maxMetadataWindowSize
+
+    private var bytesPerSecond = 0.0
+    private var bytesPerMessage = 0.0
+    private var millisPerMessage = 0.0
+
+    var windowSize: Int = config.initialWindowSize.coerceAtMost(maxWindowSize)
+        private set
+
+    /**
+     * Updates the window size after [messageCount] messages were fetched in [duration].
+     *
+     * @param byteCount The number of bytes fetched for these messages, or `0` if unknown.
+     */
+    fun onWindowCompleted(messageCount: Int, byteCount: Long, duration: Duration) {
+        if (messageCount <= 0) return
+
+        val durationMillis = duration.inWholeMilliseconds.coerceAtLeast(1).toDouble()
+        val targetMillis = config.targetRoundTripMillis.toDouble()
+
+        val estimatedWindowSize = if (byteCount > 0) {
+            bytesPerSecond = smooth(bytesPerSecond, byteCount * 1000.0 / durationMillis)
+            bytesPerMessage = smooth(bytesPerMessage, byteCount.toDouble() / messageCount)
+
+            bytesPerSecond * targetMillis / 1000.0 / bytesPerMessage
+        } else {
+            millisPerMessage = smooth(millisPerMessage, durationMillis / messageCount)
+
+            targetMillis / millisPerMessage
+        }
+
+        windowSize = estimatedWindowSize.coerceAtMost(Int.MAX_VALUE.toDouble()).roundToInt()
+            .coerceIn(windowSize / 2, windowSize * 2)
+            .coerceIn(config.minWindowSize, maxWindowSize)
+    }
+
+    private fun smooth(previous: Double, current: Double): Double {
+        return if (previous == 0.0) current else previous + SMOOTHING_FACTOR * (current - previous)
+    }
+}
@@ -3,6 +3,7 @@ package com.fsck.k9.mail.store.imap
 internal object Capabilities {
     const val IDLE: String = "IDLE"
     const val CONDSTORE: String = "CONDSTORE"
+    const val QRESYNC: String = "QRESYNC"
     const val SASL_IR: String = "SASL-IR"
     const val AUTH_XOAUTH2: String = "AUTH=XOAUTH2"
     const val AUTH_OAUTHBEARER: String = "AUTH=OAUTHBEARER"
@@ -0,0 +1,131 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.Flag
+import com.fsck.k9.mail.filter.FixedLengthInputStream
+import com.fsck.k9.mail.store.imap.FetchResponseTokenizer.TokenType
+import java.io.ByteArrayInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.util.EnumSet
+
+private const val NO_HEADER = -1
+
+/**
+ * Extracts UID, FLAGS, INTERNALDATE, RFC822.SIZE, and a `BODY[...]` section from untagged FETCH responses while they
+ * are being read, i.e. without building an [ImapList] tree.
+ *
+ * Only the values of the most recent FETCH response are available. They are overwritten by the next one.
+ */
+internal class FetchMetadataCallback : StreamingFetchCallback {
+    private var headerBuffer = ByteArray(0)
+    private var headerLength = NO_HEADER
+
+    var uid: String? = null
+        private set
+
+    val flags: MutableSet<Flag> = EnumSet.noneOf(Flag::class.java)
+
+    var internalDate: String? = null
+        private set
+
+    var size: Int? = null
+        private set
+
+    override fun foundLiteral(response: ImapResponse, literal: FixedLengthInputStream): Any? {
+        // FETCH responses are handled by onFetchResponse()
+        return null
+    }
+
+    @Throws(IOException::class)
+    override fun onFetchResponse(response: ImapResponse, tokenizer: FetchResponseTokenizer) {
+        reset()
+
+        if (tokenizer.next() != TokenType.LIST_START) {
+            throw ImapResponseParserException("Expected list of FETCH data items")
+        }
+
+        while (tokenizer.next() != TokenType.LIST_END) {
+            if (tokenizer.tokenType != TokenType.ATOM) {
+                throw ImapResponseParserException("Expected name of FETCH data item")
+            }
+
+            when {
+                tokenizer.tokenEqualsIgnoreCase("UID") -> {
+                    tokenizer.next()
+                    uid = tokenizer.tokenAsString()
+                }
+
+                tokenizer.tokenEqualsIgnoreCase("FLAGS") -> readFlags(tokenizer)
+
+                tokenizer.tokenEqualsIgnoreCase("INTERNALDATE") -> {
+                    tokenizer.next()
+                    internalDate = if (tokenizer.isNil()) null else tokenizer.tokenAsString()
+                }
+
+                tokenizer.tokenEqualsIgnoreCase("RFC822.SIZE") -> {
+                    tokenizer.next()
+                    size = tokenizer.tokenAsLong().toInt()
+                }
+
+                tokenizer.tokenStartsWithIgnoreCase("BODY[") -> readBodySection(tokenizer)
+
+                else -> {
+                    tokenizer.next()
+                    tokenizer.skipValue()
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the content of the `BODY[...]` section of the last FETCH response, or `null` if there was none.
+     */
+    fun getHeaderInputStream(): InputStream? {
+        return if (headerLength == NO_HEADER) null else ByteArrayInputStream(headerBuffer, 0, headerLength)
+    }
+
+    private fun reset() {
+        uid = null
+        flags.clear()
+        internalDate = null
+        size = null
+        headerLength = NO_HEADER
+    }
+
+    private fun readFlags(tokenizer: FetchResponseTokenizer) {
+        if (tokenizer.next() != TokenType.LIST_START) {
+            tokenizer.skipValue()
+            return
+        }
+
+        while (tokenizer.next() != TokenType.LIST_END) {
+            if (tokenizer.tokenType == TokenType.END_OF_LINE) {
+                throw ImapResponseParserException("Unexpected end of line in FLAGS list")
+            }
+
+            when {
+                tokenizer.tokenEqualsIgnoreCase("\\Deleted") -> flags.add(Flag.DELETED)
+                tokenizer.tokenEqualsIgnoreCase("\\Answered") -> flags.add(Flag.ANSWERED)
+                tokenizer.tokenEqualsIgnoreCase("\\Seen") -> flags.add(Flag.SEEN)
+                tokenizer.tokenEqualsIgnoreCase("\\Flagged") -> flags.add(Flag.FLAGGED)
+                tokenizer.tokenEqualsIgnoreCase("\$Forwarded") -> flags.add(Flag.FORWARDED)
+                tokenizer.tokenEqualsIgnoreCase("\\Draft") -> flags.add(Flag.DRAFT)
+            }
+        }
+    }
+
+    private fun readBodySection(tokenizer: FetchResponseTokenizer) {
+        when (tokenizer.next()) {
+            TokenType.LITERAL, TokenType.QUOTED -> {
+                val length = tokenizer.tokenLength
+                if (headerBuffer.size < length) {
+                    headerBuffer = ByteArray(length)
+                }
+                tokenizer.tokenBytes.copyInto(headerBuffer, endIndex = length)
+                headerLength = length
+            }
+
+            else -> tokenizer.skipValue()
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.filter.PeekableInputStream
+import java.io.ByteArrayInputStream
+import java.io.IOException
+import java.io.InputStream
+
+private const val INITIAL_BUFFER_SIZE = 256
+
+/**
+ * Pull-style tokenizer for the data items of an untagged FETCH response.
+ *
+ * In contrast to [ImapResponseParser] this doesn't create an object tree. The content of the current token is kept in
+ * a reusable byte buffer that is only valid until [next] is called again.
+ *
+ * Section specifications are made part of the atom they belong to, i.e. `BODY[HEADER.FIELDS (DATE SUBJECT)]<0>` is
+ * returned as a single [TokenType.ATOM] token.
+ */
+internal class FetchResponseTokenizer(private val inputStream: PeekableInputStream) {
+    private var buffer = ByteArray(INITIAL_BUFFER_SIZE)
+
+    var tokenType: TokenType = TokenType.END_OF_LINE
+        private set
+
+    /**
+     * Number of valid bytes in [tokenBytes].
+     */
+    var tokenLength: Int = 0
+        private set
+
+    /**
+     * The content of the current [TokenType.ATOM], [TokenType.QUOTED], or [TokenType.LITERAL] token.
+     */
+    val tokenBytes: ByteArray
+        get() = buffer
+
+    @Throws(IOException::class)
+    fun next(): TokenType {
+        tokenLength = 0
+
+        while (true) {
+            when (val ch = inputStream.peek()) {
+                -1 -> throw IOException("FetchResponseTokenizer: end of stream reached")
+                ' '.code, '\t'.code -> inputStream.read()
+                '('.code -> return token(TokenType.LIST_START)
+                ')'.code -> return token(TokenType.LIST_END)
+                '"'.code -> return readQuoted()
+                '{'.code -> return readLiteral()
+                '\r'.code -> {
+                    inputStream.read()
+                    expect('\n')
+                    return setTokenType(TokenType.END_OF_LINE)
+                }
+                '\n'.code -> return token(TokenType.END_OF_LINE)
+                else -> {
+                    if (isAtomChar(ch)) {
+                        return readAtom()
+                    }
+
+                    throw ImapResponseParserException("Unexpected character in FETCH response: $ch")
+                }
+            }
+        }
+    }
+
+    /**
+     * Skips the value whose first token was just returned by [next]. Lists are skipped including all nested lists.
+     */
+    @Throws(IOException::class)
+    fun skipValue() {
+        if (tokenType != TokenType.LIST_START) return
+
+        var depth = 1
+        while (depth > 0) {
+            when (next()) {
+                TokenType.LIST_START -> depth++
+                TokenType.LIST_END -> depth--
+                TokenType.END_OF_LINE -> throw ImapResponseParserException("Unexpected end of line in list")
+                else -> Unit
+            }
+        }
+    }
+
+    fun tokenEqualsIgnoreCase(value: String): Boolean {
+        if (tokenLength != value.length) return false
+
+        return tokenRegionMatches(value)
+    }
+
+    fun tokenStartsWithIgnoreCase(prefix: String): Boolean {
+        if (tokenLength < prefix.length) return false
+
+        return tokenRegionMatches(prefix)
+    }
+
+    fun isNil(): Boolean = tokenType == TokenType.ATOM && tokenEqualsIgnoreCase("NIL")
+
+    fun tokenAsLong(): Long {
+        if (tokenType != TokenType.ATOM || tokenLength == 0) {
+            throw ImapResponseParserException("Expected number in FETCH response")
+        }
+
+        var result = 0L
+        for (i in 0 until tokenLength) {
+            val digit = buffer[i] - '0'.code.toByte()
+            if (digit !in 0..9) {
+                throw ImapResponseParserException("Expected number in FETCH response")
+            }
+            result = result * 10 + digit
+        }
+
+        return result
+    }
+
+    fun tokenAsString(): String = String(buffer, 0, tokenLength, Charsets.UTF_8)
+
+    fun tokenAsInputStream(): InputStream = ByteArrayInputStream(buffer, 0, tokenLength)
+
+    private fun tokenRegionMatches(value: String): Boolean {
+        for (i in value.indices) {
+            if (buffer[i].toInt().toChar().uppercaseChar() != value[i].uppercaseChar()) return false
+        }
+
+        return true
+    }
+
+    private fun token(type: TokenType): TokenType {
+        inputStream.read()
+        return setTokenType(type)
+    }
+
+    private fun setTokenType(type: TokenType): TokenType {
+        tokenType = type
+        return type
+    }
+
+    private fun readAtom(): TokenType {
+        var inSection = false
+        while (true) {
+            val ch = inputStream.peek()
+            if (ch == -1) throw IOException("FetchResponseTokenizer: end of stream reached")
+
+            if (inSection) {
+                if (ch == '\r'.code || ch == '\n'.code) {
+                    throw ImapResponseParserException("Unexpected end of line in section specification")
+                } else if (ch == ']'.code) {
+                    inSection = false
+                }
+            } else if (ch == '['.code) {
+                inSection = true
+            } else if (!isAtomChar(ch)) {
+                return setTokenType(TokenType.ATOM)
+            }
+
+            append(inputStream.read())
+        }
+    }
+
+    private fun readQuoted(): TokenType {
+        expect('"')
+
+        var escape = false
+        while (true) {
+            val ch = inputStream.read()
+            when {
+                ch == -1 -> throw IOException("FetchResponseTokenizer: end of stream reached")
+                !escape && ch == '\\'.code -> escape = true
+                !escape && ch == '"'.code -> return setTokenType(TokenType.QUOTED)
+                else -> {
+                    append(ch)
+                    escape = false
+                }
+            }
+        }
+    }
+
+    private fun readLiteral(): TokenType {
+        expect('{')
+
+        var size = 0
+        while (true) {
+            val ch = inputStream.read()
+            if (ch == '}'.code) break
+
+            val digit = ch - '0'.code
+            if (digit !in 0..9 || size > (Int.MAX_VALUE - digit) / 10) {
+                throw ImapResponseParserException("Invalid value for size of literal string")
+            }
+            size = size * 10 + digit
+        }
+
+        expect('\r')
+        expect('\n')
+
+        ensureCapacity(size)
+        var read = 0
+        while (read < size) {
+            val count = inputStream.read(buffer, read, size - read)
+            if (count == -1) throw IOException("FetchResponseTokenizer: end of stream reached")
+            read += count
+        }
+        tokenLength = size
+
+        return setTokenType(TokenType.LITERAL)
+    }
+
+    private fun append(byte: Int) {
+        ensureCapacity(tokenLength + 1)
+        buffer[tokenLength++] = byte.toByte()
+    }
+
+    private fun ensureCapacity(capacity: Int) {
+        if (capacity > buffer.size) {
+            buffer = buffer.copyOf(maxOf(capacity, buffer.size * 2))
+        }
+    }
+
+    private fun expect(expected: Char) {
+        val readByte = inputStream.read()
+        if (readByte != expected.code) {
+            throw IOException("Expected ${expected.code} but got $readByte")
+        }
+    }
+
+    private fun isAtomChar(ch: Int): Boolean {
+        return ch > 0x1f && ch != 0x7f && ch != ' '.code && ch != '('.code && ch != ')'.code && ch != '{'.code &&
+            ch != '"'.code
+    }
+
+    enum class TokenType {
+        ATOM,
+        QUOTED,
+        LITERAL,
+        LIST_START,
+        LIST_END,
+        END_OF_LINE,
+    }
+}
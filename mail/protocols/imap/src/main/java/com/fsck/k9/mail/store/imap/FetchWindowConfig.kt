@@ -0,0 +1,31 @@
+package com.fsck.k9.mail.store.imap
+
+/**
+ * Limits for the number of messages requested with a single `UID FETCH` command.
+ *
+ * The window starts at [initialWindowSize] and is then adjusted so that a window takes about [targetRoundTripMillis]
+ * to complete. Fetching message bodies is capped at [maxBodyWindowSize], fetching only flags or headers at
+ * [maxMetadataWindowSize].
+ */
+data class FetchWindowConfig(
+    val initialWindowSize: Int = 100,
+    val minWindowSize: Int = 10,
+    val maxMetadataWindowSize: Int = 1000,
+    val maxBodyWindowSize: Int = 100,
+    val targetRoundTripMillis: Long = 2000L,
+) {
+    init {
+        require(minWindowSize > 0) { "'minWindowSize' needs to be positive" }
+        require(initialWindowSize >= minWindowSize) { "'initialWindowSize' must not be smaller than 'minWindowSize'" }
+        require(maxMetadataWindowSize >= minWindowSize) {
+            "'maxMetadataWindowSize' must not be smaller than 'minWindowSize'"
+        }
+        require(maxBodyWindowSize >= minWindowSize) { "'maxBodyWindowSize' must not be smaller than 'minWindowSize'" }
+        require(targetRoundTripMillis > 0) { "'targetRoundTripMillis' needs to be positive" }
+    }
+
+    companion object {
+        @JvmField
+        val DEFAULT = FetchWindowConfig()
+    }
+}
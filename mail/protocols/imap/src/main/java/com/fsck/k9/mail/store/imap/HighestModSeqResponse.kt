@@ -0,0 +1,35 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.store.imap.ImapResponseParser.equalsIgnoreCase
+
+/**
+ * Parses the `HIGHESTMODSEQ` and `NOMODSEQ` response codes sent in reply to SELECT/EXAMINE (RFC 7162).
+ *
+ * [highestModSeq] is `null` when the server sent `NOMODSEQ`, i.e. the mailbox doesn't support persistent storage of
+ * mod-sequences.
+ */
+internal class HighestModSeqResponse private constructor(val highestModSeq: Long?) {
+    companion object {
+        @JvmStatic
+        fun parse(response: ImapResponse): HighestModSeqResponse? {
+            if (response.isTagged || !equalsIgnoreCase(response[0], Responses.OK) || !response.isList(1)) return null
+
+            val responseTextList = response.getList(1)
+            if (responseTextList.size == 1 && equalsIgnoreCase(responseTextList[0], Responses.NOMODSEQ)) {
+                return HighestModSeqResponse(null)
+            }
+
+            if (responseTextList.size < 2 ||
+                !equalsIgnoreCase(responseTextList[0], Responses.HIGHESTMODSEQ) ||
+                !responseTextList.isLong(1)
+            ) {
+                return null
+            }
+
+            val highestModSeq = responseTextList.getLong(1)
+            if (highestModSeq < 0L) return null
+
+            return HighestModSeqResponse(highestModSeq)
+        }
+    }
+}
@@ -13,6 +13,14 @@ internal interface ImapConnection {
     val isUidPlusCapable: Boolean
     val isUtf8AcceptCapable: Boolean
     val isIdleCapable: Boolean
+    val isCondstoreCapable: Boolean
+    val isQresyncEnabled: Boolean
+
+    /**
+     * The maximum length of a command line sent to the server.
+     */
+    @get:Throws(IOException::class, MessagingException::class)
+    val lineLengthLimit: Int
 
     @Throws(IOException::class, MessagingException::class)
     fun open()
@@ -30,6 +38,15 @@ internal interface ImapConnection {
     @Throws(IOException::class, MessagingException::class)
     fun executeCommandWithIdSet(commandPrefix: String, commandSuffix: String, ids: Set<Long>): List<ImapResponse>
 
+    /**
+     * Sends [commands] without waiting for the completion of previously sent commands.
+     *
+     * Responses are delivered to the callback of the respective command as soon as its tagged response has been
+     * received. Untagged responses are attributed to the oldest command that hasn't completed yet.
+     */
+    @Throws(IOException::class, MessagingException::class)
+    fun executePipelinedCommands(commands: List<PipelinedCommand>)
+
     @Throws(MessagingException::class, IOException::class)
     fun sendCommand(command: String, sensitive: Boolean): String
 
@@ -23,10 +23,26 @@ interface ImapFolder {
     @Throws(MessagingException::class)
     fun open(mode: OpenMode)
 
+    /**
+     * Opens the folder and asks the server for all changes since [knownModSeq] using the QRESYNC extension
+     * (RFC 7162).
+     *
+     * Returns `null` if QRESYNC isn't enabled on the connection. In that case the folder is opened as if [open] had
+     * been called.
+     */
+    @Throws(MessagingException::class)
+    fun openWithChangesSince(mode: OpenMode, knownUidValidity: Long, knownModSeq: Long): FolderChanges?
+
     fun close()
 
     fun getUidValidity(): Long?
 
+    /**
+     * Returns the `HIGHESTMODSEQ` value the server reported when the folder was opened, or `null` if the server
+     * doesn't support CONDSTORE or the mailbox doesn't support persistent mod-sequences.
+     */
+    fun getHighestModSeq(): Long?
+
     fun getMessage(uid: String): ImapMessage
 
     @Throws(MessagingException::class)
@@ -51,6 +67,13 @@ interface ImapFolder {
         maxDownloadSize: Int,
     )
 
+    /**
+     * Fetches the flags of those [messages] whose mod-sequence is greater than [changedSince] using the `CHANGEDSINCE`
+     * FETCH modifier (RFC 7162). [listener] is only called for messages that have changed.
+     */
+    @Throws(MessagingException::class)
+    fun fetchChangedFlags(messages: List<ImapMessage>, changedSince: Long, listener: FetchListener)
+
     @Throws(MessagingException::class)
     fun fetchPart(
         message: ImapMessage,
@@ -106,3 +129,14 @@ interface ImapFolder {
 interface FetchListener {
     fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean)
 }
+
+/**
+ * Changes the server reported in response to a SELECT/EXAMINE command with QRESYNC parameters.
+ *
+ * [vanishedUids] can contain large ranges of UIDs that were never known locally. Check local UIDs against it rather
+ * than iterating over it.
+ */
+class FolderChanges(
+    val vanishedUids: UidSet,
+    val changedMessages: List<ImapMessage>,
+)
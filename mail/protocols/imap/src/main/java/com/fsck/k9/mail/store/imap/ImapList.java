@@ -76,7 +76,7 @@ class ImapList extends ArrayList<Object> {
         return getDate(getKeyedString(key));
     }
 
-    private Date getDate(String value) throws MessagingException {
+    static Date getDate(String value) throws MessagingException {
         try {
             if (value == null || "NIL".equals(value)) {
                 return null;
@@ -136,7 +136,7 @@ class ImapList extends ArrayList<Object> {
         return index >= 0 && index < size();
     }
 
-    private Date parseDate(String value) throws ParseException {
+    private static Date parseDate(String value) throws ParseException {
         //TODO: clean this up a bit
         try {
             synchronized (DATE_FORMAT) {
@@ -21,6 +21,7 @@ class ImapResponseParser {
     private Exception exception;
     private boolean utf8Accept;
     private FolderNameCodec folderNameCodec;
+    private FetchResponseTokenizer fetchResponseTokenizer;
 
     public ImapResponseParser(PeekableInputStream in, FolderNameCodec folderNameCodec) {
         this.inputStream = in;
@@ -105,9 +106,7 @@ class ImapResponseParser {
 
                 while (responseIterator.hasNext()) {
                     ImapResponse delResponse = responseIterator.next();
-                    if (delResponse.getTag() != null || delResponse.size() < 2 || (
-                            !equalsIgnoreCase(delResponse.get(1), Responses.EXISTS) &&
-                            !equalsIgnoreCase(delResponse.get(1), Responses.EXPUNGE))) {
+                    if (!isMailboxSizeUpdate(delResponse)) {
                         responseIterator.remove();
                     }
                 }
@@ -130,6 +129,20 @@ class ImapResponseParser {
         return responses;
     }
 
+    /**
+     * Returns {@code true} for untagged responses that report messages being added to or removed from the selected
+     * folder. With QRESYNC enabled, the server sends {@code VANISHED} instead of {@code EXPUNGE} responses.
+     */
+    private static boolean isMailboxSizeUpdate(ImapResponse response) {
+        if (response.getTag() != null || response.size() < 2) {
+            return false;
+        }
+
+        return equalsIgnoreCase(response.get(1), Responses.EXISTS) ||
+                equalsIgnoreCase(response.get(1), Responses.EXPUNGE) ||
+                VanishedResponse.isVanishedResponse(response);
+    }
+
     private void readTokens(ImapResponse response) throws IOException {
         response.clear();
 
@@ -150,10 +163,37 @@ class ImapResponseParser {
                 if (!(token instanceof ImapList)) {
                     response.add(token);
                 }
+
+                if (isStreamingFetchResponse(response)) {
+                    readFetchResponse(response, (StreamingFetchCallback) response.getCallback());
+                    break;
+                }
             }
         }
     }
 
+    private boolean isStreamingFetchResponse(ImapResponse response) {
+        return response.getTag() == null && response.size() == 2 &&
+                response.getCallback() instanceof StreamingFetchCallback &&
+                equalsIgnoreCase(response.get(1), Responses.FETCH);
+    }
+
+    /**
+     * Passes the data items of an untagged FETCH response to a {@link StreamingFetchCallback} without creating an
+     * {@link ImapList} for them.
+     */
+    private void readFetchResponse(ImapResponse response, StreamingFetchCallback callback) throws IOException {
+        if (fetchResponseTokenizer == null) {
+            fetchResponseTokenizer = new FetchResponseTokenizer(inputStream);
+        }
+
+        callback.onFetchResponse(response, fetchResponseTokenizer);
+
+        if (fetchResponseTokenizer.next() != FetchResponseTokenizer.TokenType.END_OF_LINE) {
+            throw new ImapResponseParserException("Unexpected data after FETCH response");
+        }
+    }
+
     /**
      * Parse {@code resp-text} tokens
      * <p>
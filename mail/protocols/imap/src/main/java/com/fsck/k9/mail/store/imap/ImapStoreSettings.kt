@@ -10,6 +10,8 @@ object ImapStoreSettings {
     private const val PATH_PREFIX_KEY = "pathPrefix"
     private const val SEND_CLIENT_INFO = "sendClientInfo"
     private const val USE_COMPRESSION = "useCompression"
+    private const val PARALLEL_DOWNLOAD_CONNECTIONS = "parallelDownloadConnections"
+    private const val DEFAULT_PARALLEL_DOWNLOAD_CONNECTIONS = 3
 
     @JvmStatic
     val ServerSettings.autoDetectNamespace: Boolean
@@ -27,6 +29,17 @@ object ImapStoreSettings {
     val ServerSettings.isSendClientInfo: Boolean
         get() = extra[SEND_CLIENT_INFO]?.toBoolean() ?: true
 
+    /**
+     * Maximum number of connections used to download message bodies in parallel. Defaults to 3.
+     *
+     * Servers limit the number of connections per user. So callers also need to account for connections used for
+     * other purposes, e.g. push.
+     */
+    @JvmStatic
+    val ServerSettings.parallelDownloadConnections: Int
+        get() = extra[PARALLEL_DOWNLOAD_CONNECTIONS]?.toIntOrNull()?.coerceAtLeast(1)
+            ?: DEFAULT_PARALLEL_DOWNLOAD_CONNECTIONS
+
     // Note: These extras are currently held in the instance referenced by Account.incomingServerSettings
     @JvmStatic
     fun createExtra(autoDetectNamespace: Boolean, pathPrefix: String?): Map<String, String?> {
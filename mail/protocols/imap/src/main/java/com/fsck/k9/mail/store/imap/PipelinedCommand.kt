@@ -0,0 +1,47 @@
+package com.fsck.k9.mail.store.imap
+
+/**
+ * A command to be sent using [ImapConnection.executePipelinedCommands].
+ *
+ * Pipelined commands must not contain synchronizing literals. The client can't wait for the server's continuation
+ * request while other commands are outstanding.
+ */
+internal class PipelinedCommand(
+    val command: String,
+    val callback: PipelinedCommandCallback,
+)
+
+internal interface PipelinedCommandCallback {
+    /**
+     * Called with the untagged responses attributed to the command, followed by its tagged OK response.
+     */
+    fun onCommandCompleted(responses: List<ImapResponse>)
+
+    /**
+     * Called when the server completed the command with a NO or BAD response.
+     */
+    fun onCommandFailed(exception: NegativeImapResponseException)
+}
+
+/**
+ * [PipelinedCommandCallback] that keeps the outcome of a command around so it can be inspected once all pipelined
+ * commands have completed.
+ */
+internal class PipelinedCommandResult : PipelinedCommandCallback {
+    private var responses: List<ImapResponse>? = null
+    private var exception: NegativeImapResponseException? = null
+
+    override fun onCommandCompleted(responses: List<ImapResponse>) {
+        this.responses = responses
+    }
+
+    override fun onCommandFailed(exception: NegativeImapResponseException) {
+        this.exception = exception
+    }
+
+    @Throws(NegativeImapResponseException::class)
+    fun getResponsesOrThrow(): List<ImapResponse> {
+        exception?.let { throw it }
+        return checkNotNull(responses) { "Command has not completed" }
+    }
+}
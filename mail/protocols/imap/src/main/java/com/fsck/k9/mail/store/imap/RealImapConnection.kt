@@ -264,7 +264,8 @@ internal class RealImapConnection(
         }
 
         try {
-            val responses = executeSimpleCommand(Commands.ENABLE)
+            val command = if (hasCapability(Capabilities.QRESYNC)) Commands.ENABLE_WITH_QRESYNC else Commands.ENABLE
+            val responses = executeSimpleCommand(command)
             val enabledResponse = EnabledResponse.parse(responses) ?: return
             enabled = enabledResponse.capabilities
             responseParser?.setUtf8Accepted(isUtf8AcceptCapable)
@@ -689,9 +690,12 @@ internal class RealImapConnection(
         return capabilities.contains(capability.uppercase())
     }
 
-    private val isCondstoreCapable: Boolean
+    override val isCondstoreCapable: Boolean
         get() = hasCapability(Capabilities.CONDSTORE)
 
+    override val isQresyncEnabled: Boolean
+        get() = enabled.contains(Capabilities.QRESYNC)
+
     override val isIdleCapable: Boolean
         get() {
             if (K9MailLib.isDebug()) {
@@ -766,9 +770,78 @@ internal class RealImapConnection(
             lineLengthLimit,
         )
 
-        return splitCommands.flatMap { splitCommand ->
-            executeSimpleCommand(splitCommand)
+        val results = splitCommands.map { PipelinedCommandResult() }
+        val pipelinedCommands = splitCommands.zip(results) { splitCommand, result ->
+            PipelinedCommand(splitCommand, result)
+        }
+
+        executePipelinedCommands(pipelinedCommands)
+
+        return results.flatMap { result -> result.getResponsesOrThrow() }
+    }
+
+    @Synchronized
+    @Suppress("TooGenericExceptionCaught")
+    @Throws(IOException::class, MessagingException::class)
+    override fun executePipelinedCommands(commands: List<PipelinedCommand>) {
+        if (commands.isEmpty()) return
+
+        var callbackException: Exception? = null
+        try {
+            open()
+
+            val outputStream = checkNotNull(imapOutputStream)
+            val outstandingCommands = ArrayDeque<OutstandingCommand>()
+            var nextCommandIndex = 0
+
+            while (nextCommandIndex < commands.size || outstandingCommands.isNotEmpty()) {
+                var commandsWritten = false
+                while (nextCommandIndex < commands.size && outstandingCommands.size < MAX_PIPELINED_COMMANDS) {
+                    val command = commands[nextCommandIndex++]
+                    val tag = writeCommand(outputStream, command.command, sensitive = false)
+                    outstandingCommands.addLast(OutstandingCommand(tag, command))
+                    commandsWritten = true
+                }
+                if (commandsWritten) {
+                    outputStream.flush()
+                }
+
+                val response = readResponse()
+                if (response.isContinuationRequested) {
+                    throw MessagingException("Unexpected continuation request while pipelining commands: $response")
+                }
+
+                val tag = response.tag
+                if (tag == null) {
+                    outstandingCommands.first().responses.add(response)
+                    continue
+                }
+
+                val completedCommand = outstandingCommands.firstOrNull { it.tag.equals(tag, ignoreCase = true) }
+                if (completedCommand == null) {
+                    Log.w("Got tagged response for unknown command %s for %s", response, logId)
+                    continue
+                }
+
+                outstandingCommands.remove(completedCommand)
+                completedCommand.responses.add(response)
+
+                try {
+                    completedCommand.deliverResponses()
+                } catch (e: Exception) {
+                    // Keep reading so the responses to the remaining commands don't end up with the next caller
+                    if (callbackException == null) callbackException = e
+                }
+            }
+        } catch (e: IOException) {
+            close()
+            throw e
+        } catch (e: MessagingException) {
+            close()
+            throw e
         }
+
+        callbackException?.let { throw it }
     }
 
     @Throws(IOException::class, MessagingException::class)
@@ -810,20 +883,9 @@ internal class RealImapConnection(
 
             val outputStream = checkNotNull(imapOutputStream)
 
-            val tag = (nextCommandTag++).toString()
-            val commandToSend = "$tag $command\r\n"
-
-            outputStream.write(commandToSend.toByteArray())
+            val tag = writeCommand(outputStream, command, sensitive)
             outputStream.flush()
 
-            if (K9MailLib.isDebug() && K9MailLib.DEBUG_PROTOCOL_IMAP) {
-                if (sensitive && !K9MailLib.isDebugSensitive()) {
-                    Log.v("%s>>> [Command Hidden, Enable Sensitive Debug Logging To Show]", logId)
-                } else {
-                    Log.v("%s>>> %s %s", logId, tag, command)
-                }
-            }
-
             return tag
         } catch (e: IOException) {
             close()
@@ -834,6 +896,24 @@ internal class RealImapConnection(
         }
     }
 
+    @Throws(IOException::class)
+    private fun writeCommand(outputStream: OutputStream, command: String, sensitive: Boolean): String {
+        val tag = (nextCommandTag++).toString()
+        val commandToSend = "$tag $command\r\n"
+
+        outputStream.write(commandToSend.toByteArray())
+
+        if (K9MailLib.isDebug() && K9MailLib.DEBUG_PROTOCOL_IMAP) {
+            if (sensitive && !K9MailLib.isDebugSensitive()) {
+                Log.v("%s>>> [Command Hidden, Enable Sensitive Debug Logging To Show]", logId)
+            } else {
+                Log.v("%s>>> %s %s", logId, tag, command)
+            }
+        }
+
+        return tag
+    }
+
     @Synchronized
     @Throws(IOException::class)
     override fun sendContinuation(continuation: String) {
@@ -901,9 +981,23 @@ internal class RealImapConnection(
     }
 
     @get:Throws(IOException::class, MessagingException::class)
-    val lineLengthLimit: Int
+    override val lineLengthLimit: Int
         get() = if (isCondstoreCapable) LENGTH_LIMIT_WITH_CONDSTORE else LENGTH_LIMIT_WITHOUT_CONDSTORE
 
+    private class OutstandingCommand(val tag: String, val command: PipelinedCommand) {
+        val responses = mutableListOf<ImapResponse>()
+
+        fun deliverResponses() {
+            val taggedResponse = responses.last()
+            if (taggedResponse.isNotEmpty() && ImapResponseParser.equalsIgnoreCase(taggedResponse[0], Responses.OK)) {
+                command.callback.onCommandCompleted(responses)
+            } else {
+                val message = "Command: ${command.command}; response: $taggedResponse"
+                command.callback.onCommandFailed(NegativeImapResponseException(message, responses))
+            }
+        }
+    }
+
     private enum class OAuthMethod {
         XOAUTH2 {
             override val command: String = Commands.AUTHENTICATE_XOAUTH2
@@ -928,6 +1022,12 @@ internal class RealImapConnection(
     companion object {
         private const val BUFFER_SIZE = 1024
 
+        /**
+         * Maximum number of commands sent by [executePipelinedCommands] before waiting for a tagged response. This
+         * keeps the amount of unread response data small enough to not stall the server.
+         */
+        private const val MAX_PIPELINED_COMMANDS = 32
+
         /* The below limits are 20 octets less than the recommended limits, in order to compensate for
          * the length of the command tag, the space after the tag and the CRLF at the end of the command
          * (these are not taken into account when calculating the length of the command). For more
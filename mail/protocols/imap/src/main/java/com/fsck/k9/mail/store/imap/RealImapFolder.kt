@@ -24,6 +24,8 @@ import java.util.Date
 import java.util.Locale
 import kotlin.math.max
 import kotlin.math.min
+import kotlin.time.Duration
+import kotlin.time.TimeSource
 import net.thunderbird.core.common.exception.MessagingException
 import net.thunderbird.core.logging.legacy.Log
 import net.thunderbird.protocols.imap.folder.attributeName
@@ -33,6 +35,7 @@ internal class RealImapFolder(
     private val connectionManager: ImapConnectionManager,
     override val serverId: String,
     private val folderNameCodec: FolderNameCodec,
+    private val timeSource: TimeSource = TimeSource.Monotonic,
 ) : ImapFolder {
     private var uidNext = -1L
     internal var connection: ImapConnection? = null
@@ -41,6 +44,7 @@ internal class RealImapFolder(
     private var inSearch = false
     private var canCreateKeywords = false
     private var uidValidity: Long? = null
+    private var highestModSeq: Long? = null
 
     /**
      * Specifies whether the folder was opened in read-only or read-write mode based on the tagged OK response to
@@ -70,6 +74,11 @@ internal class RealImapFolder(
         return uidValidity
     }
 
+    override fun getHighestModSeq(): Long? {
+        check(isOpen) { "ImapFolder needs to be open" }
+        return highestModSeq
+    }
+
 
     @get:Throws(MessagingException::class)
     private val encodedName: String
@@ -97,9 +106,25 @@ internal class RealImapFolder(
         }
     }
 
+    /**
+     * Opens the folder using `SELECT`/`EXAMINE` with QRESYNC parameters so the server reports vanished messages and
+     * flag changes since [knownModSeq] as part of the response.
+     */
+    @Throws(MessagingException::class)
+    override fun openWithChangesSince(mode: OpenMode, knownUidValidity: Long, knownModSeq: Long): FolderChanges? {
+        val responses = internalOpen(mode, QresyncParameters(knownUidValidity, knownModSeq))
+
+        if (messageCount == -1) {
+            throw MessagingException("Did not find message count during open")
+        }
+
+        return if (connection!!.isQresyncEnabled) extractFolderChanges(responses) else null
+    }
+
     @Throws(MessagingException::class)
-    private fun internalOpen(mode: OpenMode): List<ImapResponse> {
-        if (isOpen && this.mode == mode) {
+    private fun internalOpen(mode: OpenMode, qresyncParameters: QresyncParameters? = null): List<ImapResponse> {
+        // Changes since the known mod-sequence are only reported in response to SELECT/EXAMINE
+        if (isOpen && this.mode == mode && qresyncParameters == null) {
             // Make sure the connection is valid. If it's not we'll close it down and continue on to get a new one.
             try {
                 return executeSimpleCommand(Commands.NOOP)
@@ -118,13 +143,16 @@ internal class RealImapFolder(
         try {
             val openCommand = if (mode == OpenMode.READ_WRITE) "SELECT" else "EXAMINE"
             val escapedFolderName = ImapUtility.encodeString(encodedName)
-            val command = String.format("%s %s", openCommand, escapedFolderName)
+            val selectParameters = buildSelectParameters(qresyncParameters)
+            val command = String.format("%s %s%s", openCommand, escapedFolderName, selectParameters)
             val responses = executeSimpleCommand(command)
 
             this.mode = mode
+            highestModSeq = null
 
             for (response in responses) {
                 extractUidValidity(response)
+                extractHighestModSeq(response)
                 handlePermanentFlags(response)
             }
 
@@ -141,6 +169,55 @@ internal class RealImapFolder(
         }
     }
 
+    private fun buildSelectParameters(qresyncParameters: QresyncParameters?): String {
+        val connection = connection!!
+        return when {
+            qresyncParameters != null && connection.isQresyncEnabled -> {
+                String.format(
+                    Locale.US,
+                    " (QRESYNC (%d %d))",
+                    qresyncParameters.uidValidity,
+                    qresyncParameters.modSeq,
+                )
+            }
+            connection.isCondstoreCapable -> " (CONDSTORE)"
+            else -> ""
+        }
+    }
+
+    private fun extractHighestModSeq(response: ImapResponse) {
+        val highestModSeqResponse = HighestModSeqResponse.parse(response)
+        if (highestModSeqResponse != null) {
+            highestModSeq = highestModSeqResponse.highestModSeq
+        }
+    }
+
+    private fun extractFolderChanges(responses: List<ImapResponse>): FolderChanges {
+        val vanishedRanges = mutableListOf<LongRange>()
+        val changedMessages = LinkedHashMap<String, ImapMessage>()
+
+        for (response in responses) {
+            val vanishedResponse = VanishedResponse.parse(response)
+            if (vanishedResponse != null) {
+                vanishedRanges.addAll(vanishedResponse.uids.ranges)
+            } else if (response.tag == null && response.size > 1 &&
+                ImapResponseParser.equalsIgnoreCase(response[1], "FETCH")
+            ) {
+                val fetchList = response.getKeyedValue("FETCH") as? ImapList ?: continue
+                val uid = fetchList.getKeyedValue("UID") as? String ?: continue
+
+                val message = changedMessages.getOrPut(uid) { ImapMessage(uid) }
+                handleFetchResponse(message, fetchList)
+            }
+        }
+
+        // A message that was expunged after it was changed is only reported as vanished
+        val vanishedUids = UidSet(vanishedRanges)
+        changedMessages.keys.removeAll { uid -> uid.toLongOrNull()?.let { it in vanishedUids } == true }
+
+        return FolderChanges(vanishedUids, changedMessages.values.toList())
+    }
+
     private fun extractUidValidity(response: ImapResponse) {
         val uidValidityResponse = UidValidityResponse.parse(response)
         if (uidValidityResponse != null) {
@@ -542,6 +619,26 @@ internal class RealImapFolder(
         fetchProfile: FetchProfile,
         listener: FetchListener?,
         maxDownloadSize: Int,
+    ) {
+        fetch(messages, fetchProfile, listener, maxDownloadSize, changedSince = null)
+    }
+
+    @Throws(MessagingException::class)
+    override fun fetchChangedFlags(messages: List<ImapMessage>, changedSince: Long, listener: FetchListener) {
+        val fetchProfile = FetchProfile().apply {
+            add(FetchProfile.Item.FLAGS)
+        }
+
+        fetch(messages, fetchProfile, listener, maxDownloadSize = 0, changedSince)
+    }
+
+    @Throws(MessagingException::class)
+    private fun fetch(
+        messages: List<ImapMessage>,
+        fetchProfile: FetchProfile,
+        listener: FetchListener?,
+        maxDownloadSize: Int,
+        changedSince: Long?,
     ) {
         if (messages.isEmpty()) {
             return
@@ -585,30 +682,56 @@ internal class RealImapFolder(
         }
 
         val spaceSeparatedFetchFields = ImapUtility.join(" ", fetchFields)
+        val fetchModifiers = if (changedSince != null) {
+            String.format(Locale.US, " (CHANGEDSINCE %d)", changedSince)
+        } else {
+            ""
+        }
+
+        val metadataCallback = if (canStreamFetchResponses(fetchProfile)) FetchMetadataCallback() else null
+
+        val isBodyFetch = fetchProfile.contains(FetchProfile.Item.BODY) ||
+            fetchProfile.contains(FetchProfile.Item.BODY_SANE)
+        val fetchWindow = AdaptiveFetchWindow(internalImapStore.config.fetchWindowConfig(), isBodyFetch)
+
+        val fetchCommandSuffix = " ($spaceSeparatedFetchFields)$fetchModifiers"
+        val maxUidListLength = connection!!.lineLengthLimit - FETCH_COMMAND_PREFIX.length - fetchCommandSuffix.length
+
         var windowStart = 0
         val processedUids = mutableSetOf<String>()
         while (windowStart < messages.size) {
-            val windowEnd = min(windowStart + FETCH_WINDOW_SIZE, messages.size)
+            val uidCount = countUidsFittingCommand(uids, windowStart, fetchWindow.windowSize, maxUidListLength)
+            val windowEnd = windowStart + uidCount
             val uidWindow = uids.subList(windowStart, windowEnd)
 
+            // Only the time spent waiting for the server is used to size the next window. Time spent in the listener,
+            // e.g. writing messages to the database, doesn't say anything about the connection.
+            var serverDuration = Duration.ZERO
+
             try {
                 val commaSeparatedUids = ImapUtility.join(",", uidWindow)
-                val command = String.format("UID FETCH %s (%s)", commaSeparatedUids, spaceSeparatedFetchFields)
+                val command = FETCH_COMMAND_PREFIX + commaSeparatedUids + fetchCommandSuffix
+
+                val sendStartMark = timeSource.markNow()
                 connection!!.sendCommand(command, false)
+                serverDuration += sendStartMark.elapsedNow()
 
-                var callback: ImapResponseCallback? = null
-                if (fetchProfile.contains(FetchProfile.Item.BODY) ||
-                    fetchProfile.contains(FetchProfile.Item.BODY_SANE)
-                ) {
+                var callback: ImapResponseCallback? = metadataCallback
+                if (isBodyFetch) {
                     callback = FetchBodyCallback(messageMap)
                 }
 
                 var response: ImapResponse
                 do {
+                    val readStartMark = timeSource.markNow()
                     response = connection!!.readResponse(callback)
+                    serverDuration += readStartMark.elapsedNow()
+
                     if (response.tag == null && ImapResponseParser.equalsIgnoreCase(response[1], "FETCH")) {
-                        val fetchList = response.getKeyedValue("FETCH") as ImapList
-                        val uid = fetchList.getKeyedString("UID")
+                        // Responses handled by FetchMetadataCallback only contain the sequence number and "FETCH"
+                        val isStreamedResponse = metadataCallback != null && response.size == 2
+                        val fetchList = if (isStreamedResponse) null else response.getKeyedValue("FETCH") as ImapList
+                        val uid = if (fetchList == null) metadataCallback!!.uid else fetchList.getKeyedString("UID")
 
                         val message = messageMap[uid]
                         if (message == null) {
@@ -619,27 +742,31 @@ internal class RealImapFolder(
                             continue
                         }
 
-                        val literal = handleFetchResponse(message, fetchList)
-                        if (literal != null) {
-                            when (literal) {
-                                is String -> {
-                                    val bodyStream: InputStream = literal.toByteArray().inputStream()
-                                    message.parse(bodyStream)
-                                }
-
-                                is Int -> {
-                                    // All the work was done in FetchBodyCallback.foundLiteral()
-                                }
-
-                                else -> {
-                                    // This shouldn't happen
-                                    throw MessagingException("Got FETCH response with bogus parameters")
+                        if (fetchList == null) {
+                            handleFetchMetadata(message, metadataCallback!!)
+                        } else {
+                            val literal = handleFetchResponse(message, fetchList)
+                            if (literal != null) {
+                                when (literal) {
+                                    is String -> {
+                                        val bodyStream: InputStream = literal.toByteArray().inputStream()
+                                        message.parse(bodyStream)
+                                    }
+
+                                    is Int -> {
+                                        // All the work was done in FetchBodyCallback.foundLiteral()
+                                    }
+
+                                    else -> {
+                                        // This shouldn't happen
+                                        throw MessagingException("Got FETCH response with bogus parameters")
+                                    }
                                 }
                             }
                         }
 
-                        val isFirstResponse = uid !in processedUids
-                        processedUids.add(uid)
+                        val isFirstResponse = message.uid !in processedUids
+                        processedUids.add(message.uid)
 
                         listener?.onFetchResponse(message, isFirstResponse)
                     } else {
@@ -650,7 +777,49 @@ internal class RealImapFolder(
                 throw ioExceptionHandler(connection, ioe)
             }
 
-            windowStart += FETCH_WINDOW_SIZE
+            val windowByteCount = if (isBodyFetch) {
+                getFetchedBodySize(messages.subList(windowStart, windowEnd), fetchProfile, maxDownloadSize)
+            } else {
+                0L
+            }
+            fetchWindow.onWindowCompleted(uidWindow.size, windowByteCount, serverDuration)
+
+            windowStart = windowEnd
+        }
+    }
+
+    /**
+     * Returns how many of the UIDs starting at [startIndex] can be sent in one command, up to [maxCount].
+     *
+     * Servers limit the length of command lines, so the UID list must not exceed [maxLength] characters. At least one
+     * UID is always returned.
+     */
+    private fun countUidsFittingCommand(uids: List<String>, startIndex: Int, maxCount: Int, maxLength: Int): Int {
+        val endIndex = min(startIndex + maxCount, uids.size)
+
+        var length = uids[startIndex].length
+        var index = startIndex + 1
+        while (index < endIndex) {
+            length += uids[index].length + 1
+            if (length > maxLength) break
+            index++
+        }
+
+        return index - startIndex
+    }
+
+    /**
+     * Estimates the number of bytes transferred when fetching message bodies using the sizes reported by the server.
+     */
+    private fun getFetchedBodySize(
+        messages: List<ImapMessage>,
+        fetchProfile: FetchProfile,
+        maxDownloadSize: Int,
+    ): Long {
+        val isPartialFetch = !fetchProfile.contains(FetchProfile.Item.BODY) && maxDownloadSize > 0
+        return messages.sumOf { message ->
+            val size = message.size.toLong()
+            if (isPartialFetch) min(size, maxDownloadSize.toLong()) else size
         }
     }
 
@@ -724,6 +893,40 @@ internal class RealImapFolder(
         }
     }
 
+    /**
+     * FETCH responses for message bodies or the body structure are parsed into an [ImapList] tree. All other data items
+     * can be extracted while the response is being read.
+     */
+    private fun canStreamFetchResponses(fetchProfile: FetchProfile): Boolean {
+        return !fetchProfile.contains(FetchProfile.Item.BODY) &&
+            !fetchProfile.contains(FetchProfile.Item.BODY_SANE) &&
+            !fetchProfile.contains(FetchProfile.Item.STRUCTURE)
+    }
+
+    @Throws(MessagingException::class)
+    private fun handleFetchMetadata(message: ImapMessage, metadata: FetchMetadataCallback) {
+        for (flag in metadata.flags) {
+            message.setFlag(flag, true)
+        }
+
+        if (Flag.FORWARDED in metadata.flags) {
+            // a message contains FORWARDED FLAG -> so we can also create them
+            internalImapStore.getPermanentFlagsIndex().add(Flag.FORWARDED)
+        }
+
+        metadata.internalDate?.let { internalDate ->
+            message.internalDate = ImapList.getDate(internalDate)
+        }
+
+        metadata.size?.let { size ->
+            message.setSize(size)
+        }
+
+        metadata.getHeaderInputStream()?.let { headerStream ->
+            message.parse(headerStream)
+        }
+    }
+
     // Returns value of body field
     @Throws(MessagingException::class)
     private fun handleFetchResponse(message: ImapMessage, fetchList: ImapList): Any? {
@@ -845,6 +1048,15 @@ internal class RealImapFolder(
                     Log.d("Got untagged EXPUNGE with messageCount %d for %s", messageCount, logId)
                 }
             }
+
+            // With QRESYNC enabled the server sends VANISHED instead of EXPUNGE responses
+            val vanishedResponse = VanishedResponse.parse(response)
+            if (vanishedResponse != null && !vanishedResponse.isEarlier && messageCount > 0) {
+                messageCount = max(0L, messageCount - vanishedResponse.uids.size).toInt()
+                if (K9MailLib.isDebug()) {
+                    Log.d("Got untagged VANISHED with messageCount %d for %s", messageCount, logId)
+                }
+            }
         }
     }
 
@@ -1265,7 +1477,7 @@ internal class RealImapFolder(
 
     companion object {
         private const val MORE_MESSAGES_WINDOW_SIZE = 500
-        private const val FETCH_WINDOW_SIZE = 100
+        private const val FETCH_COMMAND_PREFIX = "UID FETCH "
 
         const val INBOX = "INBOX"
 
@@ -1277,6 +1489,8 @@ internal class RealImapFolder(
     }
 }
 
+private class QresyncParameters(val uidValidity: Long, val modSeq: Long)
+
 private fun ImapConnection?.hasCapability(capability: String): Boolean {
     return this?.hasCapability(capability) == true
 }
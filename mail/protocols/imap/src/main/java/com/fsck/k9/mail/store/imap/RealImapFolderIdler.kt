@@ -191,7 +191,8 @@ internal class RealImapFolderIdler(
     private val ImapResponse.isRelevant: Boolean
         get() {
             return if (!isTagged && size >= 2) {
-                ImapResponseParser.equalsIgnoreCase(get(1), "EXISTS") ||
+                VanishedResponse.isVanishedResponse(this) ||
+                    ImapResponseParser.equalsIgnoreCase(get(1), "EXISTS") ||
                     ImapResponseParser.equalsIgnoreCase(get(1), "EXPUNGE") ||
                     ImapResponseParser.equalsIgnoreCase(get(1), "FETCH")
             } else {
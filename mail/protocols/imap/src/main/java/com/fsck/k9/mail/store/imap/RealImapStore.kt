@@ -83,12 +83,26 @@ internal open class RealImapStore(
         val connection = getConnection()
 
         return try {
-            val folders = listFolders(connection, false)
             if (!config.isSubscribedFoldersOnly()) {
-                return folders
+                val responses = connection.executeSimpleCommand(buildListCommand(connection, subscribedOnly = false))
+                return parseFolderList(responses, subscribedOnly = false)
             }
 
-            val subscribedFolders = listFolders(connection, true)
+            // Send LIST and LSUB back to back to save a round trip
+            val listResult = PipelinedCommandResult()
+            val lsubResult = PipelinedCommandResult()
+            connection.executePipelinedCommands(
+                listOf(
+                    PipelinedCommand(buildListCommand(connection, subscribedOnly = false), listResult),
+                    PipelinedCommand(buildListCommand(connection, subscribedOnly = true), lsubResult),
+                ),
+            )
+
+            // Untagged responses might be attributed to the wrong command. But LIST and LSUB responses can be
+            // told apart, so we just parse all of them.
+            val responses = listResult.getResponsesOrThrow() + lsubResult.getResponsesOrThrow()
+            val folders = parseFolderList(responses, subscribedOnly = false)
+            val subscribedFolders = parseFolderList(responses, subscribedOnly = true)
             limitToSubscribedFolders(folders, subscribedFolders)
         } catch (e: AuthenticationFailedException) {
             connection.close()
@@ -113,7 +127,7 @@ internal open class RealImapStore(
     }
 
     @Throws(IOException::class, MessagingException::class)
-    private fun listFolders(connection: ImapConnection, subscribedOnly: Boolean): List<FolderListItem> {
+    private fun buildListCommand(connection: ImapConnection, subscribedOnly: Boolean): String {
         val commandFormat = when {
             subscribedOnly -> {
                 "LSUB \"\" %s"
@@ -127,8 +141,10 @@ internal open class RealImapStore(
         }
 
         val encodedListPrefix = ImapUtility.encodeString(getCombinedPrefix() + "*")
-        val responses = connection.executeSimpleCommand(String.format(commandFormat, encodedListPrefix))
+        return String.format(commandFormat, encodedListPrefix)
+    }
 
+    private fun parseFolderList(responses: List<ImapResponse>, subscribedOnly: Boolean): List<FolderListItem> {
         val listResponses = if (subscribedOnly) {
             ListResponse.parseLsub(responses)
         } else {
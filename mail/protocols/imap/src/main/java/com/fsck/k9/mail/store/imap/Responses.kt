@@ -12,9 +12,14 @@ internal object Responses {
     const val BYE: String = "BYE"
     const val EXISTS: String = "EXISTS"
     const val EXPUNGE: String = "EXPUNGE"
+    const val FETCH: String = "FETCH"
     const val PERMANENTFLAGS: String = "PERMANENTFLAGS"
     const val COPYUID: String = "COPYUID"
     const val SEARCH: String = "SEARCH"
     const val UIDVALIDITY: String = "UIDVALIDITY"
     const val ENABLED: String = "ENABLED"
+    const val HIGHESTMODSEQ: String = "HIGHESTMODSEQ"
+    const val NOMODSEQ: String = "NOMODSEQ"
+    const val VANISHED: String = "VANISHED"
+    const val EARLIER: String = "EARLIER"
 }
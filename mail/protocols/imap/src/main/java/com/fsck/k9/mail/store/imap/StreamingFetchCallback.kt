@@ -0,0 +1,20 @@
+package com.fsck.k9.mail.store.imap
+
+import java.io.IOException
+
+/**
+ * An [ImapResponseCallback] that processes the data items of untagged FETCH responses while they are being read.
+ *
+ * When [ImapResponseParser] encounters `* <number> FETCH` it hands the rest of the response to [onFetchResponse]
+ * instead of building an [ImapList] tree. The [ImapResponse] returned by the parser then only contains the message
+ * sequence number and `FETCH`.
+ */
+internal interface StreamingFetchCallback : ImapResponseCallback {
+    /**
+     * Called with the tokenizer positioned before the parenthesized list of data items.
+     *
+     * Implementations need to consume the complete list, including the closing parenthesis.
+     */
+    @Throws(IOException::class)
+    fun onFetchResponse(response: ImapResponse, tokenizer: FetchResponseTokenizer)
+}
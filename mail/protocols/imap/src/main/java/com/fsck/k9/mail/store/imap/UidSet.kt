@@ -0,0 +1,95 @@
+package com.fsck.k9.mail.store.imap
+
+/**
+ * A set of UIDs, e.g. from the `sequence-set` of a `VANISHED` response.
+ *
+ * Ranges are stored as ranges. A server is free to send something like `1:4294967295`, so expanding them into
+ * individual UIDs isn't an option. Use [contains] to test UIDs that are known locally instead.
+ */
+class UidSet(ranges: Collection<LongRange>) {
+    /**
+     * The sorted, non-overlapping ranges of this set.
+     */
+    val ranges: List<LongRange> = mergeRanges(ranges)
+
+    /**
+     * The number of UIDs in this set.
+     */
+    val size: Long = this.ranges.sumOf { it.last - it.first + 1 }
+
+    fun isEmpty(): Boolean = ranges.isEmpty()
+
+    operator fun contains(uid: Long): Boolean {
+        var low = 0
+        var high = ranges.lastIndex
+        while (low <= high) {
+            val middle = (low + high) ushr 1
+            val range = ranges[middle]
+            when {
+                uid < range.first -> high = middle - 1
+                uid > range.last -> low = middle + 1
+                else -> return true
+            }
+        }
+
+        return false
+    }
+
+    override fun equals(other: Any?): Boolean = other is UidSet && ranges == other.ranges
+
+    override fun hashCode(): Int = ranges.hashCode()
+
+    override fun toString(): String {
+        return ranges.joinToString(separator = ",") { range ->
+            if (range.first == range.last) range.first.toString() else "${range.first}:${range.last}"
+        }
+    }
+
+    companion object {
+        @JvmField
+        val EMPTY = UidSet(emptyList())
+
+        @JvmStatic
+        fun of(uids: Collection<Long>): UidSet = UidSet(uids.map { it..it })
+
+        /**
+         * Parses a `sequence-set` that only contains UIDs, e.g. `41,43:116,118`.
+         *
+         * Returns `null` if the set contains anything but valid UIDs and ranges of UIDs.
+         */
+        @JvmStatic
+        fun parse(uidSet: String): UidSet? {
+            val ranges = uidSet.split(',').map { element ->
+                val separatorIndex = element.indexOf(':')
+                if (separatorIndex == -1) {
+                    val uid = element.toUidOrNull() ?: return null
+                    uid..uid
+                } else {
+                    val first = element.substring(0, separatorIndex).toUidOrNull() ?: return null
+                    val second = element.substring(separatorIndex + 1).toUidOrNull() ?: return null
+                    minOf(first, second)..maxOf(first, second)
+                }
+            }
+
+            return UidSet(ranges)
+        }
+
+        private fun String.toUidOrNull(): Long? {
+            return toLongOrNull()?.takeIf { it in 1L..0xFFFFFFFFL }
+        }
+
+        private fun mergeRanges(ranges: Collection<LongRange>): List<LongRange> {
+            val mergedRanges = mutableListOf<LongRange>()
+            for (range in ranges.filterNot { it.isEmpty() }.sortedBy { it.first }) {
+                val last = mergedRanges.lastOrNull()
+                if (last != null && range.first <= last.last + 1) {
+                    mergedRanges[mergedRanges.lastIndex] = last.first..maxOf(last.last, range.last)
+                } else {
+                    mergedRanges.add(range)
+                }
+            }
+
+            return mergedRanges
+        }
+    }
+}
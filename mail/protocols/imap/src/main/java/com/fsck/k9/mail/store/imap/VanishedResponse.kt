@@ -0,0 +1,30 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.store.imap.ImapResponseParser.equalsIgnoreCase
+
+/**
+ * Parses `VANISHED` responses (RFC 7162, section 3.2.10).
+ *
+ * Example: `* VANISHED (EARLIER) 41,43:116,118`
+ */
+internal class VanishedResponse private constructor(val isEarlier: Boolean, val uids: UidSet) {
+    companion object {
+        @JvmStatic
+        fun parse(response: ImapResponse): VanishedResponse? {
+            if (!isVanishedResponse(response)) return null
+
+            val isEarlier = response.isList(1) && equalsIgnoreCase(response.getList(1).firstOrNull(), Responses.EARLIER)
+            val uidSetIndex = if (isEarlier) 2 else 1
+            if (!response.isString(uidSetIndex)) return null
+
+            val uids = UidSet.parse(response.getString(uidSetIndex)) ?: return null
+
+            return VanishedResponse(isEarlier, uids)
+        }
+
+        @JvmStatic
+        fun isVanishedResponse(response: ImapResponse): Boolean {
+            return !response.isTagged && response.size >= 2 && equalsIgnoreCase(response[0], Responses.VANISHED)
+        }
+    }
+}
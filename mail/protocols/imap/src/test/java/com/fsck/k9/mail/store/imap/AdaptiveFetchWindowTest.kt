@@ -0,0 +1,95 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.seconds
+import org.junit.Test
+
+class AdaptiveFetchWindowTest {
+    private val config = FetchWindowConfig(
+        initialWindowSize = 10,
+        minWindowSize = 2,
+        maxMetadataWindowSize = 100,
+        maxBodyWindowSize = 20,
+        targetRoundTripMillis = 1000L,
+    )
+
+    @Test
+    fun `initial window size`() {
+        val fetchWindow = AdaptiveFetchWindow(config, isBodyFetch = false)
+
+        assertThat(fetchWindow.windowSize).isEqualTo(10)
+    }
+
+    @Test
+    fun `initial window size should be limited by body window size`() {
+        val fetchWindow = AdaptiveFetchWindow(config.copy(initialWindowSize = 50), isBodyFetch = true)
+
+        assertThat(fetchWindow.windowSize).isEqualTo(20)
+    }
+
+    @Test
+    fun `window should at most double after a fast round trip`() {
+        val fetchWindow = AdaptiveFetchWindow(config, isBodyFetch = false)
+
+        fetchWindow.onWindowCompleted(messageCount = 10, byteCount = 0, duration = 10.milliseconds)
+
+        assertThat(fetchWindow.windowSize).isEqualTo(20)
+    }
+
+    @Test
+    fun `window should at most halve after a slow round trip`() {
+        val fetchWindow = AdaptiveFetchWindow(config, isBodyFetch = false)
+
+        fetchWindow.onWindowCompleted(messageCount = 10, byteCount = 0, duration = 60.seconds)
+
+        assertThat(fetchWindow.windowSize).isEqualTo(5)
+    }
+
+    @Test
+    fun `window should converge to target round trip time`() {
+        val fetchWindow = AdaptiveFetchWindow(config, isBodyFetch = false)
+
+        repeat(10) {
+            val messageCount = fetchWindow.windowSize
+            fetchWindow.onWindowCompleted(messageCount, byteCount = 0, duration = (messageCount * 25).milliseconds)
+        }
+
+        assertThat(fetchWindow.windowSize).isEqualTo(40)
+    }
+
+    @Test
+    fun `window should be based on bytes per second when byte count is known`() {
+        val fetchWindow = AdaptiveFetchWindow(config, isBodyFetch = true)
+
+        // 10 messages of 10 KiB each at 100 KiB/s
+        fetchWindow.onWindowCompleted(messageCount = 10, byteCount = 102_400, duration = 1.seconds)
+        // 10 messages of 100 KiB each at 100 KiB/s
+        fetchWindow.onWindowCompleted(messageCount = 10, byteCount = 1_024_000, duration = 10.seconds)
+
+        assertThat(fetchWindow.windowSize).isEqualTo(5)
+    }
+
+    @Test
+    fun `window should not exceed maximum for metadata fetches`() {
+        val fetchWindow = AdaptiveFetchWindow(config, isBodyFetch = false)
+
+        repeat(10) {
+            fetchWindow.onWindowCompleted(fetchWindow.windowSize, byteCount = 0, duration = 1.milliseconds)
+        }
+
+        assertThat(fetchWindow.windowSize).isEqualTo(100)
+    }
+
+    @Test
+    fun `window should not go below minimum`() {
+        val fetchWindow = AdaptiveFetchWindow(config, isBodyFetch = false)
+
+        repeat(10) {
+            fetchWindow.onWindowCompleted(fetchWindow.windowSize, byteCount = 0, duration = 60.seconds)
+        }
+
+        assertThat(fetchWindow.windowSize).isEqualTo(2)
+    }
+}
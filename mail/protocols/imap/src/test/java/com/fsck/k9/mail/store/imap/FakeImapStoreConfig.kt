@@ -2,6 +2,7 @@ package com.fsck.k9.mail.store.imap
 
 class FakeImapStoreConfig : ImapStoreConfig {
     var expungeImmediately = true
+    var fetchWindowConfig = FetchWindowConfig.DEFAULT
 
     override var logLabel: String = "irrelevant"
 
@@ -14,4 +15,6 @@ class FakeImapStoreConfig : ImapStoreConfig {
     override fun clientInfo(): ImapClientInfo {
         throw UnsupportedOperationException("not implemented")
     }
+
+    override fun fetchWindowConfig(): FetchWindowConfig = fetchWindowConfig
 }
@@ -0,0 +1,136 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.hasMessage
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isInstanceOf
+import assertk.assertions.isTrue
+import com.fsck.k9.mail.filter.PeekableInputStream
+import com.fsck.k9.mail.store.imap.FetchResponseTokenizer.TokenType
+import java.io.ByteArrayInputStream
+import org.junit.Test
+
+class FetchResponseTokenizerTest {
+    @Test
+    fun `atoms, quoted strings, and lists`() {
+        val tokenizer = createTokenizer("""(UID 23 INTERNALDATE "01-Jul-2015 12:34:56 +0200" FLAGS (\Seen))""" + "\r\n")
+
+        assertThat(readAllTokens(tokenizer)).containsExactly(
+            TokenType.LIST_START to "",
+            TokenType.ATOM to "UID",
+            TokenType.ATOM to "23",
+            TokenType.ATOM to "INTERNALDATE",
+            TokenType.QUOTED to "01-Jul-2015 12:34:56 +0200",
+            TokenType.ATOM to "FLAGS",
+            TokenType.LIST_START to "",
+            TokenType.ATOM to """\Seen""",
+            TokenType.LIST_END to "",
+            TokenType.LIST_END to "",
+            TokenType.END_OF_LINE to "",
+        )
+    }
+
+    @Test
+    fun `section specification should be part of the atom`() {
+        val tokenizer = createTokenizer("BODY[HEADER.FIELDS (DATE SUBJECT)]<0> {5}\r\nHello\r\n")
+
+        assertThat(readAllTokens(tokenizer)).containsExactly(
+            TokenType.ATOM to "BODY[HEADER.FIELDS (DATE SUBJECT)]<0>",
+            TokenType.LITERAL to "Hello",
+            TokenType.END_OF_LINE to "",
+        )
+    }
+
+    @Test
+    fun `quoted string with escaped characters`() {
+        val tokenizer = createTokenizer(""""a \"quoted\" \\ string"""" + "\r\n")
+
+        tokenizer.next()
+
+        assertThat(tokenizer.tokenType).isEqualTo(TokenType.QUOTED)
+        assertThat(tokenizer.tokenAsString()).isEqualTo("""a "quoted" \ string""")
+    }
+
+    @Test
+    fun `literal larger than the initial buffer`() {
+        val literal = "x".repeat(10_000)
+        val tokenizer = createTokenizer("{${literal.length}}\r\n$literal\r\n")
+
+        tokenizer.next()
+
+        assertThat(tokenizer.tokenType).isEqualTo(TokenType.LITERAL)
+        assertThat(tokenizer.tokenLength).isEqualTo(literal.length)
+        assertThat(tokenizer.tokenAsString()).isEqualTo(literal)
+    }
+
+    @Test
+    fun `skipValue() should skip nested lists`() {
+        val tokenizer = createTokenizer("""(a (b "c)" {1}""" + "\r\n" + """) d)) UID""" + "\r\n")
+
+        tokenizer.next()
+        tokenizer.skipValue()
+        tokenizer.next()
+
+        assertThat(tokenizer.tokenEqualsIgnoreCase("uid")).isTrue()
+    }
+
+    @Test
+    fun `tokenAsLong() with number`() {
+        val tokenizer = createTokenizer("4294967295\r\n")
+
+        tokenizer.next()
+
+        assertThat(tokenizer.tokenAsLong()).isEqualTo(4294967295L)
+    }
+
+    @Test
+    fun `tokenAsLong() with non-numeric atom should throw`() {
+        val tokenizer = createTokenizer("12a\r\n")
+
+        tokenizer.next()
+
+        assertFailure {
+            tokenizer.tokenAsLong()
+        }.isInstanceOf<ImapResponseParserException>()
+            .hasMessage("Expected number in FETCH response")
+    }
+
+    @Test
+    fun `tokenStartsWithIgnoreCase() and isNil()`() {
+        val tokenizer = createTokenizer("body[TEXT] nil\r\n")
+
+        tokenizer.next()
+        assertThat(tokenizer.tokenStartsWithIgnoreCase("BODY[")).isTrue()
+        assertThat(tokenizer.isNil()).isFalse()
+
+        tokenizer.next()
+        assertThat(tokenizer.isNil()).isTrue()
+    }
+
+    @Test
+    fun `unterminated section specification should throw`() {
+        val tokenizer = createTokenizer("BODY[HEADER\r\n")
+
+        assertFailure {
+            tokenizer.next()
+        }.isInstanceOf<ImapResponseParserException>()
+            .hasMessage("Unexpected end of line in section specification")
+    }
+
+    private fun createTokenizer(data: String): FetchResponseTokenizer {
+        val inputStream = PeekableInputStream(ByteArrayInputStream(data.toByteArray()))
+        return FetchResponseTokenizer(inputStream)
+    }
+
+    private fun readAllTokens(tokenizer: FetchResponseTokenizer): List<Pair<TokenType, String>> {
+        return buildList {
+            do {
+                val tokenType = tokenizer.next()
+                add(tokenType to tokenizer.tokenAsString())
+            } while (tokenType != TokenType.END_OF_LINE)
+        }
+    }
+}
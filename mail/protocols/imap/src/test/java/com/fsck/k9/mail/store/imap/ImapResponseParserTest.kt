@@ -5,6 +5,7 @@ import assertk.assertFailure
 import assertk.assertThat
 import assertk.assertions.cause
 import assertk.assertions.containsExactly
+import assertk.assertions.containsExactlyInAnyOrder
 import assertk.assertions.hasMessage
 import assertk.assertions.hasSize
 import assertk.assertions.index
@@ -15,6 +16,8 @@ import assertk.assertions.isNull
 import assertk.assertions.isSameInstanceAs
 import assertk.assertions.isTrue
 import assertk.assertions.prop
+import assertk.assertions.transform
+import com.fsck.k9.mail.Flag
 import com.fsck.k9.mail.filter.FixedLengthInputStream
 import com.fsck.k9.mail.filter.PeekableInputStream
 import java.io.ByteArrayInputStream
@@ -132,6 +135,27 @@ class ImapResponseParserTest {
         assertThatAllInputWasConsumed()
     }
 
+    @Test
+    fun `readStatusResponse() should keep VANISHED response when skipping tagged response that does not match tag`() {
+        val parser = createParserWithResponses(
+            "* UNTAGGED",
+            "* VANISHED 41:43",
+            "A1 COMMAND BAR BAZ",
+            "A2 OK COMMAND completed",
+        )
+        val untaggedHandler = TestUntaggedHandler()
+
+        val responses = parser.readStatusResponse("A2", null, null, untaggedHandler)
+
+        assertThat(responses).hasSize(2)
+        assertThat(responses).index(0).containsExactly("VANISHED", "41:43")
+        assertThat(responses).index(1).containsExactly("OK", "COMMAND completed")
+
+        assertThat(untaggedHandler.responses).hasSize(2)
+        assertThat(untaggedHandler.responses).index(1).containsExactly("VANISHED", "41:43")
+        assertThatAllInputWasConsumed()
+    }
+
     @Test
     fun `readStatusResponse() should deliver untagged responses to UntaggedHandler even on negative tagged response`() {
         val parser = createParserWithResponses(
@@ -578,6 +602,80 @@ class ImapResponseParserTest {
         assertThatAllInputWasConsumed()
     }
 
+    @Test
+    fun `readResponse() with FETCH response and StreamingFetchCallback`() {
+        val parser = createParserWithResponses(
+            "* 1 FETCH (" +
+                "UID 23 " +
+                """INTERNALDATE "01-Jul-2015 12:34:56 +0200" """ +
+                "RFC822.SIZE 3456 " +
+                "BODY[HEADER.FIELDS (date subject from)] {9}\r\n<headers> " +
+                """FLAGS (\Seen ${'$'}Forwarded \Recent)""" +
+                ")",
+        )
+        val callback = FetchMetadataCallback()
+
+        val response = parser.readResponse(callback)
+
+        assertThat(response).containsExactly("1", "FETCH")
+        assertThat(callback.uid).isEqualTo("23")
+        assertThat(callback.internalDate).isEqualTo("01-Jul-2015 12:34:56 +0200")
+        assertThat(callback.size).isEqualTo(3456)
+        assertThat(callback.flags).containsExactlyInAnyOrder(Flag.SEEN, Flag.FORWARDED)
+        assertThat(callback.getHeaderInputStream()).isNotNull().transform { it.readBytes().decodeToString() }
+            .isEqualTo("<headers>")
+        assertThatAllInputWasConsumed()
+    }
+
+    @Test
+    fun `readResponse() with StreamingFetchCallback should extract the same values as the response tree`() {
+        val fetchResponses = arrayOf(
+            "* 1 FETCH (UID 101 FLAGS (\\Seen \\Answered) RFC822.SIZE 1024 " +
+                "INTERNALDATE \"17-Oct-2026 10:00:00 +0000\" BODY[HEADER.FIELDS (SUBJECT)]<0> {18}\r\n" +
+                "Subject: Test\r\n\r\n)",
+            "* 2 FETCH (MODSEQ (12345) UID 102 FLAGS () BODY[HEADER.FIELDS (SUBJECT)] NIL)",
+            "* 3 FETCH (FLAGS (\\Flagged \\Deleted \\Draft) UID 103 X-GM-LABELS (\"a (b)\" {1}\r\nc))",
+        )
+        val treeParser = createParserWithResponses(*fetchResponses)
+        val streamingParser = createParserWithResponses(*fetchResponses)
+        val callback = FetchMetadataCallback()
+
+        repeat(fetchResponses.size) {
+            val fetchList = treeParser.readResponse().getKeyedList("FETCH")
+            streamingParser.readResponse(callback)
+
+            assertThat(callback.uid).isEqualTo(fetchList.getKeyedString("UID"))
+            assertThat(callback.size).isEqualTo(fetchList.getKeyedString("RFC822.SIZE")?.toInt())
+            assertThat(callback.internalDate).isEqualTo(fetchList.getKeyedString("INTERNALDATE"))
+            assertThat(callback.flags.size).isEqualTo(fetchList.getKeyedList("FLAGS").size)
+        }
+        assertThatAllInputWasConsumed()
+    }
+
+    @Test
+    fun `readResponse() with StreamingFetchCallback should build tree for other responses`() {
+        val parser = createParserWithResponses("* 23 EXISTS", "* OK [HIGHESTMODSEQ 42]")
+        val callback = FetchMetadataCallback()
+
+        val existsResponse = parser.readResponse(callback)
+        val okResponse = parser.readResponse(callback)
+
+        assertThat(existsResponse).containsExactly("23", "EXISTS")
+        assertThat(okResponse).hasSize(2)
+        assertThat(callback.uid).isNull()
+        assertThatAllInputWasConsumed()
+    }
+
+    @Test
+    fun `readResponse() with StreamingFetchCallback and data after FETCH response should throw`() {
+        val parser = createParserWithResponses("* 1 FETCH (UID 23) garbage")
+
+        assertFailure {
+            parser.readResponse(FetchMetadataCallback())
+        }.isInstanceOf<ImapResponseParserException>()
+            .hasMessage("Unexpected data after FETCH response")
+    }
+
     @Test
     fun `readStatusResponse() with NO response should throw`() {
         val parser = createParserWithResponses("1 NO")
@@ -813,6 +813,25 @@ class RealImapConnectionTest {
         server.verifyInteractionCompleted()
     }
 
+    @Test
+    fun `open() with ENABLE and QRESYNC capabilities should enable QRESYNC`() {
+        val server = MockImapServer().apply {
+            simplePreAuthAndLoginDialog(postAuthCapabilities = "ENABLE CONDSTORE QRESYNC")
+            expect("3 ENABLE UTF8=ACCEPT QRESYNC")
+            output("* ENABLED QRESYNC")
+            output("3 OK")
+            simplePostAuthenticationDialog(tag = 4)
+        }
+        val imapConnection = startServerAndCreateImapConnection(server, useCompression = true)
+
+        imapConnection.open()
+        assertThat(imapConnection.isQresyncEnabled).isTrue()
+        assertThat(imapConnection.isCondstoreCapable).isTrue()
+
+        server.verifyConnectionStillOpen()
+        server.verifyInteractionCompleted()
+    }
+
     @Test
     fun `open() with COMPRESS=DEFLATE capability should enable compression`() {
         val server = MockImapServer().apply {
@@ -1135,6 +1154,70 @@ class RealImapConnectionTest {
         server.verifyInteractionCompleted()
     }
 
+    @Test
+    fun `executePipelinedCommands() should send all commands before reading responses`() {
+        val server = MockImapServer().apply {
+            simpleOpenDialog()
+            expect("4 STATUS \"Folder1\" (UNSEEN)")
+            expect("5 STATUS \"Folder2\" (UNSEEN)")
+            output("* STATUS \"Folder1\" (UNSEEN 1)")
+            output("4 OK STATUS completed")
+            output("* STATUS \"Folder2\" (UNSEEN 2)")
+            output("5 OK STATUS completed")
+        }
+        val imapConnection = startServerAndCreateImapConnection(server)
+        val result1 = PipelinedCommandResult()
+        val result2 = PipelinedCommandResult()
+
+        imapConnection.executePipelinedCommands(
+            listOf(
+                PipelinedCommand("STATUS \"Folder1\" (UNSEEN)", result1),
+                PipelinedCommand("STATUS \"Folder2\" (UNSEEN)", result2),
+            ),
+        )
+
+        assertThat(result1.getResponsesOrThrow().map { it.toString() }).containsExactly(
+            "#null# [STATUS, Folder1, [UNSEEN, 1]]",
+            "#4# [OK, STATUS completed]",
+        )
+        assertThat(result2.getResponsesOrThrow().map { it.toString() }).containsExactly(
+            "#null# [STATUS, Folder2, [UNSEEN, 2]]",
+            "#5# [OK, STATUS completed]",
+        )
+        server.verifyConnectionStillOpen()
+        server.verifyInteractionCompleted()
+    }
+
+    @Test
+    fun `executePipelinedCommands() with NO response should still complete other commands`() {
+        val server = MockImapServer().apply {
+            simpleOpenDialog()
+            expect("4 UID STORE 1 +FLAGS.SILENT (\\Seen)")
+            expect("5 UID STORE 2 +FLAGS.SILENT (\\Seen)")
+            output("4 NO Message is read-only")
+            output("5 OK STORE completed")
+        }
+        val imapConnection = startServerAndCreateImapConnection(server)
+        val result1 = PipelinedCommandResult()
+        val result2 = PipelinedCommandResult()
+
+        imapConnection.executePipelinedCommands(
+            listOf(
+                PipelinedCommand("UID STORE 1 +FLAGS.SILENT (\\Seen)", result1),
+                PipelinedCommand("UID STORE 2 +FLAGS.SILENT (\\Seen)", result2),
+            ),
+        )
+
+        assertFailure {
+            result1.getResponsesOrThrow()
+        }.isInstanceOf<NegativeImapResponseException>()
+            .prop(NegativeImapResponseException::lastResponse)
+            .containsExactly("NO", "Message is read-only")
+        assertThat(result2.getResponsesOrThrow()).hasSize(1)
+        server.verifyConnectionStillOpen()
+        server.verifyInteractionCompleted()
+    }
+
     @Test
     fun `hasCapability() with not yet opened connection should connect and fetch capabilities`() {
         val server = MockImapServer().apply {
@@ -109,6 +109,27 @@ class RealImapFolderIdlerTest {
         assertThat(imapFolder.isOpen).isFalse()
     }
 
+    @Test
+    fun `vanished during IDLE`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            val idleResult = idler.idle()
+
+            assertThat(idleResult).isEqualTo(IdleResult.SYNC)
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("VANISHED 23")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapFolder.isOpen).isFalse()
+    }
+
     @Test
     fun `refresh IDLE connection`() {
         val latch = CountDownLatch(1)
@@ -31,6 +31,9 @@ import java.io.IOException
 import java.nio.file.Files
 import java.util.Date
 import java.util.TimeZone
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.TestTimeSource
 import net.thunderbird.core.common.exception.MessagingException
 import net.thunderbird.protocols.imap.folder.attributeName
 import okio.Buffer
@@ -65,6 +68,7 @@ class RealImapFolderTest {
         override fun getPermanentFlagsIndex() = mutableSetOf<Flag>()
     }
     private val imapConnection = mock<ImapConnection>()
+    private val timeSource = TestTimeSource()
     private val testConnectionManager = TestConnectionManager(imapConnection)
 
     private lateinit var tempDirectory: File
@@ -73,6 +77,7 @@ class RealImapFolderTest {
     fun setUp() {
         tempDirectory = Files.createTempDirectory("RealImapFolderTest").toFile()
         BinaryTempFileBody.setTempDirectory(tempDirectory)
+        whenever(imapConnection.lineLengthLimit).thenReturn(980)
     }
 
     @After
@@ -200,6 +205,61 @@ class RealImapFolderTest {
             .hasMessage("Did not find message count during open")
     }
 
+    @Test
+    fun open_withHighestModSeqResponse_shouldExposeHighestModSeq() {
+        val imapFolder = createFolder("Folder")
+        whenever(imapConnection.isCondstoreCapable).thenReturn(true)
+        val selectResponses = listOf(
+            createImapResponse("* 23 EXISTS"),
+            createImapResponse("* OK [UIDVALIDITY 1125022061] UIDs valid"),
+            createImapResponse("* OK [HIGHESTMODSEQ 715194045007] Highest"),
+            createImapResponse("2 OK [READ-ONLY] Examine completed."),
+        )
+        whenever(imapConnection.executeSimpleCommand("EXAMINE \"Folder\" (CONDSTORE)")).thenReturn(selectResponses)
+
+        imapFolder.open(OpenMode.READ_ONLY)
+
+        assertThat(imapFolder.getHighestModSeq()).isEqualTo(715194045007L)
+    }
+
+    @Test
+    fun openWithChangesSince_withQresyncEnabled_shouldReturnFolderChanges() {
+        val imapFolder = createFolder("Folder")
+        whenever(imapConnection.isQresyncEnabled).thenReturn(true)
+        val selectResponses = listOf(
+            createImapResponse("* 23 EXISTS"),
+            createImapResponse("* OK [UIDVALIDITY 1125022061] UIDs valid"),
+            createImapResponse("* OK [HIGHESTMODSEQ 715194045007] Highest"),
+            createImapResponse("* VANISHED (EARLIER) 41,43:44"),
+            createImapResponse("* 20 FETCH (UID 117 FLAGS (\\Seen \\Answered) MODSEQ (715194045005))"),
+            createImapResponse("2 OK [READ-ONLY] Examine completed."),
+        )
+        whenever(imapConnection.executeSimpleCommand("EXAMINE \"Folder\" (QRESYNC (1125022061 715194045000))"))
+            .thenReturn(selectResponses)
+
+        val folderChanges = imapFolder.openWithChangesSince(OpenMode.READ_ONLY, 1125022061L, 715194045000L)
+
+        assertThat(folderChanges).isNotNull().given { changes ->
+            assertThat(changes.vanishedUids.ranges).containsExactly(41L..41L, 43L..44L)
+            assertThat(changes.changedMessages.map { it.uid }).containsExactly("117")
+            assertThat(changes.changedMessages.first().flags).containsOnly(Flag.SEEN, Flag.ANSWERED)
+        }
+        assertThat(imapFolder.getHighestModSeq()).isEqualTo(715194045007L)
+        assertThat(imapFolder.messageCount).isEqualTo(23)
+    }
+
+    @Test
+    fun openWithChangesSince_withoutQresync_shouldOpenFolderAndReturnNull() {
+        val imapFolder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+
+        val folderChanges = imapFolder.openWithChangesSince(OpenMode.READ_ONLY, 1125022061L, 715194045000L)
+
+        assertThat(folderChanges).isNull()
+        assertThat(imapFolder.isOpen).isTrue()
+        assertThat(imapFolder.getHighestModSeq()).isNull()
+    }
+
     @Test
     fun close_shouldCloseImapFolder() {
         val imapFolder = createFolder("Folder")
@@ -852,6 +912,161 @@ class RealImapFolderTest {
         verify(imapConnection).sendCommand("UID FETCH 1 (UID BODYSTRUCTURE)", false)
     }
 
+    @Test
+    fun `fetch() should grow window when server responds quickly`() {
+        imapStoreConfig.fetchWindowConfig = FetchWindowConfig(
+            initialWindowSize = 2,
+            minWindowSize = 1,
+            maxMetadataWindowSize = 8,
+            targetRoundTripMillis = 1000L,
+        )
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        whenever(imapConnection.readResponse(anyOrNull())).thenAnswer {
+            timeSource += 100.milliseconds
+            createImapResponse("x OK")
+        }
+        val messages = createImapMessages("1", "2", "3", "4", "5", "6", "7", "8", "9")
+        val fetchProfile = createFetchProfile(FetchProfile.Item.FLAGS)
+
+        folder.fetch(messages, fetchProfile, null, MAX_DOWNLOAD_SIZE)
+
+        val commandCaptor = argumentCaptor<String>()
+        verify(imapConnection, times(3)).sendCommand(commandCaptor.capture(), eq(false))
+        assertThat(commandCaptor.allValues).containsExactly(
+            "UID FETCH 1,2 (UID FLAGS)",
+            "UID FETCH 3,4,5,6 (UID FLAGS)",
+            "UID FETCH 7,8,9 (UID FLAGS)",
+        )
+    }
+
+    @Test
+    fun `fetch() should shrink window when server responds slowly`() {
+        imapStoreConfig.fetchWindowConfig = FetchWindowConfig(
+            initialWindowSize = 4,
+            minWindowSize = 1,
+            maxMetadataWindowSize = 8,
+            targetRoundTripMillis = 1000L,
+        )
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        whenever(imapConnection.readResponse(anyOrNull())).thenAnswer {
+            timeSource += 5.seconds
+            createImapResponse("x OK")
+        }
+        val messages = createImapMessages("1", "2", "3", "4", "5", "6", "7", "8")
+        val fetchProfile = createFetchProfile(FetchProfile.Item.FLAGS)
+
+        folder.fetch(messages, fetchProfile, null, MAX_DOWNLOAD_SIZE)
+
+        val commandCaptor = argumentCaptor<String>()
+        verify(imapConnection, times(4)).sendCommand(commandCaptor.capture(), eq(false))
+        assertThat(commandCaptor.allValues).containsExactly(
+            "UID FETCH 1,2,3,4 (UID FLAGS)",
+            "UID FETCH 5,6 (UID FLAGS)",
+            "UID FETCH 7 (UID FLAGS)",
+            "UID FETCH 8 (UID FLAGS)",
+        )
+    }
+
+    @Test
+    fun `fetch() with body should not exceed body window size`() {
+        imapStoreConfig.fetchWindowConfig = FetchWindowConfig(
+            initialWindowSize = 100,
+            minWindowSize = 1,
+            maxBodyWindowSize = 2,
+        )
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        whenever(imapConnection.readResponse(anyOrNull())).thenAnswer {
+            timeSource += 1.milliseconds
+            createImapResponse("x OK")
+        }
+        val messages = createImapMessages("1", "2", "3", "4", "5")
+        val fetchProfile = createFetchProfile(FetchProfile.Item.BODY)
+
+        folder.fetch(messages, fetchProfile, null, MAX_DOWNLOAD_SIZE)
+
+        val commandCaptor = argumentCaptor<String>()
+        verify(imapConnection, times(3)).sendCommand(commandCaptor.capture(), eq(false))
+        assertThat(commandCaptor.allValues).containsExactly(
+            "UID FETCH 1,2 (UID BODY.PEEK[])",
+            "UID FETCH 3,4 (UID BODY.PEEK[])",
+            "UID FETCH 5 (UID BODY.PEEK[])",
+        )
+    }
+
+    @Test
+    fun `fetch() should not exceed line length limit`() {
+        imapStoreConfig.fetchWindowConfig = FetchWindowConfig(
+            initialWindowSize = 100,
+            minWindowSize = 1,
+            maxMetadataWindowSize = 100,
+        )
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        whenever(imapConnection.lineLengthLimit).thenReturn(40)
+        whenever(imapConnection.readResponse(anyOrNull())).thenReturn(createImapResponse("x OK"))
+        val messages = createImapMessages("100001", "100002", "100003", "100004", "100005")
+        val fetchProfile = createFetchProfile(FetchProfile.Item.FLAGS)
+
+        folder.fetch(messages, fetchProfile, null, MAX_DOWNLOAD_SIZE)
+
+        val commandCaptor = argumentCaptor<String>()
+        verify(imapConnection, times(3)).sendCommand(commandCaptor.capture(), eq(false))
+        assertThat(commandCaptor.allValues).containsExactly(
+            "UID FETCH 100001,100002 (UID FLAGS)",
+            "UID FETCH 100003,100004 (UID FLAGS)",
+            "UID FETCH 100005 (UID FLAGS)",
+        )
+    }
+
+    @Test
+    fun `fetch() should not include time spent in listener when sizing window`() {
+        imapStoreConfig.fetchWindowConfig = FetchWindowConfig(
+            initialWindowSize = 2,
+            minWindowSize = 1,
+            maxMetadataWindowSize = 8,
+            targetRoundTripMillis = 1000L,
+        )
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        val pendingResponses = ArrayDeque<ImapResponse>()
+        whenever(imapConnection.sendCommand(anyString(), eq(false))).thenAnswer { invocation ->
+            val command = invocation.getArgument<String>(0)
+            val uids = command.removePrefix("UID FETCH ").substringBefore(' ').split(',')
+            uids.mapTo(pendingResponses) { uid -> createImapResponse("* $uid FETCH (UID $uid FLAGS ())") }
+            pendingResponses.add(createImapResponse("x OK"))
+            "x"
+        }
+        whenever(imapConnection.readResponse(anyOrNull())).thenAnswer {
+            timeSource += 50.milliseconds
+            pendingResponses.removeFirst()
+        }
+        val listener = object : FetchListener {
+            override fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean) {
+                timeSource += 5.seconds
+            }
+        }
+        val messages = createImapMessages("1", "2", "3", "4", "5", "6", "7", "8", "9")
+        val fetchProfile = createFetchProfile(FetchProfile.Item.FLAGS)
+
+        folder.fetch(messages, fetchProfile, listener, MAX_DOWNLOAD_SIZE)
+
+        val commandCaptor = argumentCaptor<String>()
+        verify(imapConnection, times(3)).sendCommand(commandCaptor.capture(), eq(false))
+        assertThat(commandCaptor.allValues).containsExactly(
+            "UID FETCH 1,2 (UID FLAGS)",
+            "UID FETCH 3,4,5,6 (UID FLAGS)",
+            "UID FETCH 7,8,9 (UID FLAGS)",
+        )
+    }
+
     @Test
     fun fetch_withStructureFetchProfile_shouldSetContentType() {
         val folder = createFolder("Folder")
@@ -1073,6 +1288,37 @@ class RealImapFolderTest {
         verify(messages[0]).setFlag(Flag.SEEN, true)
     }
 
+    @Test
+    fun fetchChangedFlags_shouldIssueFetchWithChangedSinceModifier() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        whenever(imapConnection.readResponse(anyOrNull())).thenReturn(createImapResponse("x OK"))
+        val messages = createImapMessages("1", "2")
+
+        folder.fetchChangedFlags(messages, changedSince = 12345L, listener = mock())
+
+        verify(imapConnection).sendCommand("UID FETCH 1,2 (UID FLAGS) (CHANGEDSINCE 12345)", false)
+    }
+
+    @Test
+    fun fetchChangedFlags_shouldOnlyReportChangedMessages() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        val messages = createImapMessages("1", "2")
+        whenever(imapConnection.readResponse(anyOrNull()))
+            .thenReturn(createImapResponse("* 2 FETCH (UID 2 FLAGS (\\Flagged) MODSEQ (12346))"))
+            .thenReturn(createImapResponse("x OK"))
+        val listener = mock<FetchListener>()
+
+        folder.fetchChangedFlags(messages, changedSince = 12345L, listener = listener)
+
+        verify(messages[1]).setFlag(Flag.FLAGGED, true)
+        verify(listener).onFetchResponse(messages[1], true)
+        verifyNoMoreInteractions(listener)
+    }
+
     @Test
     fun `fetchPart() on closed folder should throw`() {
         val folder = createFolder("Folder")
@@ -1601,7 +1847,7 @@ class RealImapFolderTest {
     }
 
     private fun createFolder(folderName: String): RealImapFolder {
-        return RealImapFolder(internalImapStore, testConnectionManager, folderName, FolderNameCodec())
+        return RealImapFolder(internalImapStore, testConnectionManager, folderName, FolderNameCodec(), timeSource)
     }
 
     private fun createImapMessage(uid: String): ImapMessage {
@@ -20,12 +20,16 @@ import java.util.Deque
 import net.thunderbird.core.common.exception.MessagingException
 import org.junit.Test
 import org.mockito.ArgumentMatchers.anyString
+import org.mockito.kotlin.any
+import org.mockito.kotlin.argThat
+import org.mockito.kotlin.doAnswer
 import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.doThrow
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.never
 import org.mockito.kotlin.stub
 import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
 
 class RealImapStoreTest {
     private val imapStore = createTestImapStore()
@@ -194,21 +198,21 @@ class RealImapStoreTest {
     @Test
     fun `getFolders() with subscribedFoldersOnly = true should only return existing subscribed folders`() {
         val imapStore = createTestImapStore(isSubscribedFoldersOnly = true)
-        val imapConnection = createMockConnection().stub {
-            on { executeSimpleCommand("""LSUB "" "*"""") } doReturn listOf(
+        val imapConnection = createMockConnection().stubPipelinedCommands(
+            """LSUB "" "*"""" to listOf(
                 createImapResponse("""* LSUB (\HasNoChildren) "." "INBOX""""),
                 createImapResponse("""* LSUB (\Noselect \HasChildren) "." "Folder""""),
                 createImapResponse("""* LSUB (\HasNoChildren) "." "Folder.SubFolder""""),
                 createImapResponse("""* LSUB (\HasNoChildren) "." "SubscribedFolderThatHasBeenDeleted""""),
                 createImapResponse("5 OK Success"),
-            )
-            on { executeSimpleCommand("""LIST "" "*"""") } doReturn listOf(
+            ),
+            """LIST "" "*"""" to listOf(
                 createImapResponse("""* LIST (\HasNoChildren) "." "INBOX""""),
                 createImapResponse("""* LIST (\Noselect \HasChildren) "." "Folder""""),
                 createImapResponse("""* LIST (\HasNoChildren) "." "Folder.SubFolder""""),
                 createImapResponse("6 OK Success"),
-            )
-        }
+            ),
+        )
         imapStore.enqueueImapConnection(imapConnection)
 
         val folders = imapStore.getFolders()
@@ -217,6 +221,23 @@ class RealImapStoreTest {
         assertThat(folders.map { it.serverId }).containsExactly("INBOX", "Folder.SubFolder")
     }
 
+    @Test
+    fun `getFolders() with subscribedFoldersOnly = true should send LIST and LSUB pipelined`() {
+        val imapStore = createTestImapStore(isSubscribedFoldersOnly = true)
+        val imapConnection = createMockConnection().stubPipelinedCommands(
+            """LIST "" "*"""" to listOf(createImapResponse("5 OK Success")),
+            """LSUB "" "*"""" to listOf(createImapResponse("6 OK Success")),
+        )
+        imapStore.enqueueImapConnection(imapConnection)
+
+        imapStore.getFolders()
+
+        verify(imapConnection).executePipelinedCommands(
+            argThat { map { it.command } == listOf("""LIST "" "*"""", """LSUB "" "*"""") },
+        )
+        verify(imapConnection, never()).executeSimpleCommand(anyString())
+    }
+
     @Test
     fun `getFolders() with namespace prefix`() {
         val imapConnection = createMockConnection().stub {
@@ -426,6 +447,20 @@ class RealImapStoreTest {
         }
     }
 
+    private fun ImapConnection.stubPipelinedCommands(
+        vararg responses: Pair<String, List<ImapResponse>>,
+    ): ImapConnection {
+        val responseMap = responses.toMap()
+        doAnswer { invocation ->
+            val commands = invocation.getArgument<List<PipelinedCommand>>(0)
+            for (command in commands) {
+                command.callback.onCommandCompleted(responseMap.getValue(command.command))
+            }
+        }.whenever(this).executePipelinedCommands(any())
+
+        return this
+    }
+
     private fun createServerSettings(): ServerSettings {
         return ServerSettings(
             type = "imap",
@@ -14,6 +14,9 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
         get() = TODO("Not yet implemented")
     override val isUidPlusCapable: Boolean = true
     override val isUtf8AcceptCapable: Boolean = false
+    override val isCondstoreCapable: Boolean = false
+    override val isQresyncEnabled: Boolean = false
+    override val lineLengthLimit: Int = 980
     override var isIdleCapable: Boolean = true
         protected set
 
@@ -58,6 +61,10 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
         throw UnsupportedOperationException("not implemented")
     }
 
+    override fun executePipelinedCommands(commands: List<PipelinedCommand>) {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun sendCommand(command: String, sensitive: Boolean): String {
         val tag = ++tag
         println(">>> $tag $command")
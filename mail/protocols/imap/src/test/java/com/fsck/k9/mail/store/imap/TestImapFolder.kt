@@ -35,6 +35,10 @@ internal open class TestImapFolder(
         isOpen = true
     }
 
+    override fun openWithChangesSince(mode: OpenMode, knownUidValidity: Long, knownModSeq: Long): FolderChanges? {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun close() {
         connection.close()
         isOpen = false
@@ -45,6 +49,10 @@ internal open class TestImapFolder(
         throw UnsupportedOperationException("not implemented")
     }
 
+    override fun getHighestModSeq(): Long? {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun getMessage(uid: String): ImapMessage {
         throw UnsupportedOperationException("not implemented")
     }
@@ -75,6 +83,10 @@ internal open class TestImapFolder(
         throw UnsupportedOperationException("not implemented")
     }
 
+    override fun fetchChangedFlags(messages: List<ImapMessage>, changedSince: Long, listener: FetchListener) {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun fetchPart(
         message: ImapMessage,
         part: Part,
@@ -0,0 +1,52 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isNull
+import assertk.assertions.isTrue
+import org.junit.Test
+
+class UidSetTest {
+    @Test
+    fun parse_shouldKeepRanges() {
+        val uidSet = UidSet.parse("41,43:116,118")
+
+        assertThat(uidSet?.ranges).isEqualTo(listOf(41L..41L, 43L..116L, 118L..118L))
+        assertThat(uidSet?.size).isEqualTo(76L)
+    }
+
+    @Test
+    fun parse_withInvalidUid_shouldReturnNull() {
+        assertThat(UidSet.parse("1:x")).isNull()
+        assertThat(UidSet.parse("0")).isNull()
+        assertThat(UidSet.parse("4294967296")).isNull()
+    }
+
+    @Test
+    fun overlappingAndAdjacentRanges_shouldBeMerged() {
+        val uidSet = UidSet(listOf(10L..20L, 1L..3L, 15L..25L, 4L..5L))
+
+        assertThat(uidSet.ranges).containsExactly(1L..5L, 10L..25L)
+        assertThat(uidSet.size).isEqualTo(21L)
+    }
+
+    @Test
+    fun contains() {
+        val uidSet = UidSet(listOf(1L..1L, 10L..20L, 30L..4294967295L))
+
+        assertThat(1L in uidSet).isTrue()
+        assertThat(2L in uidSet).isFalse()
+        assertThat(15L in uidSet).isTrue()
+        assertThat(25L in uidSet).isFalse()
+        assertThat(4294967295L in uidSet).isTrue()
+    }
+
+    @Test
+    fun toString_shouldReturnSequenceSet() {
+        val uidSet = UidSet.of(listOf(3L, 1L, 2L, 7L))
+
+        assertThat(uidSet.toString()).isEqualTo("1:3,7")
+    }
+}
@@ -0,0 +1,90 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
+import assertk.assertions.isTrue
+import org.junit.Test
+
+class VanishedResponseTest {
+    @Test
+    fun vanishedEarlierResponse() {
+        val response = ImapResponseHelper.createImapResponse("* VANISHED (EARLIER) 41,43:45,50")
+
+        val result = VanishedResponse.parse(response)
+
+        assertThat(result).isNotNull().given { vanishedResponse ->
+            assertThat(vanishedResponse.isEarlier).isTrue()
+            assertThat(vanishedResponse.uids.ranges).containsExactly(41L..41L, 43L..45L, 50L..50L)
+        }
+    }
+
+    @Test
+    fun vanishedResponse() {
+        val response = ImapResponseHelper.createImapResponse("* VANISHED 23")
+
+        val result = VanishedResponse.parse(response)
+
+        assertThat(result).isNotNull().given { vanishedResponse ->
+            assertThat(vanishedResponse.isEarlier).isFalse()
+            assertThat(vanishedResponse.uids.ranges).containsExactly(23L..23L)
+        }
+    }
+
+    @Test
+    fun reversedRange() {
+        val response = ImapResponseHelper.createImapResponse("* VANISHED 5:3")
+
+        val result = VanishedResponse.parse(response)
+
+        assertThat(result).isNotNull().given { vanishedResponse ->
+            assertThat(vanishedResponse.uids.ranges).containsExactly(3L..5L)
+        }
+    }
+
+    @Test
+    fun fullUidRange_shouldNotExpandRange() {
+        val response = ImapResponseHelper.createImapResponse("* VANISHED (EARLIER) 1:4294967295")
+
+        val result = VanishedResponse.parse(response)
+
+        assertThat(result).isNotNull().given { vanishedResponse ->
+            assertThat(vanishedResponse.uids.ranges).containsExactly(1L..4294967295L)
+            assertThat(vanishedResponse.uids.size).isEqualTo(4294967295L)
+        }
+    }
+
+    @Test
+    fun taggedResponse_shouldReturnNull() {
+        assertNotValid("1 VANISHED 23")
+    }
+
+    @Test
+    fun missingUidSet_shouldReturnNull() {
+        assertNotValid("* VANISHED (EARLIER)")
+    }
+
+    @Test
+    fun invalidUid_shouldReturnNull() {
+        assertNotValid("* VANISHED 1,x")
+    }
+
+    @Test
+    fun zeroUid_shouldReturnNull() {
+        assertNotValid("* VANISHED 0:3")
+    }
+
+    @Test
+    fun otherResponse_shouldReturnNull() {
+        assertNotValid("* 23 EXPUNGE")
+    }
+
+    private fun assertNotValid(response: String) {
+        val result = VanishedResponse.parse(ImapResponseHelper.createImapResponse(response))
+
+        assertThat(result).isNull()
+    }
+}
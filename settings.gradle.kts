@@ -241,6 +241,7 @@ include(
 
 include(
     ":library:html-cleaner",
+    ":library:sml-html",
     ":library:TokenAutoComplete",
 )
 